@@ -0,0 +1,143 @@
+package com.nttdata.bankapp.mscreditcardservice.benchmark;
+
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCardBalanceView;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.model.Movement;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import org.bson.types.ObjectId;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repositorio de tarjetas en memoria para los benchmarks.
+ * Solo implementa las operaciones usadas por el servicio en los caminos medidos,
+ * emulando la semántica atómica de las actualizaciones condicionales de Mongo.
+ * Los movimientos no se registran: el libro mayor no forma parte de lo medido.
+ */
+public final class InMemoryCreditCardRepository implements InvocationHandler {
+
+    private final Map<String, CreditCard> cards = new ConcurrentHashMap<>();
+
+    private InMemoryCreditCardRepository() {
+    }
+
+    /**
+     * Crea un repositorio en memoria con las tarjetas indicadas.
+     * @param initialCards Tarjetas iniciales
+     * @return CreditCardRepository respaldado por un mapa
+     */
+    public static CreditCardRepository create(Collection<CreditCard> initialCards) {
+        InMemoryCreditCardRepository handler = new InMemoryCreditCardRepository();
+        initialCards.forEach(card -> handler.cards.put(card.getId(), copy(card)));
+        return (CreditCardRepository) Proxy.newProxyInstance(
+                CreditCardRepository.class.getClassLoader(),
+                new Class<?>[]{CreditCardRepository.class},
+                handler);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "findCardById":
+                if (args[0] instanceof String) {
+                    return Mono.justOrEmpty(cards.get((String) args[0])).map(InMemoryCreditCardRepository::copy);
+                }
+                break;
+            case "existsById":
+                if (args[0] instanceof String) {
+                    return Mono.just(cards.containsKey((String) args[0]));
+                }
+                break;
+            case "findCardsByIdIn":
+                if (args[0] instanceof Iterable) {
+                    return Flux.fromIterable((Iterable<String>) args[0])
+                            .mapNotNull(cards::get)
+                            .map(InMemoryCreditCardRepository::copy);
+                }
+                break;
+            case "findBalanceViewById":
+                return Mono.justOrEmpty(cards.get((String) args[0]))
+                        .map(card -> new CreditCardBalanceView(card.getId(), card.getCardNumber(),
+                                card.getCreditLimit(), card.getAvailableBalance()));
+            case "findByCardNumber":
+                return Flux.fromIterable(cards.values())
+                        .filter(card -> args[0].equals(card.getCardNumber()))
+                        .next()
+                        .map(InMemoryCreditCardRepository::copy);
+            case "save":
+                CreditCard creditCard = (CreditCard) args[0];
+                if (creditCard.getId() == null) {
+                    creditCard.setId(new ObjectId().toHexString());
+                }
+                cards.put(creditCard.getId(), copy(creditCard));
+                return Mono.just(creditCard);
+            case "debitAvailableBalance":
+                return Mono.justOrEmpty(applyDelta((String) args[0], -((Money) args[1]).getMinorUnits()));
+            case "creditAvailableBalance":
+                return Mono.justOrEmpty(applyDelta((String) args[0], ((Money) args[1]).getMinorUnits()));
+            case "incrementAvailableBalances":
+                Map<String, List<Movement>> movements = (Map<String, List<Movement>>) args[0];
+                movements.forEach((id, cardMovements) -> cards.computeIfPresent(id, (key, card) -> {
+                    long delta = cardMovements.stream().mapToLong(Movement::balanceDelta).sum();
+                    card.setAvailableBalance(Money.ofMinorUnits(card.getAvailableBalance().getMinorUnits() + delta));
+                    return card;
+                }));
+                return Mono.just(Collections.emptySet());
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "InMemoryCreditCardRepository(" + cards.size() + " cards)";
+            default:
+                break;
+        }
+        throw new UnsupportedOperationException("Not supported in benchmarks: " + method);
+    }
+
+    /**
+     * Aplica un cambio de saldo solo si el resultado queda entre cero y el límite.
+     */
+    private CreditCard applyDelta(String id, long delta) {
+        CreditCard[] updated = new CreditCard[1];
+        cards.computeIfPresent(id, (key, card) -> {
+            long availableBalance = card.getAvailableBalance().getMinorUnits() + delta;
+            if (availableBalance >= 0 && availableBalance <= card.getCreditLimit().getMinorUnits()) {
+                card.setAvailableBalance(Money.ofMinorUnits(availableBalance));
+                updated[0] = copy(card);
+            }
+            return card;
+        });
+        return updated[0];
+    }
+
+    /**
+     * Las tarjetas se devuelven copiadas, igual que al leerlas de la base de datos.
+     */
+    private static CreditCard copy(CreditCard card) {
+        return CreditCard.builder()
+                .id(card.getId())
+                .cardNumber(card.getCardNumber())
+                .customerId(card.getCustomerId())
+                .customerType(card.getCustomerType())
+                .creditLimit(card.getCreditLimit())
+                .availableBalance(card.getAvailableBalance())
+                .expirationDate(card.getExpirationDate())
+                .cvv(card.getCvv())
+                .createdAt(card.getCreatedAt())
+                .updatedAt(card.getUpdatedAt())
+                .version(card.getVersion())
+                .build();
+    }
+}
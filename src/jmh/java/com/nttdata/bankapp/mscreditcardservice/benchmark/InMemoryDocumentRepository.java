@@ -0,0 +1,103 @@
+package com.nttdata.bankapp.mscreditcardservice.benchmark;
+
+import org.bson.types.ObjectId;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repositorio reactivo genérico en memoria para los benchmarks.
+ * Solo implementa las operaciones CRUD por ID; las consultas derivadas no se usan en los caminos medidos.
+ * Los documentos se guardan por referencia y reciben un ObjectId si no tienen ID.
+ */
+public final class InMemoryDocumentRepository implements InvocationHandler {
+
+    private final Map<String, Object> documents = new ConcurrentHashMap<>();
+    private final Class<?> repositoryType;
+
+    private InMemoryDocumentRepository(Class<?> repositoryType) {
+        this.repositoryType = repositoryType;
+    }
+
+    /**
+     * Crea un repositorio en memoria vacío.
+     * @param repositoryType Interfaz del repositorio
+     * @param <R> Tipo del repositorio
+     * @return Repositorio respaldado por un mapa
+     */
+    public static <R> R create(Class<R> repositoryType) {
+        return repositoryType.cast(Proxy.newProxyInstance(
+                repositoryType.getClassLoader(),
+                new Class<?>[]{repositoryType},
+                new InMemoryDocumentRepository(repositoryType)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "save":
+                return Mono.just(store(args[0]));
+            case "saveAll":
+                if (args[0] instanceof Iterable) {
+                    return Flux.fromIterable((Iterable<?>) args[0]).map(this::store);
+                }
+                break;
+            case "findById":
+                if (args[0] instanceof String) {
+                    return Mono.justOrEmpty(documents.get((String) args[0]));
+                }
+                break;
+            case "existsById":
+                if (args[0] instanceof String) {
+                    return Mono.just(documents.containsKey((String) args[0]));
+                }
+                break;
+            case "findAll":
+                if (args == null) {
+                    return Flux.fromIterable(documents.values());
+                }
+                break;
+            case "count":
+                return Mono.just((long) documents.size());
+            case "deleteById":
+                if (args[0] instanceof String) {
+                    return Mono.fromRunnable(() -> documents.remove((String) args[0]));
+                }
+                break;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "InMemoryDocumentRepository(" + repositoryType.getSimpleName() + ", " + documents.size() + " documents)";
+            default:
+                break;
+        }
+        throw new UnsupportedOperationException("Not supported in benchmarks: " + method);
+    }
+
+    private Object store(Object document) {
+        String id = (String) property(document, "getId");
+        if (id == null) {
+            id = new ObjectId().toHexString();
+            property(document, "setId", id);
+        }
+        documents.put(id, document);
+        return document;
+    }
+
+    private static Object property(Object document, String accessor, Object... args) {
+        try {
+            Class<?>[] types = args.length == 0 ? new Class<?>[0] : new Class<?>[]{String.class};
+            return document.getClass().getMethod(accessor, types).invoke(document, args);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalArgumentException("Document without String id: " + document.getClass(), e);
+        }
+    }
+}
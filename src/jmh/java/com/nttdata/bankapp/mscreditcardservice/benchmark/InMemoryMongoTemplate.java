@@ -0,0 +1,87 @@
+package com.nttdata.bankapp.mscreditcardservice.benchmark;
+
+import com.mongodb.MongoClientSettings;
+import com.nttdata.bankapp.mscreditcardservice.model.CardNumberSequence;
+import org.bson.Document;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Plantilla de MongoDB sin conexión para los benchmarks.
+ * Resuelve nombres de colección con el contexto de mapeo real y emula en memoria la reserva de bloques
+ * de números de tarjeta; cualquier otra operación falla porque no hay base de datos detrás.
+ */
+public final class InMemoryMongoTemplate extends ReactiveMongoTemplate {
+
+    private static final String INC = "$inc";
+    private static final String SET_ON_INSERT = "$setOnInsert";
+
+    private final Map<String, CardNumberSequence> sequences = new ConcurrentHashMap<>();
+
+    public InMemoryMongoTemplate() {
+        super(disconnectedFactory());
+    }
+
+    @Override
+    public <T> Mono<T> findAndModify(Query query, UpdateDefinition update, FindAndModifyOptions options, Class<T> entityClass) {
+        if (entityClass != CardNumberSequence.class || !options.isUpsert() || !options.isReturnNew()) {
+            throw new UnsupportedOperationException("Not supported in benchmarks: findAndModify on " + entityClass);
+        }
+        String bin = (String) query.getQueryObject().get("id");
+        Document updateObject = update.getUpdateObject();
+        Document inc = updateObject.get(INC, Document.class);
+        Document setOnInsert = updateObject.get(SET_ON_INSERT, new Document());
+        return Mono.fromSupplier(() -> {
+            CardNumberSequence sequence = sequences.compute(bin, (key, current) -> {
+                CardNumberSequence next = current != null
+                        ? current
+                        : CardNumberSequence.builder()
+                                .id(key)
+                                .multiplier(setOnInsert.get("multiplier", 1L))
+                                .offset(setOnInsert.get("offset", 0L))
+                                .build();
+                next.setNext(next.getNext() + ((Number) inc.get("next")).longValue());
+                return next;
+            });
+            return entityClass.cast(new CardNumberSequence(sequence.getId(), sequence.getNext(),
+                    sequence.getMultiplier(), sequence.getOffset()));
+        });
+    }
+
+    /**
+     * Factoría que solo aporta lo que la plantilla necesita al construirse; no abre conexiones.
+     */
+    private static ReactiveMongoDatabaseFactory disconnectedFactory() {
+        MongoExceptionTranslator exceptionTranslator = new MongoExceptionTranslator();
+        return (ReactiveMongoDatabaseFactory) Proxy.newProxyInstance(
+                ReactiveMongoDatabaseFactory.class.getClassLoader(),
+                new Class<?>[]{ReactiveMongoDatabaseFactory.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getExceptionTranslator":
+                            return exceptionTranslator;
+                        case "getCodecRegistry":
+                            return MongoClientSettings.getDefaultCodecRegistry();
+                        case "isTransactionActive":
+                            return false;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "DisconnectedReactiveMongoDatabaseFactory";
+                        default:
+                            throw new UnsupportedOperationException("Not supported in benchmarks: " + method);
+                    }
+                });
+    }
+}
@@ -0,0 +1,98 @@
+package com.nttdata.bankapp.mscreditcardservice.controller;
+
+import com.nttdata.bankapp.mscreditcardservice.benchmark.InMemoryMongoTemplate;
+import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardBalanceDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardDto;
+import com.nttdata.bankapp.mscreditcardservice.exception.GlobalExceptionHandler;
+import com.nttdata.bankapp.mscreditcardservice.idempotency.IdempotencyStore;
+import com.nttdata.bankapp.mscreditcardservice.service.impl.BenchmarkServices;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la cadena completa de WebFlux (enrutado, binding, servicio y codificación JSON)
+ * sobre el controlador enlazado sin servidor HTTP y con el repositorio en memoria.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ControllerPipelineBenchmark {
+
+    @Param({"false", "true"})
+    public boolean engineEnabled;
+
+    @Param({"1000"})
+    public int cardCount;
+
+    private BenchmarkServices services;
+    private WebTestClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        services = BenchmarkServices.start(cardCount, engineEnabled);
+        // Las peticiones del benchmark no llevan Idempotency-Key, por lo que el almacén no llega a usar Mongo
+        IdempotencyStore idempotencyStore = new IdempotencyStore(new InMemoryMongoTemplate(), new SimpleMeterRegistry(),
+                Duration.ofHours(24), Duration.ofSeconds(30), 1000, Duration.ofMinutes(10));
+        client = WebTestClient.bindToController(new CreditCardController(services.service(), idempotencyStore))
+                .controllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        services.stop();
+    }
+
+    @Benchmark
+    public CreditCardBalanceDto getBalance() {
+        return client.get()
+                .uri("/credit-cards/{id}/balance", randomCardId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(CreditCardBalanceDto.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public CreditCardDto consumeAndPay() {
+        String id = randomCardId();
+        client.put()
+                .uri("/credit-cards/{id}/consumption?amount=12.34", id)
+                .exchange()
+                .expectStatus().isOk();
+        return client.put()
+                .uri("/credit-cards/{id}/payment?amount=12.34", id)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(CreditCardDto.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private String randomCardId() {
+        return BenchmarkServices.cardId(ThreadLocalRandom.current().nextInt(cardCount));
+    }
+}
@@ -0,0 +1,63 @@
+package com.nttdata.bankapp.mscreditcardservice.service.impl;
+
+import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide registerConsumption y payBalance por el camino atómico del repositorio y por el motor en memoria.
+ * Cada invocación hace un consumo y el pago del mismo importe para que el saldo no se agote.
+ * Con pocas tarjetas se mide la contención sobre una misma tarjeta.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AuthorizationBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("12.34");
+
+    @Param({"false", "true"})
+    public boolean engineEnabled;
+
+    @Param({"1", "1000"})
+    public int cardCount;
+
+    private BenchmarkServices services;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        services = BenchmarkServices.start(cardCount, engineEnabled);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        services.stop();
+    }
+
+    @Benchmark
+    public CreditCardDto consumeAndPay() {
+        String id = BenchmarkServices.cardId(ThreadLocalRandom.current().nextInt(cardCount));
+        services.service().registerConsumption(id, AMOUNT, null).block();
+        return services.service().payBalance(id, AMOUNT, null).block();
+    }
+}
@@ -0,0 +1,147 @@
+package com.nttdata.bankapp.mscreditcardservice.service.impl;
+
+import com.nttdata.bankapp.mscreditcardservice.authorization.AuthorizationEngine;
+import com.nttdata.bankapp.mscreditcardservice.authorization.EngineLeaseHolder;
+import com.nttdata.bankapp.mscreditcardservice.benchmark.InMemoryCreditCardRepository;
+import com.nttdata.bankapp.mscreditcardservice.benchmark.InMemoryDocumentRepository;
+import com.nttdata.bankapp.mscreditcardservice.benchmark.InMemoryMongoTemplate;
+import com.nttdata.bankapp.mscreditcardservice.cache.CacheInvalidationBus;
+import com.nttdata.bankapp.mscreditcardservice.cache.CreditCardCache;
+import com.nttdata.bankapp.mscreditcardservice.client.CustomerService;
+import com.nttdata.bankapp.mscreditcardservice.concurrency.CardContentionTracker;
+import com.nttdata.bankapp.mscreditcardservice.events.BalanceEventStream;
+import com.nttdata.bankapp.mscreditcardservice.issuance.CardNumberIssuer;
+import com.nttdata.bankapp.mscreditcardservice.metrics.OperationMetrics;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import com.nttdata.bankapp.mscreditcardservice.repository.MovementRepository;
+import com.nttdata.bankapp.mscreditcardservice.repository.UnappliedBalanceChangeRepository;
+import com.nttdata.bankapp.mscreditcardservice.stats.PortfolioStatistics;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Construye el servicio de tarjetas sin contexto de Spring para los benchmarks.
+ * Los repositorios y la plantilla de MongoDB se sustituyen por implementaciones en memoria; el motor de autorización,
+ * la caché, el emisor de números de tarjeta y el procesador de lotes son los de producción.
+ */
+public final class BenchmarkServices {
+
+    public static final long CREDIT_LIMIT_CENTS = 1_000_000_00L;
+
+    private final CreditCardRepository repository;
+    private final AuthorizationEngine authorizationEngine;
+    private final CreditCardCache creditCardCache;
+    private final CreditCardServiceImpl service;
+
+    private BenchmarkServices(List<CreditCard> cards, boolean engineEnabled) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.repository = InMemoryCreditCardRepository.create(cards);
+        InMemoryMongoTemplate mongoTemplate = new InMemoryMongoTemplate();
+        this.authorizationEngine = new AuthorizationEngine(repository,
+                InMemoryDocumentRepository.create(UnappliedBalanceChangeRepository.class), singleInstanceLease(mongoTemplate),
+                engineEnabled, 4,
+                Duration.ofMillis(50), 500, Duration.ofMinutes(5), 5);
+        this.creditCardCache = new CreditCardCache(new CacheInvalidationBus(), meterRegistry, 50_000, Duration.ofSeconds(30));
+        CustomerService customerService = new CustomerService(WebClient.create("http://localhost"),
+                CircuitBreaker.ofDefaults("customer-service"), Bulkhead.ofDefaults("customer-service"),
+                Duration.ofSeconds(3), 10_000, Duration.ofMinutes(5), Duration.ofSeconds(30), meterRegistry);
+        // Las estadísticas no se reconstruyen: solo se miden sus actualizaciones incrementales
+        PortfolioStatistics portfolioStatistics = new PortfolioStatistics(repository, meterRegistry, 90, Duration.ofMinutes(10));
+        CardContentionTracker cardContentionTracker = new CardContentionTracker(meterRegistry, 5,
+                Duration.ofMillis(5), Duration.ofMillis(200), 20, 50, 10_000, Duration.ofMinutes(15));
+        // Los eventos de saldo no se miden: su change stream solo se abre al suscribirse
+        this.service = new CreditCardServiceImpl(repository, InMemoryDocumentRepository.create(MovementRepository.class),
+                customerService, authorizationEngine,
+                new BalanceBatchProcessor(repository, authorizationEngine, portfolioStatistics, cardContentionTracker),
+                creditCardCache, portfolioStatistics, cardContentionTracker, new OperationMetrics(meterRegistry),
+                new CardNumberIssuer(mongoTemplate, "512300-512399", 1000),
+                new BalanceEventStream(mongoTemplate, Duration.ofSeconds(30), 1024));
+    }
+
+    /**
+     * Los benchmarks se ejecutan en un solo proceso: la reserva del motor es siempre suya.
+     */
+    private static EngineLeaseHolder singleInstanceLease(InMemoryMongoTemplate mongoTemplate) {
+        return new EngineLeaseHolder(mongoTemplate, Duration.ofMinutes(5)) {
+            @Override
+            public Mono<Boolean> acquire() {
+                return Mono.just(true);
+            }
+
+            @Override
+            public Mono<Boolean> renew() {
+                return Mono.just(true);
+            }
+
+            @Override
+            public Mono<Void> release() {
+                return Mono.empty();
+            }
+        };
+    }
+
+    /**
+     * Arranca el servicio con un número de tarjetas sintéticas con IDs "card-0" a "card-(n-1)".
+     * @param cardCount Número de tarjetas
+     * @param engineEnabled Si las autorizaciones pasan por el motor en memoria
+     * @return BenchmarkServices iniciado
+     */
+    public static BenchmarkServices start(int cardCount, boolean engineEnabled) {
+        List<CreditCard> cards = new ArrayList<>(cardCount);
+        for (int i = 0; i < cardCount; i++) {
+            cards.add(card(cardId(i)));
+        }
+        BenchmarkServices services = new BenchmarkServices(cards, engineEnabled);
+        services.authorizationEngine.start();
+        services.creditCardCache.subscribe();
+        return services;
+    }
+
+    /**
+     * Detiene el motor y la caché, volcando los saldos pendientes.
+     */
+    public void stop() {
+        authorizationEngine.stop();
+        creditCardCache.unsubscribe();
+    }
+
+    public CreditCardServiceImpl service() {
+        return service;
+    }
+
+    public static String cardId(int index) {
+        return "card-" + index;
+    }
+
+    /**
+     * Crea una tarjeta sintética con el límite completo disponible.
+     * @param id ID de la tarjeta
+     * @return CreditCard
+     */
+    public static CreditCard card(String id) {
+        return CreditCard.builder()
+                .id(id)
+                .cardNumber("5" + String.format("%015d", Math.floorMod(id.hashCode(), 1_000_000_000)))
+                .customerId("customer-" + id)
+                .customerType(CustomerType.PERSONAL)
+                .creditLimit(Money.ofMinorUnits(CREDIT_LIMIT_CENTS))
+                .availableBalance(Money.ofMinorUnits(CREDIT_LIMIT_CENTS))
+                .expirationDate(LocalDate.now().plusYears(4))
+                .cvv("123")
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,99 @@
+package com.nttdata.bankapp.mscreditcardservice.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardDto;
+import com.nttdata.bankapp.mscreditcardservice.issuance.CardNumberIssuer;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide las conversiones entre entidad y DTO, la serialización JSON de CreditCardDto
+ * y la generación de número de tarjeta y CVV.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+    private BenchmarkServices services;
+    private CreditCardServiceImpl service;
+    private CreditCard creditCard;
+    private CreditCardDto creditCardDto;
+    private byte[] creditCardJson;
+    private ObjectMapper objectMapper;
+    private CardNumberIssuer cardNumberIssuer;
+    private long accountNumber;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        services = BenchmarkServices.start(1, false);
+        service = services.service();
+        creditCard = BenchmarkServices.card(BenchmarkServices.cardId(0));
+        creditCardDto = service.mapToDto(creditCard);
+        // Misma configuración de fechas que el ObjectMapper de Spring Boot
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        creditCardJson = objectMapper.writeValueAsBytes(creditCardDto);
+        // Sin Mongo: solo se usa para generar CVV, que no reserva bloques
+        cardNumberIssuer = new CardNumberIssuer(null, "512300-512399", 1000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        services.stop();
+    }
+
+    @Benchmark
+    public CreditCardDto mapToDto() {
+        return service.mapToDto(creditCard);
+    }
+
+    @Benchmark
+    public CreditCard mapToEntity() {
+        return service.mapToEntity(creditCardDto);
+    }
+
+    @Benchmark
+    public byte[] serializeDto() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(creditCardDto);
+    }
+
+    @Benchmark
+    public CreditCardDto deserializeDto() throws IOException {
+        return objectMapper.readValue(creditCardJson, CreditCardDto.class);
+    }
+
+    /**
+     * Trabajo por tarjeta una vez reservado el bloque: dígito de control de Luhn y formato.
+     */
+    @Benchmark
+    public String generateCardNumber() {
+        return CardNumberIssuer.cardNumber("512300", accountNumber++ % 1_000_000_000L);
+    }
+
+    @Benchmark
+    public String generateCvv() {
+        return cardNumberIssuer.generateCvv();
+    }
+}
@@ -0,0 +1,54 @@
+package com.nttdata.bankapp.mscreditcardservice.loadtest;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+
+/**
+ * Servidor local que sustituye al microservicio de clientes durante las pruebas de carga.
+ * Responde a GET /customers/{id} con un cliente PERSONAL, salvo los IDs que empiezan por
+ * "missing", que responden 404.
+ */
+final class CustomerServiceStub {
+
+    private final DisposableServer server;
+
+    private CustomerServiceStub(DisposableServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Arranca el servidor en un puerto libre.
+     * @param latency Latencia añadida a cada respuesta
+     * @return CustomerServiceStub iniciado
+     */
+    static CustomerServiceStub start(Duration latency) {
+        DisposableServer server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes.get("/customers/{id}", (request, response) -> {
+                    String id = request.param("id");
+                    if (id == null || id.startsWith("missing")) {
+                        return response.status(HttpResponseStatus.NOT_FOUND).send();
+                    }
+                    String body = "{\"id\":\"" + id + "\",\"type\":\"PERSONAL\"}";
+                    return response.header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                            .sendString(Mono.just(body).delayElement(latency))
+                            .then();
+                }))
+                .bindNow();
+        return new CustomerServiceStub(server);
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.port();
+    }
+
+    void stop() {
+        server.disposeNow();
+    }
+}
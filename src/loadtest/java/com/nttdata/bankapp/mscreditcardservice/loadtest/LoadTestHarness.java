@@ -0,0 +1,254 @@
+package com.nttdata.bankapp.mscreditcardservice.loadtest;
+
+import com.nttdata.bankapp.mscreditcardservice.MsCreditCardServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Prueba de carga de extremo a extremo que no necesita red.
+ * Arranca la aplicación contra un Mongo embebido y un stub local del servicio de clientes,
+ * ejecuta una mezcla configurable de operaciones y muestra throughput, rechazos, errores
+ * y percentiles de latencia por operación.
+ *
+ * <p>Se ejecuta con {@code mvn -Ploadtest test-compile exec:java}. Parámetros (propiedades del sistema):
+ * <ul>
+ *   <li>loadtest.cards: tarjetas creadas antes de medir (1000)</li>
+ *   <li>loadtest.concurrency: peticiones simultáneas (64)</li>
+ *   <li>loadtest.warmup / loadtest.duration: calentamiento y medición (15s / 60s)</li>
+ *   <li>loadtest.mix: pesos create,balance,consumption,payment,hot-card (1,40,30,20,9)</li>
+ *   <li>loadtest.customer-latency-ms: latencia del stub de clientes en milisegundos (5)</li>
+ *   <li>loadtest.engine: habilita el motor de autorización en memoria (false)</li>
+ * </ul>
+ * El proceso termina con código 1 si alguna operación devolvió errores 5xx o de transporte.
+ */
+public final class LoadTestHarness {
+
+    private static final String CREDIT_LIMIT = "1000000.00";
+    private static final String AMOUNT = "1.00";
+
+    private final WebClient client;
+    private final List<String> cardIds = new ArrayList<>();
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final int[] weights;
+    private final int totalWeight;
+    private String hotCardId;
+
+    private LoadTestHarness(WebClient client, int[] weights) {
+        this.client = client;
+        this.weights = weights;
+        int sum = 0;
+        for (int weight : weights) {
+            sum += weight;
+        }
+        this.totalWeight = sum;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats(operation.label));
+        }
+    }
+
+    public static void main(String[] args) {
+        int cards = Integer.getInteger("loadtest.cards", 1000);
+        int concurrency = Integer.getInteger("loadtest.concurrency", 64);
+        Duration warmup = Duration.parse("PT" + System.getProperty("loadtest.warmup", "15s"));
+        Duration duration = Duration.parse("PT" + System.getProperty("loadtest.duration", "60s"));
+        Duration customerLatency = Duration.ofMillis(Long.getLong("loadtest.customer-latency-ms", 5));
+        int[] weights = parseMix(System.getProperty("loadtest.mix", "1,40,30,20,9"));
+        boolean engine = Boolean.getBoolean("loadtest.engine");
+
+        CustomerServiceStub customerService = CustomerServiceStub.start(customerLatency);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MsCreditCardServiceApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.data.mongodb.port=0",
+                        "spring.mongodb.embedded.version=5.0.5",
+                        "spring.cloud.config.enabled=false",
+                        "spring.cloud.config.import-check.enabled=false",
+                        "eureka.client.enabled=false",
+                        "app.mongo.verify-query-plans=true",
+                        "logging.level.root=WARN",
+                        "logging.level.com.nttdata=WARN",
+                        "app.customer-service-url=" + customerService.baseUrl(),
+                        "app.authorization.engine.enabled=" + engine)
+                .run(args);
+
+        int exitCode;
+        try {
+            int port = ((ReactiveWebServerApplicationContext) context).getWebServer().getPort();
+            ConnectionProvider connectionProvider = ConnectionProvider.builder("loadtest")
+                    .maxConnections(concurrency)
+                    .pendingAcquireMaxCount(-1)
+                    .build();
+            WebClient client = WebClient.builder()
+                    .baseUrl("http://localhost:" + port)
+                    .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                    .build();
+
+            LoadTestHarness harness = new LoadTestHarness(client, weights);
+            harness.seed(cards, concurrency);
+
+            System.out.printf("Warming up for %s with %d concurrent requests%n", warmup, concurrency);
+            harness.run(concurrency, warmup);
+            harness.stats.values().forEach(OperationStats::reset);
+
+            System.out.printf("Measuring for %s (authorization engine %s)%n", duration, engine ? "enabled" : "disabled");
+            long start = System.nanoTime();
+            harness.run(concurrency, duration);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            exitCode = harness.report(elapsedSeconds) ? 0 : 1;
+            connectionProvider.disposeLater().block();
+        } finally {
+            context.close();
+            customerService.stop();
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Crea las tarjetas sobre las que se ejecuta la carga. La primera es la tarjeta "caliente".
+     */
+    private void seed(int cards, int concurrency) {
+        System.out.printf("Creating %d credit cards%n", cards);
+        Flux.range(0, cards)
+                .flatMap(i -> createCard("customer-" + i), concurrency)
+                .doOnNext(cardIds::add)
+                .blockLast();
+        if (cardIds.isEmpty()) {
+            throw new IllegalStateException("No credit cards could be created");
+        }
+        hotCardId = cardIds.get(0);
+    }
+
+    private void run(int concurrency, Duration duration) {
+        long deadline = System.nanoTime() + duration.toNanos();
+        Flux.range(0, concurrency)
+                .flatMap(worker -> Mono.defer(this::execute)
+                        .repeat(() -> System.nanoTime() < deadline), concurrency)
+                .blockLast();
+    }
+
+    private Mono<Void> execute() {
+        Operation operation = pick();
+        long start = System.nanoTime();
+        Mono<Integer> status;
+        switch (operation) {
+            case CREATE:
+                status = create();
+                break;
+            case BALANCE:
+                status = exchange(client.get().uri("/credit-cards/{id}/balance", randomCard()));
+                break;
+            case CONSUMPTION:
+                status = exchange(client.put().uri("/credit-cards/{id}/consumption?amount={amount}", randomCard(), AMOUNT));
+                break;
+            case PAYMENT:
+                status = exchange(client.put().uri("/credit-cards/{id}/payment?amount={amount}", randomCard(), AMOUNT));
+                break;
+            default:
+                // Consumo o pago sobre la misma tarjeta para medir la contención
+                String path = ThreadLocalRandom.current().nextBoolean() ? "consumption" : "payment";
+                status = exchange(client.put().uri("/credit-cards/{id}/{path}?amount={amount}", hotCardId, path, AMOUNT));
+                break;
+        }
+        return status
+                .onErrorReturn(0)
+                .doOnNext(code -> stats.get(operation).record(start, code))
+                .then();
+    }
+
+    private Mono<Integer> create() {
+        String customerId = "customer-" + ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE);
+        return exchange(client.post().uri("/credit-cards").bodyValue(cardRequest(customerId)));
+    }
+
+    private Mono<String> createCard(String customerId) {
+        return client.post().uri("/credit-cards")
+                .bodyValue(cardRequest(customerId))
+                .retrieve()
+                .bodyToMono(Map.class)
+                .map(card -> (String) card.get("id"));
+    }
+
+    private static Map<String, Object> cardRequest(String customerId) {
+        return Map.of("customerId", customerId, "customerType", "PERSONAL", "creditLimit", CREDIT_LIMIT);
+    }
+
+    private static Mono<Integer> exchange(WebClient.RequestHeadersSpec<?> request) {
+        return request.exchangeToMono(response -> response.releaseBody()
+                .thenReturn(response.rawStatusCode()));
+    }
+
+    private Operation pick() {
+        int value = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Operation operation : Operation.values()) {
+            value -= weights[operation.ordinal()];
+            if (value < 0) {
+                return operation;
+            }
+        }
+        return Operation.BALANCE;
+    }
+
+    private String randomCard() {
+        return cardIds.get(ThreadLocalRandom.current().nextInt(cardIds.size()));
+    }
+
+    /**
+     * Muestra el informe.
+     * @return true si no hubo errores 5xx ni de transporte
+     */
+    private boolean report(double elapsedSeconds) {
+        System.out.println();
+        System.out.println(OperationStats.header());
+        long failed = 0;
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            OperationStats operationStats = stats.get(operation);
+            System.out.println(operationStats.report(elapsedSeconds));
+            failed += operationStats.failed();
+            total += operationStats.count();
+        }
+        System.out.printf("%ntotal: %d requests, %.1f req/s, %d errors%n", total, total / elapsedSeconds, failed);
+        return failed == 0;
+    }
+
+    private static int[] parseMix(String mix) {
+        String[] parts = mix.split(",");
+        if (parts.length != Operation.values().length) {
+            throw new IllegalArgumentException("loadtest.mix must have " + Operation.values().length + " weights: " + mix);
+        }
+        int[] weights = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            weights[i] = Integer.parseInt(parts[i].trim());
+        }
+        return weights;
+    }
+
+    private enum Operation {
+        CREATE("create"),
+        BALANCE("balance"),
+        CONSUMPTION("consumption"),
+        PAYMENT("payment"),
+        HOT_CARD("hot-card");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.nttdata.bankapp.mscreditcardservice.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencias y resultados de un tipo de operación.
+ * Las latencias se registran en microsegundos con HdrHistogram para obtener percentiles altos exactos.
+ */
+final class OperationStats {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final String name;
+    private final Recorder recorder = new Recorder(MAX_LATENCY_MICROS, 3);
+    private final Histogram total = new Histogram(MAX_LATENCY_MICROS, 3);
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder declined = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Registra una operación terminada.
+     * @param startNanos Instante de inicio en System.nanoTime()
+     * @param status Código HTTP, 0 si falló el transporte
+     */
+    void record(long startNanos, int status) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        recorder.recordValue(Math.min(micros, MAX_LATENCY_MICROS));
+        if (status >= 200 && status < 300) {
+            succeeded.increment();
+        } else if (status >= 400 && status < 500) {
+            // Rechazos de negocio (saldo insuficiente, tarjeta inexistente)
+            declined.increment();
+        } else {
+            failed.increment();
+        }
+    }
+
+    /**
+     * Descarta lo registrado hasta ahora, usado al terminar el calentamiento.
+     */
+    void reset() {
+        recorder.reset();
+        total.reset();
+        succeeded.reset();
+        declined.reset();
+        failed.reset();
+    }
+
+    long count() {
+        return succeeded.sum() + declined.sum() + failed.sum();
+    }
+
+    long failed() {
+        return failed.sum();
+    }
+
+    /**
+     * Línea del informe con el throughput y los percentiles en milisegundos.
+     * @param elapsedSeconds Duración de la medición
+     * @return String con la fila del informe
+     */
+    String report(double elapsedSeconds) {
+        recorder.getIntervalHistogramInto(total);
+        return String.format("%-14s %10d %10.1f %9d %9d %9.2f %9.2f %9.2f %9.2f",
+                name, count(), count() / elapsedSeconds, declined.sum(), failed.sum(),
+                millis(total.getValueAtPercentile(50)),
+                millis(total.getValueAtPercentile(99)),
+                millis(total.getValueAtPercentile(99.9)),
+                millis(total.getMaxValue()));
+    }
+
+    static String header() {
+        return String.format("%-14s %10s %10s %9s %9s %9s %9s %9s %9s",
+                "operation", "count", "ops/s", "declined", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.mscreditcardservice.Exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -15,6 +16,12 @@ public class GlobalErrorHandler {
         return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response));
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public Mono<ResponseEntity<ErrorResponse>> handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+        ErrorResponse response = new ErrorResponse("Credit card was modified concurrently, please retry", "CONCURRENT_MODIFICATION");
+        return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).body(response));
+    }
+
     @ExceptionHandler(Exception.class)
     public Mono<ResponseEntity<ErrorResponse>> handleGenericException(Exception ex) {
         ErrorResponse response = new ErrorResponse("An unexpected error occurred", "INTERNAL_ERROR");
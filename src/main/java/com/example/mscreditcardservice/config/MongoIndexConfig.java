@@ -0,0 +1,38 @@
+package com.example.mscreditcardservice.config;
+
+import com.example.mscreditcardservice.model.ConsumptionRecord;
+import com.example.mscreditcardservice.model.CreditCard;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+
+@Configuration
+public class MongoIndexConfig {
+
+    // Crea al arrancar los índices declarados en los documentos (la creación automática está deshabilitada)
+    @Bean
+    public ApplicationRunner mongoIndexInitializer(ReactiveMongoTemplate mongoTemplate) {
+        MongoPersistentEntityIndexResolver resolver =
+                new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        return args -> Flux.just(CreditCard.class, ConsumptionRecord.class)
+                .concatMap(type -> Flux.fromIterable(resolver.resolveIndexFor(type))
+                        .concatMap(index -> mongoTemplate.indexOps(type).ensureIndex(index)))
+                .blockLast();
+    }
+
+    // Las tarjetas guardadas antes de añadir @Version se tratarían como nuevas al guardarlas
+    @Bean
+    public ApplicationRunner creditCardVersionBackfill(ReactiveMongoTemplate mongoTemplate) {
+        return args -> mongoTemplate.updateMulti(
+                        Query.query(Criteria.where("version").exists(false)),
+                        new Update().set("version", 0L),
+                        CreditCard.class)
+                .block();
+    }
+}
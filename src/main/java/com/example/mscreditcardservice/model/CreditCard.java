@@ -6,19 +6,30 @@ import com.example.mscreditcardservice.model.enums.CreditCardType;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
 import java.math.BigDecimal;
 
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@Document(collection = "creditCard") // Mismo nombre que la colección por defecto usada hasta ahora
+@CompoundIndex(name = "customerId_status", def = "{'customerId': 1, 'status': 1}")
 public class CreditCard {
+    @Id
     private String id;
     private String customerId;
     private CreditCardType type;
     private BigDecimal creditLimit;
     private BigDecimal balance;
     private CreditCardStatus status;
+
+    @Version
+    private Long version;
 }
 
 
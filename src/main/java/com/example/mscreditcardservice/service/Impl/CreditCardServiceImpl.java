@@ -6,12 +6,15 @@ import com.example.mscreditcardservice.repository.ConsumptionRecordRepository;
 import com.example.mscreditcardservice.repository.CreditCardRepository;
 import com.example.mscreditcardservice.service.CreditCardService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -21,9 +24,16 @@ class CreditCardServiceImpl implements CreditCardService {
     private final CreditCardRepository creditCardRepository;
     private final ConsumptionRecordRepository consumptionRecordRepository;
 
+    // Reintento acotado y con jitter cuando otra petición guardó la tarjeta entre la lectura y la escritura
+    private static final Retry OPTIMISTIC_LOCK_RETRY = Retry.backoff(5, Duration.ofMillis(5))
+            .maxBackoff(Duration.ofMillis(200))
+            .jitter(0.5)
+            .filter(OptimisticLockingFailureException.class::isInstance)
+            .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+
     @Override
     public Mono<CreditCard> createCreditCard(CreditCardRequest request) {
-        CreditCard card = new CreditCard(UUID.randomUUID().toString(), request.getCustomerId(), request.getType(), request.getCreditLimit(), BigDecimal.ZERO, CreditCardStatus.ACTIVE);
+        CreditCard card = new CreditCard(UUID.randomUUID().toString(), request.getCustomerId(), request.getType(), request.getCreditLimit(), BigDecimal.ZERO, CreditCardStatus.ACTIVE, null);
         return creditCardRepository.save(card);
     }
 
@@ -36,9 +46,12 @@ class CreditCardServiceImpl implements CreditCardService {
                         return Mono.error(new IllegalStateException("Credit limit exceeded"));
                     }
                     card.setBalance(newBalance);
+                    // El registro se guarda después de la tarjeta para no duplicarlo al reintentar
                     ConsumptionRecord record = new ConsumptionRecord(UUID.randomUUID().toString(), cardId, request.getAmount(), LocalDateTime.now());
-                    return consumptionRecordRepository.save(record).then(creditCardRepository.save(card));
-                });
+                    return creditCardRepository.save(card)
+                            .flatMap(saved -> consumptionRecordRepository.save(record).thenReturn(saved));
+                })
+                .retryWhen(OPTIMISTIC_LOCK_RETRY);
     }
 
     @Override
@@ -51,7 +64,8 @@ class CreditCardServiceImpl implements CreditCardService {
                     }
                     card.setBalance(newBalance);
                     return creditCardRepository.save(card);
-                });
+                })
+                .retryWhen(OPTIMISTIC_LOCK_RETRY);
     }
     @Override
     public Mono<Boolean> hasActiveCard(String customerId) {
@@ -0,0 +1,478 @@
+package com.nttdata.bankapp.mscreditcardservice.authorization;
+
+import com.nttdata.bankapp.mscreditcardservice.exception.AuthorizationEngineUnavailableException;
+import com.nttdata.bankapp.mscreditcardservice.exception.CreditCardNotFoundException;
+import com.nttdata.bankapp.mscreditcardservice.metrics.DeclineReason;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.model.Movement;
+import com.nttdata.bankapp.mscreditcardservice.model.MovementType;
+import com.nttdata.bankapp.mscreditcardservice.model.UnappliedBalanceChange;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import com.nttdata.bankapp.mscreditcardservice.repository.UnappliedBalanceChangeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Motor de autorización de consumos y pagos.
+ * Reparte las tarjetas en carriles de un solo hilo según el hash de su ID, mantiene en memoria
+ * el saldo de las tarjetas activas y persiste los cambios en lotes de forma asíncrona.
+ * Al estar todas las operaciones de una tarjeta serializadas en su carril no se pierden actualizaciones.
+ * Los importes se manejan en céntimos sobre long; cada autorización aprobada genera el movimiento
+ * que se escribe junto con el cambio de saldo.
+ * Una escritura fallida se reenvía sin cambios, por lo que no se aplica dos veces aunque el servidor la hubiera
+ * completado. Cada escritura comprueba que el saldo guardado quede entre cero y el límite; si una tarjeta sigue sin
+ * actualizarse tras varios intentos, su saldo en memoria no coincidía con el guardado: los movimientos ya aprobados
+ * se aplican sin comprobar los límites y la tarjeta se recarga. Solo se apartan los de tarjetas que ya no existen.
+ * Como los saldos en memoria solo son válidos si ninguna otra instancia autoriza sobre las mismas tarjetas,
+ * el motor no arranca si otra instancia tiene su reserva y deja de autorizar si pierde la suya.
+ */
+@Component
+@Slf4j
+public class AuthorizationEngine {
+
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final CreditCardRepository creditCardRepository;
+    private final UnappliedBalanceChangeRepository unappliedBalanceChangeRepository;
+    private final EngineLeaseHolder engineLease;
+    private final boolean enabled;
+    private final int laneCount;
+    private final Duration flushInterval;
+    private final int maxBatchSize;
+    private final Duration idleTimeout;
+    private final int maxFlushAttempts;
+
+    private Lane[] lanes;
+    private Disposable flushTask;
+    private Disposable leaseTask;
+    private volatile long leaseValidUntil; // System.nanoTime() hasta el que la reserva sigue siendo de esta instancia
+
+    public AuthorizationEngine(CreditCardRepository creditCardRepository,
+                               UnappliedBalanceChangeRepository unappliedBalanceChangeRepository,
+                               EngineLeaseHolder engineLease,
+                               @Value("${app.authorization.engine.enabled:false}") boolean enabled,
+                               @Value("${app.authorization.engine.lanes:8}") int laneCount,
+                               @Value("${app.authorization.engine.flush-interval:50ms}") Duration flushInterval,
+                               @Value("${app.authorization.engine.max-batch-size:500}") int maxBatchSize,
+                               @Value("${app.authorization.engine.idle-timeout:5m}") Duration idleTimeout,
+                               @Value("${app.authorization.engine.max-flush-attempts:5}") int maxFlushAttempts) {
+        this.creditCardRepository = creditCardRepository;
+        this.unappliedBalanceChangeRepository = unappliedBalanceChangeRepository;
+        this.engineLease = engineLease;
+        this.enabled = enabled;
+        this.laneCount = laneCount;
+        this.flushInterval = flushInterval;
+        this.maxBatchSize = maxBatchSize;
+        this.idleTimeout = idleTimeout;
+        this.maxFlushAttempts = maxFlushAttempts;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        long acquiredAt = System.nanoTime();
+        if (!Boolean.TRUE.equals(engineLease.acquire().block(SHUTDOWN_TIMEOUT))) {
+            throw new IllegalStateException(
+                    "Authorization engine is already running on another instance; it requires a single-instance deployment");
+        }
+        leaseValidUntil = acquiredAt + engineLease.getDuration().toNanos();
+        log.info("Starting authorization engine with {} lanes, flush interval {}", laneCount, flushInterval);
+
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(Schedulers.newSingle("authorization-lane-" + i));
+        }
+
+        // Si una escritura tarda más que el intervalo se descartan los ticks intermedios
+        flushTask = Flux.interval(flushInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> flushAll(maxBatchSize), 1)
+                .subscribe();
+        leaseTask = Flux.interval(engineLease.getDuration().dividedBy(3))
+                .onBackpressureDrop()
+                .concatMap(tick -> renewLease(), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        log.info("Stopping authorization engine, flushing pending balance changes");
+        flushTask.dispose();
+        leaseTask.dispose();
+        flushAll(Integer.MAX_VALUE).block(SHUTDOWN_TIMEOUT);
+        for (Lane lane : lanes) {
+            lane.scheduler.dispose();
+        }
+        engineLease.release()
+                .onErrorResume(e -> {
+                    log.error("Error releasing authorization engine lease: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .block(SHUTDOWN_TIMEOUT);
+    }
+
+    /**
+     * Indica si el motor está habilitado.
+     * @return true si las autorizaciones deben pasar por el motor
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Autoriza un consumo contra el saldo en memoria.
+     * @param id ID de la tarjeta de crédito
+     * @param amount Monto del consumo
+     * @param idempotencyKey Clave de idempotencia que se guarda en el movimiento, puede ser null
+     * @param mapper Conversión de la tarjeta actualizada, ejecutada dentro del carril
+     * @return Mono con el resultado de la conversión
+     */
+    public <T> Mono<T> consume(String id, Money amount, String idempotencyKey, Function<CreditCard, T> mapper) {
+        long minorUnits = amount.getMinorUnits();
+        return authorize(id, MovementType.CONSUMPTION, amount, idempotencyKey, mapper, state -> {
+            if (minorUnits > state.availableBalance) {
+                throw new IllegalArgumentException(DeclineReason.INSUFFICIENT_AVAILABLE_BALANCE.getMessage());
+            }
+            return -minorUnits;
+        });
+    }
+
+    /**
+     * Autoriza un pago contra el saldo en memoria.
+     * @param id ID de la tarjeta de crédito
+     * @param amount Monto del pago
+     * @param idempotencyKey Clave de idempotencia que se guarda en el movimiento, puede ser null
+     * @param mapper Conversión de la tarjeta actualizada, ejecutada dentro del carril
+     * @return Mono con el resultado de la conversión
+     */
+    public <T> Mono<T> pay(String id, Money amount, String idempotencyKey, Function<CreditCard, T> mapper) {
+        long minorUnits = amount.getMinorUnits();
+        return authorize(id, MovementType.PAYMENT, amount, idempotencyKey, mapper, state -> {
+            if (minorUnits > state.creditLimit - state.availableBalance) {
+                throw new IllegalArgumentException(DeclineReason.PAYMENT_EXCEEDS_USED_BALANCE.getMessage());
+            }
+            return minorUnits;
+        });
+    }
+
+    /**
+     * Refleja en memoria un cambio de límite ya persistido.
+     * @param id ID de la tarjeta de crédito
+     * @param newLimit Nuevo límite de crédito
+     * @param limitDifference Diferencia aplicada también al saldo disponible
+     * @return Mono<Void>
+     */
+    public Mono<Void> creditLimitChanged(String id, Money newLimit, Money limitDifference) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        Lane lane = laneFor(id);
+        return Mono.<Void>fromRunnable(() -> {
+            CardState state = lane.cards.get(id);
+            if (state != null) {
+                state.creditLimit = newLimit.getMinorUnits();
+                state.availableBalance += limitDifference.getMinorUnits();
+            }
+        }).subscribeOn(lane.scheduler);
+    }
+
+    /**
+     * Descarta el estado en memoria de una tarjeta eliminada.
+     * @param id ID de la tarjeta de crédito
+     * @return Mono<Void>
+     */
+    public Mono<Void> evict(String id) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        Lane lane = laneFor(id);
+        return Mono.<Void>fromRunnable(() -> {
+            lane.cards.remove(id);
+            lane.dirty.remove(id);
+        }).subscribeOn(lane.scheduler);
+    }
+
+    private <T> Mono<T> authorize(String id, MovementType type, Money amount, String idempotencyKey,
+                                  Function<CreditCard, T> mapper, ToLongFunction<CardState> decision) {
+        Lane lane = laneFor(id);
+        return Mono.defer(() -> System.nanoTime() - leaseValidUntil < 0
+                        ? Mono.justOrEmpty(lane.cards.get(id))
+                        : Mono.<CardState>error(new AuthorizationEngineUnavailableException(
+                                "Authorization engine lease is not held by this instance")))
+                .subscribeOn(lane.scheduler)
+                .switchIfEmpty(Mono.defer(() -> load(lane, id)))
+                .switchIfEmpty(Mono.error(new CreditCardNotFoundException("Credit card not found with id: " + id)))
+                .map(state -> {
+                    // Se ejecuta siempre en el hilo del carril
+                    long delta = decision.applyAsLong(state);
+                    state.availableBalance += delta;
+                    state.pendingMovements.add(Movement.of(id, type, amount, idempotencyKey));
+                    state.lastAccess = System.nanoTime();
+                    lane.dirty.add(id);
+                    return mapper.apply(state.snapshot());
+                });
+    }
+
+    private Mono<CardState> load(Lane lane, String id) {
+        return creditCardRepository.findCardById(id)
+                .publishOn(lane.scheduler)
+                // Otra carga concurrente pudo haber registrado la tarjeta antes
+                .map(creditCard -> lane.cards.computeIfAbsent(id, key -> new CardState(creditCard)));
+    }
+
+    /**
+     * Prolonga la reserva; si otra instancia la ha tomado deja que caduque y las autorizaciones fallan.
+     */
+    private Mono<Void> renewLease() {
+        long renewedAt = System.nanoTime();
+        return engineLease.renew()
+                .onErrorResume(e -> {
+                    log.error("Error renewing authorization engine lease: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .doOnNext(renewed -> {
+                    if (renewed) {
+                        leaseValidUntil = renewedAt + engineLease.getDuration().toNanos();
+                    } else {
+                        log.error("Authorization engine lease was taken by another instance, authorizations stop here");
+                    }
+                })
+                .then();
+    }
+
+    private Mono<Void> flushAll(int batchSize) {
+        return Flux.fromArray(lanes)
+                .flatMap(lane -> flush(lane, batchSize))
+                .then();
+    }
+
+    private Mono<Void> flush(Lane lane, int batchSize) {
+        long idleBefore = System.nanoTime() - idleTimeout.toNanos();
+        return Mono.fromCallable(() -> lane.drain(batchSize, idleBefore))
+                .subscribeOn(lane.scheduler)
+                .filter(batch -> !batch.movements.isEmpty())
+                .flatMap(batch -> creditCardRepository.incrementAvailableBalances(batch.movements, batch.withoutLimits)
+                        .onErrorResume(e -> {
+                            // Resultado desconocido: el siguiente lote reenvía los mismos movimientos
+                            log.error("Error flushing {} balance changes, retrying: {}", batch.movements.size(), e.getMessage());
+                            return Mono.<Set<String>>fromRunnable(() -> lane.retry(batch))
+                                    .subscribeOn(lane.scheduler);
+                        })
+                        .flatMap(failedCardIds -> {
+                            if (failedCardIds.isEmpty()) {
+                                return Mono.fromCallable(() -> lane.complete(batch, failedCardIds,
+                                                Collections.emptySet(), maxFlushAttempts))
+                                        .subscribeOn(lane.scheduler);
+                            }
+                            log.warn("{} of {} balance changes were not applied", failedCardIds.size(), batch.movements.size());
+                            // Las tarjetas que esperan al relay del libro mayor se reintentan sin contar el intento
+                            return creditCardRepository.findWithFullOutbox(failedCardIds)
+                                    .onErrorReturn(Collections.emptySet())
+                                    .flatMap(backloggedCardIds -> Mono.fromCallable(() -> lane.complete(batch,
+                                                    failedCardIds, backloggedCardIds, maxFlushAttempts))
+                                            .subscribeOn(lane.scheduler));
+                        })
+                        .flatMap(this::setAside));
+    }
+
+    /**
+     * Guarda los movimientos de las tarjetas que no se actualizaron ni sin comprobar sus límites, es decir,
+     * que ya no existen, para conciliarlos a mano.
+     */
+    private Mono<Void> setAside(Map<String, List<Movement>> exhausted) {
+        return Flux.fromIterable(exhausted.entrySet())
+                .concatMap(entry -> {
+                    List<String> movementIds = new ArrayList<>(entry.getValue().size());
+                    entry.getValue().forEach(movement -> movementIds.add(movement.getId()));
+                    log.error("Setting aside movements {} of credit card {} after {} failed writes",
+                            movementIds, entry.getKey(), 2 * maxFlushAttempts);
+                    return unappliedBalanceChangeRepository.save(UnappliedBalanceChange.builder()
+                                    .creditCardId(entry.getKey())
+                                    .movements(entry.getValue())
+                                    .attempts(2 * maxFlushAttempts)
+                                    .createdAt(LocalDateTime.now())
+                                    .build())
+                            .onErrorResume(e -> {
+                                log.error("Error setting aside movements {} of credit card {}: {}",
+                                        movementIds, entry.getKey(), e.getMessage());
+                                return Mono.empty();
+                            });
+                })
+                .then();
+    }
+
+    private Lane laneFor(String id) {
+        return lanes[Math.floorMod(id.hashCode(), lanes.length)];
+    }
+
+    /**
+     * Estado de un carril. Solo se accede desde su propio hilo.
+     */
+    private static final class Lane {
+        private final Scheduler scheduler;
+        private final Map<String, CardState> cards = new HashMap<>();
+        private final Set<String> dirty = new LinkedHashSet<>();
+
+        private Lane(Scheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        private Batch drain(int batchSize, long idleBefore) {
+            // Las tarjetas cuyo saldo en memoria no coincidía con el guardado se recargan en cuanto no tienen pendientes
+            cards.values().removeIf(state -> (state.reload || state.lastAccess - idleBefore < 0)
+                    && state.pendingMovements.isEmpty() && state.unflushed == null && !state.inFlight);
+
+            Batch batch = new Batch();
+            Iterator<String> iterator = dirty.iterator();
+            while (iterator.hasNext() && batch.movements.size() < batchSize) {
+                String id = iterator.next();
+                iterator.remove();
+                CardState state = cards.get(id);
+                if (state == null || state.inFlight) {
+                    // Al confirmarse la escritura en curso la tarjeta vuelve a marcarse si tiene pendientes
+                    continue;
+                }
+                // Una escritura sin confirmar se reenvía tal cual, sin añadirle los movimientos posteriores
+                if (state.unflushed == null && !state.pendingMovements.isEmpty()) {
+                    state.unflushed = state.pendingMovements;
+                    state.pendingMovements = new ArrayList<>();
+                }
+                if (state.unflushed != null) {
+                    batch.movements.put(id, state.unflushed);
+                    if (state.withoutLimits) {
+                        batch.withoutLimits.add(id);
+                    }
+                    state.inFlight = true;
+                }
+            }
+            return batch;
+        }
+
+        /**
+         * Confirma un lote escrito. Las tarjetas no actualizadas reenvían sus movimientos en el siguiente lote
+         * hasta agotar los intentos; entonces se reenvían sin comprobar los límites y, una vez escritos,
+         * la tarjeta se recarga de la base de datos. Si tampoco así se escriben, se descartan de memoria.
+         * Las que tenían el máximo de movimientos pendientes los reenvían sin contar el intento.
+         * @return Movimientos no escritos de las tarjetas descartadas, por ID de tarjeta
+         */
+        private Map<String, List<Movement>> complete(Batch batch, Set<String> failedCardIds,
+                                                     Set<String> backloggedCardIds, int maxAttempts) {
+            Map<String, List<Movement>> exhausted = new LinkedHashMap<>();
+            for (String id : batch.movements.keySet()) {
+                CardState state = cards.get(id);
+                if (state == null) {
+                    continue;
+                }
+                state.inFlight = false;
+                if (!failedCardIds.contains(id)) {
+                    state.unflushed = null;
+                    state.failedFlushes = 0;
+                    state.withoutLimits = false;
+                } else if (!backloggedCardIds.contains(id) && ++state.failedFlushes >= maxAttempts) {
+                    if (!state.withoutLimits) {
+                        // Los movimientos ya se aprobaron: se aplican aunque el saldo guardado quede fuera de los límites
+                        log.error("Applying movements of credit card {} without checking its limits after {} failed writes",
+                                id, maxAttempts);
+                        state.withoutLimits = true;
+                        state.reload = true;
+                        state.failedFlushes = 0;
+                    } else {
+                        // Los movimientos posteriores se autorizaron sobre un saldo que incluía los no escritos
+                        List<Movement> movements = new ArrayList<>(state.unflushed);
+                        movements.addAll(state.pendingMovements);
+                        exhausted.put(id, movements);
+                        cards.remove(id);
+                        continue;
+                    }
+                }
+                if (state.unflushed != null || !state.pendingMovements.isEmpty()) {
+                    dirty.add(id);
+                }
+            }
+            return exhausted;
+        }
+
+        /**
+         * Vuelve a encolar un lote cuyo resultado se desconoce, sin contarlo como intento fallido.
+         */
+        private void retry(Batch batch) {
+            for (String id : batch.movements.keySet()) {
+                CardState state = cards.get(id);
+                if (state != null) {
+                    state.inFlight = false;
+                    dirty.add(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Movimientos de un lote por ID de tarjeta, con las tarjetas que se escriben sin comprobar sus límites.
+     */
+    private static final class Batch {
+        private final Map<String, List<Movement>> movements = new LinkedHashMap<>();
+        private final Set<String> withoutLimits = new HashSet<>();
+    }
+
+    /**
+     * Tarjeta mantenida en memoria con su saldo autoritativo en céntimos.
+     */
+    private static final class CardState {
+        private final CreditCard creditCard;
+        private long creditLimit;
+        private long availableBalance;
+        private List<Movement> pendingMovements = new ArrayList<>();
+        private List<Movement> unflushed; // Movimientos enviados cuya escritura no se ha confirmado
+        private int failedFlushes;
+        private boolean withoutLimits; // Los movimientos no escritos se reenvían sin comprobar los límites
+        private boolean reload; // El saldo en memoria no coincidía con el guardado
+        private boolean inFlight;
+        private long lastAccess;
+
+        private CardState(CreditCard creditCard) {
+            this.creditCard = creditCard;
+            this.creditLimit = creditCard.getCreditLimit().getMinorUnits();
+            this.availableBalance = creditCard.getAvailableBalance().getMinorUnits();
+            this.lastAccess = System.nanoTime();
+        }
+
+        /**
+         * Vuelca los saldos en memoria sobre la tarjeta antes de convertirla.
+         */
+        private CreditCard snapshot() {
+            creditCard.setCreditLimit(Money.ofMinorUnits(creditLimit));
+            creditCard.setAvailableBalance(Money.ofMinorUnits(availableBalance));
+            creditCard.setUpdatedAt(LocalDateTime.now());
+            return creditCard;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.nttdata.bankapp.mscreditcardservice.authorization;
+
+import com.nttdata.bankapp.mscreditcardservice.model.EngineLease;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Reserva en MongoDB la ejecución del motor de autorización para esta instancia.
+ * La reserva caduca si no se renueva, de modo que otra instancia puede tomarla cuando la propietaria cae.
+ */
+@Component
+public class EngineLeaseHolder {
+
+    private static final String ENGINE_ID = "authorization-engine";
+    private static final String ID = "id";
+    private static final String OWNER = "owner";
+    private static final String EXPIRES_AT = "expiresAt";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final Duration duration;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    public EngineLeaseHolder(ReactiveMongoTemplate mongoTemplate,
+                             @Value("${app.authorization.engine.lease:30s}") Duration duration) {
+        this.mongoTemplate = mongoTemplate;
+        this.duration = duration;
+    }
+
+    /**
+     * Duración de la reserva desde su última renovación.
+     * @return Duration
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Toma la reserva si no existe, ya es de esta instancia o ha caducado.
+     * @return Mono con true si esta instancia es la propietaria
+     */
+    public Mono<Boolean> acquire() {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where(ID).is(ENGINE_ID)
+                .orOperator(Criteria.where(OWNER).is(instanceId), Criteria.where(EXPIRES_AT).lt(now)));
+        Update update = new Update()
+                .set(OWNER, instanceId)
+                .set(EXPIRES_AT, now.plus(duration));
+
+        return mongoTemplate.findAndModify(query, update,
+                        FindAndModifyOptions.options().upsert(true).returnNew(true), EngineLease.class)
+                .map(lease -> instanceId.equals(lease.getOwner()))
+                // La reserva existe y es de otra instancia: el upsert choca con su ID
+                .onErrorReturn(DuplicateKeyException.class, false)
+                .defaultIfEmpty(false);
+    }
+
+    /**
+     * Prolonga la reserva si sigue siendo de esta instancia.
+     * @return Mono con false si otra instancia la ha tomado
+     */
+    public Mono<Boolean> renew() {
+        Query query = Query.query(Criteria.where(ID).is(ENGINE_ID).and(OWNER).is(instanceId));
+        Update update = new Update().set(EXPIRES_AT, LocalDateTime.now().plus(duration));
+
+        return mongoTemplate.updateFirst(query, update, EngineLease.class)
+                .map(result -> result.getMatchedCount() > 0);
+    }
+
+    /**
+     * Libera la reserva para que otra instancia pueda arrancar el motor sin esperar a que caduque.
+     * @return Mono<Void>
+     */
+    public Mono<Void> release() {
+        return mongoTemplate.remove(Query.query(Criteria.where(ID).is(ENGINE_ID).and(OWNER).is(instanceId)),
+                        EngineLease.class)
+                .then();
+    }
+}
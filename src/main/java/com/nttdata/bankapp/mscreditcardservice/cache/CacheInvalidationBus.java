@@ -0,0 +1,33 @@
+package com.nttdata.bankapp.mscreditcardservice.cache;
+
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Canal de invalidación de la caché de tarjetas de crédito.
+ * Esta implementación solo distribuye los eventos dentro de la instancia; para invalidar también
+ * las demás instancias registradas en Eureka debe reemplazarse por un broker compartido.
+ */
+@Component
+public class CacheInvalidationBus {
+
+    private final Sinks.Many<String> invalidations = Sinks.many().multicast().directBestEffort();
+
+    /**
+     * Publica la invalidación de una tarjeta.
+     * @param id ID de la tarjeta de crédito
+     */
+    public void publish(String id) {
+        // Reintenta si otro hilo está emitiendo al mismo tiempo
+        invalidations.emitNext(id, (signalType, emitResult) -> emitResult == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+    }
+
+    /**
+     * Flujo de IDs de tarjetas invalidadas.
+     * @return Flux de IDs
+     */
+    public Flux<String> invalidations() {
+        return invalidations.asFlux();
+    }
+}
@@ -0,0 +1,183 @@
+package com.nttdata.bankapp.mscreditcardservice.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardDto;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Caché cercana de tarjetas de crédito por ID y por número de tarjeta.
+ * Se lee a través de ella en las consultas y se invalida en cada escritura; solo una tarjeta recién creada se guarda directamente.
+ * Guarda copias inmutables sin el CVV; quien necesite la tarjeta completa lo lee aparte de la base de datos.
+ */
+@Component
+public class CreditCardCache {
+
+    private final AsyncCache<String, CachedCard> cardsById;
+    private final Cache<String, String> idsByCardNumber;
+    private final CacheInvalidationBus invalidationBus;
+    private Disposable invalidationSubscription;
+
+    public CreditCardCache(CacheInvalidationBus invalidationBus,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.card-cache.max-size:50000}") long maxSize,
+                           @Value("${app.card-cache.ttl:30s}") Duration ttl) {
+        this.invalidationBus = invalidationBus;
+        this.cardsById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        this.idsByCardNumber = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cardsById.synchronous(), "credit-cards");
+        Gauge.builder("cache.hit.ratio", cardsById, cache -> cache.synchronous().stats().hitRate())
+                .tag("cache", "credit-cards")
+                .description("Proporción de lecturas de tarjetas resueltas desde la caché")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        invalidationSubscription = invalidationBus.invalidations().subscribe(this::evictLocal);
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        invalidationSubscription.dispose();
+    }
+
+    /**
+     * Obtiene una tarjeta por ID, cargándola si no está en la caché.
+     * Las cargas concurrentes de una misma tarjeta comparten una sola consulta.
+     * @param id ID de la tarjeta de crédito
+     * @param loader Carga de la tarjeta cuando no está en la caché
+     * @return Mono con la tarjeta sin CVV, vacío si no existe
+     */
+    public Mono<CreditCardDto> findById(String id, Function<String, Mono<CreditCardDto>> loader) {
+        // copy() evita que la cancelación de un suscriptor cancele la carga compartida
+        return Mono.defer(() -> Mono.fromFuture(cardsById
+                        .get(id, (key, executor) -> loader.apply(key).map(CachedCard::of).toFuture())
+                        .copy()))
+                .map(CachedCard::toDto);
+    }
+
+    /**
+     * Obtiene una tarjeta solo si ya está cargada en la caché, sin consultar la base de datos.
+     * @param id ID de la tarjeta de crédito
+     * @return Mono con la tarjeta sin CVV, vacío si no está en la caché o su carga no ha terminado
+     */
+    public Mono<CreditCardDto> findIfPresent(String id) {
+        return Mono.fromSupplier(() -> {
+            CompletableFuture<CachedCard> future = cardsById.getIfPresent(id);
+            return future != null && future.isDone() && !future.isCompletedExceptionally()
+                    ? future.getNow(null)
+                    : null;
+        }).map(CachedCard::toDto);
+    }
+
+    /**
+     * Obtiene una tarjeta por número, cargándola si no está en la caché.
+     * La primera lectura solo recuerda el ID; la tarjeta se guarda en las siguientes, cargándola por ID,
+     * para que una escritura concurrente pueda descartar la carga en curso.
+     * @param cardNumber Número de tarjeta
+     * @param loader Carga de la tarjeta por número cuando no está en la caché
+     * @return Mono con la tarjeta sin CVV, vacío si no existe
+     */
+    public Mono<CreditCardDto> findByCardNumber(String cardNumber, Function<String, Mono<CreditCardDto>> loader) {
+        return Mono.defer(() -> {
+            String id = idsByCardNumber.getIfPresent(cardNumber);
+            if (id != null) {
+                return findById(id, key -> loader.apply(cardNumber));
+            }
+            return loader.apply(cardNumber)
+                    .doOnNext(creditCardDto -> idsByCardNumber.put(cardNumber, creditCardDto.getId()))
+                    .map(creditCardDto -> CachedCard.of(creditCardDto).toDto());
+        });
+    }
+
+    /**
+     * Guarda una tarjeta recién creada, que no puede tener un estado más reciente en otra escritura.
+     * Las tarjetas modificadas se invalidan con {@link #evict(String)} en lugar de guardarse.
+     * @param creditCardDto Tarjeta creada
+     */
+    public void put(CreditCardDto creditCardDto) {
+        cardsById.put(creditCardDto.getId(), CompletableFuture.completedFuture(CachedCard.of(creditCardDto)));
+        idsByCardNumber.put(creditCardDto.getCardNumber(), creditCardDto.getId());
+    }
+
+    /**
+     * Publica la invalidación de una tarjeta.
+     * Esta instancia también está suscrita al bus y la invalida durante la publicación.
+     * @param id ID de la tarjeta de crédito
+     */
+    public void evict(String id) {
+        invalidationBus.publish(id);
+    }
+
+    private void evictLocal(String id) {
+        // Invalidar también descarta una carga en curso para que no deje un valor obsoleto
+        cardsById.synchronous().invalidate(id);
+    }
+
+    /**
+     * Copia inmutable de una tarjeta sin el CVV.
+     */
+    private static final class CachedCard {
+        private final String id;
+        private final String cardNumber;
+        private final String customerId;
+        private final CustomerType customerType;
+        private final BigDecimal creditLimit;
+        private final BigDecimal availableBalance;
+        private final LocalDate expirationDate;
+
+        private CachedCard(CreditCardDto creditCardDto) {
+            this.id = creditCardDto.getId();
+            this.cardNumber = creditCardDto.getCardNumber();
+            this.customerId = creditCardDto.getCustomerId();
+            this.customerType = creditCardDto.getCustomerType();
+            this.creditLimit = creditCardDto.getCreditLimit();
+            this.availableBalance = creditCardDto.getAvailableBalance();
+            this.expirationDate = creditCardDto.getExpirationDate();
+        }
+
+        static CachedCard of(CreditCardDto creditCardDto) {
+            return new CachedCard(creditCardDto);
+        }
+
+        /**
+         * Crea un DTO nuevo en cada lectura para que quien lo reciba no modifique la copia guardada.
+         * @return CreditCardDto sin CVV
+         */
+        CreditCardDto toDto() {
+            return CreditCardDto.builder()
+                    .id(id)
+                    .cardNumber(cardNumber)
+                    .customerId(customerId)
+                    .customerType(customerType)
+                    .creditLimit(creditLimit)
+                    .availableBalance(availableBalance)
+                    .expirationDate(expirationDate)
+                    .build();
+        }
+    }
+}
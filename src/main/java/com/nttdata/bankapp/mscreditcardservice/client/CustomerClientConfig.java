@@ -0,0 +1,101 @@
+package com.nttdata.bankapp.mscreditcardservice.client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Configuración del cliente HTTP hacia el microservicio de clientes:
+ * pool de conexiones, timeouts, circuit breaker y bulkhead.
+ */
+@Configuration
+public class CustomerClientConfig {
+
+    private static final String CUSTOMER_SERVICE = "customer-service";
+    private static final String SMILE_ACCEPT = "application/x-jackson-smile, " + MediaType.APPLICATION_JSON_VALUE + ";q=0.9";
+
+    @Bean
+    public WebClient customerWebClient(WebClient.Builder webClientBuilder,
+                                       @Value("${app.customer-service-url}") String customerServiceUrl,
+                                       @Value("${app.customer-client.max-connections:100}") int maxConnections,
+                                       @Value("${app.customer-client.pending-acquire-max-count:200}") int pendingAcquireMaxCount,
+                                       @Value("${app.customer-client.pending-acquire-timeout:1s}") Duration pendingAcquireTimeout,
+                                       @Value("${app.customer-client.max-idle-time:30s}") Duration maxIdleTime,
+                                       @Value("${app.customer-client.connect-timeout:1s}") Duration connectTimeout,
+                                       @Value("${app.customer-client.response-timeout:2s}") Duration responseTimeout,
+                                       @Value("${app.customer-client.smile:false}") boolean smile) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(CUSTOMER_SERVICE)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .metrics(true)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout);
+
+        // Con Smile se mantiene JSON como alternativa por si el servicio de clientes no lo admite
+        String accept = smile ? SMILE_ACCEPT : MediaType.APPLICATION_JSON_VALUE;
+
+        return webClientBuilder
+                .baseUrl(customerServiceUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .defaultHeader(HttpHeaders.ACCEPT, accept)
+                .build();
+    }
+
+    @Bean
+    public CircuitBreaker customerServiceCircuitBreaker(
+            MeterRegistry meterRegistry,
+            @Value("${app.customer-client.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${app.customer-client.circuit-breaker.sliding-window-size:50}") int slidingWindowSize,
+            @Value("${app.customer-client.circuit-breaker.slow-call-duration:1s}") Duration slowCallDuration,
+            @Value("${app.customer-client.circuit-breaker.wait-in-open-state:10s}") Duration waitInOpenState) {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(slowCallDuration)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(Math.min(10, slidingWindowSize))
+                .waitDurationInOpenState(waitInOpenState)
+                .build();
+
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(config);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        return registry.circuitBreaker(CUSTOMER_SERVICE);
+    }
+
+    @Bean
+    public Bulkhead customerServiceBulkhead(
+            MeterRegistry meterRegistry,
+            @Value("${app.customer-client.bulkhead.max-concurrent-calls:50}") int maxConcurrentCalls) {
+        BulkheadConfig config = BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO)
+                .build();
+
+        BulkheadRegistry registry = BulkheadRegistry.of(config);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(registry).bindTo(meterRegistry);
+        return registry.bulkhead(CUSTOMER_SERVICE);
+    }
+}
@@ -1,36 +1,69 @@
 package com.nttdata.bankapp.mscreditcardservice.client;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.nttdata.bankapp.mscreditcardservice.exception.CustomerNotFoundException;
+import com.nttdata.bankapp.mscreditcardservice.exception.CustomerServiceUnavailableException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Cliente para comunicarse con el microservicio de clientes.
+ * Las consultas se guardan en una caché acotada con expiración, incluidas las de clientes
+ * inexistentes, y las consultas concurrentes de un mismo cliente comparten una sola llamada.
+ * Cada llamada remota tiene un plazo máximo y pasa por un bulkhead y un circuit breaker.
  */
 @Service
 public class CustomerService {
 
     private final WebClient webClient;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final Duration callTimeout;
+    private final AsyncCache<String, Optional<CustomerDto>> customers;
 
-    public CustomerService(@Value("${app.customer-service-url}") String customerServiceUrl) {
-        this.webClient = WebClient.builder()
-                .baseUrl(customerServiceUrl)
-                .build();
+    public CustomerService(WebClient customerWebClient,
+                           CircuitBreaker customerServiceCircuitBreaker,
+                           Bulkhead customerServiceBulkhead,
+                           @Value("${app.customer-client.call-timeout:3s}") Duration callTimeout,
+                           @Value("${app.customer-cache.max-size:10000}") long maxSize,
+                           @Value("${app.customer-cache.ttl:5m}") Duration ttl,
+                           @Value("${app.customer-cache.negative-ttl:30s}") Duration negativeTtl,
+                           MeterRegistry meterRegistry) {
+        this.webClient = customerWebClient;
+        this.circuitBreaker = customerServiceCircuitBreaker;
+        this.bulkhead = customerServiceBulkhead;
+        this.callTimeout = callTimeout;
+        this.customers = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new LookupExpiry(ttl, negativeTtl))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, customers.synchronous(), "customers");
     }
 
     /**
      * Verifica si un cliente existe por su ID.
      * @param customerId ID del cliente
-     * @return Mono<Boolean> true si existe, false en caso contrario
+     * @return Mono<Boolean> true si existe, false en caso contrario; error si el servicio no responde
      */
     public Mono<Boolean> customerExists(String customerId) {
-        return webClient.get()
-                .uri("/customers/{id}", customerId)
-                .retrieve()
-                .bodyToMono(Object.class)
-                .map(response -> true)
-                .onErrorResume(e -> Mono.just(false));
+        return findCustomer(customerId)
+                .map(Optional::isPresent);
     }
 
     /**
@@ -39,11 +72,44 @@ public class CustomerService {
      * @return Mono<String> tipo de cliente
      */
     public Mono<String> getCustomerType(String customerId) {
+        return findCustomer(customerId)
+                .flatMap(customer -> Mono.justOrEmpty(customer))
+                .switchIfEmpty(Mono.error(new CustomerNotFoundException("Customer not found with id: " + customerId)))
+                .map(customer -> customer.getType().toString());
+    }
+
+    /**
+     * Obtiene un cliente desde la caché o, si no está, desde el microservicio de clientes.
+     * Los errores distintos de 404 no se guardan en la caché.
+     * @param customerId ID del cliente
+     * @return Mono con el cliente, vacío dentro del Optional si no existe
+     */
+    private Mono<Optional<CustomerDto>> findCustomer(String customerId) {
+        return Mono.defer(() -> {
+            CompletableFuture<Optional<CustomerDto>> lookup = customers
+                    .get(customerId, (id, executor) -> fetchCustomer(id).toFuture());
+            // copy() evita que la cancelación de un suscriptor cancele la consulta compartida.
+            // Caffeine quita las consultas fallidas después de avisar a quien espera; se quitan aquí
+            // para que un reintento inmediato vuelva a llamar al servicio
+            return Mono.fromFuture(lookup.copy())
+                    .doOnError(e -> customers.asMap().remove(customerId, lookup));
+        });
+    }
+
+    private Mono<Optional<CustomerDto>> fetchCustomer(String customerId) {
         return webClient.get()
                 .uri("/customers/{id}", customerId)
                 .retrieve()
                 .bodyToMono(CustomerDto.class)
-                .map(customer -> customer.getType().toString());
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.<CustomerDto>empty())
+                // Un 404 es una respuesta válida y no cuenta como fallo para el circuit breaker
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.just(Optional.<CustomerDto>empty()))
+                .timeout(callTimeout)
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .onErrorMap(e -> new CustomerServiceUnavailableException(
+                        "Customer service unavailable: " + e.getMessage(), e));
     }
 
     // DTO interno para mapear la respuesta del servicio de clientes
@@ -56,4 +122,32 @@ public class CustomerService {
     private enum CustomerTypeEnum {
         PERSONAL, BUSINESS
     }
-}
\ No newline at end of file
+
+    /**
+     * Expiración distinta para clientes encontrados y para clientes inexistentes.
+     */
+    private static final class LookupExpiry implements Expiry<String, Optional<CustomerDto>> {
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+
+        private LookupExpiry(Duration ttl, Duration negativeTtl) {
+            this.ttlNanos = ttl.toNanos();
+            this.negativeTtlNanos = negativeTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Optional<CustomerDto> value, long currentTime) {
+            return value.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<CustomerDto> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<CustomerDto> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.nttdata.bankapp.mscreditcardservice.concurrency;
+
+import com.nttdata.bankapp.mscreditcardservice.dto.CardContentionDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Endpoint de actuator con las tarjetas más disputadas: GET /actuator/contention?limit=20.
+ */
+@Component
+@Endpoint(id = "contention")
+@RequiredArgsConstructor
+public class CardContentionEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final CardContentionTracker cardContentionTracker;
+
+    @ReadOperation
+    public List<CardContentionDto> contention(@Nullable Integer limit) {
+        return cardContentionTracker.hottest(limit == null ? DEFAULT_LIMIT : Math.max(limit, 1));
+    }
+}
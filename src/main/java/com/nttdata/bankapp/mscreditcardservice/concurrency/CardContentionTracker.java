@@ -0,0 +1,138 @@
+package com.nttdata.bankapp.mscreditcardservice.concurrency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.nttdata.bankapp.mscreditcardservice.dto.CardContentionDto;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Registra los conflictos de concurrencia optimista por tarjeta y define la política de reintento.
+ * Los contadores por tarjeta se guardan en una caché acotada; las tarjetas que superan el umbral
+ * se publican como métrica con su ID, hasta un máximo, para localizar las tarjetas calientes.
+ */
+@Component
+@Slf4j
+public class CardContentionTracker {
+
+    private static final String CONFLICTS_METRIC = "creditcard.optimistic.lock.conflicts";
+    private static final String EXHAUSTED_METRIC = "creditcard.optimistic.lock.retries.exhausted";
+    private static final String HOT_CARD_METRIC = "creditcard.contention.hot";
+
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, LongAdder> conflictsByCard;
+    private final Map<String, Meter> hotCardMeters = new ConcurrentHashMap<>();
+    private final int maxAttempts;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+    private final long hotCardThreshold;
+    private final int maxHotCards;
+
+    public CardContentionTracker(MeterRegistry meterRegistry,
+                                 @Value("${app.contention.retry.max-attempts:5}") int maxAttempts,
+                                 @Value("${app.contention.retry.min-backoff:5ms}") Duration minBackoff,
+                                 @Value("${app.contention.retry.max-backoff:200ms}") Duration maxBackoff,
+                                 @Value("${app.contention.hot-card-threshold:20}") long hotCardThreshold,
+                                 @Value("${app.contention.max-hot-cards:50}") int maxHotCards,
+                                 @Value("${app.contention.max-tracked-cards:10000}") long maxTrackedCards,
+                                 @Value("${app.contention.window:15m}") Duration window) {
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+        this.hotCardThreshold = hotCardThreshold;
+        this.maxHotCards = maxHotCards;
+        this.conflictsByCard = Caffeine.newBuilder()
+                .maximumSize(maxTrackedCards)
+                .expireAfterAccess(window)
+                .removalListener((String cardId, LongAdder conflicts, RemovalCause cause) -> unregisterHotCard(cardId))
+                .build();
+    }
+
+    /**
+     * Política de reintento ante fallos de bloqueo optimista: espera exponencial con jitter y número de
+     * intentos acotado. Al agotarse se propaga el último OptimisticLockingFailureException.
+     * @param cardId ID de la tarjeta de crédito
+     * @param operation Nombre de la operación, usado como etiqueta de las métricas
+     * @return Retry para usar con retryWhen
+     */
+    public Retry retryOnConflict(String cardId, String operation) {
+        return Retry.backoff(maxAttempts, minBackoff)
+                .maxBackoff(maxBackoff)
+                .jitter(0.5)
+                .filter(OptimisticLockingFailureException.class::isInstance)
+                .doBeforeRetry(signal -> conflict(cardId, operation))
+                .onRetryExhaustedThrow((spec, signal) -> {
+                    conflict(cardId, operation);
+                    exhausted(cardId, operation);
+                    return signal.failure();
+                });
+    }
+
+    /**
+     * Registra un conflicto de concurrencia sobre una tarjeta.
+     * @param cardId ID de la tarjeta de crédito
+     * @param operation Nombre de la operación
+     */
+    public void conflict(String cardId, String operation) {
+        meterRegistry.counter(CONFLICTS_METRIC, "operation", operation).increment();
+        LongAdder conflicts = conflictsByCard.get(cardId, key -> new LongAdder());
+        conflicts.increment();
+        if (conflicts.sum() >= hotCardThreshold && !hotCardMeters.containsKey(cardId)
+                && hotCardMeters.size() < maxHotCards) {
+            registerHotCard(cardId, conflicts);
+        }
+    }
+
+    /**
+     * Registra una operación abandonada tras agotar los reintentos.
+     * @param cardId ID de la tarjeta de crédito
+     * @param operation Nombre de la operación
+     */
+    public void exhausted(String cardId, String operation) {
+        log.warn("Giving up {} on credit card {} after repeated concurrent modifications", operation, cardId);
+        meterRegistry.counter(EXHAUSTED_METRIC, "operation", operation).increment();
+    }
+
+    /**
+     * Obtiene las tarjetas con más conflictos dentro de la ventana de seguimiento.
+     * @param limit Número máximo de tarjetas
+     * @return Lista ordenada de mayor a menor número de conflictos
+     */
+    public List<CardContentionDto> hottest(int limit) {
+        return conflictsByCard.asMap().entrySet().stream()
+                .map(entry -> new CardContentionDto(entry.getKey(), entry.getValue().sum()))
+                .sorted(Comparator.comparingLong(CardContentionDto::getConflicts).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private void registerHotCard(String cardId, LongAdder conflicts) {
+        hotCardMeters.computeIfAbsent(cardId, key -> FunctionCounter.builder(HOT_CARD_METRIC, conflicts, LongAdder::sum)
+                .tag("creditCardId", key)
+                .description("Conflictos de concurrencia de las tarjetas más disputadas")
+                .register(meterRegistry));
+    }
+
+    private void unregisterHotCard(String cardId) {
+        Meter meter = hotCardMeters.remove(cardId);
+        if (meter != null) {
+            meterRegistry.remove(meter);
+        }
+    }
+}
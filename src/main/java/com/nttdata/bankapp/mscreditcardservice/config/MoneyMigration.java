@@ -0,0 +1,65 @@
+package com.nttdata.bankapp.mscreditcardservice.config;
+
+import com.nttdata.bankapp.mscreditcardservice.model.SchemaMigration;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Convierte una sola vez los importes guardados como String o Decimal128 a céntimos en int64.
+ * Las operaciones atómicas con $inc necesitan que todos los documentos usen el mismo formato; las tarjetas
+ * escritas en el formato anterior durante la migración o por instancias sin actualizar se convierten
+ * al rechazarse una operación sobre ellas.
+ * Se ejecuta en segundo plano y queda marcada al terminar, así que el arranque no espera al recorrido
+ * de la colección y los siguientes no lo repiten. Si falla, se reintenta en el siguiente arranque.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MoneyMigration implements ApplicationRunner {
+
+    static final String MIGRATION_ID = "money-minor-units-v1";
+
+    private final CreditCardRepository creditCardRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        migrate().subscribe();
+    }
+
+    /**
+     * Convierte los importes si la migración no se ha aplicado todavía.
+     * @return Mono<Void> que no falla: los errores se registran y la migración queda pendiente
+     */
+    Mono<Void> migrate() {
+        return mongoTemplate.exists(Query.query(Criteria.where("id").is(MIGRATION_ID)), SchemaMigration.class)
+                .filter(applied -> !applied)
+                .flatMap(pending -> creditCardRepository.convertLegacyAmounts(null))
+                .flatMap(migrated -> {
+                    log.info("Migrated {} credit cards to amounts in minor units", migrated);
+                    return mongoTemplate.insert(SchemaMigration.builder()
+                                    .id(MIGRATION_ID)
+                                    .migrated(migrated)
+                                    .appliedAt(LocalDateTime.now())
+                                    .build())
+                            // Otra instancia terminó la misma migración a la vez
+                            .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+                })
+                .onErrorResume(e -> {
+                    log.error("Error migrating amounts to minor units, retrying on next startup: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
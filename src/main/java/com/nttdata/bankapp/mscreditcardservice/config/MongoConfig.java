@@ -0,0 +1,65 @@
+package com.nttdata.bankapp.mscreditcardservice.config;
+
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import org.bson.types.Decimal128;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Configuración de conversiones de MongoDB.
+ */
+@Configuration
+public class MongoConfig {
+
+    /**
+     * Los importes se guardan como int64 en céntimos, lo que permite $inc y rangos numéricos.
+     * Los documentos anteriores, con importes en String o Decimal128, se siguen leyendo correctamente.
+     */
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(Arrays.asList(
+                new MoneyToLongConverter(),
+                new LongToMoneyConverter(),
+                new Decimal128ToMoneyConverter(),
+                new StringToMoneyConverter()));
+    }
+
+    @WritingConverter
+    static class MoneyToLongConverter implements Converter<Money, Long> {
+        @Override
+        public Long convert(Money source) {
+            return source.getMinorUnits();
+        }
+    }
+
+    @ReadingConverter
+    static class LongToMoneyConverter implements Converter<Long, Money> {
+        @Override
+        public Money convert(Long source) {
+            return Money.ofMinorUnits(source);
+        }
+    }
+
+    @ReadingConverter
+    static class Decimal128ToMoneyConverter implements Converter<Decimal128, Money> {
+        @Override
+        public Money convert(Decimal128 source) {
+            return Money.of(source.bigDecimalValue());
+        }
+    }
+
+    @ReadingConverter
+    static class StringToMoneyConverter implements Converter<String, Money> {
+        @Override
+        public Money convert(String source) {
+            return Money.of(new BigDecimal(source));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.nttdata.bankapp.mscreditcardservice.config;
+
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Crea al arrancar los índices declarados en los documentos del paquete del modelo.
+ * La creación automática de índices de Spring Data está deshabilitada por defecto.
+ * Los documentos se descubren por su anotación, así que un documento nuevo no necesita registrarse aquí.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexInitializer implements ApplicationRunner {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        MongoPersistentEntityIndexResolver resolver =
+                new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+
+        Flux.fromIterable(documentTypes())
+                .concatMap(type -> Flux.fromIterable(resolver.resolveIndexFor(type))
+                        .concatMap(index -> mongoTemplate.indexOps(type).ensureIndex(index))
+                        .doOnNext(name -> log.info("Ensured index {} on {}", name, mongoTemplate.getCollectionName(type))))
+                .blockLast();
+    }
+
+    private static List<Class<?>> documentTypes() {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Document.class));
+        return scanner.findCandidateComponents(CreditCard.class.getPackageName()).stream()
+                .map(definition -> ClassUtils.resolveClassName(definition.getBeanClassName(),
+                        MongoIndexInitializer.class.getClassLoader()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,153 @@
+package com.nttdata.bankapp.mscreditcardservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyPath;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Modo de diagnóstico que ejecuta explain() sobre cada consulta de los repositorios al arrancar
+ * y detiene la aplicación si alguna recorre la colección completa (COLLSCAN).
+ * Se comprueban las consultas derivadas del nombre del método y las declaradas con @Query,
+ * sustituyendo los parámetros por null: lo que se verifica es que exista un índice para los campos filtrados.
+ * Se habilita con app.mongo.verify-query-plans=true, por ejemplo en CI o en la prueba de carga.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@Slf4j
+public class QueryPlanVerifier implements ApplicationRunner {
+
+    private static final Pattern PARAMETER_PLACEHOLDER = Pattern.compile("\\?\\d+");
+    private static final String COLLECTION_SCAN = "COLLSCAN";
+
+    private final ApplicationContext applicationContext;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext;
+    private final boolean enabled;
+
+    public QueryPlanVerifier(ApplicationContext applicationContext,
+                             ReactiveMongoTemplate mongoTemplate,
+                             @Value("${app.mongo.verify-query-plans:false}") boolean enabled) {
+        this.applicationContext = applicationContext;
+        this.mongoTemplate = mongoTemplate;
+        this.mappingContext = mongoTemplate.getConverter().getMappingContext();
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+
+        List<String> collectionScans = new ArrayList<>();
+        Repositories repositories = new Repositories(applicationContext);
+        for (Class<?> domainType : repositories) {
+            RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainType);
+            String collection = mongoTemplate.getCollectionName(domainType);
+            for (Method method : information.getQueryMethods()) {
+                String name = information.getRepositoryInterface().getSimpleName() + "." + method.getName();
+                Document filter = filterFor(method, domainType);
+                if (filter.isEmpty()) {
+                    // Los listados completos recorren la colección por definición
+                    log.info("Query {} on {} has no filter, skipping plan verification", name, collection);
+                    continue;
+                }
+                Document winningPlan = explain(collection, filter, sortFor(method, domainType));
+                if (usesCollectionScan(winningPlan)) {
+                    log.error("Query {} on {} runs a collection scan: {}", name, collection, winningPlan.toJson());
+                    collectionScans.add(name);
+                } else {
+                    log.info("Query {} on {} is supported by an index", name, collection);
+                }
+            }
+        }
+
+        if (!collectionScans.isEmpty()) {
+            throw new IllegalStateException("Repository queries without a supporting index: " + collectionScans);
+        }
+    }
+
+    private Document explain(String collection, Document filter, Document sort) {
+        Document find = new Document("find", collection).append("filter", filter);
+        if (!sort.isEmpty()) {
+            find.append("sort", sort);
+        }
+        Document explanation = mongoTemplate
+                .executeCommand(new Document("explain", find).append("verbosity", "queryPlanner"))
+                .block();
+        return explanation.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+    }
+
+    private Document filterFor(Method method, Class<?> domainType) {
+        Query query = AnnotatedElementUtils.findMergedAnnotation(method, Query.class);
+        if (query != null && !query.value().isEmpty()) {
+            return Document.parse(PARAMETER_PLACEHOLDER.matcher(query.value()).replaceAll("null"));
+        }
+
+        List<Document> branches = new PartTree(method.getName(), domainType).stream()
+                .map(orPart -> {
+                    Document branch = new Document();
+                    orPart.forEach(part -> branch.append(fieldName(part.getProperty()), null));
+                    return branch;
+                })
+                .collect(Collectors.toList());
+        return branches.size() == 1 ? branches.get(0) : new Document("$or", branches);
+    }
+
+    private Document sortFor(Method method, Class<?> domainType) {
+        Query query = AnnotatedElementUtils.findMergedAnnotation(method, Query.class);
+        if (query != null && !query.sort().isEmpty()) {
+            return Document.parse(query.sort());
+        }
+
+        Document sort = new Document();
+        for (Sort.Order order : new PartTree(method.getName(), domainType).getSort()) {
+            sort.append(fieldName(PropertyPath.from(order.getProperty(), domainType)), order.isAscending() ? 1 : -1);
+        }
+        return sort;
+    }
+
+    private String fieldName(PropertyPath path) {
+        return mappingContext.getPersistentPropertyPath(path).toDotPath(MongoPersistentProperty::getFieldName);
+    }
+
+    /**
+     * Busca una etapa COLLSCAN en cualquier nivel del plan.
+     */
+    private static boolean usesCollectionScan(Object plan) {
+        if (plan instanceof Document) {
+            Document stage = (Document) plan;
+            if (COLLECTION_SCAN.equals(stage.get("stage"))) {
+                return true;
+            }
+            return stage.values().stream().anyMatch(QueryPlanVerifier::usesCollectionScan);
+        }
+        if (plan instanceof List) {
+            return ((List<?>) plan).stream().anyMatch(QueryPlanVerifier::usesCollectionScan);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,38 @@
+package com.nttdata.bankapp.mscreditcardservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+
+/**
+ * Formato binario Smile (application/x-jackson-smile) para los llamadores internos.
+ * Se negocia con Accept y Content-Type, por lo que JSON sigue siendo el formato por defecto.
+ * Los códecs usan la misma configuración de Jackson que JSON para que fechas e importes se
+ * representen igual en ambos formatos. Se aplica al servidor y a los WebClient creados con el builder.
+ */
+@Configuration
+public class SmileCodecConfig {
+
+    /**
+     * Tipos de Smile. Hay que indicarlos: con solo el ObjectMapper los códecs anuncian los tipos de JSON.
+     */
+    private static final MimeType[] SMILE_MIME_TYPES = {
+            new MimeType("application", "x-jackson-smile"),
+            new MimeType("application", "*+x-jackson-smile")
+    };
+
+    @Bean
+    public CodecCustomizer smileCodecCustomizer(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        ObjectMapper smileMapper = objectMapperBuilder.factory(new SmileFactory()).build();
+        return configurer -> {
+            configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smileMapper, SMILE_MIME_TYPES));
+            configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smileMapper, SMILE_MIME_TYPES));
+        };
+    }
+}
@@ -1,29 +1,53 @@
 package com.nttdata.bankapp.mscreditcardservice.controller;
 
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceBatchLineDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceBatchResultDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceEventDto;
 import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardBalanceDto;
 import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.ExposureDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.MovementDto;
+import com.nttdata.bankapp.mscreditcardservice.idempotency.IdempotencyStore;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
 import com.nttdata.bankapp.mscreditcardservice.service.CreditCardService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Digits;
+import javax.validation.constraints.Min;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import static com.nttdata.bankapp.mscreditcardservice.logging.LogMarkers.HOT_PATH;
 
 /**
  * Controlador para operaciones con tarjetas de crédito.
+ * Acepta y devuelve JSON o, para los llamadores internos que lo pidan, Smile (application/x-jackson-smile).
+ * Los importes se validan antes de llegar al servicio, por lo que un importe mal formado no consulta MongoDB.
  */
 @RestController
+@Validated
 @RequestMapping("/credit-cards")
 @RequiredArgsConstructor
 @Slf4j
 public class CreditCardController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final Duration KEEP_ALIVE_INTERVAL = Duration.ofSeconds(15);
+
     private final CreditCardService creditCardService;
+    private final IdempotencyStore idempotencyStore;
 
     /**
      * Obtiene todas las tarjetas de crédito.
@@ -35,6 +59,38 @@ public class CreditCardController {
         return creditCardService.findAll();
     }
 
+    /**
+     * Exporta las tarjetas de crédito como NDJSON paginando por cursor.
+     * @param after Último ID recibido, las tarjetas se devuelven a partir del siguiente
+     * @param limit Número máximo de tarjetas, al menos 1; sin indicar se devuelven todas
+     * @return Flux de CreditCardDto, un documento por línea
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<CreditCardDto> streamAll(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) @Min(1) Integer limit) {
+        log.info("GET /credit-cards (ndjson) after: {} limit: {}", after, limit);
+        return creditCardService.streamAll(after, limit);
+    }
+
+    /**
+     * Exporta las tarjetas de crédito como eventos SSE paginando por cursor.
+     * El ID de cada evento es el ID de la tarjeta, por lo que el cliente puede reanudar con Last-Event-ID.
+     * @param after Último ID recibido, las tarjetas se devuelven a partir del siguiente
+     * @param lastEventId Último evento recibido al reconectar, usado si no se indica after
+     * @param limit Número máximo de tarjetas, al menos 1; sin indicar se devuelven todas
+     * @return Flux de eventos con CreditCardDto
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<CreditCardDto>> streamAllEvents(
+            @RequestParam(required = false) String after,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(required = false) @Min(1) Integer limit) {
+        log.info("GET /credit-cards (event-stream) after: {} limit: {}", after, limit);
+        return creditCardService.streamAll(after != null ? after : lastEventId, limit)
+                .map(this::toEvent);
+    }
+
     /**
      * Obtiene una tarjeta de crédito por su ID.
      * @param id ID de la tarjeta de crédito
@@ -42,7 +98,7 @@ public class CreditCardController {
      */
     @GetMapping("/{id}")
     public Mono<ResponseEntity<CreditCardDto>> getById(@PathVariable String id) {
-        log.info("GET /credit-cards/{}", id);
+        log.info(HOT_PATH, "GET /credit-cards/{}", id);
         return creditCardService.findById(id)
                 .map(ResponseEntity::ok)
                 .defaultIfEmpty(ResponseEntity.notFound().build());
@@ -59,6 +115,78 @@ public class CreditCardController {
         return creditCardService.findByCustomerId(customerId);
     }
 
+    /**
+     * Exporta las tarjetas de crédito de un cliente como NDJSON paginando por cursor.
+     * @param customerId ID del cliente
+     * @param after Último ID recibido, las tarjetas se devuelven a partir del siguiente
+     * @param limit Número máximo de tarjetas, al menos 1; sin indicar se devuelven todas
+     * @return Flux de CreditCardDto, un documento por línea
+     */
+    @GetMapping(value = "/customer/{customerId}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<CreditCardDto> streamByCustomerId(
+            @PathVariable String customerId,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) @Min(1) Integer limit) {
+        log.info("GET /credit-cards/customer/{} (ndjson) after: {} limit: {}", customerId, after, limit);
+        return creditCardService.streamByCustomerId(customerId, after, limit);
+    }
+
+    /**
+     * Exporta las tarjetas de crédito de un cliente como eventos SSE paginando por cursor.
+     * @param customerId ID del cliente
+     * @param after Último ID recibido, las tarjetas se devuelven a partir del siguiente
+     * @param lastEventId Último evento recibido al reconectar, usado si no se indica after
+     * @param limit Número máximo de tarjetas, al menos 1; sin indicar se devuelven todas
+     * @return Flux de eventos con CreditCardDto
+     */
+    @GetMapping(value = "/customer/{customerId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<CreditCardDto>> streamByCustomerIdEvents(
+            @PathVariable String customerId,
+            @RequestParam(required = false) String after,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(required = false) @Min(1) Integer limit) {
+        log.info("GET /credit-cards/customer/{} (event-stream) after: {} limit: {}", customerId, after, limit);
+        return creditCardService.streamByCustomerId(customerId, after != null ? after : lastEventId, limit)
+                .map(this::toEvent);
+    }
+
+    /**
+     * Obtiene la exposición crediticia agregada de un cliente.
+     * @param customerId ID del cliente
+     * @return Mono de ExposureDto
+     */
+    @GetMapping("/customer/{customerId}/exposure")
+    public Mono<ExposureDto> getCustomerExposure(@PathVariable String customerId) {
+        log.info("GET /credit-cards/customer/{}/exposure", customerId);
+        return creditCardService.getCustomerExposure(customerId);
+    }
+
+    /**
+     * Obtiene la exposición crediticia por cliente de toda la cartera, paginando por ID de cliente.
+     * @param customerType Tipo de cliente para filtrar
+     * @param after Último ID de cliente recibido, los clientes se devuelven a partir del siguiente
+     * @param limit Número máximo de clientes, hasta 1000
+     * @return Flux de ExposureDto
+     */
+    @GetMapping(value = "/exposure", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<ExposureDto> getCustomerExposures(
+            @RequestParam(required = false) CustomerType customerType,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "100") int limit) {
+        log.info("GET /credit-cards/exposure customerType: {} after: {} limit: {}", customerType, after, limit);
+        return creditCardService.streamCustomerExposures(customerType, after, limit);
+    }
+
+    /**
+     * Obtiene la exposición crediticia de toda la cartera por tipo de cliente.
+     * @return Flux de ExposureDto
+     */
+    @GetMapping("/exposure/customer-types")
+    public Flux<ExposureDto> getExposureByCustomerType() {
+        log.info("GET /credit-cards/exposure/customer-types");
+        return creditCardService.getExposureByCustomerType();
+    }
+
     /**
      * Obtiene una tarjeta de crédito por su número.
      * @param cardNumber Número de tarjeta
@@ -66,7 +194,7 @@ public class CreditCardController {
      */
     @GetMapping("/number/{cardNumber}")
     public Mono<ResponseEntity<CreditCardDto>> getByCardNumber(@PathVariable String cardNumber) {
-        log.info("GET /credit-cards/number/{}", cardNumber);
+        log.info(HOT_PATH, "GET /credit-cards/number/{}", cardNumber);
         return creditCardService.findByCardNumber(cardNumber)
                 .map(ResponseEntity::ok)
                 .defaultIfEmpty(ResponseEntity.notFound().build());
@@ -79,12 +207,54 @@ public class CreditCardController {
      */
     @GetMapping("/{id}/balance")
     public Mono<ResponseEntity<CreditCardBalanceDto>> getBalance(@PathVariable String id) {
-        log.info("GET /credit-cards/{}/balance", id);
+        log.info(HOT_PATH, "GET /credit-cards/{}/balance", id);
         return creditCardService.getBalance(id)
                 .map(ResponseEntity::ok)
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Emite los cambios de saldo y de límite como eventos SSE, en lugar de consultar el saldo periódicamente.
+     * El ID de cada evento es su token de reanudación, por lo que el cliente puede reanudar con Last-Event-ID.
+     * @param creditCardId ID de la tarjeta de crédito, todas si no se indica
+     * @param customerId ID del cliente, todos si no se indica
+     * @param resumeToken Token del último evento recibido
+     * @param lastEventId Último evento recibido al reconectar, usado si no se indica resumeToken
+     * @return Flux de eventos con BalanceEventDto
+     */
+    @GetMapping(value = "/balance-events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<BalanceEventDto>> streamBalanceEvents(
+            @RequestParam(required = false) String creditCardId,
+            @RequestParam(required = false) String customerId,
+            @RequestParam(required = false) String resumeToken,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        log.info("GET /credit-cards/balance-events creditCardId: {} customerId: {}", creditCardId, customerId);
+        // Los comentarios periódicos mantienen abierta la conexión a través de proxies y balanceadores
+        Flux<ServerSentEvent<BalanceEventDto>> keepAlive = Flux.interval(KEEP_ALIVE_INTERVAL)
+                .map(tick -> ServerSentEvent.<BalanceEventDto>builder().comment("keep-alive").build());
+        return creditCardService.streamBalanceEvents(creditCardId, customerId,
+                        resumeToken != null ? resumeToken : lastEventId)
+                .map(this::toBalanceEvent)
+                .mergeWith(keepAlive);
+    }
+
+    /**
+     * Obtiene los movimientos de una tarjeta de crédito, del más reciente al más antiguo.
+     * Los movimientos aparecen en cuanto se copian al libro mayor, normalmente en milisegundos.
+     * @param id ID de la tarjeta de crédito
+     * @param before ID del último movimiento recibido, los movimientos se devuelven a partir del anterior
+     * @param limit Número máximo de movimientos, hasta 500
+     * @return Flux de MovementDto
+     */
+    @GetMapping("/{id}/movements")
+    public Flux<MovementDto> getMovements(
+            @PathVariable String id,
+            @RequestParam(required = false) String before,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("GET /credit-cards/{}/movements before: {} limit: {}", id, before, limit);
+        return creditCardService.findMovements(id, before, limit);
+    }
+
     /**
      * Crea una nueva tarjeta de crédito.
      * @param creditCardDto DTO con los datos de la tarjeta
@@ -127,14 +297,20 @@ public class CreditCardController {
      * Registra un consumo en una tarjeta de crédito.
      * @param id ID de la tarjeta de crédito
      * @param amount Monto del consumo
+     * @param idempotencyKey Clave opcional, los reintentos con la misma clave devuelven la respuesta original
      * @return Mono de CreditCardDto
      */
     @PutMapping("/{id}/consumption")
     public Mono<ResponseEntity<CreditCardDto>> registerConsumption(
             @PathVariable String id,
-            @RequestParam BigDecimal amount) {
-        log.info("PUT /credit-cards/{}/consumption with amount: {}", id, amount);
-        return creditCardService.registerConsumption(id, amount)
+            @RequestParam
+            @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
+            @Digits(integer = 15, fraction = 2, message = "Amount must have at most 15 integer digits and 2 decimal places")
+            BigDecimal amount,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        log.info(HOT_PATH, "PUT /credit-cards/{}/consumption with amount: {}", id, amount);
+        return idempotent(idempotencyKey, "consumption", id, amount,
+                () -> creditCardService.registerConsumption(id, amount, idempotencyKey))
                 .map(ResponseEntity::ok)
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
@@ -143,15 +319,68 @@ public class CreditCardController {
      * Realiza un pago a una tarjeta de crédito.
      * @param id ID de la tarjeta de crédito
      * @param amount Monto del pago
+     * @param idempotencyKey Clave opcional, los reintentos con la misma clave devuelven la respuesta original
      * @return Mono de CreditCardDto
      */
     @PutMapping("/{id}/payment")
     public Mono<ResponseEntity<CreditCardDto>> payBalance(
             @PathVariable String id,
-            @RequestParam BigDecimal amount) {
-        log.info("PUT /credit-cards/{}/payment with amount: {}", id, amount);
-        return creditCardService.payBalance(id, amount)
+            @RequestParam
+            @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
+            @Digits(integer = 15, fraction = 2, message = "Amount must have at most 15 integer digits and 2 decimal places")
+            BigDecimal amount,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        log.info(HOT_PATH, "PUT /credit-cards/{}/payment with amount: {}", id, amount);
+        return idempotent(idempotencyKey, "payment", id, amount,
+                () -> creditCardService.payBalance(id, amount, idempotencyKey))
                 .map(ResponseEntity::ok)
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
-}
\ No newline at end of file
+
+    /**
+     * Registra un lote de consumos agrupados por tarjeta.
+     * @param lines Flux con las líneas del lote
+     * @return Flux con el resultado de cada línea en el orden recibido
+     */
+    @PostMapping("/consumptions:batch")
+    public Flux<BalanceBatchResultDto> registerConsumptions(@RequestBody Flux<BalanceBatchLineDto> lines) {
+        log.info("POST /credit-cards/consumptions:batch");
+        return creditCardService.registerConsumptions(lines);
+    }
+
+    /**
+     * Registra un lote de pagos agrupados por tarjeta.
+     * @param lines Flux con las líneas del lote
+     * @return Flux con el resultado de cada línea en el orden recibido
+     */
+    @PostMapping("/payments:batch")
+    public Flux<BalanceBatchResultDto> payBalances(@RequestBody Flux<BalanceBatchLineDto> lines) {
+        log.info("POST /credit-cards/payments:batch");
+        return creditCardService.payBalances(lines);
+    }
+
+    private ServerSentEvent<CreditCardDto> toEvent(CreditCardDto creditCardDto) {
+        return ServerSentEvent.builder(creditCardDto)
+                .id(creditCardDto.getId())
+                .event("credit-card")
+                .build();
+    }
+
+    private ServerSentEvent<BalanceEventDto> toBalanceEvent(BalanceEventDto balanceEventDto) {
+        return ServerSentEvent.builder(balanceEventDto)
+                .id(balanceEventDto.getResumeToken())
+                .event("balance-change")
+                .build();
+    }
+
+    private Mono<CreditCardDto> idempotent(String idempotencyKey, String operation, String id, BigDecimal amount,
+                                           Supplier<Mono<CreditCardDto>> call) {
+        if (idempotencyKey == null) {
+            return call.get();
+        }
+        // stripTrailingZeros hace que 10 y 10.00 se consideren la misma petición
+        String fingerprint = operation + ":" + id + ":" + amount.stripTrailingZeros().toPlainString();
+        return idempotencyStore.execute(idempotencyKey, fingerprint, call,
+                () -> creditCardService.findAppliedOperation(id, idempotencyKey));
+    }
+}
@@ -0,0 +1,36 @@
+package com.nttdata.bankapp.mscreditcardservice.controller;
+
+import com.nttdata.bankapp.mscreditcardservice.dto.CardLookupRequestDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.CardLookupResultDto;
+import com.nttdata.bankapp.mscreditcardservice.service.CreditCardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+/**
+ * Controlador para la consulta masiva de tarjetas de crédito.
+ * Está separado de CreditCardController porque su ruta, /credit-cards:lookup, no cuelga de /credit-cards/.
+ */
+@RestController
+@RequiredArgsConstructor
+@Slf4j
+public class CreditCardLookupController {
+
+    private final CreditCardService creditCardService;
+
+    /**
+     * Obtiene varias tarjetas por IDs o por números de tarjeta en una sola petición.
+     * @param request IDs o números de tarjeta a consultar, hasta 10000
+     * @return Flux con un resultado por elemento en el orden recibido, con found=false si no existe
+     */
+    @PostMapping(value = "/credit-cards:lookup",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, "application/x-jackson-smile"})
+    public Flux<CardLookupResultDto> lookup(@RequestBody CardLookupRequestDto request) {
+        log.info("POST /credit-cards:lookup");
+        return creditCardService.lookup(request);
+    }
+}
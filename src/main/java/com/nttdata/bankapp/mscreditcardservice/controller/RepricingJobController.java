@@ -0,0 +1,70 @@
+package com.nttdata.bankapp.mscreditcardservice.controller;
+
+import com.nttdata.bankapp.mscreditcardservice.dto.RepricingJobDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.RepricingJobRequestDto;
+import com.nttdata.bankapp.mscreditcardservice.service.RepricingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+
+/**
+ * Controlador para los trabajos de revisión de límites de crédito de la cartera.
+ */
+@RestController
+@RequestMapping("/credit-cards/repricing-jobs")
+@RequiredArgsConstructor
+@Slf4j
+public class RepricingJobController {
+
+    private final RepricingService repricingService;
+
+    /**
+     * Crea un trabajo de revisión de límites, que se ejecuta en segundo plano.
+     * @param request Filtro de tarjetas y regla para el nuevo límite
+     * @return Mono de RepricingJobDto con el trabajo pendiente
+     */
+    @PostMapping
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<RepricingJobDto> create(@Valid @RequestBody RepricingJobRequestDto request) {
+        log.info("POST /credit-cards/repricing-jobs");
+        return repricingService.create(request);
+    }
+
+    /**
+     * Obtiene los trabajos de revisión de límites más recientes.
+     * @param limit Número máximo de trabajos, hasta 100
+     * @return Flux de RepricingJobDto del más reciente al más antiguo
+     */
+    @GetMapping
+    public Flux<RepricingJobDto> getRecent(@RequestParam(defaultValue = "20") int limit) {
+        log.info("GET /credit-cards/repricing-jobs limit: {}", limit);
+        return repricingService.findRecent(limit);
+    }
+
+    /**
+     * Obtiene un trabajo de revisión de límites con su progreso.
+     * @param id ID del trabajo
+     * @return Mono de RepricingJobDto
+     */
+    @GetMapping("/{id}")
+    public Mono<RepricingJobDto> getById(@PathVariable String id) {
+        log.info("GET /credit-cards/repricing-jobs/{}", id);
+        return repricingService.findById(id);
+    }
+
+    /**
+     * Cancela un trabajo pendiente o en curso; los límites ya cambiados se mantienen.
+     * @param id ID del trabajo
+     * @return Mono de RepricingJobDto con el estado final
+     */
+    @PostMapping("/{id}:cancel")
+    public Mono<RepricingJobDto> cancel(@PathVariable String id) {
+        log.info("POST /credit-cards/repricing-jobs/{}:cancel", id);
+        return repricingService.cancel(id);
+    }
+}
@@ -0,0 +1,20 @@
+package com.nttdata.bankapp.mscreditcardservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO para una línea de un lote de consumos o pagos.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceBatchLineDto {
+    private String creditCardId;
+    private BigDecimal amount;
+}
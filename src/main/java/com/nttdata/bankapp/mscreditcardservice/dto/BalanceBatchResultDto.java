@@ -0,0 +1,23 @@
+package com.nttdata.bankapp.mscreditcardservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO con el resultado de una línea de un lote de consumos o pagos.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceBatchResultDto {
+    private String creditCardId;
+    private BigDecimal amount;
+    private boolean approved;
+    private BigDecimal availableBalance;
+    private String reason;
+}
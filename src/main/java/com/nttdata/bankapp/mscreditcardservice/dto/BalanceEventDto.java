@@ -0,0 +1,25 @@
+package com.nttdata.bankapp.mscreditcardservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * DTO con un cambio de saldo o de límite de una tarjeta de crédito.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceEventDto {
+    private String resumeToken; // Permite retomar la suscripción después de este evento
+    private String creditCardId;
+    private String customerId;
+    private BigDecimal creditLimit;
+    private BigDecimal availableBalance;
+    private Instant timestamp;
+}
@@ -0,0 +1,18 @@
+package com.nttdata.bankapp.mscreditcardservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO con los conflictos de concurrencia registrados para una tarjeta de crédito.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardContentionDto {
+    private String creditCardId;
+    private long conflicts;
+}
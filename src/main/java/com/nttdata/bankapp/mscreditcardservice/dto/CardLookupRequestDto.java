@@ -0,0 +1,20 @@
+package com.nttdata.bankapp.mscreditcardservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO para la consulta masiva de tarjetas, por IDs o por números de tarjeta.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardLookupRequestDto {
+    private List<String> ids;
+    private List<String> cardNumbers;
+}
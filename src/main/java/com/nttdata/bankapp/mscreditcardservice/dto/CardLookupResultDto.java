@@ -0,0 +1,19 @@
+package com.nttdata.bankapp.mscreditcardservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO con el resultado de un elemento de la consulta masiva de tarjetas.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardLookupResultDto {
+    private String key; // ID o número de tarjeta consultado
+    private boolean found;
+    private CreditCardDto creditCard; // Sin CVV, null si no se encontró
+}
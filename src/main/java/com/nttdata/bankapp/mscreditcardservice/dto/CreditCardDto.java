@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Digits;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
@@ -30,6 +31,7 @@ public class CreditCardDto {
 
     @NotNull(message = "Credit limit is required")
     @DecimalMin(value = "0.01", message = "Credit limit must be greater than 0")
+    @Digits(integer = 15, fraction = 2, message = "Credit limit must have at most 15 integer digits and 2 decimal places")
     private BigDecimal creditLimit;
 
     private BigDecimal availableBalance;
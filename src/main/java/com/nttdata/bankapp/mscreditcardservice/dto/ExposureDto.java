@@ -0,0 +1,25 @@
+package com.nttdata.bankapp.mscreditcardservice.dto;
+
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO para la exposición crediticia agregada de un cliente o de un tipo de cliente.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExposureDto {
+    private String customerId; // Vacío en los totales por tipo de cliente
+    private CustomerType customerType;
+    private long cardCount;
+    private BigDecimal totalCreditLimit;
+    private BigDecimal totalAvailableBalance;
+    private BigDecimal totalUsedBalance;
+}
@@ -0,0 +1,25 @@
+package com.nttdata.bankapp.mscreditcardservice.dto;
+
+import com.nttdata.bankapp.mscreditcardservice.model.MovementType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * DTO para los movimientos del libro mayor de una tarjeta de crédito.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MovementDto {
+    private String id;
+    private String creditCardId;
+    private MovementType type;
+    private BigDecimal amount;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,25 @@
+package com.nttdata.bankapp.mscreditcardservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO con las estadísticas de la cartera de tarjetas de crédito.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PortfolioStatisticsDto {
+    private List<ExposureDto> customerTypes;
+    private Map<String, Long> utilizationPercentBuckets;
+    private int nearLimitPercent;
+    private long cardsNearLimit;
+    private LocalDateTime rebuiltAt;
+}
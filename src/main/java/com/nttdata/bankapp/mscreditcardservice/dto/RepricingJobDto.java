@@ -0,0 +1,41 @@
+package com.nttdata.bankapp.mscreditcardservice.dto;
+
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import com.nttdata.bankapp.mscreditcardservice.model.RepricingJob;
+import com.nttdata.bankapp.mscreditcardservice.model.RepricingRule;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * DTO con la definición y el progreso de un trabajo de revisión de límites.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RepricingJobDto {
+    private String id;
+    private CustomerType customerType;
+    private Integer customerIdCount; // Número de clientes del filtro
+    private Integer minUtilizationPercent;
+    private Integer maxUtilizationPercent;
+    private RepricingRule rule;
+    private BigDecimal value;
+    private RepricingJob.Status status;
+    private String lastCardId;
+    private long processed;
+    private long updated;
+    private long skipped;
+    private long conflicts;
+    private double cardsPerSecond;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime completedAt;
+}
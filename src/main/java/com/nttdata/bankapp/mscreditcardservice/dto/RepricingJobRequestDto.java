@@ -0,0 +1,44 @@
+package com.nttdata.bankapp.mscreditcardservice.dto;
+
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import com.nttdata.bankapp.mscreditcardservice.model.RepricingRule;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * DTO para crear un trabajo de revisión de límites.
+ * Los criterios de filtro son opcionales y se combinan entre sí; sin filtro se revisa toda la cartera.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RepricingJobRequestDto {
+    private CustomerType customerType;
+
+    @Size(max = 10000, message = "At most 10000 customer IDs are allowed")
+    private List<String> customerIds;
+
+    @Min(value = 0, message = "Minimum utilization must be between 0 and 100")
+    @Max(value = 100, message = "Minimum utilization must be between 0 and 100")
+    private Integer minUtilizationPercent;
+
+    @Min(value = 0, message = "Maximum utilization must be between 0 and 100")
+    @Max(value = 100, message = "Maximum utilization must be between 0 and 100")
+    private Integer maxUtilizationPercent;
+
+    @NotNull(message = "Rule is required")
+    private RepricingRule rule;
+
+    @NotNull(message = "Value is required")
+    private BigDecimal value; // Porcentaje para PERCENTAGE, importe para CAP y FLOOR
+}
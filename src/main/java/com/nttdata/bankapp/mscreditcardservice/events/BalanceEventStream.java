@@ -0,0 +1,175 @@
+package com.nttdata.bankapp.mscreditcardservice.events;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceEventDto;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * Publica los cambios de saldo y de límite de las tarjetas a partir del change stream de su colección.
+ * Los suscriptores sin token comparten un único change stream por instancia y se filtran en memoria;
+ * los que indican un token abren el suyo, filtrado en MongoDB, y reciben primero los cambios que se perdieron.
+ * Cada suscriptor del stream compartido tiene su propio buffer para que uno lento no frene a los demás;
+ * si lo desborda se le desconecta con un error y puede reconectar con el token del último evento recibido.
+ * Requiere que MongoDB se ejecute como replica set.
+ */
+@Component
+@Slf4j
+public class BalanceEventStream {
+
+    private static final String ID = "_id";
+    private static final String CUSTOMER_ID = "customerId";
+    private static final String CREDIT_LIMIT = "creditLimit";
+    private static final String AVAILABLE_BALANCE = "availableBalance";
+    private static final Pattern RESUME_TOKEN = Pattern.compile("[0-9A-Fa-f]{2,}");
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final String collectionName;
+    private final AtomicReference<String> lastResumeToken = new AtomicReference<>();
+    private final Flux<BalanceEventDto> shared;
+    private final int subscriberBuffer;
+
+    public BalanceEventStream(ReactiveMongoTemplate mongoTemplate,
+                              @Value("${app.events.reconnect-max-backoff:30s}") Duration reconnectMaxBackoff,
+                              @Value("${app.events.subscriber-buffer:1024}") int subscriberBuffer) {
+        this.mongoTemplate = mongoTemplate;
+        this.subscriberBuffer = subscriberBuffer;
+        this.collectionName = mongoTemplate.getCollectionName(CreditCard.class);
+        // Al reconectar se retoma desde el último evento recibido para no perder cambios
+        this.shared = Flux.defer(() -> changes(lastResumeToken.get(), null, null))
+                .doOnNext(event -> lastResumeToken.set(event.getResumeToken()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(reconnectMaxBackoff)
+                        .doBeforeRetry(signal -> log.warn("Balance change stream failed, reconnecting: {}",
+                                signal.failure().getMessage())))
+                .publish()
+                .refCount(1, Duration.ofSeconds(5));
+    }
+
+    /**
+     * Obtiene los cambios de saldo y de límite, opcionalmente de una tarjeta o de un cliente.
+     * @param creditCardId ID de la tarjeta de crédito, null para todas
+     * @param customerId ID del cliente, null para todos
+     * @param resumeToken Token del último evento recibido, null para recibir solo los cambios a partir de ahora
+     * @return Flux de BalanceEventDto; error si el suscriptor no consume los eventos al ritmo en que llegan
+     */
+    public Flux<BalanceEventDto> events(String creditCardId, String customerId, String resumeToken) {
+        if (resumeToken != null) {
+            if (!RESUME_TOKEN.matcher(resumeToken).matches()) {
+                return Flux.error(new IllegalArgumentException("Invalid resume token: " + resumeToken));
+            }
+            return changes(resumeToken, creditCardId, customerId);
+        }
+        return shared
+                .onBackpressureBuffer(subscriberBuffer,
+                        dropped -> log.warn("Balance event subscriber overflowed its buffer of {} events, disconnecting",
+                                subscriberBuffer),
+                        BufferOverflowStrategy.ERROR)
+                .filter(event -> (creditCardId == null || creditCardId.equals(event.getCreditCardId()))
+                && (customerId == null || customerId.equals(event.getCustomerId())));
+    }
+
+    private Flux<BalanceEventDto> changes(String resumeToken, String creditCardId, String customerId) {
+        ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                .filter(pipeline(creditCardId, customerId));
+        if (resumeToken != null) {
+            options.resumeAfter(new BsonDocument("_data", new BsonString(resumeToken)));
+        }
+
+        return mongoTemplate.changeStream(collectionName, options.build(), Document.class)
+                .filter(event -> event.getRaw() != null && event.getRaw().getFullDocument() != null)
+                .map(this::toEvent);
+    }
+
+    /**
+     * Altas, reemplazos y actualizaciones que cambian el saldo o el límite, con solo los campos del evento.
+     */
+    private static Document[] pipeline(String creditCardId, String customerId) {
+        List<Document> conditions = new ArrayList<>();
+        conditions.add(new Document("$or", Arrays.asList(
+                new Document("operationType", new Document("$in", Arrays.asList("insert", "replace"))),
+                new Document("updateDescription.updatedFields." + AVAILABLE_BALANCE, new Document("$exists", true)),
+                new Document("updateDescription.updatedFields." + CREDIT_LIMIT, new Document("$exists", true)))));
+        if (creditCardId != null) {
+            conditions.add(new Document("documentKey." + ID,
+                    ObjectId.isValid(creditCardId) ? new ObjectId(creditCardId) : creditCardId));
+        }
+        if (customerId != null) {
+            conditions.add(new Document("fullDocument." + CUSTOMER_ID, customerId));
+        }
+
+        Document projection = new Document("operationType", 1)
+                .append("clusterTime", 1)
+                .append("documentKey", 1)
+                .append("fullDocument." + ID, 1)
+                .append("fullDocument." + CUSTOMER_ID, 1)
+                .append("fullDocument." + CREDIT_LIMIT, 1)
+                .append("fullDocument." + AVAILABLE_BALANCE, 1);
+
+        return new Document[]{
+                new Document("$match", new Document("$and", conditions)),
+                new Document("$project", projection)
+        };
+    }
+
+    private BalanceEventDto toEvent(ChangeStreamEvent<Document> event) {
+        ChangeStreamDocument<Document> raw = event.getRaw();
+        Document creditCard = raw.getFullDocument();
+        return BalanceEventDto.builder()
+                .resumeToken(resumeToken(event.getResumeToken()))
+                .creditCardId(creditCard.get(ID).toString())
+                .customerId(creditCard.getString(CUSTOMER_ID))
+                .creditLimit(toAmount(creditCard.get(CREDIT_LIMIT)))
+                .availableBalance(toAmount(creditCard.get(AVAILABLE_BALANCE)))
+                .timestamp(raw.getClusterTime() != null
+                        ? Instant.ofEpochSecond(raw.getClusterTime().getTime())
+                        : Instant.now())
+                .build();
+    }
+
+    /**
+     * Convierte el importe almacenado, en céntimos o en un formato anterior, con los conversores de MongoDB.
+     */
+    private BigDecimal toAmount(Object storedAmount) {
+        if (storedAmount == null) {
+            return null;
+        }
+        Money money = mongoTemplate.getConverter().getConversionService().convert(storedAmount, Money.class);
+        return money != null ? money.toBigDecimal() : null;
+    }
+
+    /**
+     * El token se expone como el valor de su campo _data.
+     */
+    private static String resumeToken(BsonValue resumeToken) {
+        if (resumeToken != null && resumeToken.isDocument() && resumeToken.asDocument().isString("_data")) {
+            return resumeToken.asDocument().getString("_data").getValue();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,10 @@
+package com.nttdata.bankapp.mscreditcardservice.exception;
+
+/**
+ * Excepción personalizada para cuando el motor de autorización de esta instancia ha perdido su reserva.
+ */
+public class AuthorizationEngineUnavailableException extends RuntimeException {
+    public AuthorizationEngineUnavailableException(String message) {
+        super(message);
+    }
+}
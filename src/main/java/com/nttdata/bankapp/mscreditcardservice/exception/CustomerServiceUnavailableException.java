@@ -0,0 +1,10 @@
+package com.nttdata.bankapp.mscreditcardservice.exception;
+
+/**
+ * Excepción personalizada para cuando el microservicio de clientes no responde.
+ */
+public class CustomerServiceUnavailableException extends RuntimeException {
+    public CustomerServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,10 @@
+package com.nttdata.bankapp.mscreditcardservice.exception;
+
+/**
+ * Excepción personalizada para claves de idempotencia en uso o reutilizadas con otra petición.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package com.nttdata.bankapp.mscreditcardservice.exception;
+
+/**
+ * Excepción personalizada para cuando una tarjeta acumula demasiados movimientos sin copiar al libro mayor.
+ */
+public class PendingMovementsBacklogException extends RuntimeException {
+    public PendingMovementsBacklogException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package com.nttdata.bankapp.mscreditcardservice.exception;
+
+/**
+ * Excepción personalizada para trabajo de revisión de límites no encontrado.
+ */
+public class RepricingJobNotFoundException extends RuntimeException {
+    public RepricingJobNotFoundException(String message) {
+        super(message);
+    }
+}
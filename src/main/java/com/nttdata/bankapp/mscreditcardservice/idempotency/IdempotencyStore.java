@@ -0,0 +1,232 @@
+package com.nttdata.bankapp.mscreditcardservice.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardDto;
+import com.nttdata.bankapp.mscreditcardservice.exception.IdempotencyConflictException;
+import com.nttdata.bankapp.mscreditcardservice.model.IdempotencyRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Ejecuta una sola vez las operaciones recibidas con una misma clave de idempotencia.
+ * La clave se reserva insertando su registro en Mongo, de modo que solo una instancia ejecuta la operación;
+ * las respuestas terminadas se guardan además en una caché local para responder a los reintentos sin consultar Mongo.
+ * La reserva caduca pasado app.idempotency.lease, así que una clave cuya instancia cayó a mitad de la operación
+ * no queda bloqueada hasta que expire el registro. Quien toma una reserva caducada comprueba antes si la operación
+ * llegó a aplicarse, ya que la instancia pudo caer después de escribir el movimiento y antes de guardar la respuesta.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int COMPLETE_ATTEMPTS = 3;
+    private static final String STATUS = "status";
+    private static final String LOCK_TOKEN = "lockToken";
+    private static final String LOCKED_UNTIL = "lockedUntil";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final Cache<String, IdempotencyRecord> completed;
+    private final Duration ttl;
+    private final Duration lease;
+    private final Counter executed;
+    private final Counter replayed;
+    private final Counter conflicts;
+
+    public IdempotencyStore(ReactiveMongoTemplate mongoTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${app.idempotency.lease:30s}") Duration lease,
+                            @Value("${app.idempotency.cache-max-size:10000}") long cacheMaxSize,
+                            @Value("${app.idempotency.cache-ttl:10m}") Duration cacheTtl) {
+        this.mongoTemplate = mongoTemplate;
+        this.ttl = ttl;
+        this.lease = lease;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl.compareTo(ttl) < 0 ? cacheTtl : ttl)
+                .build();
+        this.executed = outcomeCounter(meterRegistry, "executed");
+        this.replayed = outcomeCounter(meterRegistry, "replayed");
+        this.conflicts = outcomeCounter(meterRegistry, "conflict");
+    }
+
+    /**
+     * Ejecuta la operación si la clave no se ha usado antes o su reserva caducó, o devuelve la respuesta guardada si ya terminó.
+     * Si la operación falla la clave se libera para que el cliente pueda reintentar.
+     * La operación no se cancela si el cliente se desconecta: termina y guarda o libera la clave igualmente.
+     * @param key Valor de la cabecera Idempotency-Key
+     * @param fingerprint Identifica la petición, debe coincidir en los reintentos
+     * @param operation Operación a ejecutar
+     * @param applied Respuesta si la operación ya se aplicó con esta clave, vacío si no; se usa al tomar una reserva caducada
+     * @return Mono con la respuesta original
+     */
+    public Mono<CreditCardDto> execute(String key, String fingerprint, Supplier<Mono<CreditCardDto>> operation,
+                                       Supplier<Mono<CreditCardDto>> applied) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return Mono.error(new IllegalArgumentException("Idempotency-Key must have between 1 and "
+                    + MAX_KEY_LENGTH + " characters"));
+        }
+
+        IdempotencyRecord cached = completed.getIfPresent(key);
+        if (cached != null) {
+            return replay(cached, fingerprint);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyRecord record = IdempotencyRecord.builder()
+                .id(key)
+                .fingerprint(fingerprint)
+                .status(IdempotencyRecord.Status.IN_PROGRESS)
+                .lockToken(UUID.randomUUID().toString())
+                .lockedUntil(now.plus(lease))
+                .expiresAt(now.plus(ttl))
+                .build();
+
+        return mongoTemplate.insert(record)
+                .map(inserted -> Optional.of(operation))
+                .onErrorResume(DuplicateKeyException.class, e -> takeOver(record)
+                        .map(takenOver -> takenOver ? Optional.of(resuming(record, operation, applied)) : Optional.empty()))
+                .flatMap(acquired -> acquired.isPresent()
+                        ? executeOnce(record, acquired.get())
+                        : findExisting(key, fingerprint));
+    }
+
+    /**
+     * Toma la reserva de una petición igual cuya instancia no la completó ni la liberó antes de caducar.
+     * Los registros anteriores a la reserva con caducidad no tienen lockedUntil y también se pueden tomar.
+     */
+    private Mono<Boolean> takeOver(IdempotencyRecord record) {
+        return mongoTemplate.updateFirst(query(where("id").is(record.getId())
+                                .and(STATUS).is(IdempotencyRecord.Status.IN_PROGRESS)
+                                .and("fingerprint").is(record.getFingerprint())
+                                .and(LOCKED_UNTIL).not().gte(LocalDateTime.now())),
+                        new Update().set(LOCK_TOKEN, record.getLockToken()).set(LOCKED_UNTIL, record.getLockedUntil()),
+                        IdempotencyRecord.class)
+                .map(result -> result.getModifiedCount() > 0)
+                .doOnNext(takenOver -> {
+                    if (takenOver) {
+                        log.warn("Taking over expired reservation of idempotency key {}", record.getId());
+                    }
+                });
+    }
+
+    /**
+     * Tras tomar una reserva caducada solo se ejecuta la operación si su movimiento no llegó a escribirse.
+     */
+    private static Supplier<Mono<CreditCardDto>> resuming(IdempotencyRecord record, Supplier<Mono<CreditCardDto>> operation,
+                                                          Supplier<Mono<CreditCardDto>> applied) {
+        return () -> applied.get()
+                .doOnNext(response -> log.warn("Idempotency key {} was already applied, completing it without re-running",
+                        record.getId()))
+                .switchIfEmpty(Mono.defer(operation));
+    }
+
+    private Mono<CreditCardDto> executeOnce(IdempotencyRecord record, Supplier<Mono<CreditCardDto>> operation) {
+        Mono<CreditCardDto> execution = Mono.defer(operation)
+                .flatMap(response -> complete(record, response).thenReturn(response))
+                .switchIfEmpty(Mono.defer(() -> release(record).then(Mono.empty())))
+                .onErrorResume(e -> release(record).then(Mono.error(e)))
+                .doOnNext(response -> executed.increment());
+        // copy() evita que la desconexión del cliente cancele la operación y deje la clave reservada sin respuesta
+        return Mono.defer(() -> Mono.fromFuture(execution.toFuture().copy()))
+                .doOnCancel(() -> log.info("Client cancelled request with idempotency key {}, completing it in background",
+                        record.getId()));
+    }
+
+    private Mono<Void> complete(IdempotencyRecord record, CreditCardDto response) {
+        CreditCardDto stored = withoutCvv(response);
+        record.setStatus(IdempotencyRecord.Status.COMPLETED);
+        record.setResponse(stored);
+        // Esta instancia responde a los reintentos aunque no se pueda guardar la respuesta en Mongo
+        completed.put(record.getId(), record);
+        return mongoTemplate.updateFirst(query(where("id").is(record.getId()).and(LOCK_TOKEN).is(record.getLockToken())),
+                        new Update().set(STATUS, IdempotencyRecord.Status.COMPLETED).set("response", stored)
+                                .unset(LOCK_TOKEN).unset(LOCKED_UNTIL),
+                        IdempotencyRecord.class)
+                .retryWhen(Retry.backoff(COMPLETE_ATTEMPTS - 1, Duration.ofMillis(100)))
+                .onErrorResume(e -> {
+                    // La operación ya se aplicó: en otras instancias la clave responde 409 hasta que caduque su reserva
+                    log.error("Error storing response for idempotency key {}: {}", record.getId(), e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Void> release(IdempotencyRecord record) {
+        return mongoTemplate.remove(query(where("id").is(record.getId())
+                        .and(STATUS).is(IdempotencyRecord.Status.IN_PROGRESS)
+                        .and(LOCK_TOKEN).is(record.getLockToken())), IdempotencyRecord.class)
+                .onErrorResume(e -> {
+                    log.error("Error releasing idempotency key {}: {}", record.getId(), e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<CreditCardDto> findExisting(String key, String fingerprint) {
+        return mongoTemplate.findById(key, IdempotencyRecord.class)
+                .switchIfEmpty(Mono.defer(() -> conflict("Request with this Idempotency-Key was just released, retry it")))
+                .flatMap(existing -> {
+                    if (existing.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                        completed.put(key, existing);
+                        return replay(existing, fingerprint);
+                    }
+                    if (!existing.getFingerprint().equals(fingerprint)) {
+                        return conflict("Idempotency-Key was already used for a different request");
+                    }
+                    return conflict("Request with this Idempotency-Key is still being processed");
+                });
+    }
+
+    private Mono<CreditCardDto> replay(IdempotencyRecord record, String fingerprint) {
+        if (!record.getFingerprint().equals(fingerprint)) {
+            return conflict("Idempotency-Key was already used for a different request");
+        }
+        log.info("Replaying response for idempotency key {}", record.getId());
+        replayed.increment();
+        return Mono.just(withoutCvv(record.getResponse()));
+    }
+
+    private <T> Mono<T> conflict(String message) {
+        conflicts.increment();
+        return Mono.error(new IdempotencyConflictException(message));
+    }
+
+    private static CreditCardDto withoutCvv(CreditCardDto dto) {
+        return CreditCardDto.builder()
+                .id(dto.getId())
+                .cardNumber(dto.getCardNumber())
+                .customerId(dto.getCustomerId())
+                .customerType(dto.getCustomerType())
+                .creditLimit(dto.getCreditLimit())
+                .availableBalance(dto.getAvailableBalance())
+                .expirationDate(dto.getExpirationDate())
+                .build();
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("idempotency.requests")
+                .tag("outcome", outcome)
+                .description("Peticiones recibidas con cabecera Idempotency-Key")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,233 @@
+package com.nttdata.bankapp.mscreditcardservice.issuance;
+
+import com.nttdata.bankapp.mscreditcardservice.model.CardNumberSequence;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Emite números de tarjeta válidos según Luhn dentro de un rango de BIN, y sus CVV.
+ * Cada instancia reserva en MongoDB bloques de posiciones de la secuencia del BIN y los consume en memoria,
+ * de modo que dos instancias nunca generan el mismo número y solo se consulta la base de datos al cambiar de bloque.
+ * Los CVV se generan con un SecureRandom no bloqueante inicializado al arrancar.
+ */
+@Component
+@Slf4j
+public class CardNumberIssuer {
+
+    private static final int PAN_LENGTH = 16;
+    private static final String NEXT = "next";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final SecureRandom secureRandom;
+    private final long firstBin;
+    private final long lastBin;
+    private final int blockSize;
+    private final AtomicReference<Mono<Block>> currentBlock = new AtomicReference<>();
+    private volatile long currentBin;
+
+    public CardNumberIssuer(ReactiveMongoTemplate mongoTemplate,
+                            @Value("${app.issuance.bin-range:512300-512399}") String binRange,
+                            @Value("${app.issuance.block-size:1000}") int blockSize) {
+        this.mongoTemplate = mongoTemplate;
+        String[] bins = binRange.split("-");
+        this.firstBin = Long.parseLong(bins[0].trim());
+        this.lastBin = Long.parseLong(bins[bins.length - 1].trim());
+        if (bins[0].trim().length() != 6 || firstBin > lastBin) {
+            throw new IllegalArgumentException("Invalid BIN range: " + binRange);
+        }
+        this.currentBin = firstBin;
+        this.blockSize = blockSize;
+        // El generador por defecto no se bloquea esperando entropía; se fuerza su inicialización aquí y no en el event loop
+        this.secureRandom = new SecureRandom();
+        this.secureRandom.nextBytes(new byte[16]);
+    }
+
+    /**
+     * Obtiene el siguiente número de tarjeta, con formato XXXX-XXXX-XXXX-XXXX.
+     * @return Mono con el número de tarjeta; error si el rango de BIN está agotado
+     */
+    public Mono<String> nextCardNumber() {
+        return Mono.defer(() -> {
+            Mono<Block> reservation = currentReservation();
+            return reservation
+                    .onErrorResume(e -> {
+                        // La reserva fallida no se conserva: la siguiente petición lo vuelve a intentar
+                        currentBlock.compareAndSet(reservation, null);
+                        return Mono.error(e);
+                    })
+                    .flatMap(block -> {
+                        long position = block.next();
+                        if (position < 0) {
+                            currentBlock.compareAndSet(reservation, null);
+                            return nextCardNumber();
+                        }
+                        return Mono.just(cardNumber(block.bin, block.accountNumber(position)));
+                    });
+        });
+    }
+
+    /**
+     * Genera un CVV de tres dígitos.
+     * @return String con el CVV
+     */
+    public String generateCvv() {
+        int cvv = secureRandom.nextInt(1000);
+        char[] digits = {(char) ('0' + cvv / 100), (char) ('0' + cvv / 10 % 10), (char) ('0' + cvv % 10)};
+        return new String(digits);
+    }
+
+    /**
+     * Compone el número de tarjeta a partir del BIN y el número de cuenta, añadiendo el dígito de control de Luhn.
+     * @param bin BIN de seis dígitos
+     * @param accountNumber Número de cuenta, menor que 10^9
+     * @return String con el número de tarjeta, con formato XXXX-XXXX-XXXX-XXXX
+     */
+    public static String cardNumber(String bin, long accountNumber) {
+        char[] digits = new char[PAN_LENGTH];
+        bin.getChars(0, bin.length(), digits, 0);
+        long remaining = accountNumber;
+        for (int i = PAN_LENGTH - 2; i >= bin.length(); i--) {
+            digits[i] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        digits[PAN_LENGTH - 1] = (char) ('0' + luhnCheckDigit(digits));
+
+        char[] formatted = new char[PAN_LENGTH + 3];
+        for (int i = 0, j = 0; i < PAN_LENGTH; i++) {
+            if (i > 0 && i % 4 == 0) {
+                formatted[j++] = '-';
+            }
+            formatted[j++] = digits[i];
+        }
+        return new String(formatted);
+    }
+
+    /**
+     * Calcula el dígito de control de Luhn de los quince primeros dígitos.
+     */
+    private static int luhnCheckDigit(char[] digits) {
+        int sum = 0;
+        // Desde el dígito anterior al de control, se duplican los dígitos en posiciones alternas
+        for (int i = PAN_LENGTH - 2, position = 0; i >= 0; i--, position++) {
+            int digit = digits[i] - '0';
+            if (position % 2 == 0) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Devuelve la reserva del bloque en uso; las peticiones concurrentes sin bloque comparten una sola reserva.
+     */
+    private Mono<Block> currentReservation() {
+        Mono<Block> reservation = currentBlock.get();
+        while (reservation == null) {
+            Mono<Block> created = Mono.defer(() -> reserveBlock(currentBin)).cache();
+            reservation = currentBlock.compareAndSet(null, created) ? created : currentBlock.get();
+        }
+        return reservation;
+    }
+
+    private Mono<Block> reserveBlock(long bin) {
+        if (bin > lastBin) {
+            return Mono.error(new IllegalStateException("Card number range exhausted for BINs "
+                    + firstBin + "-" + lastBin));
+        }
+        String binId = Long.toString(bin);
+        long accounts = accountsPerBin(binId);
+        // Permutación del BIN, fijada solo cuando se crea su secuencia
+        Update update = new Update()
+                .inc(NEXT, blockSize)
+                .setOnInsert("multiplier", randomCoprime(accounts))
+                .setOnInsert("offset", Math.floorMod(secureRandom.nextLong(), accounts));
+
+        return mongoTemplate.findAndModify(query(where("id").is(binId)), update,
+                        FindAndModifyOptions.options().upsert(true).returnNew(true), CardNumberSequence.class)
+                // Dos instancias que crean a la vez la secuencia: la que pierde repite sobre el documento ya creado
+                .retryWhen(Retry.max(1).filter(DuplicateKeyException.class::isInstance))
+                .flatMap(sequence -> {
+                    long start = sequence.getNext() - blockSize;
+                    if (start >= accounts) {
+                        currentBin = bin + 1;
+                        return reserveBlock(bin + 1);
+                    }
+                    log.info("Reserved card number block {}-{} of BIN {}", start, Math.min(sequence.getNext(), accounts) - 1, binId);
+                    return Mono.just(new Block(binId, start, Math.min(sequence.getNext(), accounts),
+                            sequence.getMultiplier(), sequence.getOffset(), accounts));
+                });
+    }
+
+    private long randomCoprime(long accounts) {
+        BigInteger modulus = BigInteger.valueOf(accounts);
+        long candidate;
+        do {
+            candidate = 1 + Math.floorMod(secureRandom.nextLong(), accounts - 1);
+        } while (!BigInteger.valueOf(candidate).gcd(modulus).equals(BigInteger.ONE));
+        return candidate;
+    }
+
+    private static long accountsPerBin(String bin) {
+        long accounts = 1;
+        for (int i = bin.length(); i < PAN_LENGTH - 1; i++) {
+            accounts *= 10;
+        }
+        return accounts;
+    }
+
+    /**
+     * Bloque de posiciones reservado por esta instancia.
+     */
+    private static final class Block {
+        private final String bin;
+        private final long end;
+        private final long multiplier;
+        private final long offset;
+        private final long accounts;
+        private final AtomicLong nextPosition;
+
+        private Block(String bin, long start, long end, long multiplier, long offset, long accounts) {
+            this.bin = bin;
+            this.end = end;
+            this.multiplier = multiplier;
+            this.offset = offset;
+            this.accounts = accounts;
+            this.nextPosition = new AtomicLong(start);
+        }
+
+        private long next() {
+            long position = nextPosition.getAndIncrement();
+            return position < end ? position : -1;
+        }
+
+        /**
+         * Convierte la posición en número de cuenta: como multiplier es coprimo con accounts, es una biyección.
+         */
+        private long accountNumber(long position) {
+            return BigInteger.valueOf(position)
+                    .multiply(BigInteger.valueOf(multiplier))
+                    .add(BigInteger.valueOf(offset))
+                    .mod(BigInteger.valueOf(accounts))
+                    .longValueExact();
+        }
+    }
+}
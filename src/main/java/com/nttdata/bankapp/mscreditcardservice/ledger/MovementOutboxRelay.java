@@ -0,0 +1,87 @@
+package com.nttdata.bankapp.mscreditcardservice.ledger;
+
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.Movement;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import com.nttdata.bankapp.mscreditcardservice.repository.MovementRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Copia al libro mayor los movimientos pendientes registrados en las tarjetas.
+ * Los movimientos se guardan con su propio ID antes de quitarlos de la tarjeta, por lo que
+ * repetir una copia interrumpida no los duplica. Puede ejecutarse en varias instancias a la vez.
+ */
+@Component
+@Slf4j
+public class MovementOutboxRelay {
+
+    private final CreditCardRepository creditCardRepository;
+    private final MovementRepository movementRepository;
+    private final Duration interval;
+    private final int batchSize;
+
+    private Disposable relayTask;
+
+    public MovementOutboxRelay(CreditCardRepository creditCardRepository,
+                               MovementRepository movementRepository,
+                               @Value("${app.ledger.relay-interval:200ms}") Duration interval,
+                               @Value("${app.ledger.relay-batch-size:200}") int batchSize) {
+        this.creditCardRepository = creditCardRepository;
+        this.movementRepository = movementRepository;
+        this.interval = interval;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        relayTask = Flux.interval(interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> relayPending()
+                        .onErrorResume(e -> {
+                            log.error("Error relaying pending movements: {}", e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        relayTask.dispose();
+    }
+
+    /**
+     * Copia los movimientos pendientes de un bloque de tarjetas.
+     * @return Mono con el número de movimientos copiados
+     */
+    public Mono<Long> relayPending() {
+        return creditCardRepository.findWithPendingMovements(batchSize)
+                .flatMap(this::relay, 16)
+                .reduce(0L, Long::sum)
+                .doOnNext(count -> {
+                    if (count > 0) {
+                        log.debug("Relayed {} movements to the ledger", count);
+                    }
+                });
+    }
+
+    private Mono<Long> relay(CreditCard creditCard) {
+        List<Movement> movements = creditCard.getPendingMovements();
+        List<String> movementIds = movements.stream()
+                .map(Movement::getId)
+                .collect(Collectors.toList());
+        return movementRepository.saveAll(movements)
+                .then(creditCardRepository.removePendingMovements(creditCard.getId(), movementIds))
+                .thenReturn((long) movements.size());
+    }
+}
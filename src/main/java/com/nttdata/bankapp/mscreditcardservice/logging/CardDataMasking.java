@@ -0,0 +1,52 @@
+package com.nttdata.bankapp.mscreditcardservice.logging;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Enmascara números de tarjeta y CVV en textos destinados a los logs.
+ * De los números de tarjeta solo se conservan los cuatro últimos dígitos.
+ */
+public final class CardDataMasking {
+
+    private static final Pattern CARD_NUMBER = Pattern.compile("\\b\\d{4}([- ]?)\\d{4}\\1\\d{4}\\1(\\d{4})\\b");
+    private static final Pattern CVV = Pattern.compile("(?i)(cvv\"?\\s*[=:]\\s*\"?)\\d{3,4}");
+
+    private CardDataMasking() {
+    }
+
+    /**
+     * Enmascara los datos de tarjeta de un texto.
+     * @param text Texto a enmascarar
+     * @return El mismo texto si no contiene datos de tarjeta, o una copia enmascarada
+     */
+    public static String mask(String text) {
+        if (text == null || !mayContainCardData(text)) {
+            return text;
+        }
+        String masked = CARD_NUMBER.matcher(text).replaceAll("****$1****$1****$1$2");
+        Matcher cvv = CVV.matcher(masked);
+        return cvv.find() ? cvv.replaceAll("$1***") : masked;
+    }
+
+    /**
+     * Descarta sin expresiones regulares los textos sin cuatro dígitos seguidos ni la palabra cvv.
+     */
+    private static boolean mayContainCardData(String text) {
+        int digits = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits == 4) {
+                    return true;
+                }
+            } else {
+                digits = 0;
+                if ((c == 'c' || c == 'C') && text.regionMatches(true, i, "cvv", 0, 3)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
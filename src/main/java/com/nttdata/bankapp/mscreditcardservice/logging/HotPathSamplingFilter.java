@@ -0,0 +1,43 @@
+package com.nttdata.bankapp.mscreditcardservice.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deja pasar uno de cada {@code rate} logs con el marcador HOT_PATH, contando por separado cada mensaje.
+ * Como cada endpoint tiene su propio formato de mensaje, el muestreo es por endpoint.
+ * Se evalúa antes de formatear el mensaje, por lo que los logs descartados no reservan memoria.
+ */
+public class HotPathSamplingFilter extends TurboFilter {
+
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private String markerName = LogMarkers.HOT_PATH.getName();
+    private long rate = 100;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (marker == null || format == null || level.isGreaterOrEqual(Level.WARN) || !marker.contains(markerName)) {
+            return FilterReply.NEUTRAL;
+        }
+        AtomicLong counter = counters.get(format);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(format, key -> new AtomicLong());
+        }
+        return counter.getAndIncrement() % rate == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setMarker(String markerName) {
+        this.markerName = markerName;
+    }
+
+    public void setRate(long rate) {
+        this.rate = Math.max(rate, 1);
+    }
+}
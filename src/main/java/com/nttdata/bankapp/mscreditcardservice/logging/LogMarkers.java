@@ -0,0 +1,18 @@
+package com.nttdata.bankapp.mscreditcardservice.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+/**
+ * Marcadores de log usados por la configuración de logback.
+ */
+public final class LogMarkers {
+
+    /**
+     * Logs de las peticiones más frecuentes, muestreados por HotPathSamplingFilter.
+     */
+    public static final Marker HOT_PATH = MarkerFactory.getMarker("HOT_PATH");
+
+    private LogMarkers() {
+    }
+}
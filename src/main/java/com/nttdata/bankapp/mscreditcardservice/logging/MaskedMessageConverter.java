@@ -0,0 +1,15 @@
+package com.nttdata.bankapp.mscreditcardservice.logging;
+
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Conversor de logback para {@code %maskedMsg}: el mensaje formateado con los datos de tarjeta enmascarados.
+ */
+public class MaskedMessageConverter extends ClassicConverter {
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        return CardDataMasking.mask(event.getFormattedMessage());
+    }
+}
@@ -0,0 +1,17 @@
+package com.nttdata.bankapp.mscreditcardservice.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import net.logstash.logback.stacktrace.ShortenedThrowableConverter;
+
+/**
+ * Conversor de excepciones para logback que enmascara los datos de tarjeta de la traza.
+ * Los mensajes de las excepciones y sus causas no pasan por %maskedMsg, así que se enmascaran aquí.
+ * Se usa como %maskedEx en los patrones y como throwableConverter del proveedor stackTrace en JSON.
+ */
+public class MaskedThrowableConverter extends ShortenedThrowableConverter {
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        return CardDataMasking.mask(super.convert(event));
+    }
+}
@@ -0,0 +1,41 @@
+package com.nttdata.bankapp.mscreditcardservice.metrics;
+
+/**
+ * Motivos por los que se rechaza un consumo o un pago, con el mensaje devuelto al cliente.
+ * El nombre del motivo se usa como etiqueta de las métricas.
+ */
+public enum DeclineReason {
+    INSUFFICIENT_AVAILABLE_BALANCE("Consumption amount exceeds available balance"),
+    PAYMENT_EXCEEDS_USED_BALANCE("Payment amount exceeds used balance"),
+    CARD_NOT_FOUND("Credit card not found"),
+    INVALID_REQUEST("Invalid credit card id or amount"),
+    CONCURRENT_MODIFICATION("Credit card was modified concurrently"),
+    PENDING_MOVEMENTS_BACKLOG("Credit card has too many movements pending to be recorded"),
+    OTHER("Declined");
+
+    private final String message;
+
+    DeclineReason(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Obtiene el motivo a partir del mensaje de rechazo.
+     * @param message Mensaje de rechazo, puede incluir detalles tras el texto del motivo
+     * @return DeclineReason correspondiente, OTHER si no coincide con ninguno
+     */
+    public static DeclineReason fromMessage(String message) {
+        if (message != null) {
+            for (DeclineReason reason : values()) {
+                if (message.startsWith(reason.message)) {
+                    return reason;
+                }
+            }
+        }
+        return OTHER;
+    }
+}
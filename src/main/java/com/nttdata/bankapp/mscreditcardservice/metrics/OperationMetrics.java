@@ -0,0 +1,128 @@
+package com.nttdata.bankapp.mscreditcardservice.metrics;
+
+import com.nttdata.bankapp.mscreditcardservice.exception.AuthorizationEngineUnavailableException;
+import com.nttdata.bankapp.mscreditcardservice.exception.CreditCardNotFoundException;
+import com.nttdata.bankapp.mscreditcardservice.exception.CustomerNotFoundException;
+import com.nttdata.bankapp.mscreditcardservice.exception.CustomerServiceUnavailableException;
+import com.nttdata.bankapp.mscreditcardservice.exception.PendingMovementsBacklogException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.function.Function;
+
+/**
+ * Métricas de las operaciones del servicio de tarjetas.
+ * Cada operación se mide con el timer creditcard.operation, etiquetado con la operación y su resultado,
+ * y los rechazos de consumos y pagos se cuentan por motivo en creditcard.declines.
+ * Los buckets SLO de los timers se configuran con management.metrics.distribution.slo.
+ */
+@Component
+public class OperationMetrics {
+
+    private static final String OPERATION_TIMER = "creditcard.operation";
+    private static final String DECLINES_COUNTER = "creditcard.declines";
+
+    private final MeterRegistry meterRegistry;
+
+    public OperationMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Mide la duración de una operación desde la suscripción hasta su terminación o cancelación.
+     * @param operation Nombre de la operación
+     * @return Transformación para usar con Mono.transform
+     */
+    public <T> Function<Mono<T>, Mono<T>> timed(String operation) {
+        return mono -> Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String[] outcome = {"success"};
+            return mono
+                    .doOnError(e -> outcome[0] = outcome(e))
+                    .doFinally(signal -> stop(sample, operation, signal == SignalType.CANCEL ? "cancelled" : outcome[0]));
+        });
+    }
+
+    /**
+     * Mide la duración de una operación que emite varios elementos.
+     * @param operation Nombre de la operación
+     * @return Transformación para usar con Flux.transform
+     */
+    public <T> Function<Flux<T>, Flux<T>> timedMany(String operation) {
+        return flux -> Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String[] outcome = {"success"};
+            return flux
+                    .doOnError(e -> outcome[0] = outcome(e))
+                    .doFinally(signal -> stop(sample, operation, signal == SignalType.CANCEL ? "cancelled" : outcome[0]));
+        });
+    }
+
+    /**
+     * Mide un consumo o un pago y cuenta su rechazo por motivo si falla por saldo, por tarjeta inexistente o por movimientos pendientes acumulados.
+     * @param operation Nombre de la operación
+     * @return Transformación para usar con Mono.transform
+     */
+    public <T> Function<Mono<T>, Mono<T>> authorization(String operation) {
+        Function<Mono<T>, Mono<T>> timed = timed(operation);
+        return mono -> mono
+                .doOnError(IllegalArgumentException.class, e -> declined(operation, e.getMessage()))
+                .doOnError(CreditCardNotFoundException.class, e -> declined(operation, DeclineReason.CARD_NOT_FOUND))
+                .doOnError(PendingMovementsBacklogException.class, e -> declined(operation, DeclineReason.PENDING_MOVEMENTS_BACKLOG))
+                .transform(timed);
+    }
+
+    /**
+     * Cuenta un rechazo a partir de su mensaje.
+     * @param operation Nombre de la operación
+     * @param message Mensaje de rechazo
+     */
+    public void declined(String operation, String message) {
+        declined(operation, DeclineReason.fromMessage(message));
+    }
+
+    /**
+     * Cuenta un rechazo.
+     * @param operation Nombre de la operación
+     * @param reason Motivo del rechazo
+     */
+    public void declined(String operation, DeclineReason reason) {
+        Counter.builder(DECLINES_COUNTER)
+                .tag("operation", operation)
+                .tag("reason", reason.name().toLowerCase())
+                .description("Consumos y pagos rechazados por motivo")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void stop(Timer.Sample sample, String operation, String outcome) {
+        sample.stop(Timer.builder(OPERATION_TIMER)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .description("Duración de las operaciones del servicio de tarjetas")
+                .register(meterRegistry));
+    }
+
+    private static String outcome(Throwable error) {
+        if (error instanceof IllegalArgumentException) {
+            return "rejected";
+        }
+        if (error instanceof CreditCardNotFoundException || error instanceof CustomerNotFoundException) {
+            return "not_found";
+        }
+        if (error instanceof OptimisticLockingFailureException) {
+            return "conflict";
+        }
+        if (error instanceof CustomerServiceUnavailableException || error instanceof PendingMovementsBacklogException
+                || error instanceof AuthorizationEngineUnavailableException) {
+            return "unavailable";
+        }
+        return "error";
+    }
+}
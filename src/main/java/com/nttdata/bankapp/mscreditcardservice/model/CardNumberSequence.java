@@ -0,0 +1,27 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Secuencia de emisión de números de tarjeta de un BIN.
+ * Cada instancia reserva bloques consecutivos de la secuencia; la posición en la secuencia se convierte
+ * en número de cuenta con una permutación fija del BIN, por lo que los números no se repiten ni son consecutivos.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "cardNumberSequences")
+public class CardNumberSequence {
+    @Id
+    private String id; // BIN
+
+    private long next; // Primera posición aún no reservada
+    private long multiplier; // Coprimo con el número de cuentas del BIN
+    private long offset;
+}
@@ -5,21 +5,30 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Modelo que representa una tarjeta de crédito.
+ * El campo version permite detectar escrituras concurrentes al actualizar la tarjeta completa.
  */
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 @Document(collection = "creditCards")
+@CompoundIndexes({
+        @CompoundIndex(name = "customerId_customerType", def = "{'customerId': 1, 'customerType': 1}"),
+        @CompoundIndex(name = "customerId_id", def = "{'customerId': 1, '_id': 1}"),
+        @CompoundIndex(name = "pendingMovements_timestamp", def = "{'pendingMovements.timestamp': 1}", sparse = true)
+})
 public class CreditCard {
     @Id
     private String id;
@@ -28,10 +37,14 @@ public class CreditCard {
     private String cardNumber;
     private String customerId;
     private CustomerType customerType; // PERSONAL, BUSINESS
-    private BigDecimal creditLimit;
-    private BigDecimal availableBalance;
+    private Money creditLimit;
+    private Money availableBalance;
     private LocalDate expirationDate;
     private String cvv;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private List<Movement> pendingMovements; // Movimientos aún no copiados al libro mayor
+
+    @Version
+    private Long version; // Se incrementa en cada escritura, también en las atómicas y masivas
 }
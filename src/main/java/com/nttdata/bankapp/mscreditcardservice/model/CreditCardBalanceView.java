@@ -0,0 +1,14 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+import lombok.Value;
+
+/**
+ * Proyección de una tarjeta con solo los campos necesarios para consultar su saldo.
+ */
+@Value
+public class CreditCardBalanceView {
+    String id;
+    String cardNumber;
+    Money creditLimit;
+    Money availableBalance;
+}
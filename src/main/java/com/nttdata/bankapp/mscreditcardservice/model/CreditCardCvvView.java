@@ -0,0 +1,12 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+import lombok.Value;
+
+/**
+ * Proyección de una tarjeta con solo su CVV, que no se guarda en la caché de tarjetas.
+ */
+@Value
+public class CreditCardCvvView {
+    String id;
+    String cvv;
+}
@@ -0,0 +1,19 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * Proyección de una tarjeta para los listados: sin CVV, fechas de auditoría ni movimientos pendientes.
+ */
+@Value
+public class CreditCardSummaryView {
+    String id;
+    String cardNumber;
+    String customerId;
+    CustomerType customerType;
+    Money creditLimit;
+    Money availableBalance;
+    LocalDate expirationDate;
+}
@@ -0,0 +1,27 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reserva del motor de autorización por una instancia.
+ * El motor mantiene los saldos en memoria, así que solo puede ejecutarse en una instancia a la vez.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "engineLeases")
+public class EngineLease {
+    @Id
+    private String id;
+
+    private String owner; // ID de la instancia que ejecuta el motor
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,17 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+import lombok.Value;
+
+/**
+ * Resultado de agregar el crédito de un grupo de tarjetas (por cliente o por tipo de cliente).
+ * Los importes se suman en MongoDB sobre los céntimos guardados.
+ */
+@Value
+public class ExposureView {
+    String id; // Clave del grupo: ID de cliente o tipo de cliente
+    CustomerType customerType;
+    long cardCount;
+    Money creditLimit;
+    Money availableBalance;
+    Money usedBalance;
+}
@@ -0,0 +1,45 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardDto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Registro de una petición recibida con cabecera Idempotency-Key.
+ * Se inserta antes de ejecutar la operación y guarda su respuesta al terminar.
+ * Mientras está en curso, la instancia que lo insertó lo reserva hasta lockedUntil; pasado ese momento
+ * otra petición con la misma clave puede tomarlo. Mongo lo elimina al llegar a expiresAt.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "idempotencyKeys")
+public class IdempotencyRecord {
+    @Id
+    private String id; // Valor de la cabecera Idempotency-Key
+
+    private String fingerprint; // Operación, tarjeta y monto de la petición original
+    private Status status;
+    private CreditCardDto response; // Sin CVV
+    private String lockToken; // Identifica la ejecución que tiene la reserva
+    private LocalDateTime lockedUntil;
+
+    @Indexed(name = "expiresAt_ttl", expireAfterSeconds = 0)
+    private LocalDateTime expiresAt;
+
+    /**
+     * Estado de la petición original.
+     */
+    public enum Status {
+        IN_PROGRESS,
+        COMPLETED
+    }
+}
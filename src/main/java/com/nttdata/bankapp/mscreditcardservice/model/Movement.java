@@ -0,0 +1,69 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Movimiento del libro mayor de una tarjeta de crédito. Los movimientos no se modifican una vez escritos.
+ * Se crean dentro de la misma actualización atómica que cambia el saldo, como pendientes en la propia
+ * tarjeta, y después se copian a su colección.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "movements")
+@CompoundIndex(name = "creditCardId_timestamp_id", def = "{'creditCardId': 1, 'timestamp': -1, '_id': -1}")
+public class Movement {
+    @Id
+    private String id;
+
+    private String creditCardId;
+    private MovementType type;
+    private Money amount; // Positivo salvo en reducciones de límite
+    private LocalDateTime timestamp;
+    @Indexed(sparse = true)
+    private String idempotencyKey; // Clave de la petición que lo creó, si la tenía
+
+    /**
+     * Crea un movimiento con ID y fecha asignados por la aplicación, de forma que
+     * copiarlo varias veces a la colección sea idempotente.
+     * @param creditCardId ID de la tarjeta de crédito
+     * @param type Tipo de movimiento
+     * @param amount Monto del movimiento
+     * @return Movement
+     */
+    public static Movement of(String creditCardId, MovementType type, Money amount) {
+        return of(creditCardId, type, amount, null);
+    }
+
+    /**
+     * Crea un movimiento asociado a la clave de idempotencia de la petición que lo originó,
+     * para poder comprobar si la petición llegó a aplicarse.
+     * @param creditCardId ID de la tarjeta de crédito
+     * @param type Tipo de movimiento
+     * @param amount Monto del movimiento
+     * @param idempotencyKey Clave de idempotencia, null si la petición no la tenía
+     * @return Movement
+     */
+    public static Movement of(String creditCardId, MovementType type, Money amount, String idempotencyKey) {
+        return new Movement(new ObjectId().toHexString(), creditCardId, type, amount, LocalDateTime.now(), idempotencyKey);
+    }
+
+    /**
+     * Efecto del movimiento sobre el saldo disponible.
+     * @return Cambio en céntimos
+     */
+    public long balanceDelta() {
+        return type == MovementType.CONSUMPTION ? -amount.getMinorUnits() : amount.getMinorUnits();
+    }
+}
@@ -0,0 +1,8 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+/**
+ * Enum que define los tipos de movimiento sobre el saldo de una tarjeta.
+ */
+public enum MovementType {
+    CONSUMPTION, PAYMENT, CREDIT_LIMIT_CHANGE
+}
@@ -0,0 +1,69 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Trabajo de revisión de límites sobre las tarjetas que cumplen un filtro.
+ * Las tarjetas se recorren en orden de ID y lastCardId marca hasta dónde se han aplicado todas,
+ * por lo que un trabajo interrumpido continúa desde ahí. La instancia que lo ejecuta lo reserva
+ * hasta leaseExpiresAt y renueva la reserva en cada checkpoint.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "repricingJobs")
+@CompoundIndex(name = "status_createdAt", def = "{'status': 1, 'createdAt': 1}")
+public class RepricingJob {
+    @Id
+    private String id;
+
+    // Filtro: los criterios indicados se combinan entre sí
+    private CustomerType customerType;
+    private List<String> customerIds;
+    private Integer minUtilizationPercent;
+    private Integer maxUtilizationPercent;
+
+    private RepricingRule rule;
+    private BigDecimal value; // Porcentaje o importe según la regla
+
+    private Status status;
+    private String owner; // Instancia que ejecuta el trabajo
+    private LocalDateTime leaseExpiresAt;
+    private String lastCardId;
+    private long processed;
+    private long updated;
+    private long skipped;
+    private long conflicts;
+    private long elapsedMillis; // Tiempo de ejecución acumulado, sin contar las pausas entre reanudaciones
+    private int attempts;
+    private String error;
+
+    @Indexed
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime completedAt;
+
+    /**
+     * Estado del trabajo.
+     */
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        CANCELLED,
+        FAILED
+    }
+}
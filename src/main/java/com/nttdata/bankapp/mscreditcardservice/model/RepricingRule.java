@@ -0,0 +1,75 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Regla para recalcular el límite de crédito en un trabajo de revisión de límites.
+ */
+public enum RepricingRule {
+
+    /**
+     * Ajusta el límite en un porcentaje, positivo o negativo, redondeado al céntimo.
+     */
+    PERCENTAGE {
+        @Override
+        public Money apply(Money creditLimit, BigDecimal value) {
+            BigDecimal factor = BigDecimal.ONE.add(value.movePointLeft(2));
+            Money newLimit = Money.of(creditLimit.toBigDecimal().multiply(factor).setScale(Money.SCALE, RoundingMode.HALF_UP));
+            return MIN_LIMIT.isGreaterThan(newLimit) ? MIN_LIMIT : newLimit;
+        }
+
+        @Override
+        public void validate(BigDecimal value) {
+            if (value.compareTo(MIN_PERCENTAGE) <= 0 || value.compareTo(MAX_PERCENTAGE) > 0) {
+                throw new IllegalArgumentException("Percentage must be greater than -100 and at most 1000");
+            }
+        }
+    },
+
+    /**
+     * Reduce al valor indicado los límites que lo superan.
+     */
+    CAP {
+        @Override
+        public Money apply(Money creditLimit, BigDecimal value) {
+            Money cap = Money.of(value);
+            return creditLimit.isGreaterThan(cap) ? cap : creditLimit;
+        }
+    },
+
+    /**
+     * Eleva al valor indicado los límites que no lo alcanzan.
+     */
+    FLOOR {
+        @Override
+        public Money apply(Money creditLimit, BigDecimal value) {
+            Money floor = Money.of(value);
+            return floor.isGreaterThan(creditLimit) ? floor : creditLimit;
+        }
+    };
+
+    private static final Money MIN_LIMIT = Money.ofMinorUnits(1L);
+    private static final BigDecimal MIN_PERCENTAGE = BigDecimal.valueOf(-100);
+    private static final BigDecimal MAX_PERCENTAGE = BigDecimal.valueOf(1000);
+
+    /**
+     * Calcula el nuevo límite de crédito.
+     * @param creditLimit Límite de crédito actual
+     * @param value Porcentaje o importe de la regla
+     * @return Nuevo límite de crédito, al menos 0.01
+     */
+    public abstract Money apply(Money creditLimit, BigDecimal value);
+
+    /**
+     * Comprueba el valor de la regla antes de crear el trabajo.
+     * @param value Porcentaje o importe de la regla
+     * @throws IllegalArgumentException si el valor no es válido para la regla
+     */
+    public void validate(BigDecimal value) {
+        if (value.signum() <= 0) {
+            throw new IllegalArgumentException("Limit must be greater than 0");
+        }
+        Money.of(value);
+    }
+}
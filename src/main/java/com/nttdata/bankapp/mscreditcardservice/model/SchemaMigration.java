@@ -0,0 +1,26 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Marca de una migración de datos ya aplicada, para no repetirla en cada arranque.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "schemaMigrations")
+public class SchemaMigration {
+    @Id
+    private String id; // Nombre y versión de la migración
+
+    private long migrated; // Documentos modificados
+    private LocalDateTime appliedAt;
+}
@@ -0,0 +1,34 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Movimientos autorizados por el motor que no pudieron escribirse en la tarjeta ni sin comprobar sus límites,
+ * porque la tarjeta ya no existe. Quedan apartados para conciliarlos a mano en lugar de reintentarse indefinidamente.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "unappliedBalanceChanges")
+public class UnappliedBalanceChange {
+    @Id
+    private String id;
+
+    @Indexed
+    private String creditCardId;
+    private List<Movement> movements;
+    private int attempts;
+
+    @Indexed
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,156 @@
+package com.nttdata.bankapp.mscreditcardservice.ratelimit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limita las peticiones en curso que llegan a MongoDB y ajusta el límite a la latencia observada.
+ * Cada intervalo se calcula la latencia media de los comandos del driver a partir del timer
+ * mongodb.driver.commands, contando solo los comandos find, findAndModify y update de las peticiones;
+ * los getMore del change stream, que esperan a que haya cambios, y las agregaciones no cuentan.
+ * Si la latencia supera el objetivo el límite se reduce en proporción y, si no, crece poco a poco hasta el máximo. Sin métricas de MongoDB el límite se queda en el máximo.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private static final String MONGO_COMMANDS_METRIC = "mongodb.driver.commands";
+    private static final String COMMAND_TAG = "command";
+    private static final Set<String> REQUEST_COMMANDS = Set.of("find", "findAndModify", "update");
+    private static final double MIN_DECREASE_FACTOR = 0.5;
+    private static final double MAX_DECREASE_FACTOR = 0.9;
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final double targetLatencyNanos;
+    private final int minLimit;
+    private final int maxLimit;
+    private final Duration sampleInterval;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile int limit;
+    private volatile double observedLatencyNanos;
+    private long lastCount;
+    private double lastTotalNanos;
+    private Disposable samplingTask;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${app.rate-limit.shedding.enabled:true}") boolean enabled,
+                                      @Value("${app.rate-limit.shedding.target-latency:50ms}") Duration targetLatency,
+                                      @Value("${app.rate-limit.shedding.min-limit:16}") int minLimit,
+                                      @Value("${app.rate-limit.shedding.max-limit:512}") int maxLimit,
+                                      @Value("${app.rate-limit.shedding.sample-interval:1s}") Duration sampleInterval) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.targetLatencyNanos = targetLatency.toNanos();
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.sampleInterval = sampleInterval;
+        this.limit = maxLimit;
+
+        Gauge.builder("ratelimit.concurrency.limit", this, limiter -> limiter.limit)
+                .description("Límite adaptativo de peticiones en curso")
+                .register(meterRegistry);
+        Gauge.builder("ratelimit.concurrency.in.flight", inFlight, AtomicInteger::get)
+                .description("Peticiones en curso sujetas al límite adaptativo")
+                .register(meterRegistry);
+        Gauge.builder("ratelimit.mongo.latency", this, limiter -> limiter.observedLatencyNanos)
+                .description("Latencia media de los comandos find, findAndModify y update de MongoDB en el último intervalo")
+                .baseUnit("nanoseconds")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        samplingTask = Flux.interval(sampleInterval)
+                .onBackpressureDrop()
+                .subscribe(tick -> adjust());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (samplingTask != null) {
+            samplingTask.dispose();
+        }
+    }
+
+    /**
+     * Reserva un hueco para una petición.
+     * @return true si la petición puede continuar; en ese caso debe llamarse a release al terminar
+     */
+    public boolean tryAcquire() {
+        if (!enabled) {
+            return true;
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Libera el hueco de una petición terminada.
+     */
+    public void release() {
+        if (enabled) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Recalcula el límite con la latencia de MongoDB desde la muestra anterior.
+     */
+    synchronized void adjust() {
+        long count = 0;
+        double totalNanos = 0;
+        for (Timer timer : meterRegistry.find(MONGO_COMMANDS_METRIC).tag(COMMAND_TAG, REQUEST_COMMANDS::contains).timers()) {
+            count += timer.count();
+            totalNanos += timer.totalTime(TimeUnit.NANOSECONDS);
+        }
+        long commands = count - lastCount;
+        double elapsedNanos = totalNanos - lastTotalNanos;
+        lastCount = count;
+        lastTotalNanos = totalNanos;
+        if (commands <= 0 || elapsedNanos < 0) {
+            return;
+        }
+
+        observedLatencyNanos = elapsedNanos / commands;
+        int current = limit;
+        int next;
+        if (observedLatencyNanos > targetLatencyNanos) {
+            double factor = Math.max(MIN_DECREASE_FACTOR, Math.min(MAX_DECREASE_FACTOR, targetLatencyNanos / observedLatencyNanos));
+            next = Math.max(minLimit, (int) (current * factor));
+        } else {
+            next = Math.min(maxLimit, current + (int) Math.ceil(Math.sqrt(current)));
+        }
+        if (next != current) {
+            limit = next;
+            if (next < current) {
+                log.warn("Mongo latency {} ms above target, concurrency limit lowered from {} to {}",
+                        String.format("%.1f", observedLatencyNanos / 1_000_000), current, next);
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.nttdata.bankapp.mscreditcardservice.ratelimit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nttdata.bankapp.mscreditcardservice.exception.ErrorResponse;
+import com.nttdata.bankapp.mscreditcardservice.ratelimit.TokenBucketRateLimiter.Limit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Control de admisión de las peticiones a las tarjetas de crédito.
+ * Cada cliente tiene un cubo de tokens por ruta; sin tokens se responde 429 con Retry-After.
+ * Después, las peticiones que llegan a MongoDB pasan por el límite adaptativo de concurrencia y,
+ * si está lleno, se descartan con 503 en lugar de encolarse.
+ * El cliente se identifica solo por la cabecera X-Customer-Id que añade el gateway, y la cabecera solo se
+ * acepta de las direcciones configuradas como gateway; las peticiones sin un cliente de confianza no pasan
+ * por los cubos, porque la dirección del llamante sería la del gateway y la cabecera se podría falsificar.
+ * Los cubos están desactivados por defecto hasta configurar las direcciones del gateway; el límite de
+ * concurrencia se activa por separado.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@Slf4j
+public class RateLimitFilter implements WebFilter {
+
+    static final String CUSTOMER_ID_HEADER = "X-Customer-Id";
+    private static final String REQUESTS_METRIC = "ratelimit.requests";
+    private static final long SHED_RETRY_AFTER_SECONDS = 1;
+    private static final Pattern IP_ADDRESS = Pattern.compile("[0-9A-Fa-f.:]+");
+
+    private final TokenBucketRateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Set<InetAddress> trustedProxies;
+    private final Map<RouteClass, Limit> limits = new EnumMap<>(RouteClass.class);
+    private final List<Route> routes;
+
+    public RateLimitFilter(TokenBucketRateLimiter rateLimiter,
+                           AdaptiveConcurrencyLimiter concurrencyLimiter,
+                           ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.rate-limit.enabled:false}") boolean enabled,
+                           @Value("${app.rate-limit.trusted-proxies:}") String trustedProxies,
+                           @Value("${app.rate-limit.read.capacity:100}") long readCapacity,
+                           @Value("${app.rate-limit.read.refill-per-second:50}") double readRefill,
+                           @Value("${app.rate-limit.write.capacity:20}") long writeCapacity,
+                           @Value("${app.rate-limit.write.refill-per-second:10}") double writeRefill,
+                           @Value("${app.rate-limit.bulk.capacity:5}") long bulkCapacity,
+                           @Value("${app.rate-limit.bulk.refill-per-second:1}") double bulkRefill) {
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.trustedProxies = parseAddresses(trustedProxies);
+        if (enabled && this.trustedProxies.isEmpty()) {
+            log.warn("Rate limiting is enabled without trusted proxies: only load shedding will apply");
+        }
+        limits.put(RouteClass.READ, Limit.of(readCapacity, readRefill));
+        limits.put(RouteClass.WRITE, Limit.of(writeCapacity, writeRefill));
+        limits.put(RouteClass.BULK, Limit.of(bulkCapacity, bulkRefill));
+
+        // Las rutas literales van antes que las que tienen variables en la misma posición
+        PathPatternParser parser = new PathPatternParser();
+        this.routes = Arrays.asList(
+                new Route(parser, meterRegistry, HttpMethod.GET, "/credit-cards", RouteClass.BULK, true),
+                new Route(parser, meterRegistry, HttpMethod.POST, "/credit-cards", RouteClass.WRITE, true),
+                new Route(parser, meterRegistry, HttpMethod.POST, "/credit-cards:lookup", RouteClass.BULK, true),
+                new Route(parser, meterRegistry, HttpMethod.POST, "/credit-cards/consumptions:batch", RouteClass.BULK, true),
+                new Route(parser, meterRegistry, HttpMethod.POST, "/credit-cards/payments:batch", RouteClass.BULK, true),
+                new Route(parser, meterRegistry, HttpMethod.GET, "/credit-cards/exposure", RouteClass.BULK, true),
+                new Route(parser, meterRegistry, HttpMethod.GET, "/credit-cards/exposure/customer-types", RouteClass.READ, true),
+                new Route(parser, meterRegistry, HttpMethod.GET, "/credit-cards/repricing-jobs", RouteClass.READ, true),
+                new Route(parser, meterRegistry, HttpMethod.POST, "/credit-cards/repricing-jobs", RouteClass.BULK, true),
+                new Route(parser, meterRegistry, HttpMethod.GET, "/credit-cards/repricing-jobs/{jobId}", RouteClass.READ, true),
+                new Route(parser, meterRegistry, HttpMethod.POST, "/credit-cards/repricing-jobs/{jobId}:cancel", RouteClass.WRITE, true),
+                // Las suscripciones quedan abiertas: cuentan para el cubo pero no ocupan hueco de concurrencia
+                new Route(parser, meterRegistry, HttpMethod.GET, "/credit-cards/balance-events", RouteClass.READ, false),
+                new Route(parser, meterRegistry, HttpMethod.GET, "/credit-cards/customer/{customerId}", RouteClass.READ, true),
+                new Route(parser, meterRegistry, HttpMethod.GET, "/credit-cards/customer/{customerId}/exposure", RouteClass.READ, true),
+                new Route(parser, meterRegistry, HttpMethod.GET, "/credit-cards/number/{cardNumber}", RouteClass.READ, true),
+                new Route(parser, meterRegistry, HttpMethod.GET, "/credit-cards/{id}", RouteClass.READ, true),
+                new Route(parser, meterRegistry, HttpMethod.PUT, "/credit-cards/{id}", RouteClass.WRITE, true),
+                new Route(parser, meterRegistry, HttpMethod.DELETE, "/credit-cards/{id}", RouteClass.WRITE, true),
+                new Route(parser, meterRegistry, HttpMethod.GET, "/credit-cards/{id}/balance", RouteClass.READ, true),
+                new Route(parser, meterRegistry, HttpMethod.GET, "/credit-cards/{id}/movements", RouteClass.READ, true),
+                new Route(parser, meterRegistry, HttpMethod.PUT, "/credit-cards/{id}/consumption", RouteClass.WRITE, true),
+                new Route(parser, meterRegistry, HttpMethod.PUT, "/credit-cards/{id}/payment", RouteClass.WRITE, true));
+
+        Gauge.builder("ratelimit.buckets", rateLimiter, TokenBucketRateLimiter::trackedKeys)
+                .description("Cubos de tokens en uso por cliente y ruta")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        PathContainer path = exchange.getRequest().getPath().pathWithinApplication();
+        HttpMethod method = exchange.getRequest().getMethod();
+        Route route = null;
+        for (Route candidate : routes) {
+            if (candidate.method == method && candidate.pattern.matches(path)) {
+                route = candidate;
+                break;
+            }
+        }
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+
+        // Sin un cliente de confianza solo se aplica el límite de concurrencia
+        String customer = enabled ? customerOf(exchange) : null;
+        long waitNanos = customer != null
+                ? rateLimiter.tryAcquire(route.name + '|' + customer, limits.get(route.routeClass))
+                : 0;
+        if (waitNanos > 0) {
+            route.throttled.increment();
+            log.debug("Rate limit exceeded for {} on {}", customer, route.name);
+            long retryAfterSeconds = Math.max(1, (long) Math.ceil(waitNanos / (double) TimeUnit.SECONDS.toNanos(1)));
+            return reject(exchange, HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds,
+                    "Rate limit exceeded for " + route.name);
+        }
+
+        if (!route.shed) {
+            route.allowed.increment();
+            return chain.filter(exchange);
+        }
+        if (!concurrencyLimiter.tryAcquire()) {
+            route.shedded.increment();
+            return reject(exchange, HttpStatus.SERVICE_UNAVAILABLE, SHED_RETRY_AFTER_SECONDS,
+                    "Service overloaded, retry later");
+        }
+        route.allowed.increment();
+        return chain.filter(exchange)
+                .doFinally(signal -> concurrencyLimiter.release());
+    }
+
+    /**
+     * Cliente indicado por el gateway, o null si la petición no llega de un gateway de confianza o no lo indica.
+     */
+    private String customerOf(ServerWebExchange exchange) {
+        InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+        if (remoteAddress == null || !trustedProxies.contains(remoteAddress.getAddress())) {
+            return null;
+        }
+        String customerId = exchange.getRequest().getHeaders().getFirst(CUSTOMER_ID_HEADER);
+        return customerId != null && !customerId.isBlank() ? customerId : null;
+    }
+
+    /**
+     * Direcciones IP literales separadas por comas; no se resuelven nombres.
+     */
+    private static Set<InetAddress> parseAddresses(String addresses) {
+        Set<InetAddress> parsed = new HashSet<>();
+        for (String address : addresses.split(",")) {
+            String trimmed = address.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!IP_ADDRESS.matcher(trimmed).matches()) {
+                throw new IllegalArgumentException("Trusted proxy must be an IP address: " + trimmed);
+            }
+            try {
+                parsed.add(InetAddress.getByName(trimmed));
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("Invalid trusted proxy address: " + trimmed, e);
+            }
+        }
+        return parsed;
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, HttpStatus status, long retryAfterSeconds, String message) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+        ErrorResponse error = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(status.value())
+                .error(status.getReasonPhrase())
+                .message(message)
+                .build();
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(error);
+        } catch (JsonProcessingException e) {
+            body = message.getBytes(StandardCharsets.UTF_8);
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
+    /**
+     * Tipo de ruta, con su propio límite por cliente.
+     */
+    private enum RouteClass {
+        READ, WRITE, BULK
+    }
+
+    /**
+     * Ruta del controlador con sus contadores por resultado.
+     */
+    private static final class Route {
+
+        private final HttpMethod method;
+        private final PathPattern pattern;
+        private final String name;
+        private final RouteClass routeClass;
+        private final boolean shed;
+        private final Counter allowed;
+        private final Counter throttled;
+        private final Counter shedded;
+
+        private Route(PathPatternParser parser, MeterRegistry meterRegistry, HttpMethod method, String pattern,
+                      RouteClass routeClass, boolean shed) {
+            this.method = method;
+            this.pattern = parser.parse(pattern);
+            this.name = method.name() + " " + pattern;
+            this.routeClass = routeClass;
+            this.shed = shed;
+            this.allowed = counter(meterRegistry, "allowed");
+            this.throttled = counter(meterRegistry, "throttled");
+            this.shedded = counter(meterRegistry, "shed");
+        }
+
+        private Counter counter(MeterRegistry meterRegistry, String outcome) {
+            return Counter.builder(REQUESTS_METRIC)
+                    .description("Peticiones por ruta según la decisión del control de admisión")
+                    .tag("route", name)
+                    .tag("class", routeClass.name().toLowerCase())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+}
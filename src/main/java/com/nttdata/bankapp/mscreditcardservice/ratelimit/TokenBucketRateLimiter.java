@@ -0,0 +1,99 @@
+package com.nttdata.bankapp.mscreditcardservice.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cubos de tokens por clave sin bloqueos.
+ * Cada cubo es un único AtomicLong con el instante teórico en que vuelve a estar lleno (algoritmo GCRA),
+ * por lo que consumir un token es una comparación y un compareAndSet, sin hilos de recarga.
+ * Los cubos se guardan en una caché acotada y se descartan tras un tiempo sin uso.
+ */
+@Component
+public class TokenBucketRateLimiter {
+
+    private final Cache<String, AtomicLong> buckets;
+
+    public TokenBucketRateLimiter(@Value("${app.rate-limit.max-tracked-keys:100000}") long maxTrackedKeys,
+                                  @Value("${app.rate-limit.idle-expiry:10m}") Duration idleExpiry) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxTrackedKeys)
+                .expireAfterAccess(idleExpiry)
+                .build();
+    }
+
+    /**
+     * Consume un token del cubo de una clave.
+     * @param key Clave del cubo
+     * @param limit Capacidad y ritmo de recarga del cubo
+     * @return 0 si se concede el token, o los nanosegundos que faltan para el siguiente
+     */
+    public long tryAcquire(String key, Limit limit) {
+        AtomicLong bucket = buckets.get(key, k -> new AtomicLong(System.nanoTime()));
+        while (true) {
+            long now = System.nanoTime();
+            long fullAt = bucket.get();
+            long nextFullAt = Math.max(fullAt, now) + limit.emissionIntervalNanos;
+            long wait = nextFullAt - limit.burstNanos - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, nextFullAt)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Número de cubos en uso.
+     * @return Número aproximado de claves con cubo
+     */
+    public long trackedKeys() {
+        return buckets.estimatedSize();
+    }
+
+    /**
+     * Capacidad y ritmo de recarga de un cubo.
+     */
+    public static final class Limit {
+
+        private final long capacity;
+        private final double refillPerSecond;
+        private final long emissionIntervalNanos;
+        private final long burstNanos;
+
+        private Limit(long capacity, double refillPerSecond) {
+            if (capacity <= 0 || refillPerSecond <= 0) {
+                throw new IllegalArgumentException("Rate limit capacity and refill rate must be positive");
+            }
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+            this.emissionIntervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond));
+            this.burstNanos = emissionIntervalNanos * capacity;
+        }
+
+        /**
+         * Crea un límite.
+         * @param capacity Número máximo de peticiones seguidas
+         * @param refillPerSecond Tokens que se recuperan por segundo
+         * @return Limit
+         */
+        public static Limit of(long capacity, double refillPerSecond) {
+            return new Limit(capacity, refillPerSecond);
+        }
+
+        public long getCapacity() {
+            return capacity;
+        }
+
+        public double getRefillPerSecond() {
+            return refillPerSecond;
+        }
+    }
+}
@@ -1,18 +1,41 @@
 package com.nttdata.bankapp.mscreditcardservice.repository;
 
 import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCardBalanceView;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCardCvvView;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCardSummaryView;
 import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+
 /**
  * Repositorio para operaciones CRUD en la colección de tarjetas de crédito.
  */
 @Repository
-public interface CreditCardRepository extends ReactiveMongoRepository<CreditCard, String> {
+public interface CreditCardRepository extends ReactiveMongoRepository<CreditCard, String>, CreditCardRepositoryCustom {
+    // Tarjetas completas salvo los movimientos pendientes, que solo lee el relay del libro mayor
+    @Query(fields = "{ 'pendingMovements': 0 }")
+    Mono<CreditCard> findCardById(String id);
+    @Query(fields = "{ 'pendingMovements': 0 }")
+    Flux<CreditCard> findCardsByIdIn(Collection<String> ids);
+    @Query(fields = "{ 'pendingMovements': 0 }")
     Flux<CreditCard> findByCustomerId(String customerId);
+    @Query(fields = "{ 'pendingMovements': 0 }")
     Mono<CreditCard> findByCardNumber(String cardNumber);
+    @Query(fields = "{ 'pendingMovements': 0 }")
     Flux<CreditCard> findByCustomerIdAndCustomerType(String customerId, CustomerType customerType);
-}
\ No newline at end of file
+
+    // Proyecciones: solo se leen de MongoDB los campos de la vista
+    Mono<CreditCardBalanceView> findBalanceViewById(String id);
+    Mono<CreditCardCvvView> findCvvViewById(String id);
+    Mono<CreditCardCvvView> findCvvViewByCardNumber(String cardNumber);
+    Flux<CreditCardSummaryView> findSummaryViewsBy();
+    Flux<CreditCardSummaryView> findSummaryViewsByCustomerId(String customerId);
+    Flux<CreditCardSummaryView> findSummaryViewsByIdIn(Collection<String> ids);
+    Flux<CreditCardSummaryView> findSummaryViewsByCardNumberIn(Collection<String> cardNumbers);
+}
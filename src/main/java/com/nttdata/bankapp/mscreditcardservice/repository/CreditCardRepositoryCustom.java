@@ -0,0 +1,166 @@
+package com.nttdata.bankapp.mscreditcardservice.repository;
+
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import com.nttdata.bankapp.mscreditcardservice.model.ExposureView;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.model.Movement;
+import com.nttdata.bankapp.mscreditcardservice.model.RepricingJob;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Operaciones atómicas sobre el saldo de las tarjetas de crédito.
+ * Cada cambio de saldo registra sus movimientos como pendientes en la misma actualización.
+ * Una tarjeta con el máximo de movimientos pendientes no admite cambios hasta que el relay los copia al libro mayor:
+ * las operaciones de una tarjeta fallan con PendingMovementsBacklogException y las masivas la devuelven como no actualizada.
+ */
+public interface CreditCardRepositoryCustom {
+
+    /**
+     * Descuenta un monto del saldo disponible solo si este alcanza para cubrirlo.
+     * @param id ID de la tarjeta de crédito
+     * @param amount Monto a descontar
+     * @param idempotencyKey Clave de idempotencia que se guarda en el movimiento, puede ser null
+     * @return Mono con la tarjeta actualizada, vacío si no existe o el saldo no alcanza
+     */
+    Mono<CreditCard> debitAvailableBalance(String id, Money amount, String idempotencyKey);
+
+    /**
+     * Abona un monto al saldo disponible solo si no supera el límite de crédito.
+     * @param id ID de la tarjeta de crédito
+     * @param amount Monto a abonar
+     * @param idempotencyKey Clave de idempotencia que se guarda en el movimiento, puede ser null
+     * @return Mono con la tarjeta actualizada, vacío si no existe o el monto excede la deuda
+     */
+    Mono<CreditCard> creditAvailableBalance(String id, Money amount, String idempotencyKey);
+
+    /**
+     * Comprueba si una tarjeta tiene un movimiento creado por la petición con la clave de idempotencia indicada,
+     * pendiente o ya copiado al libro mayor.
+     * @param id ID de la tarjeta de crédito
+     * @param idempotencyKey Clave de idempotencia de la petición
+     * @return Mono con true si la petición se aplicó
+     */
+    Mono<Boolean> hasMovementWithIdempotencyKey(String id, String idempotencyKey);
+
+    /**
+     * Cambia el límite de crédito ajustando el saldo disponible en la misma diferencia.
+     * @param id ID de la tarjeta de crédito
+     * @param expectedVersion Versión de la tarjeta leída previamente
+     * @param currentLimit Límite de crédito leído previamente
+     * @param newLimit Nuevo límite de crédito
+     * @return Mono con la tarjeta actualizada, vacío si no existe o se modificó entretanto
+     */
+    Mono<CreditCard> changeCreditLimit(String id, Long expectedVersion, Money currentLimit, Money newLimit);
+
+    /**
+     * Aplica movimientos ya autorizados a varias tarjetas en una sola escritura masiva.
+     * Cada tarjeta queda marcada con el ID de su primer movimiento y no se actualiza si ya lo está,
+     * así que reenviar los mismos movimientos tras un error no los aplica dos veces.
+     * Los movimientos solo se aplican si el saldo resultante queda entre cero y el límite de crédito,
+     * salvo en las tarjetas indicadas, cuyos movimientos ya aprobados deben aplicarse igualmente.
+     * @param movements Movimientos por ID de tarjeta
+     * @param withoutLimits IDs de las tarjetas que se actualizan sin comprobar el saldo resultante
+     * @return Mono con los IDs de las tarjetas que no se actualizaron; error si no se conoce el resultado de la escritura
+     */
+    Mono<Set<String>> incrementAvailableBalances(Map<String, List<Movement>> movements, Set<String> withoutLimits);
+
+    /**
+     * Aplica los movimientos de un lote en una sola escritura masiva.
+     * Los movimientos de cada tarjeta se validaron sobre el saldo leído, así que solo se aplican
+     * si la tarjeta no se ha modificado desde entonces.
+     * @param batchId Identificador del lote, usado para reconocer las tarjetas actualizadas
+     * @param movements Movimientos por ID de tarjeta
+     * @param expectedVersions Versión de cada tarjeta leída previamente, null si la tarjeta no tenía versión
+     * @return Mono con los IDs de las tarjetas que no se actualizaron
+     */
+    Mono<Set<String>> applyBatchBalanceChanges(String batchId, Map<String, List<Movement>> movements,
+                                               Map<String, Long> expectedVersions);
+
+    /**
+     * Cambia el límite de varias tarjetas en una sola escritura masiva, ajustando el saldo disponible en la misma diferencia.
+     * Cada tarjeta solo se actualiza si su límite sigue siendo el leído y queda marcada con el trabajo.
+     * @param jobId ID del trabajo de revisión de límites
+     * @param currentLimits Límite de crédito leído previamente por ID de tarjeta
+     * @param newLimits Nuevo límite de crédito por ID de tarjeta
+     * @return Mono con los IDs de las tarjetas que no se actualizaron
+     */
+    Mono<Set<String>> changeCreditLimits(String jobId, Map<String, Money> currentLimits, Map<String, Money> newLimits);
+
+    /**
+     * Recorre en orden de ID las tarjetas de un trabajo de revisión de límites que aún no se han revisado.
+     * @param job Trabajo con el filtro y el último ID aplicado
+     * @return Flux de tarjetas con solo el cliente, el límite y el saldo disponible
+     */
+    Flux<CreditCard> findRepricingCandidates(RepricingJob job);
+
+    /**
+     * Agrega límite, saldo disponible y saldo usado de las tarjetas de un cliente.
+     * @param customerId ID del cliente
+     * @return Mono con la exposición del cliente, vacío si no tiene tarjetas
+     */
+    Mono<ExposureView> aggregateExposureByCustomer(String customerId);
+
+    /**
+     * Agrega la exposición por cliente en orden de ID de cliente a partir de un cursor.
+     * @param customerType Tipo de cliente para filtrar, o null para todos
+     * @param afterCustomerId Último ID de cliente recibido, o null para empezar desde el inicio
+     * @param limit Número máximo de clientes
+     * @return Flux con la exposición de cada cliente
+     */
+    Flux<ExposureView> aggregateExposureByCustomerPage(CustomerType customerType, String afterCustomerId, int limit);
+
+    /**
+     * Agrega la exposición de toda la cartera por tipo de cliente.
+     * @return Flux con la exposición de cada tipo de cliente
+     */
+    Flux<ExposureView> aggregateExposureByCustomerType();
+
+    /**
+     * Obtiene tarjetas con movimientos pendientes de copiar al libro mayor.
+     * @param limit Número máximo de tarjetas
+     * @return Flux de tarjetas con solo su ID y sus movimientos pendientes
+     */
+    Flux<CreditCard> findWithPendingMovements(int limit);
+
+    /**
+     * Quita de una tarjeta los movimientos pendientes ya copiados al libro mayor.
+     * @param id ID de la tarjeta de crédito
+     * @param movementIds IDs de los movimientos copiados
+     * @return Mono<Void>
+     */
+    Mono<Void> removePendingMovements(String id, List<String> movementIds);
+
+    /**
+     * Obtiene cuáles de unas tarjetas tienen el máximo de movimientos pendientes y no admiten más escrituras.
+     * @param ids IDs de las tarjetas de crédito
+     * @return Mono con los IDs de las tarjetas que esperan a que el relay copie sus movimientos
+     */
+    Mono<Set<String>> findWithFullOutbox(Collection<String> ids);
+
+    /**
+     * Convierte a céntimos en int64 los importes que sigan guardados como String o Decimal128.
+     * Las operaciones atómicas no coinciden con esos documentos, que se convierten antes de reintentarlas.
+     * Los importes con más de dos decimales se redondean y las tarjetas con importes que no son números
+     * se dejan sin convertir; ambos casos se registran en el log.
+     * @param ids IDs de las tarjetas, o null para toda la colección
+     * @return Mono con el número de tarjetas convertidas
+     */
+    Mono<Long> convertLegacyAmounts(Collection<String> ids);
+
+    /**
+     * Recorre las tarjetas en orden de ID a partir de un cursor, leyendo de MongoDB por bloques.
+     * Solo se leen los campos de listado; el CVV y las fechas de auditoría no se incluyen.
+     * @param customerId ID del cliente para filtrar, o null para todas las tarjetas
+     * @param afterId Último ID recibido por el cliente, o null para empezar desde el inicio
+     * @param limit Número máximo de tarjetas, al menos 1, o null para no limitar
+     * @return Flux de tarjetas ordenadas por ID; IllegalArgumentException si el límite no es positivo o el cursor no es un ObjectId
+     */
+    Flux<CreditCard> findPageAfter(String customerId, String afterId, Integer limit);
+}
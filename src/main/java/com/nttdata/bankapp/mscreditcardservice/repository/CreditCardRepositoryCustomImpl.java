@@ -0,0 +1,617 @@
+package com.nttdata.bankapp.mscreditcardservice.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.nttdata.bankapp.mscreditcardservice.exception.PendingMovementsBacklogException;
+import com.nttdata.bankapp.mscreditcardservice.metrics.DeclineReason;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import com.nttdata.bankapp.mscreditcardservice.model.ExposureView;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.model.Movement;
+import com.nttdata.bankapp.mscreditcardservice.model.MovementType;
+import com.nttdata.bankapp.mscreditcardservice.model.RepricingJob;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.Fields;
+import org.springframework.data.mongodb.core.aggregation.GroupOperation;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Implementación de las operaciones atómicas de saldo mediante findAndModify.
+ * Cada operación valida y actualiza el saldo en un único viaje a MongoDB, añadiendo el movimiento
+ * a los pendientes de la tarjeta (outbox) para que no pueda perderse ni aplicarse sin registrarse.
+ * Las escrituras no coinciden con una tarjeta que ya tiene el máximo de movimientos pendientes,
+ * y las lecturas de tarjetas completas no los incluyen.
+ */
+@Slf4j
+public class CreditCardRepositoryCustomImpl implements CreditCardRepositoryCustom {
+
+    private static final String AVAILABLE_BALANCE = "availableBalance";
+    private static final String CREDIT_LIMIT = "creditLimit";
+    private static final String UPDATED_AT = "updatedAt";
+    private static final String LAST_BATCH_ID = "lastBatchId";
+    private static final String LAST_FLUSH_ID = "lastFlushId";
+    private static final String LAST_REPRICING_JOB_ID = "lastRepricingJobId";
+    private static final String PENDING_MOVEMENTS = "pendingMovements";
+    private static final String CUSTOMER_ID = "customerId";
+    private static final String CUSTOMER_TYPE = "customerType";
+    private static final String VERSION = "version";
+    private static final int STREAM_BATCH_SIZE = 500;
+    private static final int INT64 = 18;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final String outboxFull; // Posición del último movimiento pendiente admitido
+
+    public CreditCardRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate,
+                                          @Value("${app.ledger.max-pending-movements:1000}") int maxPendingMovements) {
+        this.mongoTemplate = mongoTemplate;
+        this.outboxFull = PENDING_MOVEMENTS + "." + (maxPendingMovements - 1);
+    }
+
+    @Override
+    public Mono<CreditCard> debitAvailableBalance(String id, Money amount, String idempotencyKey) {
+        Query query = Query.query(Criteria.where("id").is(id)
+                .and(AVAILABLE_BALANCE).gte(amount.getMinorUnits()).type(INT64)
+                .and(outboxFull).exists(false));
+        query.fields().exclude(PENDING_MOVEMENTS);
+        Movement movement = Movement.of(id, MovementType.CONSUMPTION, amount, idempotencyKey);
+
+        return rejectingFullOutbox(id, withLegacyAmountsConverted(id, () -> applyBalanceChange(query, movement)));
+    }
+
+    @Override
+    public Mono<CreditCard> creditAvailableBalance(String id, Money amount, String idempotencyKey) {
+        // availableBalance + amount <= creditLimit
+        Document filter = new Document("_id", id)
+                .append("$expr", amountsInMinorUnits(new Document("$lte", Arrays.asList(
+                        new Document("$add", Arrays.asList("$" + AVAILABLE_BALANCE, amount.getMinorUnits())),
+                        "$" + CREDIT_LIMIT))))
+                .append(outboxFull, new Document("$exists", false));
+        Query query = new BasicQuery(filter, new Document(PENDING_MOVEMENTS, 0));
+        Movement movement = Movement.of(id, MovementType.PAYMENT, amount, idempotencyKey);
+
+        return rejectingFullOutbox(id, withLegacyAmountsConverted(id, () -> applyBalanceChange(query, movement)));
+    }
+
+    @Override
+    public Mono<Boolean> hasMovementWithIdempotencyKey(String id, String idempotencyKey) {
+        // El relay copia los pendientes al libro mayor antes de quitarlos, así que se consultan en ese orden
+        return mongoTemplate.exists(Query.query(Criteria.where("id").is(id)
+                        .and(PENDING_MOVEMENTS + ".idempotencyKey").is(idempotencyKey)), CreditCard.class)
+                .flatMap(pending -> pending
+                        ? Mono.just(true)
+                        : mongoTemplate.exists(Query.query(Criteria.where("creditCardId").is(id)
+                                .and("idempotencyKey").is(idempotencyKey)), Movement.class));
+    }
+
+    @Override
+    public Mono<CreditCard> changeCreditLimit(String id, Long expectedVersion, Money currentLimit, Money newLimit) {
+        // Las tarjetas anteriores al campo version no lo tienen: is(null) también coincide con el campo ausente
+        Query query = Query.query(Criteria.where("id").is(id)
+                .and(VERSION).is(expectedVersion)
+                .and(AVAILABLE_BALANCE).type(INT64)
+                .and(outboxFull).exists(false));
+        query.fields().exclude(PENDING_MOVEMENTS);
+        Update update = new Update()
+                .set(CREDIT_LIMIT, newLimit.getMinorUnits())
+                .inc(AVAILABLE_BALANCE, newLimit.getMinorUnits() - currentLimit.getMinorUnits())
+                .inc(VERSION, 1)
+                .set(UPDATED_AT, LocalDateTime.now())
+                .push(PENDING_MOVEMENTS, Movement.of(id, MovementType.CREDIT_LIMIT_CHANGE, newLimit.minus(currentLimit)));
+
+        // La conversión no cambia la versión, así que el reintento sigue comprobando la leída
+        return rejectingFullOutbox(id, withLegacyAmountsConverted(id, () -> mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), CreditCard.class)));
+    }
+
+    @Override
+    public Mono<Set<String>> incrementAvailableBalances(Map<String, List<Movement>> movements, Set<String> withoutLimits) {
+        if (movements.isEmpty()) {
+            return Mono.just(Collections.emptySet());
+        }
+
+        Date now = new Date();
+        Map<String, String> flushIds = new HashMap<>();
+        List<Object> ids = new ArrayList<>(movements.size());
+        List<WriteModel<Document>> writes = new ArrayList<>(movements.size());
+        movements.forEach((id, cardMovements) -> {
+            // La escritura de cada tarjeta se identifica por su primer movimiento: reenviarla no la aplica dos veces
+            String flushId = cardMovements.get(0).getId();
+            Object documentId = toObjectIdIfValid(id);
+            long delta = balanceDelta(cardMovements);
+            flushIds.put(id, flushId);
+            ids.add(documentId);
+            writes.add(new UpdateOneModel<>(
+                    Filters.and(Filters.eq("_id", documentId),
+                            withoutLimits.contains(id) ? Filters.type(AVAILABLE_BALANCE, BsonType.INT64) : balanceGuard(delta),
+                            Filters.exists(outboxFull, false),
+                            Filters.ne(LAST_FLUSH_ID, flushId)),
+                    Updates.combine(
+                            Updates.inc(AVAILABLE_BALANCE, delta),
+                            Updates.inc(VERSION, 1L),
+                            Updates.set(UPDATED_AT, now),
+                            Updates.set(LAST_FLUSH_ID, flushId),
+                            Updates.pushEach(PENDING_MOVEMENTS, toDocuments(cardMovements)))));
+        });
+
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(CreditCard.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writes, new BulkWriteOptions().ordered(false)))
+                        .map(BulkWriteResult::getMatchedCount)
+                        // Con errores de escritura el servidor ya respondió por cada tarjeta; el resto de errores se propaga
+                        .onErrorResume(MongoBulkWriteException.class, e -> e.getWriteErrors().isEmpty()
+                                ? Mono.error(e)
+                                : Mono.just(e.getWriteResult().getMatchedCount()))
+                        .flatMap(matched -> {
+                            if (matched == writes.size()) {
+                                return Mono.just(Collections.<String>emptySet());
+                            }
+                            // Las tarjetas ya marcadas con su escritura se aplicaron, ahora o en un envío anterior
+                            Set<String> failed = new HashSet<>(movements.keySet());
+                            return Flux.from(collection.find(Filters.in("_id", ids))
+                                            .projection(Projections.include(LAST_FLUSH_ID)))
+                                    .doOnNext(document -> {
+                                        String id = document.get("_id").toString();
+                                        if (flushIds.get(id).equals(document.getString(LAST_FLUSH_ID))) {
+                                            failed.remove(id);
+                                        }
+                                    })
+                                    .then(Mono.defer(() -> convertLegacyAmounts(failed)))
+                                    .thenReturn(failed);
+                        }));
+    }
+
+    @Override
+    public Mono<Set<String>> applyBatchBalanceChanges(String batchId, Map<String, List<Movement>> movements,
+                                                      Map<String, Long> expectedVersions) {
+        if (movements.isEmpty()) {
+            return Mono.just(Collections.emptySet());
+        }
+
+        Date now = new Date();
+        List<Object> ids = new ArrayList<>(movements.size());
+        List<WriteModel<Document>> writes = new ArrayList<>(movements.size());
+        movements.forEach((id, cardMovements) -> {
+            Object documentId = toObjectIdIfValid(id);
+            ids.add(documentId);
+            // Las tarjetas anteriores al campo version no lo tienen: eq(null) también coincide con el campo ausente
+            writes.add(new UpdateOneModel<>(
+                    Filters.and(Filters.eq("_id", documentId),
+                            Filters.eq(VERSION, expectedVersions.get(id)),
+                            Filters.type(AVAILABLE_BALANCE, BsonType.INT64),
+                            Filters.exists(outboxFull, false)),
+                    Updates.combine(
+                            Updates.inc(AVAILABLE_BALANCE, balanceDelta(cardMovements)),
+                            Updates.inc(VERSION, 1L),
+                            Updates.set(UPDATED_AT, now),
+                            Updates.set(LAST_BATCH_ID, batchId),
+                            Updates.pushEach(PENDING_MOVEMENTS, toDocuments(cardMovements)))));
+        });
+
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(CreditCard.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writes, new BulkWriteOptions().ordered(false)))
+                        .flatMap(result -> {
+                            if (result.getMatchedCount() == writes.size()) {
+                                return Mono.just(Collections.<String>emptySet());
+                            }
+                            // Solo en caso de conflicto se consulta qué tarjetas quedaron marcadas con el lote
+                            Set<String> failed = new HashSet<>(movements.keySet());
+                            return Flux.from(collection
+                                            .find(Filters.and(Filters.in("_id", ids), Filters.eq(LAST_BATCH_ID, batchId)))
+                                            .projection(Projections.include("_id")))
+                                    .doOnNext(document -> failed.remove(document.get("_id").toString()))
+                                    .then(Mono.defer(() -> convertLegacyAmounts(failed)))
+                                    .thenReturn(failed);
+                        }));
+    }
+
+    @Override
+    public Mono<Set<String>> changeCreditLimits(String jobId, Map<String, Money> currentLimits, Map<String, Money> newLimits) {
+        if (newLimits.isEmpty()) {
+            return Mono.just(Collections.emptySet());
+        }
+
+        Date now = new Date();
+        List<Object> ids = new ArrayList<>(newLimits.size());
+        List<WriteModel<Document>> writes = new ArrayList<>(newLimits.size());
+        newLimits.forEach((id, newLimit) -> {
+            Object documentId = toObjectIdIfValid(id);
+            Money currentLimit = currentLimits.get(id);
+            Money limitDifference = newLimit.minus(currentLimit);
+            ids.add(documentId);
+            writes.add(new UpdateOneModel<>(
+                    Filters.and(Filters.eq("_id", documentId),
+                            Filters.eq(CREDIT_LIMIT, currentLimit.getMinorUnits()),
+                            Filters.type(AVAILABLE_BALANCE, BsonType.INT64),
+                            Filters.exists(outboxFull, false),
+                            Filters.ne(LAST_REPRICING_JOB_ID, jobId)),
+                    Updates.combine(
+                            Updates.set(CREDIT_LIMIT, newLimit.getMinorUnits()),
+                            Updates.inc(AVAILABLE_BALANCE, limitDifference.getMinorUnits()),
+                            Updates.inc(VERSION, 1L),
+                            Updates.set(UPDATED_AT, now),
+                            Updates.set(LAST_REPRICING_JOB_ID, jobId),
+                            Updates.pushEach(PENDING_MOVEMENTS, toDocuments(Collections.singletonList(
+                                    Movement.of(id, MovementType.CREDIT_LIMIT_CHANGE, limitDifference)))))));
+        });
+
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(CreditCard.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writes, new BulkWriteOptions().ordered(false)))
+                        .flatMap(result -> {
+                            if (result.getMatchedCount() == writes.size()) {
+                                return Mono.just(Collections.<String>emptySet());
+                            }
+                            // Solo en caso de conflicto se consulta qué tarjetas quedaron marcadas con el trabajo
+                            Set<String> failed = new HashSet<>(newLimits.keySet());
+                            return Flux.from(collection
+                                            .find(Filters.and(Filters.in("_id", ids), Filters.eq(LAST_REPRICING_JOB_ID, jobId)))
+                                            .projection(Projections.include("_id")))
+                                    .doOnNext(document -> failed.remove(document.get("_id").toString()))
+                                    .then(Mono.defer(() -> convertLegacyAmounts(failed)))
+                                    .thenReturn(failed);
+                        }));
+    }
+
+    @Override
+    public Flux<CreditCard> findRepricingCandidates(RepricingJob job) {
+        // Las tarjetas ya marcadas con el trabajo se excluyen, así que repetir un tramo no aplica la regla dos veces
+        Document filter = new Document(LAST_REPRICING_JOB_ID, new Document("$ne", job.getId()));
+        if (job.getLastCardId() != null) {
+            filter.append("_id", new Document("$gt", toObjectIdIfValid(job.getLastCardId())));
+        }
+        if (job.getCustomerType() != null) {
+            filter.append(CUSTOMER_TYPE, job.getCustomerType().name());
+        }
+        if (job.getCustomerIds() != null && !job.getCustomerIds().isEmpty()) {
+            filter.append(CUSTOMER_ID, new Document("$in", job.getCustomerIds()));
+        }
+        // Utilización en porcentaje: (límite - disponible) * 100 frente a porcentaje * límite, sin divisiones
+        List<Document> utilization = new ArrayList<>(2);
+        Document usedPercent = new Document("$multiply", Arrays.asList(
+                new Document("$subtract", Arrays.asList("$" + CREDIT_LIMIT, "$" + AVAILABLE_BALANCE)), 100));
+        if (job.getMinUtilizationPercent() != null) {
+            utilization.add(new Document("$gte", Arrays.asList(usedPercent,
+                    new Document("$multiply", Arrays.asList("$" + CREDIT_LIMIT, job.getMinUtilizationPercent())))));
+        }
+        if (job.getMaxUtilizationPercent() != null) {
+            utilization.add(new Document("$lte", Arrays.asList(usedPercent,
+                    new Document("$multiply", Arrays.asList("$" + CREDIT_LIMIT, job.getMaxUtilizationPercent())))));
+        }
+        if (!utilization.isEmpty()) {
+            filter.append("$expr", new Document("$and", utilization));
+        }
+
+        Document fields = new Document(CUSTOMER_ID, 1)
+                .append(CUSTOMER_TYPE, 1)
+                .append(CREDIT_LIMIT, 1)
+                .append(AVAILABLE_BALANCE, 1);
+        Query query = new BasicQuery(filter, fields)
+                .with(Sort.by(Sort.Direction.ASC, "id"))
+                .cursorBatchSize(STREAM_BATCH_SIZE);
+
+        return mongoTemplate.find(query, CreditCard.class);
+    }
+
+    @Override
+    public Flux<CreditCard> findPageAfter(String customerId, String afterId, Integer limit) {
+        // Mongo interpreta un límite negativo como un único lote y 0 como sin límite
+        if (limit != null && limit < 1) {
+            return Flux.error(new IllegalArgumentException("Limit must be at least 1"));
+        }
+        if (afterId != null && !ObjectId.isValid(afterId)) {
+            return Flux.error(new IllegalArgumentException("Invalid credit card cursor: " + afterId));
+        }
+        Query query = new Query();
+        if (customerId != null) {
+            query.addCriteria(Criteria.where("customerId").is(customerId));
+        }
+        if (afterId != null) {
+            query.addCriteria(Criteria.where("id").gt(afterId));
+        }
+        query.with(Sort.by(Sort.Direction.ASC, "id"))
+                .cursorBatchSize(STREAM_BATCH_SIZE);
+        if (limit != null) {
+            query.limit(limit);
+        }
+        // Mismos campos que la proyección de listado
+        query.fields().include("cardNumber", "customerId", "customerType", CREDIT_LIMIT, AVAILABLE_BALANCE, "expirationDate");
+
+        return mongoTemplate.find(query, CreditCard.class);
+    }
+
+    @Override
+    public Mono<ExposureView> aggregateExposureByCustomer(String customerId) {
+        return aggregateExposure(Arrays.asList(
+                Aggregation.match(Criteria.where(CUSTOMER_ID).is(customerId)),
+                exposureGroup(CUSTOMER_ID)))
+                .next();
+    }
+
+    @Override
+    public Flux<ExposureView> aggregateExposureByCustomerPage(CustomerType customerType, String afterCustomerId, int limit) {
+        Criteria criteria = new Criteria();
+        if (customerType != null) {
+            criteria.and(CUSTOMER_TYPE).is(customerType.name());
+        }
+        if (afterCustomerId != null) {
+            criteria.and(CUSTOMER_ID).gt(afterCustomerId);
+        }
+        // Primero se obtienen los clientes de la página recorriendo el índice (customerId, customerType) solo hasta
+        // completarla; así el $group solo agrega sus tarjetas y no las de todos los clientes posteriores al cursor
+        Query customers = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, CUSTOMER_ID))
+                .cursorBatchSize(STREAM_BATCH_SIZE);
+        customers.fields().include(CUSTOMER_ID).exclude(Fields.UNDERSCORE_ID);
+
+        return mongoTemplate.find(customers, Document.class, mongoTemplate.getCollectionName(CreditCard.class))
+                .mapNotNull(document -> document.getString(CUSTOMER_ID))
+                .distinctUntilChanged()
+                .take(limit)
+                .collectList()
+                .filter(customerIds -> !customerIds.isEmpty())
+                .flatMapMany(customerIds -> aggregateExposure(Arrays.asList(
+                        Aggregation.match(customerType != null
+                                ? Criteria.where(CUSTOMER_ID).in(customerIds).and(CUSTOMER_TYPE).is(customerType.name())
+                                : Criteria.where(CUSTOMER_ID).in(customerIds)),
+                        exposureGroup(CUSTOMER_ID),
+                        Aggregation.sort(Sort.Direction.ASC, Fields.UNDERSCORE_ID))));
+    }
+
+    @Override
+    public Flux<ExposureView> aggregateExposureByCustomerType() {
+        return aggregateExposure(Arrays.asList(
+                exposureGroup(CUSTOMER_TYPE),
+                Aggregation.sort(Sort.Direction.ASC, Fields.UNDERSCORE_ID)));
+    }
+
+    @Override
+    public Flux<CreditCard> findWithPendingMovements(int limit) {
+        // Usa el índice disperso sobre pendingMovements.timestamp, que solo contiene tarjetas con pendientes
+        Query query = Query.query(Criteria.where(PENDING_MOVEMENTS + ".timestamp").exists(true))
+                .limit(limit);
+        query.fields().include(PENDING_MOVEMENTS);
+
+        return mongoTemplate.find(query, CreditCard.class);
+    }
+
+    @Override
+    public Mono<Void> removePendingMovements(String id, List<String> movementIds) {
+        List<Object> ids = movementIds.stream()
+                .map(CreditCardRepositoryCustomImpl::toObjectIdIfValid)
+                .collect(Collectors.toList());
+        // No cambia la versión: los movimientos ya estaban aplicados al saldo
+        Update update = new Update()
+                .pull(PENDING_MOVEMENTS, new Document("_id", new Document("$in", ids)));
+
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(id)), update, CreditCard.class)
+                .then();
+    }
+
+    @Override
+    public Mono<Set<String>> findWithFullOutbox(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Collections.emptySet());
+        }
+        Query query = Query.query(Criteria.where("id").in(ids).and(outboxFull).exists(true));
+        query.fields().include("id");
+
+        return mongoTemplate.find(query, CreditCard.class)
+                .map(CreditCard::getId)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Mono<Long> convertLegacyAmounts(Collection<String> ids) {
+        if (ids != null && ids.isEmpty()) {
+            return Mono.just(0L);
+        }
+        Bson legacy = Filters.or(
+                Filters.type(CREDIT_LIMIT, BsonType.STRING),
+                Filters.type(CREDIT_LIMIT, BsonType.DECIMAL128),
+                Filters.type(AVAILABLE_BALANCE, BsonType.STRING),
+                Filters.type(AVAILABLE_BALANCE, BsonType.DECIMAL128));
+        Bson filter = ids == null
+                ? legacy
+                : Filters.and(Filters.in("_id", ids.stream()
+                        .map(CreditCardRepositoryCustomImpl::toObjectIdIfValid)
+                        .collect(Collectors.toList())), legacy);
+
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(CreditCard.class))
+                .flatMapMany(collection -> Flux.from(collection.find(filter)
+                                .projection(Projections.include(CREDIT_LIMIT, AVAILABLE_BALANCE)))
+                        // Se compara con los valores leídos para no pisar cambios concurrentes
+                        .concatMap(document -> {
+                            Object id = document.get("_id");
+                            long creditLimit;
+                            long availableBalance;
+                            try {
+                                creditLimit = toMinorUnits(id, CREDIT_LIMIT, document.get(CREDIT_LIMIT));
+                                availableBalance = toMinorUnits(id, AVAILABLE_BALANCE, document.get(AVAILABLE_BALANCE));
+                            } catch (NumberFormatException | ArithmeticException e) {
+                                // La tarjeta queda sin convertir y sus operaciones siguen rechazándose hasta corregirla
+                                log.error("Skipping credit card {} with unreadable amounts: {}", id, e.getMessage());
+                                return Mono.empty();
+                            }
+                            return Mono.from(collection.updateOne(
+                                    Filters.and(
+                                            Filters.eq("_id", id),
+                                            Filters.eq(CREDIT_LIMIT, document.get(CREDIT_LIMIT)),
+                                            Filters.eq(AVAILABLE_BALANCE, document.get(AVAILABLE_BALANCE))),
+                                    Updates.combine(
+                                            Updates.set(CREDIT_LIMIT, creditLimit),
+                                            Updates.set(AVAILABLE_BALANCE, availableBalance))));
+                        }))
+                .filter(result -> result.getModifiedCount() > 0)
+                .count();
+    }
+
+    /**
+     * Suma por grupo el número de tarjetas, el límite, el saldo disponible y el saldo usado.
+     */
+    private static GroupOperation exposureGroup(String key) {
+        return Aggregation.group(key)
+                .first(CUSTOMER_TYPE).as(CUSTOMER_TYPE)
+                .count().as("cardCount")
+                .sum(CREDIT_LIMIT).as(CREDIT_LIMIT)
+                .sum(AVAILABLE_BALANCE).as(AVAILABLE_BALANCE)
+                .sum(ArithmeticOperators.Subtract.valueOf(CREDIT_LIMIT).subtract(AVAILABLE_BALANCE)).as("usedBalance");
+    }
+
+    private Flux<ExposureView> aggregateExposure(List<AggregationOperation> operations) {
+        Aggregation aggregation = Aggregation.newAggregation(CreditCard.class, operations)
+                .withOptions(AggregationOptions.builder()
+                        .allowDiskUse(true)
+                        .cursorBatchSize(STREAM_BATCH_SIZE)
+                        .build());
+
+        return mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(CreditCard.class), ExposureView.class);
+    }
+
+    /**
+     * Condición para que el saldo resultante quede entre cero y el límite de crédito.
+     */
+    private static Bson balanceGuard(long delta) {
+        if (delta < 0) {
+            return Filters.and(Filters.type(AVAILABLE_BALANCE, BsonType.INT64), Filters.gte(AVAILABLE_BALANCE, -delta));
+        }
+        return Filters.expr(amountsInMinorUnits(new Document("$lte", Arrays.asList(
+                new Document("$add", Arrays.asList("$" + AVAILABLE_BALANCE, delta)),
+                "$" + CREDIT_LIMIT))));
+    }
+
+    /**
+     * Antepone a una condición $expr que los importes estén en céntimos; $and deja de evaluar en el primer false,
+     * así que los importes en String no llegan a la aritmética.
+     */
+    private static Document amountsInMinorUnits(Document condition) {
+        return new Document("$and", Arrays.asList(
+                new Document("$eq", Arrays.asList(new Document("$type", "$" + AVAILABLE_BALANCE), "long")),
+                new Document("$eq", Arrays.asList(new Document("$type", "$" + CREDIT_LIMIT), "long")),
+                condition));
+    }
+
+    /**
+     * Si la operación no coincide, convierte la tarjeta si aún tenía importes en el formato anterior y la reintenta una vez.
+     */
+    private <T> Mono<T> withLegacyAmountsConverted(String id, Supplier<Mono<T>> operation) {
+        return operation.get()
+                .switchIfEmpty(Mono.defer(() -> convertLegacyAmounts(Collections.singleton(id))
+                        .filter(converted -> converted > 0)
+                        .flatMap(converted -> operation.get())));
+    }
+
+    /**
+     * Si la operación no coincide porque la tarjeta tiene el máximo de movimientos pendientes, lo indica con un error
+     * en lugar de dejar que se interprete como saldo insuficiente o modificación concurrente.
+     */
+    private Mono<CreditCard> rejectingFullOutbox(String id, Mono<CreditCard> operation) {
+        return operation.switchIfEmpty(Mono.defer(() -> mongoTemplate
+                .exists(Query.query(Criteria.where("id").is(id).and(outboxFull).exists(true)), CreditCard.class)
+                .flatMap(full -> full
+                        ? Mono.<CreditCard>error(new PendingMovementsBacklogException(
+                                DeclineReason.PENDING_MOVEMENTS_BACKLOG.getMessage() + ": " + id))
+                        : Mono.empty())));
+    }
+
+    private static long balanceDelta(List<Movement> movements) {
+        long delta = 0L;
+        for (Movement movement : movements) {
+            delta += movement.balanceDelta();
+        }
+        return delta;
+    }
+
+    /**
+     * Convierte los movimientos con el conversor de Spring Data para las escrituras con el driver.
+     */
+    private List<Document> toDocuments(List<Movement> movements) {
+        List<Document> documents = new ArrayList<>(movements.size());
+        for (Movement movement : movements) {
+            Document document = new Document();
+            mongoTemplate.getConverter().write(movement, document);
+            document.remove("_class");
+            documents.add(document);
+        }
+        return documents;
+    }
+
+    private Mono<CreditCard> applyBalanceChange(Query query, Movement movement) {
+        Update update = new Update()
+                .inc(AVAILABLE_BALANCE, movement.balanceDelta())
+                .inc(VERSION, 1)
+                .set(UPDATED_AT, LocalDateTime.now())
+                .push(PENDING_MOVEMENTS, movement);
+
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), CreditCard.class);
+    }
+
+    /**
+     * Replica la conversión de IDs de Spring Data: los String con formato ObjectId se guardan como ObjectId.
+     */
+    private static Object toObjectIdIfValid(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    /**
+     * Convierte un importe del formato anterior a céntimos, redondeando los que tienen más de dos decimales.
+     * @throws NumberFormatException si el importe no es un número
+     * @throws ArithmeticException si el importe no cabe en un long
+     */
+    private static long toMinorUnits(Object id, String field, Object value) {
+        BigDecimal amount;
+        if (value instanceof String) {
+            amount = new BigDecimal((String) value);
+        } else if (value instanceof Decimal128) {
+            amount = ((Decimal128) value).bigDecimalValue();
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else {
+            throw new NumberFormatException(field + " is not an amount: " + value);
+        }
+        BigDecimal rounded = amount.setScale(Money.SCALE, RoundingMode.HALF_UP);
+        if (rounded.compareTo(amount) != 0) {
+            log.warn("Rounding {} {} of credit card {} to {}", field, amount, id, rounded);
+        }
+        return rounded.unscaledValue().longValueExact();
+    }
+}
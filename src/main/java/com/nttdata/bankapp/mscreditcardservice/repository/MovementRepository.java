@@ -0,0 +1,39 @@
+package com.nttdata.bankapp.mscreditcardservice.repository;
+
+import com.nttdata.bankapp.mscreditcardservice.model.Movement;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repositorio del libro mayor de movimientos.
+ * Las consultas recorren el índice (creditCardId, timestamp desc, _id desc).
+ */
+@Repository
+public interface MovementRepository extends ReactiveMongoRepository<Movement, String> {
+
+    /**
+     * Obtiene los movimientos más recientes de una tarjeta.
+     * @param creditCardId ID de la tarjeta de crédito
+     * @param pageable Tamaño de la página
+     * @return Flux de movimientos del más reciente al más antiguo
+     */
+    Flux<Movement> findByCreditCardIdOrderByTimestampDescIdDesc(String creditCardId, Pageable pageable);
+
+    /**
+     * Obtiene los movimientos de una tarjeta anteriores a un cursor.
+     * @param creditCardId ID de la tarjeta de crédito
+     * @param timestamp Fecha del último movimiento recibido
+     * @param id ID del último movimiento recibido, desempata movimientos con la misma fecha
+     * @param pageable Tamaño de la página
+     * @return Flux de movimientos del más reciente al más antiguo
+     */
+    @Query(value = "{ 'creditCardId': ?0, $or: [ { 'timestamp': { $lt: ?1 } }, { 'timestamp': ?1, '_id': { $lt: ?2 } } ] }",
+            sort = "{ 'timestamp': -1, '_id': -1 }")
+    Flux<Movement> findPageBefore(String creditCardId, LocalDateTime timestamp, ObjectId id, Pageable pageable);
+}
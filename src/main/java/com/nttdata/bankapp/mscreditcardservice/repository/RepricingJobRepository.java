@@ -0,0 +1,21 @@
+package com.nttdata.bankapp.mscreditcardservice.repository;
+
+import com.nttdata.bankapp.mscreditcardservice.model.RepricingJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Repositorio de los trabajos de revisión de límites.
+ */
+@Repository
+public interface RepricingJobRepository extends ReactiveMongoRepository<RepricingJob, String> {
+
+    /**
+     * Obtiene los trabajos más recientes.
+     * @param pageable Tamaño de la página
+     * @return Flux de trabajos del más reciente al más antiguo
+     */
+    Flux<RepricingJob> findAllByOrderByCreatedAtDesc(Pageable pageable);
+}
@@ -0,0 +1,12 @@
+package com.nttdata.bankapp.mscreditcardservice.repository;
+
+import com.nttdata.bankapp.mscreditcardservice.model.UnappliedBalanceChange;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repositorio de los cambios de saldo del motor de autorización que no pudieron escribirse.
+ */
+@Repository
+public interface UnappliedBalanceChangeRepository extends ReactiveMongoRepository<UnappliedBalanceChange, String> {
+}
@@ -0,0 +1,39 @@
+package com.nttdata.bankapp.mscreditcardservice.repricing;
+
+import com.nttdata.bankapp.mscreditcardservice.dto.RepricingJobDto;
+import com.nttdata.bankapp.mscreditcardservice.exception.RepricingJobNotFoundException;
+import com.nttdata.bankapp.mscreditcardservice.service.RepricingService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Endpoint de actuator con el progreso y el ritmo de los trabajos de revisión de límites:
+ * GET /actuator/repricing?limit=20 y GET /actuator/repricing/{id}.
+ */
+@Component
+@Endpoint(id = "repricing")
+@RequiredArgsConstructor
+public class RepricingJobEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final RepricingService repricingService;
+
+    @ReadOperation
+    public Mono<List<RepricingJobDto>> jobs(@Nullable Integer limit) {
+        return repricingService.findRecent(limit == null ? DEFAULT_LIMIT : limit).collectList();
+    }
+
+    @ReadOperation
+    public Mono<RepricingJobDto> job(@Selector String id) {
+        return repricingService.findById(id)
+                .onErrorResume(RepricingJobNotFoundException.class, e -> Mono.empty());
+    }
+}
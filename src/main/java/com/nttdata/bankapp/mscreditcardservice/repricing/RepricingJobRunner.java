@@ -0,0 +1,396 @@
+package com.nttdata.bankapp.mscreditcardservice.repricing;
+
+import com.nttdata.bankapp.mscreditcardservice.authorization.AuthorizationEngine;
+import com.nttdata.bankapp.mscreditcardservice.cache.CreditCardCache;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.model.RepricingJob;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import com.nttdata.bankapp.mscreditcardservice.stats.PortfolioStatistics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ejecuta los trabajos de revisión de límites.
+ * Cada instancia reserva un trabajo pendiente, o uno cuya reserva ha caducado, y recorre sus tarjetas
+ * en orden de ID con un único cursor. Los tramos se aplican en paralelo con una escritura masiva cada uno,
+ * pero el checkpoint solo avanza sobre tramos consecutivos ya escritos; como las tarjetas quedan marcadas
+ * con el trabajo, repetir un tramo tras un reinicio no aplica la regla dos veces.
+ */
+@Component
+@Slf4j
+public class RepricingJobRunner {
+
+    private static final String ID = "id";
+    private static final String STATUS = "status";
+    private static final String OWNER = "owner";
+    private static final String LEASE_EXPIRES_AT = "leaseExpiresAt";
+    private static final String LAST_CARD_ID = "lastCardId";
+    private static final String PROCESSED = "processed";
+    private static final String UPDATED = "updated";
+    private static final String SKIPPED = "skipped";
+    private static final String CONFLICTS = "conflicts";
+    private static final String ELAPSED_MILLIS = "elapsedMillis";
+    private static final String ATTEMPTS = "attempts";
+    private static final String ERROR = "error";
+    private static final String CREATED_AT = "createdAt";
+    private static final String STARTED_AT = "startedAt";
+    private static final String UPDATED_AT = "updatedAt";
+    private static final String COMPLETED_AT = "completedAt";
+    private static final String CARDS_METRIC = "creditcard.repricing.cards";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final CreditCardRepository creditCardRepository;
+    private final AuthorizationEngine authorizationEngine;
+    private final CreditCardCache creditCardCache;
+    private final PortfolioStatistics portfolioStatistics;
+    private final int parallelism;
+    private final int chunkSize;
+    private final int maxConflictAttempts;
+    private final int maxRunAttempts;
+    private final Duration pollInterval;
+    private final Duration lease;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Sinks.Many<Long> wakeUps = Sinks.many().multicast().directBestEffort();
+    private final Counter updatedCards;
+    private final Counter skippedCards;
+    private final Counter conflictedCards;
+
+    private Disposable pollTask;
+
+    public RepricingJobRunner(ReactiveMongoTemplate mongoTemplate,
+                              CreditCardRepository creditCardRepository,
+                              AuthorizationEngine authorizationEngine,
+                              CreditCardCache creditCardCache,
+                              PortfolioStatistics portfolioStatistics,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.repricing.parallelism:4}") int parallelism,
+                              @Value("${app.repricing.chunk-size:500}") int chunkSize,
+                              @Value("${app.repricing.max-conflict-attempts:3}") int maxConflictAttempts,
+                              @Value("${app.repricing.max-run-attempts:3}") int maxRunAttempts,
+                              @Value("${app.repricing.poll-interval:10s}") Duration pollInterval,
+                              @Value("${app.repricing.lease:2m}") Duration lease) {
+        this.mongoTemplate = mongoTemplate;
+        this.creditCardRepository = creditCardRepository;
+        this.authorizationEngine = authorizationEngine;
+        this.creditCardCache = creditCardCache;
+        this.portfolioStatistics = portfolioStatistics;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.maxConflictAttempts = maxConflictAttempts;
+        this.maxRunAttempts = maxRunAttempts;
+        this.pollInterval = pollInterval;
+        this.lease = lease;
+        this.updatedCards = cardsCounter(meterRegistry, "updated");
+        this.skippedCards = cardsCounter(meterRegistry, "skipped");
+        this.conflictedCards = cardsCounter(meterRegistry, "conflict");
+    }
+
+    @PostConstruct
+    public void start() {
+        pollTask = Flux.merge(Flux.interval(Duration.ZERO, pollInterval), wakeUps.asFlux())
+                .onBackpressureDrop()
+                .concatMap(tick -> runNext()
+                        .onErrorResume(e -> {
+                            log.error("Error running repricing jobs: {}", e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        pollTask.dispose();
+    }
+
+    /**
+     * Busca trabajos sin esperar al siguiente intervalo, por ejemplo tras crear uno.
+     */
+    public void wakeUp() {
+        wakeUps.tryEmitNext(System.nanoTime());
+    }
+
+    /**
+     * Ejecuta los trabajos disponibles de uno en uno hasta que no quede ninguno.
+     */
+    private Mono<Void> runNext() {
+        return claim()
+                .flatMap(job -> run(job).then(Mono.defer(this::runNext)));
+    }
+
+    /**
+     * Reserva el trabajo pendiente más antiguo o uno en curso cuya reserva haya caducado.
+     */
+    private Mono<RepricingJob> claim() {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(new Criteria().orOperator(
+                        Criteria.where(STATUS).is(RepricingJob.Status.PENDING),
+                        Criteria.where(STATUS).is(RepricingJob.Status.RUNNING).and(LEASE_EXPIRES_AT).lt(now)))
+                .with(Sort.by(Sort.Direction.ASC, CREATED_AT));
+        Update update = new Update()
+                .set(STATUS, RepricingJob.Status.RUNNING)
+                .set(OWNER, instanceId)
+                .set(LEASE_EXPIRES_AT, now.plus(lease))
+                .set(UPDATED_AT, now)
+                .min(STARTED_AT, now);
+
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), RepricingJob.class);
+    }
+
+    private Mono<Void> run(RepricingJob job) {
+        log.info("Running repricing job {} from card {}", job.getId(), job.getLastCardId());
+        long[] checkpointNanos = {System.nanoTime()};
+
+        // El filtro de utilización hace aritmética sobre los importes: los del formato anterior se convierten antes
+        return creditCardRepository.convertLegacyAmounts(null)
+                .thenMany(Flux.defer(() -> creditCardRepository.findRepricingCandidates(job)))
+                .buffer(chunkSize)
+                .flatMapSequential(cards -> applyChunk(job, cards), parallelism)
+                // flatMapSequential entrega los tramos en orden: el checkpoint cubre siempre un prefijo completo
+                .concatMap(chunk -> {
+                    long now = System.nanoTime();
+                    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(now - checkpointNanos[0]);
+                    checkpointNanos[0] = now;
+                    return checkpoint(job, chunk, elapsedMillis);
+                })
+                .then(Mono.defer(() -> finish(job, RepricingJob.Status.COMPLETED, null)))
+                .onErrorResume(JobReleasedException.class, e -> {
+                    log.info("Repricing job {} stopped: {}", job.getId(), e.getMessage());
+                    return Mono.empty();
+                })
+                .onErrorResume(e -> failed(job, e));
+    }
+
+    /**
+     * Aplica la regla a un tramo de tarjetas y reintenta con el límite actual las modificadas entretanto.
+     */
+    private Mono<ChunkResult> applyChunk(RepricingJob job, List<CreditCard> cards) {
+        ChunkResult result = new ChunkResult(cards.size(), cards.get(cards.size() - 1).getId());
+        return applyChunk(job, cards, result, 1).thenReturn(result);
+    }
+
+    private Mono<Void> applyChunk(RepricingJob job, List<CreditCard> cards, ChunkResult result, int attempt) {
+        Map<String, CreditCard> candidates = new HashMap<>();
+        Map<String, Money> currentLimits = new HashMap<>();
+        Map<String, Money> newLimits = new HashMap<>();
+        for (CreditCard creditCard : cards) {
+            Money newLimit = attempt == 1 || matches(job, creditCard) ? newLimit(job, creditCard) : null;
+            if (newLimit == null || newLimit.equals(creditCard.getCreditLimit())) {
+                result.skipped++;
+                continue;
+            }
+            candidates.put(creditCard.getId(), creditCard);
+            currentLimits.put(creditCard.getId(), creditCard.getCreditLimit());
+            newLimits.put(creditCard.getId(), newLimit);
+        }
+
+        return creditCardRepository.changeCreditLimits(job.getId(), currentLimits, newLimits)
+                .flatMap(failedCardIds -> {
+                    List<CreditCard> applied = new ArrayList<>(candidates.size());
+                    candidates.forEach((id, creditCard) -> {
+                        if (!failedCardIds.contains(id)) {
+                            applied.add(creditCard);
+                        }
+                    });
+                    result.updated += applied.size();
+                    return creditLimitsChanged(applied, newLimits)
+                            .then(retryConflicts(job, failedCardIds, result, attempt));
+                });
+    }
+
+    private Mono<Void> retryConflicts(RepricingJob job, Set<String> failedCardIds, ChunkResult result, int attempt) {
+        if (failedCardIds.isEmpty()) {
+            return Mono.empty();
+        }
+        if (attempt >= maxConflictAttempts) {
+            log.warn("Repricing job {} skipped {} credit cards modified concurrently", job.getId(), failedCardIds.size());
+            result.conflicts += failedCardIds.size();
+            return Mono.empty();
+        }
+        // Las tarjetas eliminadas entretanto no se vuelven a leer y no cuentan como conflicto
+        Set<String> pending = new HashSet<>(failedCardIds);
+        return creditCardRepository.findCardsByIdIn(failedCardIds)
+                .doOnNext(creditCard -> pending.remove(creditCard.getId()))
+                .collectList()
+                .flatMap(creditCards -> {
+                    result.skipped += pending.size();
+                    return creditCards.isEmpty() ? Mono.<Void>empty() : applyChunk(job, creditCards, result, attempt + 1);
+                });
+    }
+
+    /**
+     * Refleja los límites ya persistidos en las estadísticas, la caché y el motor de autorización, como update.
+     */
+    private Mono<Void> creditLimitsChanged(List<CreditCard> creditCards, Map<String, Money> newLimits) {
+        return Flux.fromIterable(creditCards)
+                .concatMap(creditCard -> {
+                    Money newLimit = newLimits.get(creditCard.getId());
+                    Money limitDifference = newLimit.minus(creditCard.getCreditLimit());
+                    portfolioStatistics.cardChanged(creditCard.getId(), creditCard.getCustomerType(),
+                            creditCard.getCreditLimit(), creditCard.getAvailableBalance(),
+                            newLimit, creditCard.getAvailableBalance().plus(limitDifference));
+                    creditCardCache.evict(creditCard.getId());
+                    return authorizationEngine.creditLimitChanged(creditCard.getId(), newLimit, limitDifference);
+                })
+                .then();
+    }
+
+    /**
+     * Guarda el progreso de un tramo y renueva la reserva.
+     * Si el trabajo se canceló o lo reservó otra instancia, la ejecución se detiene.
+     */
+    private Mono<Void> checkpoint(RepricingJob job, ChunkResult chunk, long elapsedMillis) {
+        updatedCards.increment(chunk.updated);
+        skippedCards.increment(chunk.skipped);
+        conflictedCards.increment(chunk.conflicts);
+
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update()
+                .set(LAST_CARD_ID, chunk.lastCardId)
+                .inc(PROCESSED, chunk.processed)
+                .inc(UPDATED, chunk.updated)
+                .inc(SKIPPED, chunk.skipped)
+                .inc(CONFLICTS, chunk.conflicts)
+                .inc(ELAPSED_MILLIS, elapsedMillis)
+                .set(LEASE_EXPIRES_AT, now.plus(lease))
+                .set(UPDATED_AT, now);
+
+        return mongoTemplate.updateFirst(ownedBy(job), update, RepricingJob.class)
+                .flatMap(result -> result.getMatchedCount() == 0
+                        ? Mono.<Void>error(new JobReleasedException("cancelled or claimed by another instance"))
+                        : Mono.empty());
+    }
+
+    private Mono<Void> finish(RepricingJob job, RepricingJob.Status status, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update()
+                .set(STATUS, status)
+                .unset(OWNER)
+                .unset(LEASE_EXPIRES_AT)
+                .set(UPDATED_AT, now)
+                .set(COMPLETED_AT, now);
+        if (error != null) {
+            update.set(ERROR, error);
+        }
+
+        return mongoTemplate.updateFirst(ownedBy(job), update, RepricingJob.class)
+                .doOnNext(result -> {
+                    if (result.getMatchedCount() > 0) {
+                        log.info("Repricing job {} {}", job.getId(), status);
+                    }
+                })
+                .then();
+    }
+
+    /**
+     * Libera la reserva tras un error para reintentar desde el último checkpoint, hasta agotar los intentos.
+     */
+    private Mono<Void> failed(RepricingJob job, Throwable error) {
+        log.error("Error running repricing job {}: {}", job.getId(), error.getMessage());
+        if (job.getAttempts() + 1 >= maxRunAttempts) {
+            return finish(job, RepricingJob.Status.FAILED, error.getMessage());
+        }
+        // La reserva caduca tras el intervalo de sondeo, así que se reintenta en la siguiente vuelta
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update()
+                .inc(ATTEMPTS, 1)
+                .set(ERROR, error.getMessage())
+                .set(LEASE_EXPIRES_AT, now)
+                .set(UPDATED_AT, now);
+        return mongoTemplate.updateFirst(ownedBy(job), update, RepricingJob.class).then();
+    }
+
+    private Query ownedBy(RepricingJob job) {
+        return Query.query(Criteria.where(ID).is(job.getId())
+                .and(OWNER).is(instanceId)
+                .and(STATUS).is(RepricingJob.Status.RUNNING));
+    }
+
+    private static Money newLimit(RepricingJob job, CreditCard creditCard) {
+        try {
+            return job.getRule().apply(creditCard.getCreditLimit(), job.getValue());
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            // El nuevo límite no cabe en el rango admitido: la tarjeta se deja como está
+            return null;
+        }
+    }
+
+    /**
+     * Comprueba el filtro con el estado releído de una tarjeta modificada durante el trabajo.
+     */
+    private static boolean matches(RepricingJob job, CreditCard creditCard) {
+        if (job.getCustomerType() != null && job.getCustomerType() != creditCard.getCustomerType()) {
+            return false;
+        }
+        if (job.getCustomerIds() != null && !job.getCustomerIds().isEmpty()
+                && !job.getCustomerIds().contains(creditCard.getCustomerId())) {
+            return false;
+        }
+        long creditLimit = creditCard.getCreditLimit().getMinorUnits();
+        long usedPercent = (creditLimit - creditCard.getAvailableBalance().getMinorUnits()) * 100;
+        if (job.getMinUtilizationPercent() != null && usedPercent < creditLimit * job.getMinUtilizationPercent()) {
+            return false;
+        }
+        return job.getMaxUtilizationPercent() == null || usedPercent <= creditLimit * job.getMaxUtilizationPercent();
+    }
+
+    private static Counter cardsCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder(CARDS_METRIC)
+                .description("Tarjetas revisadas por los trabajos de revisión de límites")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resultado de un tramo; solo lo modifica la cadena que aplica ese tramo.
+     */
+    private static final class ChunkResult {
+
+        private final int processed;
+        private final String lastCardId;
+        private long updated;
+        private long skipped;
+        private long conflicts;
+
+        private ChunkResult(int processed, String lastCardId) {
+            this.processed = processed;
+            this.lastCardId = lastCardId;
+        }
+    }
+
+    /**
+     * El trabajo dejó de pertenecer a esta instancia: se canceló o su reserva caducó.
+     */
+    private static final class JobReleasedException extends RuntimeException {
+        private JobReleasedException(String message) {
+            super(message);
+        }
+    }
+}
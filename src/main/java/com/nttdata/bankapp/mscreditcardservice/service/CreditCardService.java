@@ -1,6 +1,14 @@
 package com.nttdata.bankapp.mscreditcardservice.service;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceBatchLineDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceBatchResultDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceEventDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.CardLookupRequestDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.CardLookupResultDto;
 import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardBalanceDto;
 import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.ExposureDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.MovementDto;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -18,6 +26,17 @@ public interface CreditCardService {
     Mono<CreditCardDto> update(String id, CreditCardDto creditCardDto);
     Mono<Void> delete(String id);
     Mono<CreditCardBalanceDto> getBalance(String id);
-    Mono<CreditCardDto> registerConsumption(String id, BigDecimal amount);
-    Mono<CreditCardDto> payBalance(String id, BigDecimal amount);
+    Mono<CreditCardDto> registerConsumption(String id, BigDecimal amount, String idempotencyKey);
+    Mono<CreditCardDto> payBalance(String id, BigDecimal amount, String idempotencyKey);
+    Mono<CreditCardDto> findAppliedOperation(String id, String idempotencyKey);
+    Flux<BalanceBatchResultDto> registerConsumptions(Flux<BalanceBatchLineDto> lines);
+    Flux<BalanceBatchResultDto> payBalances(Flux<BalanceBatchLineDto> lines);
+    Flux<CardLookupResultDto> lookup(CardLookupRequestDto request);
+    Flux<CreditCardDto> streamAll(String afterId, Integer limit);
+    Flux<CreditCardDto> streamByCustomerId(String customerId, String afterId, Integer limit);
+    Flux<MovementDto> findMovements(String id, String beforeId, int limit);
+    Flux<BalanceEventDto> streamBalanceEvents(String creditCardId, String customerId, String resumeToken);
+    Mono<ExposureDto> getCustomerExposure(String customerId);
+    Flux<ExposureDto> streamCustomerExposures(CustomerType customerType, String afterCustomerId, int limit);
+    Flux<ExposureDto> getExposureByCustomerType();
 }
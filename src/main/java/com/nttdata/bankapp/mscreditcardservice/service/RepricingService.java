@@ -0,0 +1,16 @@
+package com.nttdata.bankapp.mscreditcardservice.service;
+
+import com.nttdata.bankapp.mscreditcardservice.dto.RepricingJobDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.RepricingJobRequestDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Interfaz que define los servicios para los trabajos de revisión de límites.
+ */
+public interface RepricingService {
+    Mono<RepricingJobDto> create(RepricingJobRequestDto request);
+    Mono<RepricingJobDto> findById(String id);
+    Flux<RepricingJobDto> findRecent(int limit);
+    Mono<RepricingJobDto> cancel(String id);
+}
@@ -0,0 +1,268 @@
+package com.nttdata.bankapp.mscreditcardservice.service.impl;
+
+import com.nttdata.bankapp.mscreditcardservice.authorization.AuthorizationEngine;
+import com.nttdata.bankapp.mscreditcardservice.concurrency.CardContentionTracker;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceBatchLineDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceBatchResultDto;
+import com.nttdata.bankapp.mscreditcardservice.exception.CreditCardNotFoundException;
+import com.nttdata.bankapp.mscreditcardservice.metrics.DeclineReason;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.model.Movement;
+import com.nttdata.bankapp.mscreditcardservice.model.MovementType;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import com.nttdata.bankapp.mscreditcardservice.stats.PortfolioStatistics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Procesa lotes de consumos o pagos agrupando las líneas por tarjeta.
+ * El cuerpo se lee en tramos de líneas consecutivas que se procesan uno tras otro, así que la memoria
+ * no depende del tamaño del lote. Dentro de cada tramo las líneas de cada tarjeta se aplican en orden
+ * sobre el saldo leído y los movimientos aprobados se persisten con una sola escritura masiva por intento,
+ * que solo actualiza las tarjetas que siguen en la versión leída; las demás se recalculan con su saldo actual.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceBatchProcessor {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int WINDOW_SIZE = 500;
+
+    private final CreditCardRepository creditCardRepository;
+    private final AuthorizationEngine authorizationEngine;
+    private final PortfolioStatistics portfolioStatistics;
+    private final CardContentionTracker cardContentionTracker;
+
+    /**
+     * Registra un lote de consumos.
+     * @param lines Líneas del lote
+     * @return Flux con el resultado de cada línea en el orden recibido
+     */
+    public Flux<BalanceBatchResultDto> registerConsumptions(Flux<BalanceBatchLineDto> lines) {
+        return process(lines, Operation.CONSUMPTION);
+    }
+
+    /**
+     * Registra un lote de pagos.
+     * @param lines Líneas del lote
+     * @return Flux con el resultado de cada línea en el orden recibido
+     */
+    public Flux<BalanceBatchResultDto> payBalances(Flux<BalanceBatchLineDto> lines) {
+        return process(lines, Operation.PAYMENT);
+    }
+
+    private Flux<BalanceBatchResultDto> process(Flux<BalanceBatchLineDto> lines, Operation operation) {
+        // Un tramo no empieza hasta terminar el anterior, de modo que las líneas de cada tarjeta conservan su orden
+        return lines.buffer(WINDOW_SIZE)
+                .concatMap(window -> processWindow(window, operation), 1);
+    }
+
+    private Flux<BalanceBatchResultDto> processWindow(List<BalanceBatchLineDto> lines, Operation operation) {
+        log.info("Processing batch window of {} {} lines", lines.size(), operation);
+
+        if (authorizationEngine.isEnabled()) {
+            // El motor es la fuente del saldo: las líneas pasan por él una a una para conservar su orden
+            return Flux.fromIterable(lines).concatMap(line -> authorizeWithEngine(line, operation));
+        }
+
+        BalanceBatchResultDto[] results = new BalanceBatchResultDto[lines.size()];
+        Map<String, List<Integer>> linesByCard = new LinkedHashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            BalanceBatchLineDto line = lines.get(i);
+            if (!isValid(line)) {
+                results[i] = declined(line, DeclineReason.INVALID_REQUEST.getMessage());
+                continue;
+            }
+            linesByCard.computeIfAbsent(line.getCreditCardId(), id -> new ArrayList<>()).add(i);
+        }
+
+        // Flux.fromArray lee ya al crearse un array de un elemento: los resultados se leen tras aplicar el tramo
+        return applyGroups(lines, linesByCard, linesByCard.keySet(), results, operation, 1)
+                .thenMany(Flux.defer(() -> Flux.fromArray(results)));
+    }
+
+    private Mono<Void> applyGroups(List<BalanceBatchLineDto> lines, Map<String, List<Integer>> linesByCard,
+                                   Collection<String> cardIds, BalanceBatchResultDto[] results,
+                                   Operation operation, int attempt) {
+        return creditCardRepository.findCardsByIdIn(cardIds)
+                .collectMap(CreditCard::getId)
+                .flatMap(cards -> {
+                    Map<String, List<Movement>> movements = new LinkedHashMap<>();
+                    Map<String, Money> balancesAfter = new HashMap<>();
+                    Map<String, Long> versions = new HashMap<>();
+                    for (String cardId : cardIds) {
+                        List<Integer> indexes = linesByCard.get(cardId);
+                        CreditCard creditCard = cards.get(cardId);
+                        if (creditCard == null) {
+                            indexes.forEach(i -> results[i] = declined(lines.get(i), DeclineReason.CARD_NOT_FOUND.getMessage()));
+                            continue;
+                        }
+
+                        long creditLimit = creditCard.getCreditLimit().getMinorUnits();
+                        long availableBalance = creditCard.getAvailableBalance().getMinorUnits();
+                        List<Movement> cardMovements = new ArrayList<>(indexes.size());
+                        for (int i : indexes) {
+                            BalanceBatchLineDto line = lines.get(i);
+                            Money amount = Money.of(line.getAmount());
+                            String reason = operation.validate(amount.getMinorUnits(), availableBalance, creditLimit);
+                            if (reason != null) {
+                                results[i] = declined(line, reason);
+                                continue;
+                            }
+                            Movement movement = Movement.of(cardId, operation.movementType, amount);
+                            availableBalance += movement.balanceDelta();
+                            cardMovements.add(movement);
+                            results[i] = approved(line, Money.ofMinorUnits(availableBalance));
+                        }
+                        if (!cardMovements.isEmpty()) {
+                            movements.put(cardId, cardMovements);
+                            balancesAfter.put(cardId, Money.ofMinorUnits(availableBalance));
+                            versions.put(cardId, creditCard.getVersion());
+                        }
+                    }
+                    return creditCardRepository.applyBatchBalanceChanges(UUID.randomUUID().toString(), movements, versions)
+                            .doOnNext(failedCardIds -> recordApplied(cards, balancesAfter, failedCardIds));
+                })
+                .flatMap(failedCardIds -> {
+                    if (failedCardIds.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    return creditCardRepository.findWithFullOutbox(failedCardIds)
+                            .flatMap(backloggedCardIds -> retryFailed(lines, linesByCard, failedCardIds,
+                                    backloggedCardIds, results, operation, attempt));
+                });
+    }
+
+    /**
+     * Rechaza las líneas de las tarjetas con el máximo de movimientos pendientes y recalcula las del resto,
+     * que se modificaron entre la lectura y la escritura, hasta agotar los intentos.
+     */
+    private Mono<Void> retryFailed(List<BalanceBatchLineDto> lines, Map<String, List<Integer>> linesByCard,
+                                   Set<String> failedCardIds, Set<String> backloggedCardIds,
+                                   BalanceBatchResultDto[] results, Operation operation, int attempt) {
+        backloggedCardIds.forEach(cardId -> linesByCard.get(cardId).forEach(i ->
+                results[i] = declined(lines.get(i), DeclineReason.PENDING_MOVEMENTS_BACKLOG.getMessage())));
+        Set<String> conflicts = new HashSet<>(failedCardIds);
+        conflicts.removeAll(backloggedCardIds);
+        if (conflicts.isEmpty()) {
+            return Mono.empty();
+        }
+        conflicts.forEach(cardId -> cardContentionTracker.conflict(cardId, "batch"));
+        if (attempt >= MAX_ATTEMPTS) {
+            log.warn("Declining batch lines for {} credit cards modified concurrently", conflicts.size());
+            conflicts.forEach(cardId -> cardContentionTracker.exhausted(cardId, "batch"));
+            conflicts.forEach(cardId -> linesByCard.get(cardId).forEach(i ->
+                    results[i] = declined(lines.get(i), DeclineReason.CONCURRENT_MODIFICATION.getMessage())));
+            return Mono.empty();
+        }
+        // Las tarjetas modificadas entre la lectura y la escritura se recalculan con su saldo actual
+        return applyGroups(lines, linesByCard, conflicts, results, operation, attempt + 1);
+    }
+
+    private Mono<BalanceBatchResultDto> authorizeWithEngine(BalanceBatchLineDto line, Operation operation) {
+        if (!isValid(line)) {
+            return Mono.just(declined(line, DeclineReason.INVALID_REQUEST.getMessage()));
+        }
+        Money amount = Money.of(line.getAmount());
+        Money delta = operation == Operation.CONSUMPTION ? amount.negate() : amount;
+        Function<CreditCard, BalanceBatchResultDto> onApproved = creditCard -> {
+            portfolioStatistics.cardChanged(creditCard.getId(), creditCard.getCustomerType(),
+                    creditCard.getCreditLimit(), creditCard.getAvailableBalance().minus(delta),
+                    creditCard.getCreditLimit(), creditCard.getAvailableBalance());
+            return approved(line, creditCard.getAvailableBalance());
+        };
+        Mono<BalanceBatchResultDto> result = operation == Operation.CONSUMPTION
+                ? authorizationEngine.consume(line.getCreditCardId(), amount, null, onApproved)
+                : authorizationEngine.pay(line.getCreditCardId(), amount, null, onApproved);
+        return result
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(declined(line, e.getMessage())))
+                .onErrorResume(CreditCardNotFoundException.class, e -> Mono.just(declined(line, DeclineReason.CARD_NOT_FOUND.getMessage())));
+    }
+
+    /**
+     * Refleja en las estadísticas de la cartera los saldos de las tarjetas que se escribieron.
+     */
+    private void recordApplied(Map<String, CreditCard> cards, Map<String, Money> balancesAfter, Set<String> failedCardIds) {
+        balancesAfter.forEach((cardId, availableBalance) -> {
+            if (!failedCardIds.contains(cardId)) {
+                CreditCard creditCard = cards.get(cardId);
+                portfolioStatistics.cardChanged(cardId, creditCard.getCustomerType(),
+                        creditCard.getCreditLimit(), creditCard.getAvailableBalance(),
+                        creditCard.getCreditLimit(), availableBalance);
+            }
+        });
+    }
+
+    private static boolean isValid(BalanceBatchLineDto line) {
+        if (line.getCreditCardId() == null || line.getCreditCardId().isBlank()
+                || line.getAmount() == null || line.getAmount().signum() <= 0) {
+            return false;
+        }
+        try {
+            Money.of(line.getAmount());
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static BalanceBatchResultDto approved(BalanceBatchLineDto line, Money availableBalance) {
+        return BalanceBatchResultDto.builder()
+                .creditCardId(line.getCreditCardId())
+                .amount(line.getAmount())
+                .approved(true)
+                .availableBalance(availableBalance.toBigDecimal())
+                .build();
+    }
+
+    private static BalanceBatchResultDto declined(BalanceBatchLineDto line, String reason) {
+        return BalanceBatchResultDto.builder()
+                .creditCardId(line.getCreditCardId())
+                .amount(line.getAmount())
+                .approved(false)
+                .reason(reason)
+                .build();
+    }
+
+    /**
+     * Tipo de operación del lote y sus reglas de saldo, en céntimos.
+     */
+    private enum Operation {
+        CONSUMPTION(MovementType.CONSUMPTION) {
+            @Override
+            String validate(long amount, long availableBalance, long creditLimit) {
+                return amount > availableBalance ? DeclineReason.INSUFFICIENT_AVAILABLE_BALANCE.getMessage() : null;
+            }
+        },
+        PAYMENT(MovementType.PAYMENT) {
+            @Override
+            String validate(long amount, long availableBalance, long creditLimit) {
+                return amount > creditLimit - availableBalance ? DeclineReason.PAYMENT_EXCEEDS_USED_BALANCE.getMessage() : null;
+            }
+        };
+
+        private final MovementType movementType;
+
+        Operation(MovementType movementType) {
+            this.movementType = movementType;
+        }
+
+        abstract String validate(long amount, long availableBalance, long creditLimit);
+    }
+}
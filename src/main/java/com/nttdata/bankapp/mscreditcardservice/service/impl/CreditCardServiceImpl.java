@@ -1,23 +1,55 @@
 package com.nttdata.bankapp.mscreditcardservice.service.impl;
 
+import com.nttdata.bankapp.mscreditcardservice.authorization.AuthorizationEngine;
+import com.nttdata.bankapp.mscreditcardservice.cache.CreditCardCache;
 import com.nttdata.bankapp.mscreditcardservice.client.CustomerService;
+import com.nttdata.bankapp.mscreditcardservice.concurrency.CardContentionTracker;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceBatchLineDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceBatchResultDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceEventDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.CardLookupRequestDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.CardLookupResultDto;
 import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardBalanceDto;
 import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.ExposureDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.MovementDto;
 import com.nttdata.bankapp.mscreditcardservice.exception.CreditCardNotFoundException;
 import com.nttdata.bankapp.mscreditcardservice.exception.CustomerNotFoundException;
+import com.nttdata.bankapp.mscreditcardservice.events.BalanceEventStream;
+import com.nttdata.bankapp.mscreditcardservice.issuance.CardNumberIssuer;
+import com.nttdata.bankapp.mscreditcardservice.metrics.DeclineReason;
+import com.nttdata.bankapp.mscreditcardservice.metrics.OperationMetrics;
 import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCardCvvView;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCardSummaryView;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import com.nttdata.bankapp.mscreditcardservice.model.ExposureView;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.model.Movement;
 import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import com.nttdata.bankapp.mscreditcardservice.repository.MovementRepository;
 import com.nttdata.bankapp.mscreditcardservice.service.CreditCardService;
+import com.nttdata.bankapp.mscreditcardservice.stats.PortfolioStatistics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.Random;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Implementación de los servicios para operaciones con tarjetas de crédito.
@@ -27,42 +59,65 @@ import java.util.Random;
 @Slf4j
 public class CreditCardServiceImpl implements CreditCardService {
 
+    private static final int MAX_MOVEMENTS_PAGE = 500;
+    private static final int MAX_EXPOSURE_PAGE = 1000;
+    private static final int MAX_ISSUANCE_ATTEMPTS = 3;
+    private static final int MAX_LOOKUP_KEYS = 10000;
+    private static final int LOOKUP_CHUNK_SIZE = 500;
+    private static final int LOOKUP_CONCURRENCY = 4;
+    private static final String CONSUMPTION = "consumption";
+    private static final String PAYMENT = "payment";
+    private static final String BATCH_CONSUMPTION = "batch_consumption";
+    private static final String BATCH_PAYMENT = "batch_payment";
+
     private final CreditCardRepository creditCardRepository;
+    private final MovementRepository movementRepository;
     private final CustomerService customerService;
+    private final AuthorizationEngine authorizationEngine;
+    private final BalanceBatchProcessor balanceBatchProcessor;
+    private final CreditCardCache creditCardCache;
+    private final PortfolioStatistics portfolioStatistics;
+    private final CardContentionTracker cardContentionTracker;
+    private final OperationMetrics operationMetrics;
+    private final CardNumberIssuer cardNumberIssuer;
+    private final BalanceEventStream balanceEventStream;
 
     @Override
     public Flux<CreditCardDto> findAll() {
         log.info("Finding all credit cards");
-        return creditCardRepository.findAll()
-                .map(this::mapToDto);
+        return creditCardRepository.findSummaryViewsBy()
+                .map(this::mapSummaryToDto);
     }
 
     @Override
     public Mono<CreditCardDto> findById(String id) {
-        log.info("Finding credit card by id: {}", id);
-        return creditCardRepository.findById(id)
-                .map(this::mapToDto)
-                .switchIfEmpty(Mono.error(new CreditCardNotFoundException("Credit card not found with id: " + id)));
+        log.debug("Finding credit card by id: {}", id);
+        // La caché no guarda el CVV: se lee aparte, en paralelo
+        return Mono.zip(creditCardCache.findById(id, this::loadById), creditCardRepository.findCvvViewById(id),
+                        CreditCardServiceImpl::withCvv)
+                .switchIfEmpty(Mono.error(new CreditCardNotFoundException("Credit card not found with id: " + id)))
+                .transform(operationMetrics.timed("find_by_id"));
     }
 
     @Override
     public Flux<CreditCardDto> findByCustomerId(String customerId) {
         log.info("Finding credit cards by customer id: {}", customerId);
-        return creditCardRepository.findByCustomerId(customerId)
-                .map(this::mapToDto);
+        return creditCardRepository.findSummaryViewsByCustomerId(customerId)
+                .map(this::mapSummaryToDto);
     }
 
     @Override
     public Mono<CreditCardDto> findByCardNumber(String cardNumber) {
-        log.info("Finding credit card by card number: {}", cardNumber);
-        return creditCardRepository.findByCardNumber(cardNumber)
-                .map(this::mapToDto)
-                .switchIfEmpty(Mono.error(new CreditCardNotFoundException("Credit card not found with card number: " + cardNumber)));
+        log.debug("Finding credit card by card number: {}", cardNumber);
+        return Mono.zip(creditCardCache.findByCardNumber(cardNumber, this::loadByCardNumber),
+                        creditCardRepository.findCvvViewByCardNumber(cardNumber), CreditCardServiceImpl::withCvv)
+                .switchIfEmpty(Mono.error(new CreditCardNotFoundException("Credit card not found with the given card number")))
+                .transform(operationMetrics.timed("find_by_card_number"));
     }
 
     @Override
     public Mono<CreditCardDto> save(CreditCardDto creditCardDto) {
-        log.info("Saving new credit card: {}", creditCardDto);
+        log.info("Saving new credit card for customer id: {} type: {}", creditCardDto.getCustomerId(), creditCardDto.getCustomerType());
 
         // Verificar si el cliente existe
         return customerService.customerExists(creditCardDto.getCustomerId())
@@ -73,24 +128,26 @@ public class CreditCardServiceImpl implements CreditCardService {
 
                     CreditCard creditCard = mapToEntity(creditCardDto);
 
-                    // Generar número de tarjeta, fecha de expiración y CVV
-                    creditCard.setCardNumber(generateCardNumber());
+                    // Establecer fecha de expiración y saldo disponible igual al límite de crédito
                     creditCard.setExpirationDate(LocalDate.now().plusYears(4));
-                    creditCard.setCvv(generateCVV());
-
-                    // Establecer saldo disponible igual al límite de crédito
                     creditCard.setAvailableBalance(creditCard.getCreditLimit());
                     creditCard.setCreatedAt(LocalDateTime.now());
                     creditCard.setUpdatedAt(LocalDateTime.now());
 
-                    return creditCardRepository.save(creditCard).map(this::mapToDto);
-                });
+                    return issueAndInsert(creditCard)
+                            .doOnNext(saved -> portfolioStatistics.cardAdded(saved.getId(), saved.getCustomerType(),
+                                    saved.getCreditLimit(), saved.getAvailableBalance()))
+                            .map(this::mapToDto);
+                })
+                .doOnNext(creditCardCache::put)
+                .transform(operationMetrics.timed("create"));
     }
 
     @Override
     public Mono<CreditCardDto> update(String id, CreditCardDto creditCardDto) {
         log.info("Updating credit card id: {}", id);
-        return creditCardRepository.findById(id)
+        // Ante una escritura concurrente se vuelve a leer la tarjeta y se reintenta con la nueva versión
+        return creditCardRepository.findCardById(id)
                 .switchIfEmpty(Mono.error(new CreditCardNotFoundException("Credit card not found with id: " + id)))
                 .flatMap(existingCard -> {
                     // No permitir cambiar campos críticos como cliente
@@ -102,109 +159,320 @@ public class CreditCardServiceImpl implements CreditCardService {
                         return Mono.error(new IllegalArgumentException("Cannot change customer type"));
                     }
 
-                    // Actualizar límite de crédito si se proporciona
-                    if (creditCardDto.getCreditLimit() != null) {
-                        BigDecimal limitDifference = creditCardDto.getCreditLimit().subtract(existingCard.getCreditLimit());
-                        existingCard.setCreditLimit(creditCardDto.getCreditLimit());
-                        // Actualizar también el saldo disponible
-                        existingCard.setAvailableBalance(existingCard.getAvailableBalance().add(limitDifference));
+                    if (creditCardDto.getCreditLimit() == null) {
+                        return Mono.just(existingCard);
                     }
 
-                    existingCard.setUpdatedAt(LocalDateTime.now());
-
-                    return creditCardRepository.save(existingCard);
+                    // Actualizar límite de crédito y saldo disponible en la misma operación atómica
+                    Money newLimit = Money.of(creditCardDto.getCreditLimit());
+                    Money limitDifference = newLimit.minus(existingCard.getCreditLimit());
+                    return creditCardRepository.changeCreditLimit(id, existingCard.getVersion(), existingCard.getCreditLimit(), newLimit)
+                            .switchIfEmpty(Mono.error(new OptimisticLockingFailureException("Credit card was modified concurrently: " + id)))
+                            .doOnNext(updatedCard -> portfolioStatistics.cardChanged(id, updatedCard.getCustomerType(),
+                                    existingCard.getCreditLimit(), updatedCard.getAvailableBalance().minus(limitDifference),
+                                    updatedCard.getCreditLimit(), updatedCard.getAvailableBalance()))
+                            .flatMap(updatedCard -> authorizationEngine
+                                    .creditLimitChanged(id, updatedCard.getCreditLimit(), limitDifference)
+                                    .thenReturn(updatedCard));
                 })
-                .map(this::mapToDto);
+                .retryWhen(cardContentionTracker.retryOnConflict(id, "update"))
+                .map(this::mapToDto)
+                .doOnNext(creditCard -> creditCardCache.evict(id))
+                .transform(operationMetrics.timed("update"));
     }
 
     @Override
     public Mono<Void> delete(String id) {
         log.info("Deleting credit card id: {}", id);
-        return creditCardRepository.findById(id)
+        return creditCardRepository.findCardById(id)
                 .switchIfEmpty(Mono.error(new CreditCardNotFoundException("Credit card not found with id: " + id)))
-                .flatMap(creditCard -> creditCardRepository.deleteById(id));
+                .flatMap(creditCard -> creditCardRepository.deleteById(id)
+                        .then(Mono.<Void>fromRunnable(() -> portfolioStatistics.cardRemoved(id, creditCard.getCustomerType(),
+                                creditCard.getCreditLimit(), creditCard.getAvailableBalance()))))
+                .then(authorizationEngine.evict(id))
+                .doOnSuccess(unused -> creditCardCache.evict(id))
+                .transform(operationMetrics.timed("delete"));
     }
 
     @Override
     public Mono<CreditCardBalanceDto> getBalance(String id) {
-        log.info("Getting balance for credit card id: {}", id);
-        return creditCardRepository.findById(id)
+        log.debug("Getting balance for credit card id: {}", id);
+        // Si la tarjeta está en la caché se usa; si no, se leen solo los campos del saldo
+        return creditCardCache.findIfPresent(id)
+                .map(creditCard -> mapToBalanceDto(creditCard.getId(), creditCard.getCardNumber(),
+                        Money.of(creditCard.getCreditLimit()), Money.of(creditCard.getAvailableBalance())))
+                .switchIfEmpty(Mono.defer(() -> creditCardRepository.findBalanceViewById(id)
+                        .map(view -> mapToBalanceDto(view.getId(), view.getCardNumber(),
+                                view.getCreditLimit(), view.getAvailableBalance()))))
                 .switchIfEmpty(Mono.error(new CreditCardNotFoundException("Credit card not found with id: " + id)))
-                .map(creditCard -> {
-                    BigDecimal usedBalance = creditCard.getCreditLimit().subtract(creditCard.getAvailableBalance());
+                .transform(operationMetrics.timed("balance"));
+    }
 
-                    return CreditCardBalanceDto.builder()
-                            .creditCardId(creditCard.getId())
-                            .cardNumber(creditCard.getCardNumber())
-                            .creditLimit(creditCard.getCreditLimit())
-                            .availableBalance(creditCard.getAvailableBalance())
-                            .usedBalance(usedBalance)
-                            .build();
-                });
+    @Override
+    public Mono<CreditCardDto> registerConsumption(String id, BigDecimal amount, String idempotencyKey) {
+        log.debug("Registering consumption for credit card id: {} with amount: {}", id, amount);
+        return positiveAmount(amount)
+                .flatMap(money -> consume(id, money, idempotencyKey)
+                        .doOnNext(creditCard -> balanceChanged(creditCard, money.negate())))
+                .transform(operationMetrics.authorization(CONSUMPTION));
+    }
+
+    private Mono<CreditCardDto> consume(String id, Money money, String idempotencyKey) {
+        if (authorizationEngine.isEnabled()) {
+            return authorizationEngine.consume(id, money, idempotencyKey, this::mapToDto);
+        }
+
+        // Validación y descuento del saldo en una sola operación atómica
+        return creditCardRepository.debitAvailableBalance(id, money, idempotencyKey)
+                .switchIfEmpty(Mono.defer(() -> rejectBalanceChange(id, DeclineReason.INSUFFICIENT_AVAILABLE_BALANCE)))
+                .map(this::mapToDto);
     }
 
     @Override
-    public Mono<CreditCardDto> registerConsumption(String id, BigDecimal amount) {
-        log.info("Registering consumption for credit card id: {} with amount: {}", id, amount);
-        return creditCardRepository.findById(id)
-                .switchIfEmpty(Mono.error(new CreditCardNotFoundException("Credit card not found with id: " + id)))
-                .flatMap(creditCard -> {
-                    // Validar que el monto no sea mayor que el saldo disponible
-                    if (amount.compareTo(creditCard.getAvailableBalance()) > 0) {
-                        return Mono.error(new IllegalArgumentException("Consumption amount exceeds available balance"));
-                    }
+    public Mono<CreditCardDto> payBalance(String id, BigDecimal amount, String idempotencyKey) {
+        log.debug("Making payment to credit card id: {} with amount: {}", id, amount);
+        return positiveAmount(amount)
+                .flatMap(money -> pay(id, money, idempotencyKey)
+                        .doOnNext(creditCard -> balanceChanged(creditCard, money)))
+                .transform(operationMetrics.authorization(PAYMENT));
+    }
 
-                    // Actualizar saldo disponible
-                    BigDecimal newAvailableBalance = creditCard.getAvailableBalance().subtract(amount);
-                    creditCard.setAvailableBalance(newAvailableBalance);
-                    creditCard.setUpdatedAt(LocalDateTime.now());
+    private Mono<CreditCardDto> pay(String id, Money money, String idempotencyKey) {
+        if (authorizationEngine.isEnabled()) {
+            return authorizationEngine.pay(id, money, idempotencyKey, this::mapToDto);
+        }
 
-                    return creditCardRepository.save(creditCard);
-                })
+        // Validación contra la deuda y abono del saldo en una sola operación atómica
+        return creditCardRepository.creditAvailableBalance(id, money, idempotencyKey)
+                .switchIfEmpty(Mono.defer(() -> rejectBalanceChange(id, DeclineReason.PAYMENT_EXCEEDS_USED_BALANCE)))
                 .map(this::mapToDto);
     }
 
     @Override
-    public Mono<CreditCardDto> payBalance(String id, BigDecimal amount) {
-        log.info("Making payment to credit card id: {} with amount: {}", id, amount);
-        return creditCardRepository.findById(id)
-                .switchIfEmpty(Mono.error(new CreditCardNotFoundException("Credit card not found with id: " + id)))
-                .flatMap(creditCard -> {
-                    // Validar que el monto no sea mayor que la deuda
-                    BigDecimal usedBalance = creditCard.getCreditLimit().subtract(creditCard.getAvailableBalance());
-                    if (amount.compareTo(usedBalance) > 0) {
-                        return Mono.error(new IllegalArgumentException("Payment amount exceeds used balance"));
-                    }
+    public Mono<CreditCardDto> findAppliedOperation(String id, String idempotencyKey) {
+        // La respuesta se reconstruye con el estado actual de la tarjeta, no con el de justo después de la operación
+        return creditCardRepository.hasMovementWithIdempotencyKey(id, idempotencyKey)
+                .filter(Boolean::booleanValue)
+                .flatMap(applied -> findById(id));
+    }
 
-                    // Actualizar saldo disponible
-                    BigDecimal newAvailableBalance = creditCard.getAvailableBalance().add(amount);
-                    creditCard.setAvailableBalance(newAvailableBalance);
-                    creditCard.setUpdatedAt(LocalDateTime.now());
+    @Override
+    public Flux<BalanceBatchResultDto> registerConsumptions(Flux<BalanceBatchLineDto> lines) {
+        return balanceBatchProcessor.registerConsumptions(lines)
+                .doOnNext(result -> batchLineProcessed(BATCH_CONSUMPTION, result))
+                .transform(operationMetrics.timedMany(BATCH_CONSUMPTION));
+    }
 
-                    return creditCardRepository.save(creditCard);
-                })
+    @Override
+    public Flux<BalanceBatchResultDto> payBalances(Flux<BalanceBatchLineDto> lines) {
+        return balanceBatchProcessor.payBalances(lines)
+                .doOnNext(result -> batchLineProcessed(BATCH_PAYMENT, result))
+                .transform(operationMetrics.timedMany(BATCH_PAYMENT));
+    }
+
+    @Override
+    public Flux<CardLookupResultDto> lookup(CardLookupRequestDto request) {
+        boolean byId = request.getIds() != null && !request.getIds().isEmpty();
+        boolean byCardNumber = request.getCardNumbers() != null && !request.getCardNumbers().isEmpty();
+        if (byId == byCardNumber) {
+            return Flux.error(new IllegalArgumentException("Either ids or cardNumbers must be provided"));
+        }
+        List<String> keys = byId ? request.getIds() : request.getCardNumbers();
+        if (keys.size() > MAX_LOOKUP_KEYS) {
+            return Flux.error(new IllegalArgumentException("At most " + MAX_LOOKUP_KEYS + " keys can be looked up at once"));
+        }
+        if (keys.contains(null)) {
+            return Flux.error(new IllegalArgumentException("Lookup keys cannot be null"));
+        }
+        log.info("Looking up {} credit cards by {}", keys.size(), byId ? "id" : "card number");
+
+        Function<Collection<String>, Flux<CreditCardSummaryView>> finder = byId
+                ? creditCardRepository::findSummaryViewsByIdIn
+                : creditCardRepository::findSummaryViewsByCardNumberIn;
+        Function<CreditCardSummaryView, String> keyOf = byId ? CreditCardSummaryView::getId : CreditCardSummaryView::getCardNumber;
+
+        // Una consulta $in por bloque; flatMapSequential ejecuta varios bloques a la vez y conserva el orden de entrada
+        return Flux.fromIterable(keys)
+                .buffer(LOOKUP_CHUNK_SIZE)
+                .flatMapSequential(chunk -> finder.apply(new HashSet<>(chunk))
+                                .collectMap(keyOf)
+                                .flatMapIterable(found -> chunk.stream()
+                                        .map(key -> mapLookupResult(key, found.get(key)))
+                                        .collect(Collectors.toList())),
+                        LOOKUP_CONCURRENCY)
+                .transform(operationMetrics.timedMany("lookup"));
+    }
+
+    @Override
+    public Flux<CreditCardDto> streamAll(String afterId, Integer limit) {
+        log.info("Streaming credit cards after id: {} with limit: {}", afterId, limit);
+        return validatePage(afterId, limit)
+                .thenMany(Flux.defer(() -> creditCardRepository.findPageAfter(null, afterId, limit)))
                 .map(this::mapToDto);
     }
 
+    @Override
+    public Flux<CreditCardDto> streamByCustomerId(String customerId, String afterId, Integer limit) {
+        log.info("Streaming credit cards by customer id: {} after id: {} with limit: {}", customerId, afterId, limit);
+        return validatePage(afterId, limit)
+                .thenMany(Flux.defer(() -> creditCardRepository.findPageAfter(customerId, afterId, limit)))
+                .map(this::mapToDto);
+    }
+
+    @Override
+    public Flux<MovementDto> findMovements(String id, String beforeId, int limit) {
+        log.info("Finding movements for credit card id: {} before: {} limit: {}", id, beforeId, limit);
+        if (beforeId != null && !ObjectId.isValid(beforeId)) {
+            return Flux.error(new IllegalArgumentException("Invalid movement cursor: " + beforeId));
+        }
+
+        Pageable page = PageRequest.of(0, Math.min(Math.max(limit, 1), MAX_MOVEMENTS_PAGE));
+        Flux<Movement> movements = beforeId == null
+                ? movementRepository.findByCreditCardIdOrderByTimestampDescIdDesc(id, page)
+                : movementRepository.findById(beforeId)
+                        .filter(cursor -> id.equals(cursor.getCreditCardId()))
+                        .switchIfEmpty(Mono.error(new IllegalArgumentException("Invalid movement cursor: " + beforeId)))
+                        .flatMapMany(cursor -> movementRepository.findPageBefore(
+                                id, cursor.getTimestamp(), new ObjectId(cursor.getId()), page));
+
+        return creditCardRepository.existsById(id)
+                .flatMapMany(exists -> exists
+                        ? movements
+                        : Flux.<Movement>error(new CreditCardNotFoundException("Credit card not found with id: " + id)))
+                .map(this::mapMovementToDto);
+    }
+
+    @Override
+    public Flux<BalanceEventDto> streamBalanceEvents(String creditCardId, String customerId, String resumeToken) {
+        log.info("Streaming balance events for credit card id: {} customer id: {} resuming: {}",
+                creditCardId, customerId, resumeToken != null);
+        return balanceEventStream.events(creditCardId, customerId, resumeToken);
+    }
+
+    @Override
+    public Mono<ExposureDto> getCustomerExposure(String customerId) {
+        log.info("Getting exposure for customer id: {}", customerId);
+        return creditCardRepository.aggregateExposureByCustomer(customerId)
+                .map(view -> mapExposureToDto(view, view.getId()))
+                // Un cliente sin tarjetas no tiene exposición
+                .defaultIfEmpty(ExposureDto.builder()
+                        .customerId(customerId)
+                        .cardCount(0L)
+                        .totalCreditLimit(Money.ZERO.toBigDecimal())
+                        .totalAvailableBalance(Money.ZERO.toBigDecimal())
+                        .totalUsedBalance(Money.ZERO.toBigDecimal())
+                        .build());
+    }
+
+    @Override
+    public Flux<ExposureDto> streamCustomerExposures(CustomerType customerType, String afterCustomerId, int limit) {
+        log.info("Streaming customer exposures for type: {} after customer id: {} with limit: {}",
+                customerType, afterCustomerId, limit);
+        return creditCardRepository
+                .aggregateExposureByCustomerPage(customerType, afterCustomerId, Math.min(Math.max(limit, 1), MAX_EXPOSURE_PAGE))
+                .map(view -> mapExposureToDto(view, view.getId()));
+    }
+
+    @Override
+    public Flux<ExposureDto> getExposureByCustomerType() {
+        log.info("Getting exposure by customer type");
+        return creditCardRepository.aggregateExposureByCustomerType()
+                .map(view -> mapExposureToDto(view, null));
+    }
+
+    private Mono<CreditCardDto> loadById(String id) {
+        return creditCardRepository.findCardById(id).map(this::mapToDto);
+    }
+
+    private Mono<CreditCardDto> loadByCardNumber(String cardNumber) {
+        return creditCardRepository.findByCardNumber(cardNumber).map(this::mapToDto);
+    }
+
     /**
-     * Genera un número de tarjeta de crédito aleatorio.
-     * @return String con el número de tarjeta
+     * Valida el cursor y el límite de una exportación.
+     * Los IDs de las tarjetas son ObjectId: otro valor se compararía por tipo BSON y devolvería una página incorrecta.
+     * @param afterId Último ID recibido, o null
+     * @param limit Número máximo de tarjetas, o null para todas
+     * @return Mono vacío, o con IllegalArgumentException si alguno no es válido
      */
-    private String generateCardNumber() {
-        // Formato: XXXX-XXXX-XXXX-XXXX
-        return String.format("5%03d-%04d-%04d-%04d",
-                new Random().nextInt(1000),
-                new Random().nextInt(10000),
-                new Random().nextInt(10000),
-                new Random().nextInt(10000));
+    private static Mono<Void> validatePage(String afterId, Integer limit) {
+        if (limit != null && limit < 1) {
+            return Mono.error(new IllegalArgumentException("Limit must be at least 1"));
+        }
+        if (afterId != null && !ObjectId.isValid(afterId)) {
+            return Mono.error(new IllegalArgumentException("Invalid credit card cursor: " + afterId));
+        }
+        return Mono.empty();
     }
 
     /**
-     * Genera un código CVV aleatorio.
-     * @return String con el código CVV
+     * Convierte el importe de un consumo o un pago antes de consultar el repositorio.
+     * @param amount Importe recibido
+     * @return Mono con el importe; IllegalArgumentException si no es positivo o tiene más de dos decimales
      */
-    private String generateCVV() {
-        return String.format("%03d", new Random().nextInt(1000));
+    private static Mono<Money> positiveAmount(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            return Mono.error(new IllegalArgumentException("Amount must be greater than 0"));
+        }
+        return Mono.fromCallable(() -> Money.of(amount));
+    }
+
+    /**
+     * Invalida la tarjeta en la caché y actualiza las estadísticas de la cartera tras un consumo o un pago.
+     * No se guarda el resultado porque otro consumo posterior podría haberse guardado antes.
+     * @param creditCard Tarjeta actualizada
+     * @param delta Cambio aplicado al saldo disponible
+     */
+    private void balanceChanged(CreditCardDto creditCard, Money delta) {
+        creditCardCache.evict(creditCard.getId());
+        Money creditLimit = Money.of(creditCard.getCreditLimit());
+        Money availableBalance = Money.of(creditCard.getAvailableBalance());
+        portfolioStatistics.cardChanged(creditCard.getId(), creditCard.getCustomerType(),
+                creditLimit, availableBalance.minus(delta), creditLimit, availableBalance);
+    }
+
+    private void batchLineProcessed(String operation, BalanceBatchResultDto result) {
+        if (result.isApproved()) {
+            creditCardCache.evict(result.getCreditCardId());
+        } else {
+            operationMetrics.declined(operation, result.getReason());
+        }
+    }
+
+    /**
+     * Determina el motivo por el que no se aplicó un cambio de saldo.
+     * @param id ID de la tarjeta de crédito
+     * @param reason Motivo cuando la tarjeta existe pero el monto no es válido
+     * @return Mono con el error correspondiente
+     */
+    private Mono<CreditCard> rejectBalanceChange(String id, DeclineReason reason) {
+        return creditCardRepository.existsById(id)
+                .flatMap(exists -> Mono.<CreditCard>error(exists
+                        ? new IllegalArgumentException(reason.getMessage())
+                        : new CreditCardNotFoundException("Credit card not found with id: " + id)));
+    }
+
+    /**
+     * Asigna número de tarjeta y CVV e inserta la tarjeta.
+     * Si el número ya existe, por ejemplo emitido antes de usar bloques por BIN, se reintenta con otro número.
+     * @param creditCard Tarjeta a insertar
+     * @return Mono con la tarjeta insertada
+     */
+    private Mono<CreditCard> issueAndInsert(CreditCard creditCard) {
+        return Mono.defer(() -> cardNumberIssuer.nextCardNumber()
+                        .flatMap(cardNumber -> {
+                            // Cada intento se inserta como tarjeta nueva
+                            creditCard.setId(null);
+                            creditCard.setVersion(null);
+                            creditCard.setCardNumber(cardNumber);
+                            creditCard.setCvv(cardNumberIssuer.generateCvv());
+                            return creditCardRepository.save(creditCard);
+                        }))
+                .retryWhen(Retry.max(MAX_ISSUANCE_ATTEMPTS)
+                        .filter(DuplicateKeyException.class::isInstance)
+                        .doBeforeRetry(signal -> log.warn("Card number {} already issued, issuing another one",
+                                creditCard.getCardNumber()))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
     }
 
     /**
@@ -212,29 +480,104 @@ public class CreditCardServiceImpl implements CreditCardService {
      * @param creditCard Entidad a convertir
      * @return CreditCardDto
      */
-    private CreditCardDto mapToDto(CreditCard creditCard) {
+    CreditCardDto mapToDto(CreditCard creditCard) {
         return CreditCardDto.builder()
                 .id(creditCard.getId())
                 .cardNumber(creditCard.getCardNumber())
                 .customerId(creditCard.getCustomerId())
                 .customerType(creditCard.getCustomerType())
-                .creditLimit(creditCard.getCreditLimit())
-                .availableBalance(creditCard.getAvailableBalance())
+                .creditLimit(creditCard.getCreditLimit().toBigDecimal())
+                .availableBalance(creditCard.getAvailableBalance().toBigDecimal())
                 .expirationDate(creditCard.getExpirationDate())
                 .cvv(creditCard.getCvv())
                 .build();
     }
 
+    /**
+     * Convierte la proyección de listado a DTO. El CVV no se incluye en los listados.
+     * @param view Proyección a convertir
+     * @return CreditCardDto
+     */
+    private CreditCardDto mapSummaryToDto(CreditCardSummaryView view) {
+        return CreditCardDto.builder()
+                .id(view.getId())
+                .cardNumber(view.getCardNumber())
+                .customerId(view.getCustomerId())
+                .customerType(view.getCustomerType())
+                .creditLimit(view.getCreditLimit().toBigDecimal())
+                .availableBalance(view.getAvailableBalance().toBigDecimal())
+                .expirationDate(view.getExpirationDate())
+                .build();
+    }
+
+    private CardLookupResultDto mapLookupResult(String key, CreditCardSummaryView view) {
+        return CardLookupResultDto.builder()
+                .key(key)
+                .found(view != null)
+                .creditCard(view != null ? mapSummaryToDto(view) : null)
+                .build();
+    }
+
+    /**
+     * Completa con su CVV una tarjeta leída de la caché.
+     */
+    private static CreditCardDto withCvv(CreditCardDto creditCardDto, CreditCardCvvView view) {
+        creditCardDto.setCvv(view.getCvv());
+        return creditCardDto;
+    }
+
+    private static CreditCardBalanceDto mapToBalanceDto(String id, String cardNumber, Money creditLimit, Money availableBalance) {
+        return CreditCardBalanceDto.builder()
+                .creditCardId(id)
+                .cardNumber(cardNumber)
+                .creditLimit(creditLimit.toBigDecimal())
+                .availableBalance(availableBalance.toBigDecimal())
+                .usedBalance(creditLimit.minus(availableBalance).toBigDecimal())
+                .build();
+    }
+
+    /**
+     * Convierte una exposición agregada a DTO.
+     * @param view Exposición agregada
+     * @param customerId ID del cliente, null en los totales por tipo de cliente
+     * @return ExposureDto
+     */
+    private ExposureDto mapExposureToDto(ExposureView view, String customerId) {
+        return ExposureDto.builder()
+                .customerId(customerId)
+                .customerType(view.getCustomerType())
+                .cardCount(view.getCardCount())
+                .totalCreditLimit(view.getCreditLimit().toBigDecimal())
+                .totalAvailableBalance(view.getAvailableBalance().toBigDecimal())
+                .totalUsedBalance(view.getUsedBalance().toBigDecimal())
+                .build();
+    }
+
+    /**
+     * Convierte un movimiento del libro mayor a DTO.
+     * @param movement Movimiento a convertir
+     * @return MovementDto
+     */
+    private MovementDto mapMovementToDto(Movement movement) {
+        return MovementDto.builder()
+                .id(movement.getId())
+                .creditCardId(movement.getCreditCardId())
+                .type(movement.getType())
+                .amount(movement.getAmount().toBigDecimal())
+                .timestamp(movement.getTimestamp())
+                .build();
+    }
+
     /**
      * Convierte un DTO a entidad CreditCard.
      * @param creditCardDto DTO a convertir
      * @return CreditCard
      */
-    private CreditCard mapToEntity(CreditCardDto creditCardDto) {
+    CreditCard mapToEntity(CreditCardDto creditCardDto) {
         return CreditCard.builder()
                 .customerId(creditCardDto.getCustomerId())
                 .customerType(creditCardDto.getCustomerType())
-                .creditLimit(creditCardDto.getCreditLimit())
+                .creditLimit(Money.of(creditCardDto.getCreditLimit()))
                 .build();
     }
 }
@@ -0,0 +1,133 @@
+package com.nttdata.bankapp.mscreditcardservice.service.impl;
+
+import com.nttdata.bankapp.mscreditcardservice.dto.RepricingJobDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.RepricingJobRequestDto;
+import com.nttdata.bankapp.mscreditcardservice.exception.RepricingJobNotFoundException;
+import com.nttdata.bankapp.mscreditcardservice.model.RepricingJob;
+import com.nttdata.bankapp.mscreditcardservice.repository.RepricingJobRepository;
+import com.nttdata.bankapp.mscreditcardservice.repricing.RepricingJobRunner;
+import com.nttdata.bankapp.mscreditcardservice.service.RepricingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+/**
+ * Implementación de los servicios para los trabajos de revisión de límites.
+ * Los trabajos se guardan como pendientes y los ejecuta RepricingJobRunner en segundo plano.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RepricingServiceImpl implements RepricingService {
+
+    private static final int MAX_RECENT_JOBS = 100;
+
+    private final RepricingJobRepository repricingJobRepository;
+    private final RepricingJobRunner repricingJobRunner;
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<RepricingJobDto> create(RepricingJobRequestDto request) {
+        log.info("Creating repricing job with rule {} {}", request.getRule(), request.getValue());
+        if (request.getMinUtilizationPercent() != null && request.getMaxUtilizationPercent() != null
+                && request.getMinUtilizationPercent() > request.getMaxUtilizationPercent()) {
+            return Mono.error(new IllegalArgumentException("Minimum utilization cannot exceed maximum utilization"));
+        }
+        if (request.getCustomerIds() != null && request.getCustomerIds().contains(null)) {
+            return Mono.error(new IllegalArgumentException("Customer IDs cannot contain null values"));
+        }
+        try {
+            request.getRule().validate(request.getValue());
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+
+        RepricingJob job = RepricingJob.builder()
+                .customerType(request.getCustomerType())
+                .customerIds(request.getCustomerIds() == null || request.getCustomerIds().isEmpty()
+                        ? null
+                        : new ArrayList<>(new LinkedHashSet<>(request.getCustomerIds())))
+                .minUtilizationPercent(request.getMinUtilizationPercent())
+                .maxUtilizationPercent(request.getMaxUtilizationPercent())
+                .rule(request.getRule())
+                .value(request.getValue())
+                .status(RepricingJob.Status.PENDING)
+                .createdAt(LocalDateTime.now())
+                .build();
+
+        return repricingJobRepository.insert(job)
+                .doOnNext(savedJob -> repricingJobRunner.wakeUp())
+                .map(this::mapToDto);
+    }
+
+    @Override
+    public Mono<RepricingJobDto> findById(String id) {
+        log.info("Finding repricing job by id: {}", id);
+        return repricingJobRepository.findById(id)
+                .switchIfEmpty(Mono.error(new RepricingJobNotFoundException("Repricing job not found with id: " + id)))
+                .map(this::mapToDto);
+    }
+
+    @Override
+    public Flux<RepricingJobDto> findRecent(int limit) {
+        log.info("Finding recent repricing jobs with limit: {}", limit);
+        return repricingJobRepository.findAllByOrderByCreatedAtDesc(
+                        PageRequest.of(0, Math.min(Math.max(limit, 1), MAX_RECENT_JOBS)))
+                .map(this::mapToDto);
+    }
+
+    @Override
+    public Mono<RepricingJobDto> cancel(String id) {
+        log.info("Cancelling repricing job id: {}", id);
+        // La instancia que lo ejecuta se detiene en el siguiente checkpoint; las tarjetas ya revisadas se mantienen
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where("id").is(id)
+                .and("status").in(Arrays.asList(RepricingJob.Status.PENDING, RepricingJob.Status.RUNNING)));
+        Update update = new Update()
+                .set("status", RepricingJob.Status.CANCELLED)
+                .set("updatedAt", now)
+                .set("completedAt", now);
+
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), RepricingJob.class)
+                .switchIfEmpty(Mono.defer(() -> repricingJobRepository.findById(id)))
+                .switchIfEmpty(Mono.error(new RepricingJobNotFoundException("Repricing job not found with id: " + id)))
+                .map(this::mapToDto);
+    }
+
+    private RepricingJobDto mapToDto(RepricingJob job) {
+        return RepricingJobDto.builder()
+                .id(job.getId())
+                .customerType(job.getCustomerType())
+                .customerIdCount(job.getCustomerIds() != null ? job.getCustomerIds().size() : null)
+                .minUtilizationPercent(job.getMinUtilizationPercent())
+                .maxUtilizationPercent(job.getMaxUtilizationPercent())
+                .rule(job.getRule())
+                .value(job.getValue())
+                .status(job.getStatus())
+                .lastCardId(job.getLastCardId())
+                .processed(job.getProcessed())
+                .updated(job.getUpdated())
+                .skipped(job.getSkipped())
+                .conflicts(job.getConflicts())
+                .cardsPerSecond(job.getElapsedMillis() > 0 ? job.getProcessed() * 1000.0 / job.getElapsedMillis() : 0.0)
+                .error(job.getError())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .updatedAt(job.getUpdatedAt())
+                .completedAt(job.getCompletedAt())
+                .build();
+    }
+}
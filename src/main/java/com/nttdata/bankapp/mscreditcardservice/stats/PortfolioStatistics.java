@@ -0,0 +1,356 @@
+package com.nttdata.bankapp.mscreditcardservice.stats;
+
+import com.nttdata.bankapp.mscreditcardservice.dto.ExposureDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.PortfolioStatisticsDto;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Estadísticas de la cartera mantenidas en memoria de forma incremental: totales por tipo de cliente,
+ * histograma de utilización y tarjetas cerca del límite.
+ * Cada operación de escritura aplica su efecto sobre acumuladores LongAdder, sin bloqueos, y las lecturas
+ * son O(1). Como cada instancia solo ve sus propias escrituras, los acumuladores se reconstruyen
+ * desde MongoDB al arrancar y periódicamente.
+ * Durante la reconstrucción se anota el último estado de cada tarjeta modificada y, al terminar, se corrige
+ * con él lo que el recorrido leyó, para no perder las escrituras que coinciden con el recorrido.
+ */
+@Component
+@Slf4j
+public class PortfolioStatistics {
+
+    // Límites superiores (exclusivos) de los tramos de utilización, en porcentaje
+    private static final int[] UTILIZATION_BOUNDS = {10, 25, 50, 75, 90};
+    private static final String[] UTILIZATION_BUCKETS = {"0-10", "10-25", "25-50", "50-75", "75-90", "90-100"};
+
+    private final CreditCardRepository creditCardRepository;
+    private final MeterRegistry meterRegistry;
+    private final int nearLimitPercent;
+    private final Duration rebuildInterval;
+
+    private volatile Accumulators accumulators = new Accumulators();
+    private volatile Rebuild rebuild;
+    private volatile LocalDateTime rebuiltAt;
+    private Disposable rebuildTask;
+
+    public PortfolioStatistics(CreditCardRepository creditCardRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.stats.near-limit-percent:90}") int nearLimitPercent,
+                               @Value("${app.stats.rebuild-interval:10m}") Duration rebuildInterval) {
+        this.creditCardRepository = creditCardRepository;
+        this.meterRegistry = meterRegistry;
+        this.nearLimitPercent = nearLimitPercent;
+        this.rebuildInterval = rebuildInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        registerGauges();
+        rebuildTask = Flux.interval(Duration.ZERO, rebuildInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> rebuild()
+                        .onErrorResume(e -> {
+                            log.error("Error rebuilding portfolio statistics: {}", e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        rebuildTask.dispose();
+    }
+
+    /**
+     * Registra una tarjeta nueva.
+     * @param creditCardId ID de la tarjeta de crédito
+     * @param customerType Tipo de cliente
+     * @param creditLimit Límite de crédito
+     * @param availableBalance Saldo disponible
+     */
+    public void cardAdded(String creditCardId, CustomerType customerType, Money creditLimit, Money availableBalance) {
+        CardValue current = new CardValue(customerType, creditLimit.getMinorUnits(), availableBalance.getMinorUnits());
+        accumulators.apply(current, 1);
+        touched(creditCardId, null, current);
+    }
+
+    /**
+     * Registra la eliminación de una tarjeta.
+     * @param creditCardId ID de la tarjeta de crédito
+     * @param customerType Tipo de cliente
+     * @param creditLimit Límite de crédito
+     * @param availableBalance Saldo disponible
+     */
+    public void cardRemoved(String creditCardId, CustomerType customerType, Money creditLimit, Money availableBalance) {
+        CardValue previous = new CardValue(customerType, creditLimit.getMinorUnits(), availableBalance.getMinorUnits());
+        accumulators.apply(previous, -1);
+        touched(creditCardId, previous, null);
+    }
+
+    /**
+     * Registra un cambio de límite o de saldo de una tarjeta.
+     * @param creditCardId ID de la tarjeta de crédito
+     * @param customerType Tipo de cliente
+     * @param previousCreditLimit Límite de crédito anterior
+     * @param previousAvailableBalance Saldo disponible anterior
+     * @param creditLimit Límite de crédito actual
+     * @param availableBalance Saldo disponible actual
+     */
+    public void cardChanged(String creditCardId, CustomerType customerType, Money previousCreditLimit,
+                            Money previousAvailableBalance, Money creditLimit, Money availableBalance) {
+        CardValue previous = new CardValue(customerType, previousCreditLimit.getMinorUnits(), previousAvailableBalance.getMinorUnits());
+        CardValue current = new CardValue(customerType, creditLimit.getMinorUnits(), availableBalance.getMinorUnits());
+        Accumulators live = accumulators;
+        live.apply(previous, -1);
+        live.apply(current, 1);
+        touched(creditCardId, previous, current);
+    }
+
+    /**
+     * Obtiene el estado actual de las estadísticas.
+     * @return PortfolioStatisticsDto
+     */
+    public PortfolioStatisticsDto snapshot() {
+        Accumulators current = accumulators;
+        List<ExposureDto> customerTypes = new ArrayList<>();
+        current.totals.forEach((customerType, totals) -> customerTypes.add(ExposureDto.builder()
+                .customerType(customerType)
+                .cardCount(totals.cardCount.sum())
+                .totalCreditLimit(Money.ofMinorUnits(totals.creditLimit.sum()).toBigDecimal())
+                .totalAvailableBalance(Money.ofMinorUnits(totals.availableBalance.sum()).toBigDecimal())
+                .totalUsedBalance(Money.ofMinorUnits(totals.creditLimit.sum() - totals.availableBalance.sum()).toBigDecimal())
+                .build()));
+
+        Map<String, Long> utilization = new LinkedHashMap<>();
+        for (int i = 0; i < UTILIZATION_BUCKETS.length; i++) {
+            utilization.put(UTILIZATION_BUCKETS[i], current.utilization[i].sum());
+        }
+
+        return PortfolioStatisticsDto.builder()
+                .customerTypes(customerTypes)
+                .utilizationPercentBuckets(utilization)
+                .nearLimitPercent(nearLimitPercent)
+                .cardsNearLimit(current.nearLimit.sum())
+                .rebuiltAt(rebuiltAt)
+                .build();
+    }
+
+    /**
+     * Recalcula los acumuladores recorriendo la cartera en orden de ID y los sustituye por los actuales.
+     * Las tarjetas modificadas en esta instancia durante el recorrido se cuentan con su último estado.
+     * @return Mono<Void>
+     */
+    public Mono<Void> rebuild() {
+        return Mono.defer(() -> {
+            Rebuild current = new Rebuild();
+            rebuild = current;
+            return creditCardRepository.findPageAfter(null, null, null)
+                    .filter(card -> card.getCreditLimit() != null && card.getAvailableBalance() != null)
+                    .doOnNext(card -> current.scanned(card.getId(), new CardValue(card.getCustomerType(),
+                            card.getCreditLimit().getMinorUnits(), card.getAvailableBalance().getMinorUnits())))
+                    .then(Mono.fromRunnable(() -> {
+                        // Las escrituras posteriores a la sustitución ya se aplican a los acumuladores nuevos;
+                        // solo las que coincidan con la corrección final pueden perderse
+                        accumulators = current.finish();
+                        rebuild = null;
+                        rebuiltAt = LocalDateTime.now();
+                        log.info("Rebuilt portfolio statistics with {} cards changed during the scan", current.touched.size());
+                    }))
+                    .doFinally(signal -> {
+                        if (rebuild == current) {
+                            rebuild = null;
+                        }
+                    })
+                    .then();
+        });
+    }
+
+    private void touched(String creditCardId, CardValue previous, CardValue current) {
+        Rebuild inProgress = rebuild;
+        if (inProgress != null && creditCardId != null) {
+            inProgress.touched(creditCardId, previous, current);
+        }
+    }
+
+    private void registerGauges() {
+        for (CustomerType customerType : CustomerType.values()) {
+            registerTypeGauge("portfolio.cards", "Tarjetas de la cartera", customerType, totals -> totals.cardCount.sum());
+            registerTypeGauge("portfolio.credit.limit", "Límite de crédito total, en céntimos", customerType,
+                    totals -> totals.creditLimit.sum());
+            registerTypeGauge("portfolio.used.balance", "Saldo usado total, en céntimos", customerType,
+                    totals -> totals.creditLimit.sum() - totals.availableBalance.sum());
+        }
+        for (int i = 0; i < UTILIZATION_BUCKETS.length; i++) {
+            int bucket = i;
+            Gauge.builder("portfolio.utilization.cards", this, statistics -> statistics.accumulators.utilization[bucket].sum())
+                    .tag("bucket", UTILIZATION_BUCKETS[i])
+                    .description("Tarjetas por tramo de utilización del límite, en porcentaje")
+                    .register(meterRegistry);
+        }
+        Gauge.builder("portfolio.cards.near.limit", this, statistics -> statistics.accumulators.nearLimit.sum())
+                .description("Tarjetas con una utilización igual o superior a app.stats.near-limit-percent")
+                .register(meterRegistry);
+    }
+
+    private void registerTypeGauge(String name, String description, CustomerType customerType,
+                                   ToLongFunction<TypeTotals> value) {
+        Gauge.builder(name, this, statistics -> value.applyAsLong(statistics.accumulators.totals.get(customerType)))
+                .tag("customerType", customerType.name())
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    private static int utilizationPercent(long creditLimit, long availableBalance) {
+        return creditLimit <= 0 ? 0 : (int) ((creditLimit - availableBalance) * 100 / creditLimit);
+    }
+
+    /**
+     * Reconstrucción en curso: los acumuladores recalculados y el estado de las tarjetas modificadas durante el recorrido.
+     * El recorrido y las escrituras de una misma tarjeta se serializan con compute sobre su entrada.
+     */
+    private final class Rebuild {
+        private final Accumulators rebuilt = new Accumulators();
+        private final Map<String, CardTouch> touched = new ConcurrentHashMap<>();
+        private volatile String lastScannedId;
+
+        /**
+         * Suma una tarjeta leída, salvo que ya se haya modificado: entonces se cuenta su último estado al terminar.
+         */
+        private void scanned(String id, CardValue value) {
+            touched.compute(id, (key, touch) -> {
+                if (touch == null) {
+                    rebuilt.apply(value, 1);
+                }
+                lastScannedId = key;
+                return touch;
+            });
+        }
+
+        private void touched(String id, CardValue previous, CardValue current) {
+            touched.compute(id, (key, touch) -> {
+                if (touch == null) {
+                    // Los IDs son ObjectId en hexadecimal, así que el orden de los String es el del recorrido
+                    String scannedUpTo = lastScannedId;
+                    touch = new CardTouch(previous, scannedUpTo != null && key.compareTo(scannedUpTo) <= 0);
+                }
+                touch.latest = current;
+                return touch;
+            });
+        }
+
+        /**
+         * Sustituye lo leído de las tarjetas modificadas por su último estado.
+         */
+        private Accumulators finish() {
+            touched.values().forEach(touch -> {
+                if (touch.counted && touch.first != null) {
+                    rebuilt.apply(touch.first, -1);
+                }
+                if (touch.latest != null) {
+                    rebuilt.apply(touch.latest, 1);
+                }
+            });
+            return rebuilt;
+        }
+    }
+
+    /**
+     * Tarjeta modificada durante una reconstrucción.
+     */
+    private static final class CardTouch {
+        private final CardValue first; // Estado anterior a la primera modificación, null si se creó durante el recorrido
+        private final boolean counted; // El recorrido ya la había leído, con el estado anterior, al modificarse
+        private CardValue latest; // Estado tras la última modificación, null si se eliminó
+
+        private CardTouch(CardValue first, boolean counted) {
+            this.first = first;
+            this.counted = counted;
+        }
+    }
+
+    /**
+     * Aportación de una tarjeta a los acumuladores.
+     */
+    private static final class CardValue {
+        private final CustomerType customerType;
+        private final long creditLimit;
+        private final long availableBalance;
+
+        private CardValue(CustomerType customerType, long creditLimit, long availableBalance) {
+            this.customerType = customerType;
+            this.creditLimit = creditLimit;
+            this.availableBalance = availableBalance;
+        }
+    }
+
+    /**
+     * Conjunto de acumuladores que se sustituye entero al reconstruir.
+     */
+    private final class Accumulators {
+        private final Map<CustomerType, TypeTotals> totals = new EnumMap<>(CustomerType.class);
+        private final LongAdder[] utilization = new LongAdder[UTILIZATION_BUCKETS.length];
+        private final LongAdder nearLimit = new LongAdder();
+
+        private Accumulators() {
+            for (CustomerType customerType : CustomerType.values()) {
+                totals.put(customerType, new TypeTotals());
+            }
+            for (int i = 0; i < utilization.length; i++) {
+                utilization[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Suma (sign = 1) o resta (sign = -1) la aportación de una tarjeta.
+         */
+        private void apply(CardValue card, int sign) {
+            if (card.customerType != null) {
+                TypeTotals typeTotals = totals.get(card.customerType);
+                typeTotals.cardCount.add(sign);
+                typeTotals.creditLimit.add(sign * card.creditLimit);
+                typeTotals.availableBalance.add(sign * card.availableBalance);
+            }
+            int percent = utilizationPercent(card.creditLimit, card.availableBalance);
+            utilization[bucketFor(percent)].add(sign);
+            if (percent >= nearLimitPercent) {
+                nearLimit.add(sign);
+            }
+        }
+
+        private int bucketFor(int percent) {
+            for (int i = 0; i < UTILIZATION_BOUNDS.length; i++) {
+                if (percent < UTILIZATION_BOUNDS[i]) {
+                    return i;
+                }
+            }
+            return UTILIZATION_BOUNDS.length;
+        }
+    }
+
+    private static final class TypeTotals {
+        private final LongAdder cardCount = new LongAdder();
+        private final LongAdder creditLimit = new LongAdder();
+        private final LongAdder availableBalance = new LongAdder();
+    }
+}
@@ -0,0 +1,23 @@
+package com.nttdata.bankapp.mscreditcardservice.stats;
+
+import com.nttdata.bankapp.mscreditcardservice.dto.PortfolioStatisticsDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Endpoint de actuator con las estadísticas de la cartera: GET /actuator/portfolio.
+ */
+@Component
+@Endpoint(id = "portfolio")
+@RequiredArgsConstructor
+public class PortfolioStatisticsEndpoint {
+
+    private final PortfolioStatistics portfolioStatistics;
+
+    @ReadOperation
+    public PortfolioStatisticsDto portfolio() {
+        return portfolioStatistics.snapshot();
+    }
+}
@@ -0,0 +1,266 @@
+package com.nttdata.bankapp.mscreditcardservice.authorization;
+
+import com.nttdata.bankapp.mscreditcardservice.exception.AuthorizationEngineUnavailableException;
+import com.nttdata.bankapp.mscreditcardservice.exception.CreditCardNotFoundException;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.model.Movement;
+import com.nttdata.bankapp.mscreditcardservice.model.MovementType;
+import com.nttdata.bankapp.mscreditcardservice.model.UnappliedBalanceChange;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import com.nttdata.bankapp.mscreditcardservice.repository.UnappliedBalanceChangeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuthorizationEngineTest {
+
+    private static final String CARD_ID = "card-1";
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+
+    private final CreditCardRepository creditCardRepository = mock(CreditCardRepository.class);
+    private final UnappliedBalanceChangeRepository unappliedBalanceChangeRepository = mock(UnappliedBalanceChangeRepository.class);
+    private final EngineLeaseHolder engineLease = mock(EngineLeaseHolder.class);
+    private AuthorizationEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        when(engineLease.getDuration()).thenReturn(Duration.ofSeconds(30));
+        when(engineLease.acquire()).thenReturn(Mono.just(true));
+        when(engineLease.renew()).thenReturn(Mono.just(true));
+        when(engineLease.release()).thenReturn(Mono.empty());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (engine != null) {
+            engine.stop();
+        }
+    }
+
+    @Test
+    void authorizesAgainstTheBalanceInMemory() {
+        givenCard();
+        when(creditCardRepository.incrementAvailableBalances(anyMap(), anySet())).thenReturn(Mono.just(Collections.emptySet()));
+        startEngine(Duration.ofHours(1));
+
+        StepVerifier.create(engine.consume(CARD_ID, amount("30"), null, CreditCard::getAvailableBalance))
+                .expectNext(amount("70"))
+                .verifyComplete();
+        StepVerifier.create(engine.consume(CARD_ID, amount("50"), null, CreditCard::getAvailableBalance))
+                .expectNext(amount("20"))
+                .verifyComplete();
+        StepVerifier.create(engine.consume(CARD_ID, amount("20.01"), null, CreditCard::getAvailableBalance))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(engine.pay(CARD_ID, amount("80.01"), null, CreditCard::getAvailableBalance))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(engine.pay(CARD_ID, amount("80"), null, CreditCard::getAvailableBalance))
+                .expectNext(amount("100"))
+                .verifyComplete();
+
+        verify(creditCardRepository, times(1)).findCardById(CARD_ID);
+    }
+
+    @Test
+    void rejectsUnknownCards() {
+        when(creditCardRepository.findCardById("unknown")).thenReturn(Mono.empty());
+        startEngine(Duration.ofHours(1));
+
+        StepVerifier.create(engine.consume("unknown", amount("1"), null, Function.identity()))
+                .expectError(CreditCardNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void flushesTheApprovedMovementsInOneWrite() {
+        givenCard();
+        when(creditCardRepository.incrementAvailableBalances(anyMap(), anySet())).thenReturn(Mono.just(Collections.emptySet()));
+        startEngine(Duration.ofHours(1));
+
+        engine.consume(CARD_ID, amount("30"), null, Function.identity()).block();
+        engine.pay(CARD_ID, amount("10"), null, Function.identity()).block();
+        engine.stop();
+        engine = null;
+
+        List<Map<String, List<Movement>>> batches = flushedBatches(1);
+        List<Movement> movements = batches.get(0).get(CARD_ID);
+        assertEquals(2, movements.size());
+        assertEquals(MovementType.CONSUMPTION, movements.get(0).getType());
+        assertEquals(MovementType.PAYMENT, movements.get(1).getType());
+    }
+
+    @Test
+    void resendsAWriteWithUnknownResultWithoutLaterMovements() {
+        givenCard();
+        Sinks.One<Set<String>> firstWrite = Sinks.one();
+        when(creditCardRepository.incrementAvailableBalances(anyMap(), anySet()))
+                .thenReturn(firstWrite.asMono())
+                .thenReturn(Mono.just(Collections.emptySet()));
+        startEngine(Duration.ofMillis(10));
+
+        engine.consume(CARD_ID, amount("30"), null, Function.identity()).block();
+        verify(creditCardRepository, timeout(1000)).incrementAvailableBalances(anyMap(), anySet());
+        // Autorizado mientras la primera escritura está en curso
+        engine.consume(CARD_ID, amount("20"), null, Function.identity()).block();
+        firstWrite.tryEmitError(new IllegalStateException("connection reset"));
+
+        List<Map<String, List<Movement>>> batches = flushedBatches(3);
+        assertEquals(batches.get(0), batches.get(1));
+        assertEquals(amount("30"), batches.get(1).get(CARD_ID).get(0).getAmount());
+        assertEquals(1, batches.get(2).get(CARD_ID).size());
+        assertEquals(amount("20"), batches.get(2).get(CARD_ID).get(0).getAmount());
+        verify(creditCardRepository, after(100).times(3)).incrementAvailableBalances(anyMap(), anySet());
+    }
+
+    @Test
+    void appliesApprovedMovementsWithoutLimitsAfterTheLastFailedAttempt() {
+        givenCard();
+        when(creditCardRepository.incrementAvailableBalances(anyMap(), anySet()))
+                .thenAnswer(invocation -> Mono.just(((Set<?>) invocation.getArgument(1)).isEmpty()
+                        ? Set.of(CARD_ID)
+                        : Collections.emptySet()));
+        when(creditCardRepository.findWithFullOutbox(anyCollection())).thenReturn(Mono.just(Collections.emptySet()));
+        startEngine(Duration.ofMillis(10));
+
+        engine.consume(CARD_ID, amount("30"), null, Function.identity()).block();
+
+        List<Set<String>> withoutLimits = flushedWithoutLimits(MAX_FLUSH_ATTEMPTS + 1);
+        for (int i = 0; i < MAX_FLUSH_ATTEMPTS; i++) {
+            assertTrue(withoutLimits.get(i).isEmpty());
+        }
+        assertEquals(Set.of(CARD_ID), withoutLimits.get(MAX_FLUSH_ATTEMPTS));
+        verify(unappliedBalanceChangeRepository, after(100).never()).save(any(UnappliedBalanceChange.class));
+
+        // El saldo en memoria no coincidía con el guardado: la siguiente autorización recarga la tarjeta
+        StepVerifier.create(engine.consume(CARD_ID, amount("30"), null, CreditCard::getAvailableBalance))
+                .expectNext(amount("70"))
+                .verifyComplete();
+        verify(creditCardRepository, times(2)).findCardById(CARD_ID);
+    }
+
+    @Test
+    void setsAsideMovementsOnlyWhenTheCardNoLongerExists() {
+        givenCard();
+        when(creditCardRepository.incrementAvailableBalances(anyMap(), anySet())).thenReturn(Mono.just(Set.of(CARD_ID)));
+        when(creditCardRepository.findWithFullOutbox(anyCollection())).thenReturn(Mono.just(Collections.emptySet()));
+        when(unappliedBalanceChangeRepository.save(any(UnappliedBalanceChange.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        startEngine(Duration.ofMillis(10));
+
+        engine.consume(CARD_ID, amount("30"), null, Function.identity()).block();
+
+        ArgumentCaptor<UnappliedBalanceChange> captor = ArgumentCaptor.forClass(UnappliedBalanceChange.class);
+        verify(unappliedBalanceChangeRepository, timeout(1000)).save(captor.capture());
+        assertEquals(CARD_ID, captor.getValue().getCreditCardId());
+        assertEquals(1, captor.getValue().getMovements().size());
+        verify(creditCardRepository, times(2 * MAX_FLUSH_ATTEMPTS)).incrementAvailableBalances(anyMap(), anySet());
+    }
+
+    @Test
+    void retriesCardsWaitingForTheLedgerWithoutCountingAttempts() {
+        givenCard();
+        when(creditCardRepository.incrementAvailableBalances(anyMap(), anySet())).thenReturn(Mono.just(Set.of(CARD_ID)));
+        when(creditCardRepository.findWithFullOutbox(anyCollection())).thenReturn(Mono.just(Set.of(CARD_ID)));
+        startEngine(Duration.ofMillis(10));
+
+        engine.consume(CARD_ID, amount("30"), null, Function.identity()).block();
+
+        verify(creditCardRepository, timeout(1000).atLeast(MAX_FLUSH_ATTEMPTS + 2)).incrementAvailableBalances(anyMap(), anySet());
+        verify(unappliedBalanceChangeRepository, never()).save(any(UnappliedBalanceChange.class));
+        assertTrue(flushedWithoutLimits(MAX_FLUSH_ATTEMPTS + 2).stream().allMatch(Set::isEmpty));
+    }
+
+    @Test
+    void refusesToStartWhileAnotherInstanceHoldsTheLease() {
+        when(engineLease.acquire()).thenReturn(Mono.just(false));
+        AuthorizationEngine secondEngine = engine(Duration.ofHours(1));
+
+        assertThrows(IllegalStateException.class, secondEngine::start);
+    }
+
+    @Test
+    void stopsAuthorizingWhenAnotherInstanceTakesTheLease() throws InterruptedException {
+        givenCard();
+        when(creditCardRepository.incrementAvailableBalances(anyMap(), anySet())).thenReturn(Mono.just(Collections.emptySet()));
+        when(engineLease.getDuration()).thenReturn(Duration.ofMillis(60));
+        when(engineLease.renew()).thenReturn(Mono.just(false));
+        startEngine(Duration.ofHours(1));
+
+        engine.consume(CARD_ID, amount("30"), null, Function.identity()).block();
+        Thread.sleep(100);
+
+        StepVerifier.create(engine.consume(CARD_ID, amount("30"), null, Function.identity()))
+                .expectError(AuthorizationEngineUnavailableException.class)
+                .verify();
+        // Los movimientos ya aprobados se escriben igualmente
+        engine.stop();
+        engine = null;
+        assertFalse(flushedBatches(1).get(0).isEmpty());
+    }
+
+    private void startEngine(Duration flushInterval) {
+        engine = engine(flushInterval);
+        engine.start();
+    }
+
+    private AuthorizationEngine engine(Duration flushInterval) {
+        return new AuthorizationEngine(creditCardRepository, unappliedBalanceChangeRepository, engineLease, true, 1,
+                flushInterval, 500, Duration.ofMinutes(5), MAX_FLUSH_ATTEMPTS);
+    }
+
+    private void givenCard() {
+        when(creditCardRepository.findCardById(CARD_ID)).thenAnswer(invocation -> Mono.just(CreditCard.builder()
+                .id(CARD_ID)
+                .creditLimit(amount("100"))
+                .availableBalance(amount("100"))
+                .build()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, List<Movement>>> flushedBatches(int count) {
+        ArgumentCaptor<Map<String, List<Movement>>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(creditCardRepository, timeout(1000).atLeast(count)).incrementAvailableBalances(captor.capture(), anySet());
+        return captor.getAllValues();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Set<String>> flushedWithoutLimits(int count) {
+        ArgumentCaptor<Set<String>> captor = ArgumentCaptor.forClass(Set.class);
+        verify(creditCardRepository, timeout(1000).atLeast(count)).incrementAvailableBalances(anyMap(), captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static Money amount(String amount) {
+        return Money.of(new BigDecimal(amount));
+    }
+}
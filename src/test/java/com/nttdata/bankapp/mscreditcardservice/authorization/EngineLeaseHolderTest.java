@@ -0,0 +1,61 @@
+package com.nttdata.bankapp.mscreditcardservice.authorization;
+
+import com.mongodb.client.result.UpdateResult;
+import com.nttdata.bankapp.mscreditcardservice.model.EngineLease;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EngineLeaseHolderTest {
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final EngineLeaseHolder engineLease = new EngineLeaseHolder(mongoTemplate, Duration.ofSeconds(30));
+
+    @Test
+    void acquiresAFreeOrExpiredLease() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(EngineLease.class)))
+                .thenAnswer(invocation -> Mono.just(EngineLease.builder()
+                        .owner(invocation.<UpdateDefinition>getArgument(1).getUpdateObject()
+                                .get("$set", Document.class).getString("owner"))
+                        .build()));
+
+        StepVerifier.create(engineLease.acquire())
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void doesNotAcquireALeaseHeldByAnotherInstance() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(EngineLease.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key error")));
+
+        StepVerifier.create(engineLease.acquire())
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void renewsOnlyItsOwnLease() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(EngineLease.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+
+        StepVerifier.create(engineLease.renew())
+                .expectNext(false)
+                .verifyComplete();
+    }
+}
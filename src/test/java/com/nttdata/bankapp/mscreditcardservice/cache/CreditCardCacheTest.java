@@ -0,0 +1,144 @@
+package com.nttdata.bankapp.mscreditcardservice.cache;
+
+import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardDto;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CreditCardCacheTest {
+
+    private static final String CARD_ID = "card-1";
+    private static final String CARD_NUMBER = "5123-0000-0000-0001";
+
+    private final CreditCardCache cache = new CreditCardCache(new CacheInvalidationBus(), new SimpleMeterRegistry(),
+            100, Duration.ofMinutes(5));
+
+    @BeforeEach
+    void setUp() {
+        cache.subscribe();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.unsubscribe();
+    }
+
+    @Test
+    void sharesAnInFlightLoadBetweenConcurrentReads() {
+        AtomicInteger loads = new AtomicInteger();
+        Sinks.One<CreditCardDto> load = Sinks.one();
+        Function<String, Mono<CreditCardDto>> loader = id -> {
+            loads.incrementAndGet();
+            return load.asMono();
+        };
+
+        Mono<CreditCardDto> first = cache.findById(CARD_ID, loader).cache();
+        Mono<CreditCardDto> second = cache.findById(CARD_ID, loader).cache();
+        first.subscribe();
+        second.subscribe();
+        load.tryEmitValue(card("100"));
+
+        assertEquals(first.block().getAvailableBalance(), second.block().getAvailableBalance());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void servesRepeatedReadsFromOneLoad() {
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, Mono<CreditCardDto>> loader = id -> Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return card("100");
+        });
+
+        cache.findById(CARD_ID, loader).block();
+        cache.findById(CARD_ID, loader).block();
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void reloadsACardAfterItIsEvicted() {
+        cache.findById(CARD_ID, id -> Mono.just(card("100"))).block();
+
+        cache.evict(CARD_ID);
+
+        StepVerifier.create(cache.findById(CARD_ID, id -> Mono.just(card("70"))))
+                .expectNextMatches(creditCardDto -> new BigDecimal("70").equals(creditCardDto.getAvailableBalance()))
+                .verifyComplete();
+    }
+
+    @Test
+    void dropsALoadThatWasInFlightWhenTheCardWasEvicted() {
+        Sinks.One<CreditCardDto> staleLoad = Sinks.one();
+        Mono<CreditCardDto> firstRead = cache.findById(CARD_ID, id -> staleLoad.asMono()).cache();
+        firstRead.subscribe();
+
+        // Una escritura invalida la tarjeta mientras la carga anterior sigue en curso
+        cache.evict(CARD_ID);
+        staleLoad.tryEmitValue(card("100"));
+        firstRead.block();
+
+        StepVerifier.create(cache.findById(CARD_ID, id -> Mono.just(card("70"))))
+                .expectNextMatches(creditCardDto -> new BigDecimal("70").equals(creditCardDto.getAvailableBalance()))
+                .verifyComplete();
+    }
+
+    @Test
+    void returnsCopiesThatCallersCannotModify() {
+        cache.put(card("100"));
+
+        cache.findIfPresent(CARD_ID).block().setAvailableBalance(BigDecimal.ZERO);
+
+        StepVerifier.create(cache.findIfPresent(CARD_ID))
+                .expectNextMatches(creditCardDto -> new BigDecimal("100").equals(creditCardDto.getAvailableBalance()))
+                .verifyComplete();
+    }
+
+    @Test
+    void doesNotKeepTheCvv() {
+        cache.put(card("100"));
+
+        assertNull(cache.findIfPresent(CARD_ID).block().getCvv());
+    }
+
+    @Test
+    void loadsCardsByNumberThroughTheirId() {
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, Mono<CreditCardDto>> loader = cardNumber -> Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return card("100");
+        });
+
+        cache.findByCardNumber(CARD_NUMBER, loader).block();
+        cache.findByCardNumber(CARD_NUMBER, loader).block();
+        cache.findByCardNumber(CARD_NUMBER, loader).block();
+
+        // La primera lectura solo recuerda el ID; la segunda carga la tarjeta por ID y la tercera sale de la caché
+        assertEquals(2, loads.get());
+    }
+
+    private static CreditCardDto card(String availableBalance) {
+        return CreditCardDto.builder()
+                .id(CARD_ID)
+                .cardNumber(CARD_NUMBER)
+                .customerId("customer-1")
+                .customerType(CustomerType.PERSONAL)
+                .creditLimit(new BigDecimal("100"))
+                .availableBalance(new BigDecimal(availableBalance))
+                .cvv("123")
+                .build();
+    }
+}
@@ -0,0 +1,178 @@
+package com.nttdata.bankapp.mscreditcardservice.client;
+
+import com.nttdata.bankapp.mscreditcardservice.exception.CustomerNotFoundException;
+import com.nttdata.bankapp.mscreditcardservice.exception.CustomerServiceUnavailableException;
+import com.nttdata.bankapp.mscreditcardservice.exception.ErrorResponse;
+import com.nttdata.bankapp.mscreditcardservice.exception.GlobalExceptionHandler;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerServiceTest {
+
+    private static final String CUSTOMER_ID = "customer-1";
+    private static final Duration NEGATIVE_TTL = Duration.ofMillis(100);
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private HttpStatus status = HttpStatus.OK;
+    private Duration latency = Duration.ZERO;
+
+    @Test
+    void sharesOneCallBetweenConcurrentLookupsOfTheSameCustomer() {
+        latency = Duration.ofMillis(100);
+        CustomerService customerService = customerService();
+
+        StepVerifier.create(Mono.zip(customerService.customerExists(CUSTOMER_ID), customerService.customerExists(CUSTOMER_ID)))
+                .expectNextMatches(both -> both.getT1() && both.getT2())
+                .verifyComplete();
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void keepsFoundCustomersForTheFullTtl() throws InterruptedException {
+        CustomerService customerService = customerService();
+
+        StepVerifier.create(customerService.getCustomerType(CUSTOMER_ID))
+                .expectNext("PERSONAL")
+                .verifyComplete();
+        Thread.sleep(NEGATIVE_TTL.toMillis() * 2);
+        StepVerifier.create(customerService.getCustomerType(CUSTOMER_ID))
+                .expectNext("PERSONAL")
+                .verifyComplete();
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void forgetsMissingCustomersAfterTheNegativeTtl() throws InterruptedException {
+        status = HttpStatus.NOT_FOUND;
+        CustomerService customerService = customerService();
+
+        StepVerifier.create(customerService.customerExists(CUSTOMER_ID))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier.create(customerService.getCustomerType(CUSTOMER_ID))
+                .expectError(CustomerNotFoundException.class)
+                .verify();
+        assertEquals(1, calls.get());
+
+        Thread.sleep(NEGATIVE_TTL.toMillis() * 2);
+        StepVerifier.create(customerService.customerExists(CUSTOMER_ID))
+                .expectNext(false)
+                .verifyComplete();
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void doesNotCacheServerErrors() {
+        status = HttpStatus.INTERNAL_SERVER_ERROR;
+        CustomerService customerService = customerService();
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(customerService.customerExists(CUSTOMER_ID))
+                    .expectError(CustomerServiceUnavailableException.class)
+                    .verify();
+        }
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void failsFastWithoutCallingOnceTheCircuitBreakerOpens() {
+        status = HttpStatus.INTERNAL_SERVER_ERROR;
+        CustomerClientConfig config = new CustomerClientConfig();
+        CircuitBreaker circuitBreaker = config.customerServiceCircuitBreaker(new SimpleMeterRegistry(),
+                50, 10, Duration.ofSeconds(1), Duration.ofMinutes(1));
+        CustomerService customerService = customerService(circuitBreaker, Bulkhead.ofDefaults("customer-service"),
+                Duration.ofSeconds(1));
+
+        for (int i = 0; i < 10; i++) {
+            StepVerifier.create(customerService.customerExists("customer-" + i))
+                    .expectError(CustomerServiceUnavailableException.class)
+                    .verify();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        StepVerifier.create(customerService.customerExists(CUSTOMER_ID))
+                .expectErrorSatisfies(e -> {
+                    assertTrue(e instanceof CustomerServiceUnavailableException);
+                    assertTrue(e.getCause() instanceof CallNotPermittedException);
+                })
+                .verify();
+        assertEquals(10, calls.get());
+    }
+
+    @Test
+    void rejectsCallsAboveTheBulkheadLimitWithoutWaiting() {
+        latency = Duration.ofMillis(300);
+        Bulkhead bulkhead = new CustomerClientConfig().customerServiceBulkhead(new SimpleMeterRegistry(), 1);
+        CustomerService customerService = customerService(CircuitBreaker.ofDefaults("customer-service"), bulkhead,
+                Duration.ofSeconds(1));
+
+        StepVerifier.create(Mono.zip(customerService.customerExists("customer-1"),
+                        customerService.customerExists("customer-2").delaySubscription(Duration.ofMillis(50))))
+                .expectErrorSatisfies(e -> {
+                    assertTrue(e instanceof CustomerServiceUnavailableException);
+                    assertTrue(e.getCause() instanceof BulkheadFullException);
+                })
+                .verify(Duration.ofMillis(250));
+    }
+
+    @Test
+    void reportsSlowResponsesAsUnavailable() {
+        latency = Duration.ofMillis(500);
+        CustomerService customerService = customerService(CircuitBreaker.ofDefaults("customer-service"),
+                Bulkhead.ofDefaults("customer-service"), Duration.ofMillis(50));
+
+        StepVerifier.create(customerService.customerExists(CUSTOMER_ID))
+                .expectError(CustomerServiceUnavailableException.class)
+                .verify(Duration.ofMillis(400));
+    }
+
+    @Test
+    void answersUnavailableCustomerServiceWith503() {
+        ResponseEntity<ErrorResponse> response = new GlobalExceptionHandler().handleCustomerServiceUnavailableException(
+                new CustomerServiceUnavailableException("Customer service unavailable: timeout", null));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals(503, response.getBody().getStatus());
+    }
+
+    private CustomerService customerService() {
+        return customerService(CircuitBreaker.ofDefaults("customer-service"), Bulkhead.ofDefaults("customer-service"),
+                Duration.ofSeconds(1));
+    }
+
+    private CustomerService customerService(CircuitBreaker circuitBreaker, Bulkhead bulkhead, Duration callTimeout) {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> Mono.fromCallable(() -> {
+                            calls.incrementAndGet();
+                            return ClientResponse.create(status)
+                                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                    .body(status == HttpStatus.OK ? "{\"id\":\"" + CUSTOMER_ID + "\",\"type\":\"PERSONAL\"}" : "")
+                                    .build();
+                        })
+                        .delayElement(latency.isZero() ? Duration.ofNanos(1) : latency))
+                .build();
+        return new CustomerService(webClient, circuitBreaker, bulkhead, callTimeout,
+                100, Duration.ofMinutes(5), NEGATIVE_TTL, new SimpleMeterRegistry());
+    }
+}
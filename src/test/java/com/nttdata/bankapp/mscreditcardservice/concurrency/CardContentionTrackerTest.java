@@ -0,0 +1,77 @@
+package com.nttdata.bankapp.mscreditcardservice.concurrency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CardContentionTrackerTest {
+
+    private static final String CARD_ID = "card-1";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CardContentionTracker tracker = new CardContentionTracker(meterRegistry, 3, Duration.ofMillis(1),
+            Duration.ofMillis(5), 3, 1, 1000, Duration.ofMinutes(15));
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @Test
+    void retriesConflictsUntilTheWriteSucceeds() {
+        StepVerifier.create(failingTimes(2).retryWhen(tracker.retryOnConflict(CARD_ID, "update")))
+                .expectNext("updated")
+                .verifyComplete();
+
+        assertEquals(3, attempts.get());
+        assertEquals(2.0, meterRegistry.counter("creditcard.optimistic.lock.conflicts", "operation", "update").count());
+        assertEquals(0.0, meterRegistry.counter("creditcard.optimistic.lock.retries.exhausted", "operation", "update").count());
+    }
+
+    @Test
+    void propagatesTheConflictOnceTheAttemptsAreExhausted() {
+        StepVerifier.create(failingTimes(10).retryWhen(tracker.retryOnConflict(CARD_ID, "update")))
+                .expectError(OptimisticLockingFailureException.class)
+                .verify();
+
+        assertEquals(4, attempts.get());
+        assertEquals(4.0, meterRegistry.counter("creditcard.optimistic.lock.conflicts", "operation", "update").count());
+        assertEquals(1.0, meterRegistry.counter("creditcard.optimistic.lock.retries.exhausted", "operation", "update").count());
+    }
+
+    @Test
+    void doesNotRetryOtherErrors() {
+        StepVerifier.create(Mono.defer(() -> {
+                    attempts.incrementAndGet();
+                    return Mono.error(new IllegalArgumentException("Cannot change credit card owner"));
+                }).retryWhen(tracker.retryOnConflict(CARD_ID, "update")))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void publishesOnlyTheHottestCardsUpToTheLimit() {
+        for (int i = 0; i < 3; i++) {
+            tracker.conflict(CARD_ID, "update");
+            tracker.conflict("card-2", "update");
+        }
+        tracker.conflict("card-2", "update");
+
+        assertEquals("card-2", tracker.hottest(1).get(0).getCreditCardId());
+        assertNotNull(meterRegistry.find("creditcard.contention.hot").tag("creditCardId", CARD_ID).functionCounter());
+        assertNull(meterRegistry.find("creditcard.contention.hot").tag("creditCardId", "card-2").functionCounter());
+    }
+
+    private Mono<String> failingTimes(int failures) {
+        return Mono.defer(() -> attempts.incrementAndGet() <= failures
+                ? Mono.error(new OptimisticLockingFailureException("Credit card was modified concurrently: " + CARD_ID))
+                : Mono.just("updated"));
+    }
+}
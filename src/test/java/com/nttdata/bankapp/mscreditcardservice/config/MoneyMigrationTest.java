@@ -0,0 +1,77 @@
+package com.nttdata.bankapp.mscreditcardservice.config;
+
+import com.nttdata.bankapp.mscreditcardservice.model.SchemaMigration;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MoneyMigrationTest {
+
+    private final CreditCardRepository creditCardRepository = mock(CreditCardRepository.class);
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final MoneyMigration moneyMigration = new MoneyMigration(creditCardRepository, mongoTemplate);
+
+    @Test
+    void convertsTheWholeCollectionAndMarksTheMigration() {
+        givenMigrationApplied(false);
+        when(creditCardRepository.convertLegacyAmounts(isNull())).thenReturn(Mono.just(3L));
+        when(mongoTemplate.insert(any(SchemaMigration.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(moneyMigration.migrate()).verifyComplete();
+
+        ArgumentCaptor<SchemaMigration> captor = ArgumentCaptor.forClass(SchemaMigration.class);
+        verify(mongoTemplate).insert(captor.capture());
+        assertEquals(MoneyMigration.MIGRATION_ID, captor.getValue().getId());
+        assertEquals(3L, captor.getValue().getMigrated());
+    }
+
+    @Test
+    void doesNotScanTheCollectionOnceApplied() {
+        givenMigrationApplied(true);
+
+        StepVerifier.create(moneyMigration.migrate()).verifyComplete();
+
+        verify(creditCardRepository, never()).convertLegacyAmounts(anyCollection());
+        verify(creditCardRepository, never()).convertLegacyAmounts(isNull());
+    }
+
+    @Test
+    void leavesTheMigrationPendingWithoutFailingWhenTheConversionFails() {
+        givenMigrationApplied(false);
+        when(creditCardRepository.convertLegacyAmounts(isNull()))
+                .thenReturn(Mono.error(new IllegalStateException("conversion failed")));
+
+        StepVerifier.create(moneyMigration.migrate()).verifyComplete();
+
+        verify(mongoTemplate, never()).insert(any(SchemaMigration.class));
+    }
+
+    @Test
+    void acceptsAMarkWrittenByAnotherInstance() {
+        givenMigrationApplied(false);
+        when(creditCardRepository.convertLegacyAmounts(isNull())).thenReturn(Mono.just(0L));
+        when(mongoTemplate.insert(any(SchemaMigration.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key error")));
+
+        StepVerifier.create(moneyMigration.migrate()).verifyComplete();
+    }
+
+    private void givenMigrationApplied(boolean applied) {
+        when(mongoTemplate.exists(any(Query.class), eq(SchemaMigration.class))).thenReturn(Mono.just(applied));
+    }
+}
@@ -0,0 +1,36 @@
+package com.nttdata.bankapp.mscreditcardservice.config;
+
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MongoConfigTest {
+
+    @Test
+    void writesAmountsAsMinorUnits() {
+        assertEquals(123456L, new MongoConfig.MoneyToLongConverter().convert(Money.of(new BigDecimal("1234.56"))));
+    }
+
+    @Test
+    void readsAmountsInMinorUnits() {
+        assertEquals(Money.of(new BigDecimal("1234.56")), new MongoConfig.LongToMoneyConverter().convert(123456L));
+    }
+
+    @Test
+    void readsLegacyAmounts() {
+        Money expected = Money.of(new BigDecimal("1500.10"));
+
+        assertEquals(expected, new MongoConfig.StringToMoneyConverter().convert("1500.1"));
+        assertEquals(expected, new MongoConfig.Decimal128ToMoneyConverter().convert(Decimal128.parse("1500.10")));
+    }
+
+    @Test
+    void rejectsLegacyAmountsWithMoreThanTwoDecimals() {
+        assertThrows(IllegalArgumentException.class, () -> new MongoConfig.StringToMoneyConverter().convert("1.005"));
+    }
+}
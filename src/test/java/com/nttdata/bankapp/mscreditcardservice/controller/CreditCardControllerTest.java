@@ -0,0 +1,141 @@
+package com.nttdata.bankapp.mscreditcardservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.nttdata.bankapp.mscreditcardservice.config.SmileCodecConfig;
+import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardDto;
+import com.nttdata.bankapp.mscreditcardservice.exception.GlobalExceptionHandler;
+import com.nttdata.bankapp.mscreditcardservice.idempotency.IdempotencyStore;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import com.nttdata.bankapp.mscreditcardservice.service.CreditCardService;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.validation.beanvalidation.MethodValidationInterceptor;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class CreditCardControllerTest {
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    private static final String CARD_ID = "card-1";
+
+    private final CreditCardService creditCardService = mock(CreditCardService.class);
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory()).findAndRegisterModules();
+    private final WebTestClient client = WebTestClient.bindToController(validated(
+                    new CreditCardController(creditCardService, mock(IdempotencyStore.class))))
+            .controllerAdvice(new GlobalExceptionHandler())
+            .httpMessageCodecs(new SmileCodecConfig().smileCodecCustomizer(Jackson2ObjectMapperBuilder.json())::customize)
+            .build();
+
+    @Test
+    void answersWithSmileWhenTheCallerAsksForIt() throws Exception {
+        when(creditCardService.findById(CARD_ID)).thenReturn(Mono.just(card()));
+
+        byte[] body = client.get().uri("/credit-cards/{id}", CARD_ID)
+                .accept(SMILE)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(SMILE)
+                .expectBody().returnResult().getResponseBody();
+
+        CreditCardDto decoded = smileMapper.readValue(body, CreditCardDto.class);
+        assertEquals(new BigDecimal("100.00"), decoded.getCreditLimit());
+    }
+
+    @Test
+    void keepsJsonAsTheDefaultFormat() {
+        when(creditCardService.findById(CARD_ID)).thenReturn(Mono.just(card()));
+
+        client.get().uri("/credit-cards/{id}", CARD_ID)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody().jsonPath("$.creditLimit").isEqualTo(100.00);
+    }
+
+    @Test
+    void readsSmileRequestBodies() throws Exception {
+        when(creditCardService.save(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        client.post().uri("/credit-cards")
+                .contentType(SMILE)
+                .bodyValue(smileMapper.writeValueAsBytes(CreditCardDto.builder()
+                        .customerId("customer-1")
+                        .customerType(CustomerType.PERSONAL)
+                        .creditLimit(new BigDecimal("1500.50"))
+                        .build()))
+                .exchange()
+                .expectStatus().isCreated();
+
+        verify(creditCardService).save(argThat(
+                creditCardDto -> new BigDecimal("1500.50").equals(creditCardDto.getCreditLimit())));
+    }
+
+    @Test
+    void rejectsMalformedAmountsBeforeCallingTheService() {
+        client.put().uri("/credit-cards/{id}/consumption?amount=abc", CARD_ID)
+                .exchange()
+                .expectStatus().isBadRequest();
+        client.put().uri("/credit-cards/{id}/consumption?amount=10.001", CARD_ID)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.errors.amount").exists();
+        client.put().uri("/credit-cards/{id}/payment?amount=0", CARD_ID)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verifyNoInteractions(creditCardService);
+    }
+
+    @Test
+    void rejectsMalformedAmountsInRequestBodies() {
+        client.post().uri("/credit-cards")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"customerId\":\"customer-1\",\"customerType\":\"PERSONAL\",\"creditLimit\":\"abc\"}")
+                .exchange()
+                .expectStatus().isBadRequest();
+        client.post().uri("/credit-cards")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"customerId\":\"customer-1\",\"customerType\":\"PERSONAL\",\"creditLimit\":12.345}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.errors.creditLimit").exists();
+
+        verify(creditCardService, never()).save(any());
+        verify(creditCardService, never()).registerConsumption(anyString(), any(), any());
+    }
+
+    /**
+     * Aplica la validación de parámetros que Spring añade a los beans anotados con @Validated.
+     */
+    private static CreditCardController validated(CreditCardController controller) {
+        ProxyFactory proxyFactory = new ProxyFactory(controller);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new MethodValidationInterceptor());
+        return (CreditCardController) proxyFactory.getProxy();
+    }
+
+    private static CreditCardDto card() {
+        return CreditCardDto.builder()
+                .id(CARD_ID)
+                .customerId("customer-1")
+                .customerType(CustomerType.PERSONAL)
+                .creditLimit(new BigDecimal("100.00"))
+                .availableBalance(new BigDecimal("100.00"))
+                .build();
+    }
+}
@@ -0,0 +1,162 @@
+package com.nttdata.bankapp.mscreditcardservice.events;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceEventDto;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Subscription;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.TestPublisher;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BalanceEventStreamTest {
+
+    private static final String COLLECTION = "creditCards";
+    private static final String CARD_ID = "64b7f0c2a1b2c3d4e5f60718";
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final MongoConverter converter = mock(MongoConverter.class);
+    private BalanceEventStream balanceEventStream;
+
+    @BeforeEach
+    void setUp() {
+        DefaultConversionService conversionService = new DefaultConversionService();
+        conversionService.addConverter(Long.class, Money.class, Money::ofMinorUnits);
+        when(converter.getConversionService()).thenReturn(conversionService);
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.getCollectionName(CreditCard.class)).thenReturn(COLLECTION);
+        balanceEventStream = new BalanceEventStream(mongoTemplate, Duration.ofSeconds(1), 2);
+    }
+
+    @Test
+    void resumesAfterTheGivenTokenWithItsOwnFilteredStream() {
+        when(mongoTemplate.changeStream(eq(COLLECTION), any(ChangeStreamOptions.class), eq(Document.class)))
+                .thenReturn(Flux.just(event("82B2")));
+
+        StepVerifier.create(balanceEventStream.events(CARD_ID, null, "82A1"))
+                .assertNext(event -> {
+                    assertEquals("82B2", event.getResumeToken());
+                    assertEquals(CARD_ID, event.getCreditCardId());
+                    assertEquals(new BigDecimal("40.00"), event.getAvailableBalance());
+                })
+                .verifyComplete();
+
+        ChangeStreamOptions options = capturedOptions(1).get(0);
+        assertEquals(new BsonString("82A1"), options.getResumeToken().orElseThrow().asDocument().get("_data"));
+        assertTrue(options.getFilter().orElseThrow().toString().contains("documentKey._id"));
+    }
+
+    @Test
+    void rejectsMalformedResumeTokens() {
+        StepVerifier.create(balanceEventStream.events(null, null, "not a token"))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verify(mongoTemplate, never()).changeStream(any(), any(), any());
+    }
+
+    @Test
+    void reconnectsTheSharedStreamFromTheLastReceivedEvent() {
+        when(mongoTemplate.changeStream(eq(COLLECTION), any(ChangeStreamOptions.class), eq(Document.class)))
+                .thenReturn(Flux.just(event("82B2")).concatWith(Flux.error(new IllegalStateException("node stepped down"))),
+                        Flux.just(event("82C3")).concatWith(Flux.never()));
+
+        StepVerifier.create(balanceEventStream.events(null, null, null))
+                .expectNextMatches(event -> "82B2".equals(event.getResumeToken()))
+                .expectNextMatches(event -> "82C3".equals(event.getResumeToken()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        List<ChangeStreamOptions> options = capturedOptions(2);
+        assertTrue(options.get(0).getResumeToken().isEmpty());
+        assertEquals(new BsonString("82B2"), options.get(1).getResumeToken().orElseThrow().asDocument().get("_data"));
+    }
+
+    @Test
+    void disconnectsOnlyTheSubscriberThatOverflowsItsBuffer() {
+        TestPublisher<ChangeStreamEvent<Document>> changes = TestPublisher.create();
+        when(mongoTemplate.changeStream(eq(COLLECTION), any(ChangeStreamOptions.class), eq(Document.class)))
+                .thenReturn(changes.flux());
+        List<BalanceEventDto> received = new ArrayList<>();
+        AtomicReference<Throwable> slowError = new AtomicReference<>();
+
+        Disposable fast = balanceEventStream.events(null, null, null).subscribe(received::add);
+        List<BalanceEventDto> slowReceived = new ArrayList<>();
+        BaseSubscriber<BalanceEventDto> slow = new BaseSubscriber<BalanceEventDto>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                // No pide eventos hasta que se le indica
+            }
+
+            @Override
+            protected void hookOnNext(BalanceEventDto event) {
+                slowReceived.add(event);
+            }
+
+            @Override
+            protected void hookOnError(Throwable throwable) {
+                slowError.set(throwable);
+            }
+        };
+        balanceEventStream.events(null, null, null).subscribe(slow);
+        changes.next(event("82B1"), event("82B2"), event("82B3"), event("82B4"));
+        assertEquals(4, received.size());
+
+        // Recibe lo que cabía en su buffer y después el error, con el token del último evento para reconectar
+        slow.request(10);
+        assertEquals(2, slowReceived.size());
+        assertEquals("82B2", slowReceived.get(1).getResumeToken());
+        assertTrue(Exceptions.isOverflow(slowError.get()));
+        changes.next(event("82B5"));
+        assertEquals(5, received.size());
+        fast.dispose();
+    }
+
+    private List<ChangeStreamOptions> capturedOptions(int calls) {
+        ArgumentCaptor<ChangeStreamOptions> options = ArgumentCaptor.forClass(ChangeStreamOptions.class);
+        verify(mongoTemplate, times(calls)).changeStream(eq(COLLECTION), options.capture(), eq(Document.class));
+        return options.getAllValues();
+    }
+
+    private ChangeStreamEvent<Document> event(String resumeToken) {
+        Document creditCard = new Document("_id", CARD_ID)
+                .append("customerId", "customer-1")
+                .append("creditLimit", 10000L)
+                .append("availableBalance", 4000L);
+        ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>(OperationType.UPDATE,
+                new BsonDocument("_data", new BsonString(resumeToken)), null, null, creditCard,
+                new BsonDocument("_id", new BsonString(CARD_ID)), null, null, null, null);
+        return new ChangeStreamEvent<>(raw, Document.class, converter);
+    }
+}
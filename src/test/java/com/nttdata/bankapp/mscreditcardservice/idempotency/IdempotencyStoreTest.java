@@ -0,0 +1,213 @@
+package com.nttdata.bankapp.mscreditcardservice.idempotency;
+
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardDto;
+import com.nttdata.bankapp.mscreditcardservice.exception.IdempotencyConflictException;
+import com.nttdata.bankapp.mscreditcardservice.model.IdempotencyRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyStoreTest {
+
+    private static final String KEY = "payment-1";
+    private static final String FINGERPRINT = "payment|card-1|10.00";
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final AtomicInteger executions = new AtomicInteger();
+    private IdempotencyStore idempotencyStore;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyStore = new IdempotencyStore(mongoTemplate, new SimpleMeterRegistry(),
+                Duration.ofHours(24), Duration.ofSeconds(30), 1000, Duration.ofMinutes(10));
+        when(mongoTemplate.insert(any(IdempotencyRecord.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(IdempotencyRecord.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoTemplate.remove(any(Query.class), eq(IdempotencyRecord.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+    }
+
+    @Test
+    void replaysTheStoredResponseWithoutExecutingAgain() {
+        StepVerifier.create(idempotencyStore.execute(KEY, FINGERPRINT, this::payment, Mono::empty))
+                .assertNext(response -> assertEquals(new BigDecimal("90.00"), response.getAvailableBalance()))
+                .verifyComplete();
+
+        StepVerifier.create(idempotencyStore.execute(KEY, FINGERPRINT, this::payment, Mono::empty))
+                .assertNext(response -> {
+                    assertEquals(new BigDecimal("90.00"), response.getAvailableBalance());
+                    assertNull(response.getCvv());
+                })
+                .verifyComplete();
+
+        assertEquals(1, executions.get());
+        verify(mongoTemplate).insert(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void replaysAResponseStoredByAnotherInstance() {
+        givenExistingRecord(IdempotencyRecord.Status.COMPLETED, FINGERPRINT);
+
+        StepVerifier.create(idempotencyStore.execute(KEY, FINGERPRINT, this::payment, Mono::empty))
+                .assertNext(response -> assertEquals("card-1", response.getId()))
+                .verifyComplete();
+
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void rejectsTheKeyForADifferentRequest() {
+        StepVerifier.create(idempotencyStore.execute(KEY, FINGERPRINT, this::payment, Mono::empty))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        StepVerifier.create(idempotencyStore.execute(KEY, "payment|card-1|20.00", this::payment, Mono::empty))
+                .expectError(IdempotencyConflictException.class)
+                .verify();
+
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void rejectsARequestStillInProgressElsewhere() {
+        givenExistingRecord(IdempotencyRecord.Status.IN_PROGRESS, FINGERPRINT);
+
+        StepVerifier.create(idempotencyStore.execute(KEY, FINGERPRINT, this::payment, Mono::empty))
+                .expectError(IdempotencyConflictException.class)
+                .verify();
+
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void takesOverAnExpiredReservation() {
+        givenExistingRecord(IdempotencyRecord.Status.IN_PROGRESS, FINGERPRINT);
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(IdempotencyRecord.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(idempotencyStore.execute(KEY, FINGERPRINT, this::payment, Mono::empty))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertEquals(1, executions.get());
+        verify(mongoTemplate, never()).findById(any(), eq(IdempotencyRecord.class));
+    }
+
+    @Test
+    void completesATakenOverReservationWithoutReRunningAnAppliedOperation() {
+        givenExistingRecord(IdempotencyRecord.Status.IN_PROGRESS, FINGERPRINT);
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(IdempotencyRecord.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        CreditCardDto current = CreditCardDto.builder().id("card-1").availableBalance(new BigDecimal("90.00")).build();
+
+        StepVerifier.create(idempotencyStore.execute(KEY, FINGERPRINT, this::payment, () -> Mono.just(current)))
+                .assertNext(response -> assertEquals(new BigDecimal("90.00"), response.getAvailableBalance()))
+                .verifyComplete();
+
+        assertEquals(0, executions.get());
+        // Una actualización toma la reserva y otra guarda la respuesta
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), any(UpdateDefinition.class),
+                eq(IdempotencyRecord.class));
+        StepVerifier.create(idempotencyStore.execute(KEY, FINGERPRINT, this::payment, Mono::empty))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void releasesTheKeyWhenTheOperationFails() {
+        StepVerifier.create(idempotencyStore.execute(KEY, FINGERPRINT,
+                        () -> Mono.error(new IllegalArgumentException("Payment exceeds used balance")), Mono::empty))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verify(mongoTemplate).remove(any(Query.class), eq(IdempotencyRecord.class));
+        StepVerifier.create(idempotencyStore.execute(KEY, FINGERPRINT, this::payment, Mono::empty))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void completesTheOperationWhenTheClientDisconnects() {
+        Disposable request = idempotencyStore.execute(KEY, FINGERPRINT,
+                        () -> payment().delayElement(Duration.ofMillis(100)), Mono::empty)
+                .subscribe();
+        assertEquals(1, executions.get());
+        request.dispose();
+
+        verify(mongoTemplate, timeout(1000)).updateFirst(any(Query.class), any(UpdateDefinition.class),
+                eq(IdempotencyRecord.class));
+        StepVerifier.create(idempotencyStore.execute(KEY, FINGERPRINT, this::payment, Mono::empty))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void rejectsInvalidKeys() {
+        StepVerifier.create(idempotencyStore.execute(" ", FINGERPRINT, this::payment, Mono::empty))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(idempotencyStore.execute("k".repeat(256), FINGERPRINT, this::payment, Mono::empty))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
+    private Mono<CreditCardDto> payment() {
+        return Mono.fromCallable(() -> {
+            executions.incrementAndGet();
+            return CreditCardDto.builder()
+                    .id("card-1")
+                    .customerId("customer-1")
+                    .creditLimit(new BigDecimal("100.00"))
+                    .availableBalance(new BigDecimal("90.00"))
+                    .cvv("123")
+                    .build();
+        });
+    }
+
+    /**
+     * Registro ya insertado por otra instancia, con su reserva aún vigente si está en curso.
+     */
+    private void givenExistingRecord(IdempotencyRecord.Status status, String fingerprint) {
+        when(mongoTemplate.insert(any(IdempotencyRecord.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("duplicate key")));
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(IdempotencyRecord.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+        when(mongoTemplate.findById(KEY, IdempotencyRecord.class))
+                .thenReturn(Mono.just(IdempotencyRecord.builder()
+                        .id(KEY)
+                        .fingerprint(fingerprint)
+                        .status(status)
+                        .response(status == IdempotencyRecord.Status.COMPLETED
+                                ? CreditCardDto.builder().id("card-1").availableBalance(new BigDecimal("90.00")).build()
+                                : null)
+                        .build()));
+    }
+}
@@ -0,0 +1,145 @@
+package com.nttdata.bankapp.mscreditcardservice.issuance;
+
+import com.nttdata.bankapp.mscreditcardservice.model.CardNumberSequence;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CardNumberIssuerTest {
+
+    private static final long ACCOUNTS_PER_BIN = 1_000_000_000L;
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final Map<String, CardNumberSequence> sequences = new HashMap<>();
+
+    @Test
+    void composesLuhnValidCardNumbers() {
+        assertEquals("4111-1111-1111-1111", CardNumberIssuer.cardNumber("411111", 111_111_111L));
+        assertEquals("5123-0000-0000-0001", CardNumberIssuer.cardNumber("512300", 0L));
+
+        for (long accountNumber = 0; accountNumber < 1000; accountNumber++) {
+            String cardNumber = CardNumberIssuer.cardNumber("512345", accountNumber * 999_983L % ACCOUNTS_PER_BIN);
+            assertTrue(isLuhnValid(cardNumber), cardNumber);
+            assertTrue(cardNumber.startsWith("5123-45"), cardNumber);
+        }
+    }
+
+    @Test
+    void issuesUniqueNumbersFromReservedBlocks() {
+        givenSequencesInMemory(null);
+        CardNumberIssuer issuer = new CardNumberIssuer(mongoTemplate, "512300-512399", 3);
+
+        List<String> cardNumbers = Flux.range(0, 7)
+                .concatMap(i -> issuer.nextCardNumber())
+                .collectList()
+                .block();
+
+        assertEquals(7, new HashSet<>(cardNumbers).size());
+        cardNumbers.forEach(cardNumber -> assertTrue(isLuhnValid(cardNumber), cardNumber));
+        cardNumbers.forEach(cardNumber -> assertTrue(cardNumber.startsWith("5123-00"), cardNumber));
+        // Siete números en bloques de tres: tres reservas
+        verify(mongoTemplate, times(3)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(CardNumberSequence.class));
+    }
+
+    @Test
+    void sharesOneReservationBetweenConcurrentRequests() {
+        givenSequencesInMemory(null);
+        CardNumberIssuer issuer = new CardNumberIssuer(mongoTemplate, "512300-512399", 100);
+
+        Set<String> cardNumbers = Flux.range(0, 50)
+                .flatMap(i -> issuer.nextCardNumber())
+                .collect(HashSet<String>::new, Set::add)
+                .block();
+
+        assertEquals(50, cardNumbers.size());
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(CardNumberSequence.class));
+    }
+
+    @Test
+    void movesToTheNextBinWhenOneIsExhausted() {
+        givenSequencesInMemory("512300");
+        CardNumberIssuer issuer = new CardNumberIssuer(mongoTemplate, "512300-512301", 10);
+
+        StepVerifier.create(issuer.nextCardNumber())
+                .assertNext(cardNumber -> assertTrue(cardNumber.startsWith("5123-01"), cardNumber))
+                .verifyComplete();
+    }
+
+    @Test
+    void failsWhenTheBinRangeIsExhausted() {
+        givenSequencesInMemory("512300");
+        CardNumberIssuer issuer = new CardNumberIssuer(mongoTemplate, "512300-512300", 10);
+
+        StepVerifier.create(issuer.nextCardNumber())
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+
+    @Test
+    void generatesThreeDigitCvvs() {
+        CardNumberIssuer issuer = new CardNumberIssuer(mongoTemplate, "512300-512399", 10);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(issuer.generateCvv().matches("\\d{3}"));
+        }
+    }
+
+    /**
+     * Simula el findAndModify con upsert de las secuencias: $inc de next y $setOnInsert de la permutación.
+     * @param exhaustedBin BIN cuyos 10^9 números de cuenta ya están reservados, o null si no hay ninguno
+     */
+    private void givenSequencesInMemory(String exhaustedBin) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(CardNumberSequence.class)))
+                .thenAnswer(invocation -> Mono.fromCallable(() -> {
+                    Query query = invocation.getArgument(0);
+                    Document update = invocation.<UpdateDefinition>getArgument(1).getUpdateObject();
+                    String bin = query.getQueryObject().getString("id");
+                    Document inc = update.get("$inc", Document.class);
+                    Document setOnInsert = update.get("$setOnInsert", Document.class);
+                    synchronized (sequences) {
+                        CardNumberSequence sequence = sequences.computeIfAbsent(bin, id -> new CardNumberSequence(id,
+                                id.equals(exhaustedBin) ? ACCOUNTS_PER_BIN : 0L,
+                                setOnInsert.getLong("multiplier"), setOnInsert.getLong("offset")));
+                        sequence.setNext(sequence.getNext() + ((Number) inc.get("next")).longValue());
+                        return new CardNumberSequence(bin, sequence.getNext(), sequence.getMultiplier(), sequence.getOffset());
+                    }
+                }));
+    }
+
+    private static boolean isLuhnValid(String cardNumber) {
+        String digits = cardNumber.replace("-", "");
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(digits.length() - 1 - i) - '0';
+            if (i % 2 == 1) {
+                digit = digit * 2 > 9 ? digit * 2 - 9 : digit * 2;
+            }
+            sum += digit;
+        }
+        return digits.length() == 16 && sum % 10 == 0;
+    }
+}
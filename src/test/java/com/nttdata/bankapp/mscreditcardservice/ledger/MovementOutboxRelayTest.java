@@ -0,0 +1,81 @@
+package com.nttdata.bankapp.mscreditcardservice.ledger;
+
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.model.Movement;
+import com.nttdata.bankapp.mscreditcardservice.model.MovementType;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import com.nttdata.bankapp.mscreditcardservice.repository.MovementRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.PublisherProbe;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovementOutboxRelayTest {
+
+    private final CreditCardRepository creditCardRepository = mock(CreditCardRepository.class);
+    private final MovementRepository movementRepository = mock(MovementRepository.class);
+    private final MovementOutboxRelay relay = new MovementOutboxRelay(creditCardRepository, movementRepository,
+            Duration.ofSeconds(1), 200);
+
+    @Test
+    void copiesThePendingMovementsBeforeRemovingThemFromTheCard() {
+        Movement consumption = Movement.of("card-1", MovementType.CONSUMPTION, Money.of(new BigDecimal("10")));
+        Movement payment = Movement.of("card-1", MovementType.PAYMENT, Money.of(new BigDecimal("5")));
+        when(creditCardRepository.findWithPendingMovements(200))
+                .thenReturn(Flux.just(cardWith("card-1", consumption, payment)));
+        when(movementRepository.saveAll(anyList())).thenAnswer(invocation -> Flux.fromIterable(invocation.getArgument(0)));
+        when(creditCardRepository.removePendingMovements(anyString(), anyList())).thenReturn(Mono.empty());
+
+        StepVerifier.create(relay.relayPending())
+                .expectNext(2L)
+                .verifyComplete();
+
+        InOrder order = inOrder(movementRepository, creditCardRepository);
+        order.verify(movementRepository).saveAll(List.of(consumption, payment));
+        order.verify(creditCardRepository).removePendingMovements("card-1", List.of(consumption.getId(), payment.getId()));
+    }
+
+    @Test
+    void keepsTheMovementsPendingWhenTheCopyFails() {
+        Movement consumption = Movement.of("card-1", MovementType.CONSUMPTION, Money.of(new BigDecimal("10")));
+        when(creditCardRepository.findWithPendingMovements(200)).thenReturn(Flux.just(cardWith("card-1", consumption)));
+        when(movementRepository.saveAll(anyList())).thenReturn(Flux.error(new IllegalStateException("write failed")));
+        PublisherProbe<Void> removal = PublisherProbe.empty();
+        when(creditCardRepository.removePendingMovements(anyString(), anyList())).thenReturn(removal.mono());
+
+        StepVerifier.create(relay.relayPending())
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        removal.assertWasNotSubscribed();
+    }
+
+    @Test
+    void reportsNothingWhenNoCardHasPendingMovements() {
+        when(creditCardRepository.findWithPendingMovements(200)).thenReturn(Flux.empty());
+
+        StepVerifier.create(relay.relayPending())
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    private static CreditCard cardWith(String id, Movement... movements) {
+        return CreditCard.builder()
+                .id(id)
+                .pendingMovements(List.of(movements))
+                .build();
+    }
+}
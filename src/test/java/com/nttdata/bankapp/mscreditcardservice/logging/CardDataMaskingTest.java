@@ -0,0 +1,66 @@
+package com.nttdata.bankapp.mscreditcardservice.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardDataMaskingTest {
+
+    @Test
+    void keepsOnlyTheLastFourDigitsOfCardNumbers() {
+        assertEquals("card ****-****-****-0001", CardDataMasking.mask("card 5123-4567-8901-0001"));
+        assertEquals("card **** **** **** 0001", CardDataMasking.mask("card 5123 4567 8901 0001"));
+        assertEquals("card ************0001", CardDataMasking.mask("card 5123456789010001"));
+    }
+
+    @Test
+    void masksCvvValues() {
+        assertEquals("{\"cvv\":\"***\"}", CardDataMasking.mask("{\"cvv\":\"123\"}"));
+        assertEquals("CVV=*** issued", CardDataMasking.mask("CVV=1234 issued"));
+    }
+
+    @Test
+    void leavesOtherTextUntouched() {
+        String text = "PUT /credit-cards/64b7f0c2a1/payment with amount: 120.50";
+        assertSame(text, CardDataMasking.mask(text));
+        // Los IDs de 24 dígitos hexadecimales no son números de tarjeta
+        assertEquals("id 123456789012345678901234", CardDataMasking.mask("id 123456789012345678901234"));
+    }
+
+    @Test
+    void masksCardDataInFormattedMessages() {
+        LoggingEvent event = event("Issued card {} with cvv: {}", null, "5123-4567-8901-0001", "123");
+
+        String message = new MaskedMessageConverter().convert(event);
+
+        assertEquals("Issued card ****-****-****-0001 with cvv: ***", message);
+    }
+
+    @Test
+    void masksCardDataInStackTracesAndTheirCauses() {
+        IllegalStateException error = new IllegalStateException("Duplicate key cardNumber: 5123-4567-8901-0001",
+                new IllegalArgumentException("cvv=321 rejected"));
+        MaskedThrowableConverter converter = new MaskedThrowableConverter();
+        converter.setContext(new LoggerContext());
+        converter.start();
+
+        String trace = converter.convert(event("Error creating card", error));
+
+        assertTrue(trace.contains("****-****-****-0001"));
+        assertTrue(trace.contains("cvv=***"));
+        assertFalse(trace.contains("5123-4567"));
+        assertFalse(trace.contains("321"));
+    }
+
+    private static LoggingEvent event(String message, Throwable error, Object... arguments) {
+        Logger logger = new LoggerContext().getLogger(CardDataMaskingTest.class);
+        return new LoggingEvent(Logger.class.getName(), logger, Level.ERROR, message, error, arguments);
+    }
+}
@@ -0,0 +1,60 @@
+package com.nttdata.bankapp.mscreditcardservice.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTest {
+
+    @Test
+    void convertsDecimalAmountsToMinorUnits() {
+        assertEquals(1250L, Money.of(new BigDecimal("12.5")).getMinorUnits());
+        assertEquals(1234L, Money.of(new BigDecimal("12.34")).getMinorUnits());
+        assertEquals(-700L, Money.of(new BigDecimal("-7")).getMinorUnits());
+    }
+
+    @Test
+    void convertsMinorUnitsBackWithTwoDecimals() {
+        BigDecimal amount = Money.ofMinorUnits(1005L).toBigDecimal();
+
+        assertEquals(new BigDecimal("10.05"), amount);
+        assertEquals(2, amount.scale());
+        assertEquals("10.05", Money.ofMinorUnits(1005L).toString());
+        assertEquals("-0.50", Money.ofMinorUnits(-50L).toString());
+    }
+
+    @Test
+    void rejectsAmountsWithMoreThanTwoDecimals() {
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("0.001")));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("12.345")));
+    }
+
+    @Test
+    void rejectsAmountsThatDoNotFitInLong() {
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("1e20")));
+    }
+
+    @Test
+    void failsOnOverflowInsteadOfWrappingAround() {
+        Money max = Money.ofMinorUnits(Long.MAX_VALUE);
+
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofMinorUnits(1L)));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinorUnits(Long.MIN_VALUE).minus(Money.ofMinorUnits(1L)));
+    }
+
+    @Test
+    void comparesByMinorUnits() {
+        Money ten = Money.of(new BigDecimal("10"));
+
+        assertEquals(ten, Money.of(new BigDecimal("10.00")));
+        assertEquals(ten.hashCode(), Money.ofMinorUnits(1000L).hashCode());
+        assertTrue(ten.isGreaterThan(Money.of(new BigDecimal("9.99"))));
+        assertEquals(0, ten.minus(Money.ofMinorUnits(1000L)).signum());
+        assertSame(Money.ZERO, ten.plus(ten.negate()));
+    }
+}
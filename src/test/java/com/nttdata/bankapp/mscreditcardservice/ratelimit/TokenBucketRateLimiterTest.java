@@ -0,0 +1,80 @@
+package com.nttdata.bankapp.mscreditcardservice.ratelimit;
+
+import com.nttdata.bankapp.mscreditcardservice.ratelimit.TokenBucketRateLimiter.Limit;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketRateLimiterTest {
+
+    private final TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(1000, Duration.ofMinutes(10));
+
+    @Test
+    void allowsABurstOfCapacityRequests() {
+        // Un token por hora: durante la prueba no se recupera ninguno
+        Limit limit = Limit.of(3, 1.0 / 3600);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("customer", limit));
+        }
+        assertTrue(rateLimiter.tryAcquire("customer", limit) > 0);
+    }
+
+    @Test
+    void waitsAtMostOneEmissionIntervalForTheNextToken() {
+        Limit limit = Limit.of(1, 1.0 / 3600);
+        long emissionIntervalNanos = TimeUnit.HOURS.toNanos(1);
+
+        assertEquals(0, rateLimiter.tryAcquire("customer", limit));
+        long waitNanos = rateLimiter.tryAcquire("customer", limit);
+
+        assertTrue(waitNanos > emissionIntervalNanos - TimeUnit.SECONDS.toNanos(10));
+        assertTrue(waitNanos <= emissionIntervalNanos);
+    }
+
+    @Test
+    void deniedRequestsDoNotConsumeTokens() {
+        Limit limit = Limit.of(1, 1.0 / 3600);
+
+        assertEquals(0, rateLimiter.tryAcquire("customer", limit));
+        long firstWait = rateLimiter.tryAcquire("customer", limit);
+        long secondWait = rateLimiter.tryAcquire("customer", limit);
+
+        assertTrue(secondWait <= firstWait);
+    }
+
+    @Test
+    void refillsAtTheConfiguredRate() throws InterruptedException {
+        // Un token cada 50 ms
+        Limit limit = Limit.of(1, 20);
+
+        assertEquals(0, rateLimiter.tryAcquire("customer", limit));
+        long waitNanos = rateLimiter.tryAcquire("customer", limit);
+        assertTrue(waitNanos > 0 && waitNanos <= TimeUnit.MILLISECONDS.toNanos(50));
+
+        TimeUnit.NANOSECONDS.sleep(waitNanos + TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertEquals(0, rateLimiter.tryAcquire("customer", limit));
+    }
+
+    @Test
+    void keepsASeparateBucketPerKey() {
+        Limit limit = Limit.of(1, 1.0 / 3600);
+
+        assertEquals(0, rateLimiter.tryAcquire("GET /credit-cards/{id}|a", limit));
+        assertEquals(0, rateLimiter.tryAcquire("GET /credit-cards/{id}|b", limit));
+        assertTrue(rateLimiter.tryAcquire("GET /credit-cards/{id}|a", limit) > 0);
+        assertEquals(2, rateLimiter.trackedKeys());
+    }
+
+    @Test
+    void rejectsNonPositiveLimits() {
+        assertThrows(IllegalArgumentException.class, () -> Limit.of(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> Limit.of(1, 0));
+    }
+}
@@ -0,0 +1,302 @@
+package com.nttdata.bankapp.mscreditcardservice.repository;
+
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.nttdata.bankapp.mscreditcardservice.exception.PendingMovementsBacklogException;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import com.nttdata.bankapp.mscreditcardservice.model.ExposureView;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.model.Movement;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Subscriber;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CreditCardRepositoryCustomImplTest {
+
+    private static final String CARD_ID = "card-1";
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> collection = mock(MongoCollection.class);
+    private final CreditCardRepositoryCustomImpl repository = new CreditCardRepositoryCustomImpl(mongoTemplate, 1000);
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollectionName(any())).thenReturn("creditCards");
+        when(mongoTemplate.getCollection(anyString())).thenReturn(Mono.just(collection));
+        when(collection.updateOne(any(Bson.class), any(Bson.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+    }
+
+    @Test
+    void convertsLegacyAmountsRoundingThoseWithMoreThanTwoDecimals() {
+        givenLegacyCards(new Document("_id", CARD_ID)
+                .append("creditLimit", "1500.1")
+                .append("availableBalance", Decimal128.parse("10.005")));
+
+        StepVerifier.create(repository.convertLegacyAmounts(null))
+                .expectNext(1L)
+                .verifyComplete();
+
+        ArgumentCaptor<Bson> update = ArgumentCaptor.forClass(Bson.class);
+        verify(collection).updateOne(any(Bson.class), update.capture());
+        BsonDocument set = update.getValue().toBsonDocument().getDocument("$set");
+        assertEquals(150010L, set.getInt64("creditLimit").getValue());
+        assertEquals(1001L, set.getInt64("availableBalance").getValue());
+    }
+
+    @Test
+    void skipsCardsWithUnreadableAmounts() {
+        givenLegacyCards(
+                new Document("_id", "card-0").append("creditLimit", "n/a").append("availableBalance", "1"),
+                new Document("_id", CARD_ID).append("creditLimit", "100").append("availableBalance", "50"));
+
+        StepVerifier.create(repository.convertLegacyAmounts(null))
+                .expectNext(1L)
+                .verifyComplete();
+
+        verify(collection, times(1)).updateOne(any(Bson.class), any(Bson.class));
+    }
+
+    @Test
+    void doesNothingForAnEmptySetOfCards() {
+        StepVerifier.create(repository.convertLegacyAmounts(List.of()))
+                .expectNext(0L)
+                .verifyComplete();
+
+        verify(collection, never()).find(any(Bson.class));
+    }
+
+    @Test
+    void debitsOnlyWhenTheBalanceCoversTheAmountInTheSameWrite() {
+        givenBalanceChangeResult(Mono.just(CreditCard.builder().id(CARD_ID).build()));
+
+        StepVerifier.create(repository.debitAvailableBalance(CARD_ID, Money.of(new BigDecimal("10.50")), null))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class),
+                eq(CreditCard.class));
+        Document balance = (Document) query.getValue().getQueryObject().get("availableBalance");
+        assertEquals(1050L, balance.get("$gte"));
+        assertEquals(false, ((Document) query.getValue().getQueryObject().get("pendingMovements.999")).get("$exists"));
+        Document inc = (Document) update.getValue().getUpdateObject().get("$inc");
+        assertEquals(-1050L, inc.get("availableBalance"));
+        assertEquals(1, inc.get("version"));
+    }
+
+    @Test
+    void creditsOnlyUpToTheCreditLimitInTheSameWrite() {
+        givenBalanceChangeResult(Mono.just(CreditCard.builder().id(CARD_ID).build()));
+
+        StepVerifier.create(repository.creditAvailableBalance(CARD_ID, Money.of(new BigDecimal("10")), null))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(query.capture(), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(CreditCard.class));
+        String condition = query.getValue().getQueryObject().get("$expr").toString();
+        assertTrue(condition.contains("$lte"));
+        assertTrue(condition.contains("$creditLimit"));
+        assertTrue(condition.contains("1000"));
+    }
+
+    @Test
+    void retriesOnceAfterConvertingACardWithLegacyAmounts() {
+        givenBalanceChangeResult(Mono.empty(), Mono.just(CreditCard.builder().id(CARD_ID).build()));
+        givenLegacyCards(new Document("_id", CARD_ID).append("creditLimit", "100").append("availableBalance", "50"));
+
+        StepVerifier.create(repository.debitAvailableBalance(CARD_ID, Money.of(new BigDecimal("10")), null))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(collection).updateOne(any(Bson.class), any(Bson.class));
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(CreditCard.class));
+    }
+
+    @Test
+    void doesNotRetryWhenTheCardHasNoLegacyAmounts() {
+        givenBalanceChangeResult(Mono.empty());
+        givenLegacyCards();
+        when(mongoTemplate.exists(any(Query.class), eq(CreditCard.class))).thenReturn(Mono.just(false));
+
+        StepVerifier.create(repository.debitAvailableBalance(CARD_ID, Money.of(new BigDecimal("10")), null))
+                .verifyComplete();
+
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(CreditCard.class));
+    }
+
+    @Test
+    void rejectsBalanceChangesOnCardsWithAFullOutbox() {
+        givenBalanceChangeResult(Mono.empty());
+        givenLegacyCards();
+        when(mongoTemplate.exists(any(Query.class), eq(CreditCard.class))).thenReturn(Mono.just(true));
+
+        StepVerifier.create(repository.creditAvailableBalance(CARD_ID, Money.of(new BigDecimal("10")), null))
+                .expectError(PendingMovementsBacklogException.class)
+                .verify();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).exists(query.capture(), eq(CreditCard.class));
+        assertEquals(true, ((Document) query.getValue().getQueryObject().get("pendingMovements.999")).get("$exists"));
+    }
+
+    @Test
+    void pullsOnlyTheRelayedMovementsFromTheCard() {
+        String movementId = new ObjectId().toHexString();
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(CreditCard.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(repository.removePendingMovements(CARD_ID, List.of(movementId)))
+                .verifyComplete();
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(CreditCard.class));
+        Document pull = (Document) update.getValue().getUpdateObject().get("$pull");
+        Document ids = (Document) ((Document) ((Document) pull.get("pendingMovements")).get("_id"));
+        assertEquals(List.of(new ObjectId(movementId)), ids.get("$in"));
+        assertEquals(null, update.getValue().getUpdateObject().get("$inc"));
+    }
+
+    @Test
+    void storesTheIdempotencyKeyInTheMovementOfTheBalanceChange() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(CreditCard.class))).thenReturn(Mono.just(CreditCard.builder().id(CARD_ID).build()));
+
+        StepVerifier.create(repository.debitAvailableBalance(CARD_ID, Money.of(new BigDecimal("10")), "payment-1"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class),
+                eq(CreditCard.class));
+        Movement movement = (Movement) ((Document) update.getValue().getUpdateObject().get("$push")).get("pendingMovements");
+        assertEquals("payment-1", movement.getIdempotencyKey());
+    }
+
+    @Test
+    void looksForTheIdempotencyKeyInTheLedgerWhenItIsNoLongerPending() {
+        when(mongoTemplate.exists(any(Query.class), eq(CreditCard.class))).thenReturn(Mono.just(false));
+        when(mongoTemplate.exists(any(Query.class), eq(Movement.class))).thenReturn(Mono.just(true));
+
+        StepVerifier.create(repository.hasMovementWithIdempotencyKey(CARD_ID, "payment-1"))
+                .expectNext(true)
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).exists(query.capture(), eq(Movement.class));
+        assertEquals("payment-1", query.getValue().getQueryObject().getString("idempotencyKey"));
+    }
+
+    @Test
+    void readsThePageAfterTheCursorInIdOrder() {
+        String afterId = new ObjectId().toHexString();
+        when(mongoTemplate.find(any(Query.class), eq(CreditCard.class))).thenReturn(Flux.empty());
+
+        StepVerifier.create(repository.findPageAfter("customer-1", afterId, 50))
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(CreditCard.class));
+        assertEquals("customer-1", query.getValue().getQueryObject().get("customerId"));
+        assertEquals(afterId, ((Document) query.getValue().getQueryObject().get("id")).get("$gt"));
+        assertEquals(1, query.getValue().getSortObject().get("id"));
+        assertEquals(50, query.getValue().getLimit());
+    }
+
+    @Test
+    void rejectsPagesWithoutAPositiveLimitOrWithAnInvalidCursor() {
+        StepVerifier.create(repository.findPageAfter(null, null, 0))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(repository.findPageAfter(null, "not-an-id", 10))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verify(mongoTemplate, never()).find(any(Query.class), eq(CreditCard.class));
+    }
+
+    @Test
+    void aggregatesOnlyTheCustomersOfTheExposurePage() {
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), anyString())).thenReturn(Flux.just(
+                new Document("customerId", "customer-2"), new Document("customerId", "customer-2"),
+                new Document("customerId", "customer-3"), new Document("customerId", "customer-4")));
+        when(mongoTemplate.aggregate(any(Aggregation.class), anyString(), eq(ExposureView.class))).thenReturn(Flux.empty());
+
+        StepVerifier.create(repository.aggregateExposureByCustomerPage(CustomerType.BUSINESS, "customer-1", 2))
+                .verifyComplete();
+
+        ArgumentCaptor<Query> customers = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(customers.capture(), eq(Document.class), anyString());
+        assertEquals("customer-1", ((Document) customers.getValue().getQueryObject().get("customerId")).get("$gt"));
+        ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(aggregation.capture(), anyString(), eq(ExposureView.class));
+        Document match = (Document) aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT).get(0).get("$match");
+        assertEquals(List.of("customer-2", "customer-3"), ((Document) match.get("customerId")).get("$in"));
+        assertEquals("BUSINESS", match.get("customerType"));
+    }
+
+    @Test
+    void skipsTheAggregationForAnEmptyExposurePage() {
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), anyString())).thenReturn(Flux.empty());
+
+        StepVerifier.create(repository.aggregateExposureByCustomerPage(null, "customer-9", 10))
+                .verifyComplete();
+
+        verify(mongoTemplate, never()).aggregate(any(Aggregation.class), anyString(), eq(ExposureView.class));
+    }
+
+    @SafeVarargs
+    private void givenBalanceChangeResult(Mono<CreditCard> first, Mono<CreditCard>... next) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(CreditCard.class))).thenReturn(first, next);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenLegacyCards(Document... documents) {
+        FindPublisher<Document> publisher = mock(FindPublisher.class);
+        when(collection.find(any(Bson.class))).thenReturn(publisher);
+        when(publisher.projection(any(Bson.class))).thenReturn(publisher);
+        doAnswer(invocation -> {
+            Flux.just(documents).subscribe(invocation.<Subscriber<Document>>getArgument(0));
+            return null;
+        }).when(publisher).subscribe(any());
+    }
+}
@@ -0,0 +1,278 @@
+package com.nttdata.bankapp.mscreditcardservice.repricing;
+
+import com.mongodb.client.result.UpdateResult;
+import com.nttdata.bankapp.mscreditcardservice.authorization.AuthorizationEngine;
+import com.nttdata.bankapp.mscreditcardservice.cache.CreditCardCache;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.model.RepricingJob;
+import com.nttdata.bankapp.mscreditcardservice.model.RepricingRule;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import com.nttdata.bankapp.mscreditcardservice.stats.PortfolioStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ejecuta un trabajo sobre tarjetas en memoria que siguen el contrato del repositorio: las tarjetas quedan
+ * marcadas con el trabajo que las actualizó y una tarjeta marcada no se vuelve a actualizar.
+ */
+class RepricingJobRunnerTest {
+
+    private static final String JOB_ID = "job-1";
+    private static final int CARDS = 10;
+    private static final int CHUNK_SIZE = 3;
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final CreditCardRepository creditCardRepository = mock(CreditCardRepository.class);
+    private final AuthorizationEngine authorizationEngine = mock(AuthorizationEngine.class);
+    private final Map<String, CardRow> cards = new TreeMap<>();
+    private final List<Set<String>> writes = new ArrayList<>();
+    private final AtomicInteger failingWrite = new AtomicInteger();
+    private RepricingJob job;
+    private boolean candidatesIncludeMarkedCards;
+    private RepricingJobRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 1; i <= CARDS; i++) {
+            cards.put(String.format("card-%02d", i), new CardRow(10_000L, 10_000L));
+        }
+        job = RepricingJob.builder()
+                .id(JOB_ID)
+                .rule(RepricingRule.PERCENTAGE)
+                .value(BigDecimal.TEN)
+                .status(RepricingJob.Status.PENDING)
+                .build();
+        givenCardsInMemory();
+        givenJobInMemory();
+        when(authorizationEngine.creditLimitChanged(anyString(), any(Money.class), any(Money.class)))
+                .thenReturn(Mono.empty());
+        runner = new RepricingJobRunner(mongoTemplate, creditCardRepository, authorizationEngine,
+                mock(CreditCardCache.class), mock(PortfolioStatistics.class), new SimpleMeterRegistry(),
+                1, CHUNK_SIZE, 3, 3, Duration.ofHours(1), Duration.ofMinutes(2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        runner.stop();
+    }
+
+    @Test
+    void appliesTheRuleToEveryCardOnce() {
+        runner.start();
+
+        awaitStatus(RepricingJob.Status.COMPLETED);
+        cards.values().forEach(row -> assertEquals(11_000L, row.creditLimit));
+        cards.values().forEach(row -> assertEquals(11_000L, row.availableBalance));
+        assertEquals(CARDS, job.getProcessed());
+        assertEquals(CARDS, job.getUpdated());
+        assertEquals("card-10", job.getLastCardId());
+    }
+
+    @Test
+    void resumesAfterTheLastCheckpointWithoutApplyingTheRuleTwice() {
+        // El segundo tramo se escribe pero el resultado no llega: el trabajo falla antes de su checkpoint
+        failingWrite.set(2);
+        runner.start();
+
+        awaitStatus(RepricingJob.Status.COMPLETED);
+        cards.values().forEach(row -> assertEquals(11_000L, row.creditLimit));
+        assertEquals(1, job.getAttempts());
+        assertEquals("card-10", job.getLastCardId());
+        // Las tarjetas del primer tramo, ya en el checkpoint, no se vuelven a enviar
+        assertEquals(1, writes.stream().filter(ids -> ids.contains("card-01")).count());
+    }
+
+    @Test
+    void doesNotApplyTheRuleAgainToCardsAlreadyMarked() {
+        failingWrite.set(2);
+        candidatesIncludeMarkedCards = true;
+        runner.start();
+
+        awaitStatus(RepricingJob.Status.COMPLETED);
+        cards.values().forEach(row -> assertEquals(11_000L, row.creditLimit));
+        assertEquals(CHUNK_SIZE, job.getConflicts());
+    }
+
+    private void awaitStatus(RepricingJob.Status status) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            synchronized (this) {
+                if (job.getStatus() == status) {
+                    return;
+                }
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+        fail("Repricing job did not reach " + status + ", last status " + job.getStatus());
+    }
+
+    private void givenCardsInMemory() {
+        when(creditCardRepository.convertLegacyAmounts(isNull())).thenReturn(Mono.just(0L));
+        when(creditCardRepository.findRepricingCandidates(any(RepricingJob.class)))
+                .thenAnswer(invocation -> Flux.defer(() -> {
+                    String lastCardId = invocation.<RepricingJob>getArgument(0).getLastCardId();
+                    List<CreditCard> candidates = new ArrayList<>();
+                    synchronized (this) {
+                        cards.forEach((id, row) -> {
+                            if ((lastCardId == null || id.compareTo(lastCardId) > 0)
+                                    && (candidatesIncludeMarkedCards || !JOB_ID.equals(row.lastRepricingJobId))) {
+                                candidates.add(row.toCreditCard(id));
+                            }
+                        });
+                    }
+                    return Flux.fromIterable(candidates);
+                }));
+        when(creditCardRepository.findCardsByIdIn(anyCollection()))
+                .thenAnswer(invocation -> Flux.defer(() -> {
+                    List<CreditCard> found = new ArrayList<>();
+                    synchronized (this) {
+                        invocation.<Collection<String>>getArgument(0).forEach(id -> found.add(cards.get(id).toCreditCard(id)));
+                    }
+                    return Flux.fromIterable(found);
+                }));
+        when(creditCardRepository.changeCreditLimits(eq(JOB_ID), anyMap(), anyMap()))
+                .thenAnswer(invocation -> Mono.defer(() -> {
+                    Map<String, Money> currentLimits = invocation.getArgument(1);
+                    Map<String, Money> newLimits = invocation.getArgument(2);
+                    Set<String> failed = new HashSet<>();
+                    synchronized (this) {
+                        writes.add(new HashSet<>(newLimits.keySet()));
+                        newLimits.forEach((id, newLimit) -> {
+                            CardRow row = cards.get(id);
+                            if (row.creditLimit != currentLimits.get(id).getMinorUnits() || JOB_ID.equals(row.lastRepricingJobId)) {
+                                failed.add(id);
+                                return;
+                            }
+                            row.availableBalance += newLimit.getMinorUnits() - row.creditLimit;
+                            row.creditLimit = newLimit.getMinorUnits();
+                            row.lastRepricingJobId = JOB_ID;
+                        });
+                        if (writes.size() == failingWrite.get()) {
+                            return Mono.error(new IllegalStateException("connection reset"));
+                        }
+                    }
+                    return Mono.just(failed);
+                }));
+    }
+
+    /**
+     * Reserva el trabajo mientras no haya terminado y aplica los $set y $inc de los checkpoints.
+     */
+    private void givenJobInMemory() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(RepricingJob.class)))
+                .thenAnswer(invocation -> Mono.defer(() -> {
+                    synchronized (this) {
+                        if (job.getStatus() != RepricingJob.Status.PENDING && job.getStatus() != RepricingJob.Status.RUNNING) {
+                            return Mono.empty();
+                        }
+                        applyUpdate(invocation.getArgument(1));
+                        return Mono.just(copyOfJob());
+                    }
+                }));
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(RepricingJob.class)))
+                .thenAnswer(invocation -> Mono.fromCallable(() -> {
+                    synchronized (this) {
+                        applyUpdate(invocation.getArgument(1));
+                    }
+                    return UpdateResult.acknowledged(1, 1L, null);
+                }));
+    }
+
+    private RepricingJob copyOfJob() {
+        return RepricingJob.builder()
+                .id(job.getId())
+                .rule(job.getRule())
+                .value(job.getValue())
+                .status(job.getStatus())
+                .lastCardId(job.getLastCardId())
+                .attempts(job.getAttempts())
+                .build();
+    }
+
+    private void applyUpdate(UpdateDefinition update) {
+        Document document = update.getUpdateObject();
+        Document set = document.get("$set", Document.class);
+        Document inc = document.get("$inc", Document.class);
+        if (set != null && set.containsKey("status")) {
+            job.setStatus((RepricingJob.Status) set.get("status"));
+        }
+        if (set != null && set.containsKey("lastCardId")) {
+            job.setLastCardId(set.getString("lastCardId"));
+        }
+        if (inc != null) {
+            job.setProcessed(job.getProcessed() + increment(inc, "processed"));
+            job.setUpdated(job.getUpdated() + increment(inc, "updated"));
+            job.setConflicts(job.getConflicts() + increment(inc, "conflicts"));
+            job.setAttempts(job.getAttempts() + (int) increment(inc, "attempts"));
+        }
+    }
+
+    private static long increment(Document inc, String field) {
+        Object value = inc.get(field);
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * Tarjeta guardada, en céntimos, con la marca del último trabajo que la actualizó.
+     */
+    private static final class CardRow {
+        private long creditLimit;
+        private long availableBalance;
+        private String lastRepricingJobId;
+
+        private CardRow(long creditLimit, long availableBalance) {
+            this.creditLimit = creditLimit;
+            this.availableBalance = availableBalance;
+        }
+
+        private CreditCard toCreditCard(String id) {
+            return CreditCard.builder()
+                    .id(id)
+                    .customerId("customer-" + id)
+                    .customerType(CustomerType.PERSONAL)
+                    .creditLimit(Money.ofMinorUnits(creditLimit))
+                    .availableBalance(Money.ofMinorUnits(availableBalance))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.nttdata.bankapp.mscreditcardservice.service.impl;
+
+import com.nttdata.bankapp.mscreditcardservice.authorization.AuthorizationEngine;
+import com.nttdata.bankapp.mscreditcardservice.concurrency.CardContentionTracker;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceBatchLineDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.BalanceBatchResultDto;
+import com.nttdata.bankapp.mscreditcardservice.metrics.DeclineReason;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.model.Movement;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import com.nttdata.bankapp.mscreditcardservice.stats.PortfolioStatistics;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BalanceBatchProcessorTest {
+
+    private static final String CARD_ID = "card-1";
+
+    private final CreditCardRepository creditCardRepository = mock(CreditCardRepository.class);
+    private final CardContentionTracker cardContentionTracker = mock(CardContentionTracker.class);
+    private final BalanceBatchProcessor processor = new BalanceBatchProcessor(creditCardRepository,
+            mock(AuthorizationEngine.class), mock(PortfolioStatistics.class), cardContentionTracker);
+
+    @Test
+    void appliesTheLinesOfEachCardInOrderAgainstItsBalance() {
+        when(creditCardRepository.findCardsByIdIn(anyCollection())).thenReturn(Flux.just(card("100")));
+        when(creditCardRepository.applyBatchBalanceChanges(anyString(), anyMap(), anyMap()))
+                .thenReturn(Mono.just(Collections.emptySet()));
+
+        List<BalanceBatchResultDto> results = processor.registerConsumptions(Flux.just(
+                        line(CARD_ID, "60"), line(CARD_ID, "50"), line("unknown", "10"),
+                        line(CARD_ID, "-1"), line(CARD_ID, "0.001"), line(CARD_ID, "40")))
+                .collectList()
+                .block();
+
+        assertApproved(results.get(0), "40.00");
+        assertDeclined(results.get(1), DeclineReason.INSUFFICIENT_AVAILABLE_BALANCE);
+        assertDeclined(results.get(2), DeclineReason.CARD_NOT_FOUND);
+        assertDeclined(results.get(3), DeclineReason.INVALID_REQUEST);
+        assertDeclined(results.get(4), DeclineReason.INVALID_REQUEST);
+        assertApproved(results.get(5), "0.00");
+        assertEquals(2, writtenMovements(1).get(0).get(CARD_ID).size());
+    }
+
+    @Test
+    void declinesPaymentsAboveTheUsedBalance() {
+        when(creditCardRepository.findCardsByIdIn(anyCollection())).thenReturn(Flux.just(card("70")));
+        when(creditCardRepository.applyBatchBalanceChanges(anyString(), anyMap(), anyMap()))
+                .thenReturn(Mono.just(Collections.emptySet()));
+
+        List<BalanceBatchResultDto> results = processor.payBalances(Flux.just(
+                        line(CARD_ID, "30.01"), line(CARD_ID, "30")))
+                .collectList()
+                .block();
+
+        assertDeclined(results.get(0), DeclineReason.PAYMENT_EXCEEDS_USED_BALANCE);
+        assertApproved(results.get(1), "100.00");
+    }
+
+    @Test
+    void recomputesCardsModifiedBeforeTheWriteWithTheirCurrentBalance() {
+        when(creditCardRepository.findCardsByIdIn(anyCollection()))
+                .thenReturn(Flux.just(card("100", 1L)))
+                .thenReturn(Flux.just(card("50", 2L)));
+        when(creditCardRepository.applyBatchBalanceChanges(anyString(), anyMap(), anyMap()))
+                .thenReturn(Mono.just(Set.of(CARD_ID)))
+                .thenReturn(Mono.just(Collections.emptySet()));
+        when(creditCardRepository.findWithFullOutbox(anyCollection())).thenReturn(Mono.just(Collections.emptySet()));
+
+        List<BalanceBatchResultDto> results = processor.registerConsumptions(Flux.just(
+                        line(CARD_ID, "30"), line(CARD_ID, "30")))
+                .collectList()
+                .block();
+
+        assertApproved(results.get(0), "20.00");
+        assertDeclined(results.get(1), DeclineReason.INSUFFICIENT_AVAILABLE_BALANCE);
+        List<Map<String, List<Movement>>> writes = writtenMovements(2);
+        assertEquals(2, writes.get(0).get(CARD_ID).size());
+        assertEquals(1, writes.get(1).get(CARD_ID).size());
+        // Cada escritura solo se aplica sobre la versión con la que se validaron las líneas
+        List<Map<String, Long>> versions = expectedVersions(2);
+        assertEquals(Map.of(CARD_ID, 1L), versions.get(0));
+        assertEquals(Map.of(CARD_ID, 2L), versions.get(1));
+        verify(cardContentionTracker).conflict(CARD_ID, "batch");
+    }
+
+    @Test
+    void declinesCardsStillModifiedAfterTheLastAttempt() {
+        when(creditCardRepository.findCardsByIdIn(anyCollection())).thenAnswer(invocation -> Flux.just(card("100")));
+        when(creditCardRepository.applyBatchBalanceChanges(anyString(), anyMap(), anyMap())).thenReturn(Mono.just(Set.of(CARD_ID)));
+        when(creditCardRepository.findWithFullOutbox(anyCollection())).thenReturn(Mono.just(Collections.emptySet()));
+
+        List<BalanceBatchResultDto> results = processor.registerConsumptions(Flux.just(line(CARD_ID, "30")))
+                .collectList()
+                .block();
+
+        assertDeclined(results.get(0), DeclineReason.CONCURRENT_MODIFICATION);
+        verify(creditCardRepository, times(3)).applyBatchBalanceChanges(anyString(), anyMap(), anyMap());
+        verify(cardContentionTracker).exhausted(CARD_ID, "batch");
+    }
+
+    @Test
+    void declinesCardsWaitingForTheLedgerWithoutRetrying() {
+        when(creditCardRepository.findCardsByIdIn(anyCollection())).thenReturn(Flux.just(card("100")));
+        when(creditCardRepository.applyBatchBalanceChanges(anyString(), anyMap(), anyMap())).thenReturn(Mono.just(Set.of(CARD_ID)));
+        when(creditCardRepository.findWithFullOutbox(anyCollection())).thenReturn(Mono.just(Set.of(CARD_ID)));
+
+        List<BalanceBatchResultDto> results = processor.registerConsumptions(Flux.just(line(CARD_ID, "30")))
+                .collectList()
+                .block();
+
+        assertDeclined(results.get(0), DeclineReason.PENDING_MOVEMENTS_BACKLOG);
+        verify(creditCardRepository, times(1)).applyBatchBalanceChanges(anyString(), anyMap(), anyMap());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, List<Movement>>> writtenMovements(int writes) {
+        ArgumentCaptor<Map<String, List<Movement>>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(creditCardRepository, times(writes)).applyBatchBalanceChanges(anyString(), captor.capture(), anyMap());
+        return captor.getAllValues();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Long>> expectedVersions(int writes) {
+        ArgumentCaptor<Map<String, Long>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(creditCardRepository, times(writes)).applyBatchBalanceChanges(anyString(), anyMap(), captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static void assertApproved(BalanceBatchResultDto result, String availableBalance) {
+        assertTrue(result.isApproved(), result.getReason());
+        assertEquals(new BigDecimal(availableBalance), result.getAvailableBalance());
+    }
+
+    private static void assertDeclined(BalanceBatchResultDto result, DeclineReason reason) {
+        assertFalse(result.isApproved());
+        assertEquals(reason.getMessage(), result.getReason());
+    }
+
+    private static CreditCard card(String availableBalance) {
+        return card(availableBalance, 1L);
+    }
+
+    private static CreditCard card(String availableBalance, Long version) {
+        return CreditCard.builder()
+                .id(CARD_ID)
+                .customerType(CustomerType.PERSONAL)
+                .creditLimit(Money.of(new BigDecimal("100")))
+                .availableBalance(Money.of(new BigDecimal(availableBalance)))
+                .version(version)
+                .build();
+    }
+
+    private static BalanceBatchLineDto line(String creditCardId, String amount) {
+        return new BalanceBatchLineDto(creditCardId, new BigDecimal(amount));
+    }
+}
@@ -0,0 +1,282 @@
+package com.nttdata.bankapp.mscreditcardservice.service.impl;
+
+import com.nttdata.bankapp.mscreditcardservice.authorization.AuthorizationEngine;
+import com.nttdata.bankapp.mscreditcardservice.cache.CacheInvalidationBus;
+import com.nttdata.bankapp.mscreditcardservice.cache.CreditCardCache;
+import com.nttdata.bankapp.mscreditcardservice.client.CustomerService;
+import com.nttdata.bankapp.mscreditcardservice.concurrency.CardContentionTracker;
+import com.nttdata.bankapp.mscreditcardservice.dto.CardLookupRequestDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.CardLookupResultDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.CreditCardDto;
+import com.nttdata.bankapp.mscreditcardservice.events.BalanceEventStream;
+import com.nttdata.bankapp.mscreditcardservice.exception.CreditCardNotFoundException;
+import com.nttdata.bankapp.mscreditcardservice.issuance.CardNumberIssuer;
+import com.nttdata.bankapp.mscreditcardservice.metrics.OperationMetrics;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCardBalanceView;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCardCvvView;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCardSummaryView;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import com.nttdata.bankapp.mscreditcardservice.repository.MovementRepository;
+import com.nttdata.bankapp.mscreditcardservice.stats.PortfolioStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class CreditCardServiceImplTest {
+
+    private static final String CARD_ID = "card-1";
+    private static final String CARD_NUMBER = "5123-0000-0000-0001";
+
+    private final CreditCardRepository creditCardRepository = mock(CreditCardRepository.class);
+    private final MovementRepository movementRepository = mock(MovementRepository.class);
+    private final AuthorizationEngine authorizationEngine = mock(AuthorizationEngine.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CreditCardCache creditCardCache = new CreditCardCache(new CacheInvalidationBus(), meterRegistry,
+            100, Duration.ofMinutes(5));
+    private final CreditCardServiceImpl service = new CreditCardServiceImpl(creditCardRepository, movementRepository,
+            mock(CustomerService.class), authorizationEngine, mock(BalanceBatchProcessor.class), creditCardCache,
+            mock(PortfolioStatistics.class), new CardContentionTracker(meterRegistry, 3, Duration.ofMillis(1),
+                    Duration.ofMillis(5), 20, 50, 1000, Duration.ofMinutes(15)), new OperationMetrics(meterRegistry),
+            mock(CardNumberIssuer.class), mock(BalanceEventStream.class));
+
+    @BeforeEach
+    void setUp() {
+        creditCardCache.subscribe();
+    }
+
+    @AfterEach
+    void tearDown() {
+        creditCardCache.unsubscribe();
+    }
+
+    @Test
+    void returnsTheCvvOfCardsReadFromTheCache() {
+        when(creditCardRepository.findCardById(CARD_ID)).thenReturn(Mono.just(card()));
+        when(creditCardRepository.findCvvViewById(CARD_ID)).thenReturn(Mono.just(new CreditCardCvvView(CARD_ID, "123")));
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(service.findById(CARD_ID))
+                    .expectNextMatches(creditCardDto -> "123".equals(creditCardDto.getCvv())
+                            && CARD_NUMBER.equals(creditCardDto.getCardNumber()))
+                    .verifyComplete();
+        }
+        // La segunda lectura sale de la caché; el CVV se lee aparte en cada una
+        verify(creditCardRepository, times(1)).findCardById(CARD_ID);
+        verify(creditCardRepository, times(2)).findCvvViewById(CARD_ID);
+    }
+
+    @Test
+    void returnsTheCvvOfCardsReadByNumber() {
+        when(creditCardRepository.findByCardNumber(CARD_NUMBER)).thenReturn(Mono.just(card()));
+        when(creditCardRepository.findCvvViewByCardNumber(CARD_NUMBER))
+                .thenReturn(Mono.just(new CreditCardCvvView(CARD_ID, "123")));
+
+        StepVerifier.create(service.findByCardNumber(CARD_NUMBER))
+                .expectNextMatches(creditCardDto -> "123".equals(creditCardDto.getCvv()))
+                .verifyComplete();
+    }
+
+    @Test
+    void rejectsUnknownCards() {
+        when(creditCardRepository.findCardById(CARD_ID)).thenReturn(Mono.empty());
+        when(creditCardRepository.findCvvViewById(CARD_ID)).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.findById(CARD_ID))
+                .expectError(CreditCardNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void readsOnlyTheBalanceFieldsWhenTheCardIsNotCached() {
+        when(creditCardRepository.findBalanceViewById(CARD_ID)).thenReturn(Mono.just(new CreditCardBalanceView(CARD_ID,
+                CARD_NUMBER, Money.of(new BigDecimal("100")), Money.of(new BigDecimal("30")))));
+
+        StepVerifier.create(service.getBalance(CARD_ID))
+                .assertNext(balance -> {
+                    assertEquals(new BigDecimal("70.00"), balance.getUsedBalance());
+                    assertEquals(CARD_NUMBER, balance.getCardNumber());
+                })
+                .verifyComplete();
+
+        verify(creditCardRepository, never()).findCardById(CARD_ID);
+    }
+
+    @Test
+    void readsTheBalanceFromTheCacheWhenTheCardIsThere() {
+        when(creditCardRepository.findCardById(CARD_ID)).thenReturn(Mono.just(card()));
+        when(creditCardRepository.findCvvViewById(CARD_ID)).thenReturn(Mono.just(new CreditCardCvvView(CARD_ID, "123")));
+        service.findById(CARD_ID).block();
+
+        StepVerifier.create(service.getBalance(CARD_ID))
+                .assertNext(balance -> assertEquals(new BigDecimal("100.00"), balance.getAvailableBalance()))
+                .verifyComplete();
+
+        verify(creditCardRepository, never()).findBalanceViewById(CARD_ID);
+    }
+
+    @Test
+    void listsCardsFromTheSummaryProjectionWithoutTheCvv() {
+        when(creditCardRepository.findSummaryViewsByCustomerId("customer-1")).thenReturn(Flux.just(new CreditCardSummaryView(
+                CARD_ID, CARD_NUMBER, "customer-1", CustomerType.PERSONAL, Money.of(new BigDecimal("100")),
+                Money.of(new BigDecimal("100")), LocalDate.now().plusYears(4))));
+
+        StepVerifier.create(service.findByCustomerId("customer-1"))
+                .expectNextMatches(creditCardDto -> CARD_ID.equals(creditCardDto.getId()) && creditCardDto.getCvv() == null)
+                .verifyComplete();
+
+        verify(creditCardRepository, never()).findByCustomerId("customer-1");
+    }
+
+    @Test
+    void reportsZeroExposureForCustomersWithoutCards() {
+        when(creditCardRepository.aggregateExposureByCustomer("customer-1")).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.getCustomerExposure("customer-1"))
+                .assertNext(exposure -> {
+                    assertEquals(0L, exposure.getCardCount());
+                    assertEquals(new BigDecimal("0.00"), exposure.getTotalUsedBalance());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void boundsTheExposurePageSize() {
+        when(creditCardRepository.aggregateExposureByCustomerPage(any(), any(), anyInt())).thenReturn(Flux.empty());
+
+        service.streamCustomerExposures(null, null, 50_000).blockLast();
+        service.streamCustomerExposures(CustomerType.PERSONAL, "customer-1", 0).blockLast();
+
+        verify(creditCardRepository).aggregateExposureByCustomerPage(null, null, 1000);
+        verify(creditCardRepository).aggregateExposureByCustomerPage(CustomerType.PERSONAL, "customer-1", 1);
+    }
+
+    @Test
+    void rereadsTheCardAndRetriesTheLimitChangeAfterAConflict() {
+        CreditCard stale = card();
+        stale.setVersion(1L);
+        CreditCard current = card();
+        current.setVersion(2L);
+        current.setAvailableBalance(Money.of(new BigDecimal("60")));
+        CreditCard updated = card();
+        updated.setCreditLimit(Money.of(new BigDecimal("200")));
+        updated.setAvailableBalance(Money.of(new BigDecimal("160")));
+        // Como el Mono de Spring Data, cada suscripción vuelve a leer la tarjeta
+        Queue<CreditCard> reads = new ArrayDeque<>(List.of(stale, current));
+        when(creditCardRepository.findCardById(CARD_ID)).thenReturn(Mono.fromSupplier(reads::poll));
+        when(creditCardRepository.changeCreditLimit(eq(CARD_ID), eq(1L), any(), any())).thenReturn(Mono.empty());
+        when(creditCardRepository.changeCreditLimit(eq(CARD_ID), eq(2L), any(), any())).thenReturn(Mono.just(updated));
+        when(authorizationEngine.creditLimitChanged(eq(CARD_ID), any(), any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.update(CARD_ID, CreditCardDto.builder().creditLimit(new BigDecimal("200")).build()))
+                .assertNext(creditCardDto -> assertEquals(new BigDecimal("160.00"), creditCardDto.getAvailableBalance()))
+                .verifyComplete();
+
+        assertTrue(reads.isEmpty());
+        assertEquals(1.0, meterRegistry.counter("creditcard.optimistic.lock.conflicts", "operation", "update").count());
+    }
+
+    @Test
+    void looksUpCardsInChunksKeepingTheRequestOrder() {
+        List<String> ids = IntStream.range(0, 1200).mapToObj(i -> "card-" + i).collect(Collectors.toList());
+        // Los bloques responden en orden inverso al de la petición y sin las tarjetas múltiplo de 7
+        when(creditCardRepository.findSummaryViewsByIdIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> chunk = invocation.getArgument(0);
+            return Flux.fromIterable(chunk)
+                    .filter(id -> Integer.parseInt(id.substring(5)) % 7 != 0)
+                    .map(CreditCardServiceImplTest::summary)
+                    .delaySubscription(Duration.ofMillis(chunk.contains("card-0") ? 50 : 0));
+        });
+
+        List<CardLookupResultDto> results = service.lookup(new CardLookupRequestDto(ids, null)).collectList().block();
+
+        assertEquals(ids, results.stream().map(CardLookupResultDto::getKey).collect(Collectors.toList()));
+        assertTrue(results.stream().allMatch(result -> result.isFound() == (Integer.parseInt(result.getKey().substring(5)) % 7 != 0)));
+        assertTrue(results.stream().filter(CardLookupResultDto::isFound).allMatch(result -> result.getCreditCard().getCvv() == null));
+        verify(creditCardRepository, times(3)).findSummaryViewsByIdIn(anyCollection());
+    }
+
+    @Test
+    void rejectsLookupsAboveTheKeyLimit() {
+        List<String> ids = IntStream.range(0, 10_001).mapToObj(i -> "card-" + i).collect(Collectors.toList());
+
+        StepVerifier.create(service.lookup(new CardLookupRequestDto(ids, null)))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(service.lookup(new CardLookupRequestDto(List.of(CARD_ID), List.of(CARD_NUMBER))))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verifyNoInteractions(creditCardRepository);
+    }
+
+    @Test
+    void streamsCardsFromTheCursor() {
+        String afterId = new ObjectId().toHexString();
+        when(creditCardRepository.findPageAfter(null, afterId, 10)).thenReturn(Flux.just(card()));
+
+        StepVerifier.create(service.streamAll(afterId, 10))
+                .expectNextMatches(creditCardDto -> CARD_ID.equals(creditCardDto.getId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void rejectsInvalidStreamPagesBeforeQuerying() {
+        StepVerifier.create(service.streamAll(null, -1))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(service.streamByCustomerId("customer-1", "card-1", null))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verifyNoInteractions(creditCardRepository);
+    }
+
+    private static CreditCardSummaryView summary(String id) {
+        return new CreditCardSummaryView(id, CARD_NUMBER, "customer-1", CustomerType.PERSONAL,
+                Money.of(new BigDecimal("100")), Money.of(new BigDecimal("100")), LocalDate.now().plusYears(4));
+    }
+
+    private static CreditCard card() {
+        return CreditCard.builder()
+                .id(CARD_ID)
+                .cardNumber(CARD_NUMBER)
+                .customerId("customer-1")
+                .customerType(CustomerType.PERSONAL)
+                .creditLimit(Money.of(new BigDecimal("100")))
+                .availableBalance(Money.of(new BigDecimal("100")))
+                .expirationDate(LocalDate.now().plusYears(4))
+                .cvv("123")
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.nttdata.bankapp.mscreditcardservice.stats;
+
+import com.nttdata.bankapp.mscreditcardservice.dto.ExposureDto;
+import com.nttdata.bankapp.mscreditcardservice.dto.PortfolioStatisticsDto;
+import com.nttdata.bankapp.mscreditcardservice.model.CreditCard;
+import com.nttdata.bankapp.mscreditcardservice.model.CustomerType;
+import com.nttdata.bankapp.mscreditcardservice.model.Money;
+import com.nttdata.bankapp.mscreditcardservice.repository.CreditCardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.test.publisher.TestPublisher;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PortfolioStatisticsTest {
+
+    private static final String CARD_1 = "000000000000000000000001";
+    private static final String CARD_2 = "000000000000000000000002";
+    private static final String CARD_3 = "000000000000000000000003";
+
+    private final CreditCardRepository creditCardRepository = mock(CreditCardRepository.class);
+    private final PortfolioStatistics statistics = new PortfolioStatistics(creditCardRepository, new SimpleMeterRegistry(),
+            90, Duration.ofMinutes(10));
+
+    @Test
+    void appliesEachWriteToTheTotals() {
+        statistics.cardAdded(CARD_1, CustomerType.PERSONAL, money("100"), money("100"));
+        statistics.cardAdded(CARD_2, CustomerType.PERSONAL, money("200"), money("200"));
+        statistics.cardChanged(CARD_1, CustomerType.PERSONAL, money("100"), money("100"), money("100"), money("5"));
+        statistics.cardRemoved(CARD_2, CustomerType.PERSONAL, money("200"), money("200"));
+
+        PortfolioStatisticsDto snapshot = statistics.snapshot();
+        ExposureDto personal = exposure(snapshot, CustomerType.PERSONAL);
+        assertEquals(1L, personal.getCardCount());
+        assertEquals(new BigDecimal("95.00"), personal.getTotalUsedBalance());
+        assertEquals(1L, snapshot.getCardsNearLimit());
+        assertEquals(1L, snapshot.getUtilizationPercentBuckets().get("90-100"));
+        assertEquals(0L, snapshot.getUtilizationPercentBuckets().get("0-10"));
+    }
+
+    @Test
+    void keepsTheWritesMadeDuringARebuild() {
+        TestPublisher<CreditCard> scan = TestPublisher.create();
+        when(creditCardRepository.findPageAfter(null, null, null)).thenReturn(scan.flux());
+        statistics.cardAdded("unrelated", CustomerType.BUSINESS, money("999"), money("999"));
+
+        Disposable rebuild = statistics.rebuild().subscribe();
+        scan.next(card(CARD_1, "100", "100"));
+        // Ya leída: se sustituye lo leído por su último estado
+        statistics.cardChanged(CARD_1, CustomerType.PERSONAL, money("100"), money("100"), money("100"), money("40"));
+        // Aún no leída: el recorrido la leerá con el estado nuevo y no debe contarla dos veces
+        statistics.cardChanged(CARD_2, CustomerType.PERSONAL, money("100"), money("100"), money("100"), money("70"));
+        statistics.cardAdded(CARD_3, CustomerType.PERSONAL, money("50"), money("50"));
+        scan.next(card(CARD_2, "100", "70"), card(CARD_3, "50", "50"));
+        scan.complete();
+
+        assertTrue(rebuild.isDisposed());
+        ExposureDto personal = exposure(statistics.snapshot(), CustomerType.PERSONAL);
+        assertEquals(3L, personal.getCardCount());
+        assertEquals(new BigDecimal("90.00"), personal.getTotalUsedBalance());
+        assertEquals(0L, exposure(statistics.snapshot(), CustomerType.BUSINESS).getCardCount());
+        assertTrue(statistics.snapshot().getRebuiltAt() != null);
+    }
+
+    @Test
+    void dropsCardsRemovedDuringARebuild() {
+        when(creditCardRepository.findPageAfter(null, null, null)).thenReturn(
+                Flux.just(card(CARD_1, "100", "100"), card(CARD_2, "100", "100"))
+                        .doOnComplete(() -> statistics.cardRemoved(CARD_2, CustomerType.PERSONAL, money("100"), money("100"))));
+
+        statistics.rebuild().block();
+
+        assertEquals(1L, exposure(statistics.snapshot(), CustomerType.PERSONAL).getCardCount());
+    }
+
+    private static ExposureDto exposure(PortfolioStatisticsDto snapshot, CustomerType customerType) {
+        return snapshot.getCustomerTypes().stream()
+                .filter(exposure -> exposure.getCustomerType() == customerType)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static CreditCard card(String id, String creditLimit, String availableBalance) {
+        return CreditCard.builder()
+                .id(id)
+                .customerType(CustomerType.PERSONAL)
+                .creditLimit(money(creditLimit))
+                .availableBalance(money(availableBalance))
+                .build();
+    }
+
+    private static Money money(String amount) {
+        return Money.of(new BigDecimal(amount));
+    }
+}